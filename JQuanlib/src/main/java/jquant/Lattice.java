@@ -2,6 +2,8 @@ package jquant;
 
 import jquant.math.Array;
 
+import java.util.List;
+
 //! %Lattice (tree, finite-differences) base class
 public abstract class Lattice {
     protected TimeGrid t_;
@@ -55,6 +57,23 @@ public abstract class Lattice {
     //! computes the present value of an asset.
     public abstract double presentValue(DiscretizedAsset d);
 
+    /*! Roll back several assets until the given time, performing any
+        needed adjustment. The default implementation rolls them back
+        one at a time; lattices may share the traversal among them.
+    */
+    public void rollback(List<? extends DiscretizedAsset> assets, double to) {
+        for (DiscretizedAsset d : assets)
+            rollback(d, to);
+    }
+
+    /*! Roll back several assets until the given time, but do not
+        perform the final adjustment.
+    */
+    public void partialRollback(List<? extends DiscretizedAsset> assets, double to) {
+        for (DiscretizedAsset d : assets)
+            partialRollback(d, to);
+    }
+
     //@}
 
     // this is a smell, but we need it. We'll rethink it later.
@@ -5,16 +5,36 @@ import jquant.time.Date;
 import java.util.Optional;
 
 // helper class to temporarily and safely change the settings
-public class SavedSettings {
-    private Date evaluationDate_;
-    private boolean includeReferenceDateEvents_;
-    private Optional<Boolean> includeTodaysCashFlows_;
-    private boolean enforcesTodaysHistoricFixings_;
+/*! The settings are restored by close(), which takes the place of the
+    destructor of the C++ class, e.g. in a finally block.
+    Settings.instance refers to the settings in effect on the current
+    thread, so that saved settings can also be copied into a scope
+    opened on another thread with restore().
+*/
+public class SavedSettings implements AutoCloseable {
+    private final Date evaluationDate_;
+    private final boolean includeReferenceDateEvents_;
+    private final Optional<Boolean> includeTodaysCashFlows_;
+    private final boolean enforcesTodaysHistoricFixings_;
 
     public SavedSettings() {
-        evaluationDate_ = Settings.instance.evaluationDate().Date();
+        // the stored date, so that a null (floating) evaluation date is restored as such
+        evaluationDate_ = Settings.instance.evaluationDate().getValue();
         includeReferenceDateEvents_ = Settings.instance.includeReferenceDateEvents();
         includeTodaysCashFlows_ = Settings.instance.includeTodaysCashFlows();
         enforcesTodaysHistoricFixings_ = Settings.instance.enforcesTodaysHistoricFixings();
     }
+
+    @Override
+    public void close() {
+        restore();
+    }
+
+    //! sets the saved values in the settings in effect on the current thread
+    public void restore() {
+        Settings.instance.evaluationDate().equal(evaluationDate_);
+        Settings.instance.setIncludeReferenceDateEvents(includeReferenceDateEvents_);
+        Settings.instance.setIncludeTodaysCashFlows(includeTodaysCashFlows_);
+        Settings.instance.setEnforcesTodaysHistoricFixings(enforcesTodaysHistoricFixings_);
+    }
 }
@@ -1,19 +1,99 @@
 package jquant;
 
+import jquant.patterns.ObservableSettings;
 import jquant.patterns.Singleton;
 import jquant.time.Date;
 import jquant.time.TimeUtils;
 
 import java.util.Optional;
 
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! global repository for run-time library settings
+/*! The settings are process-wide unless a scope is opened on the
+    current thread, see newScope(); while it is open, the methods of
+    Settings.instance called on that thread refer to the settings of the
+    scope, so that different threads can price at different evaluation
+    dates.
+*/
 public class Settings implements Singleton<Settings> {
-    private DateProxy evaluationDate_ = new DateProxy();
-    private boolean includeReferenceDateEvents_ = false;
-    private Optional<Boolean> includeTodaysCashFlows_ = Optional.empty();
-    private Boolean enforcesTodaysHistoricFixings_ = false;
-    public static Settings instance = new  Settings();
+    private final DateProxy evaluationDate_ = new DateProxy();
+    private volatile boolean includeReferenceDateEvents_ = false;
+    private volatile Optional<Boolean> includeTodaysCashFlows_ = Optional.empty();
+    private volatile boolean enforcesTodaysHistoricFixings_ = false;
+    public static final Settings instance = new  Settings();
+    // settings of the innermost scope open on each thread
+    private static final ThreadLocal<Settings> scoped_ = new ThreadLocal<>();
     private Settings() {}
 
+    // the settings in effect on the current thread
+    private Settings current() {
+        if (this != instance)
+            return this;
+        final Settings s = scoped_.get();
+        return s != null ? s : this;
+    }
+
+    //! settings of their own for the current thread
+    /*! Until the returned scope is closed, Settings.instance refers on
+        the current thread to a copy of the settings in effect when the
+        scope was opened, with an evaluation date of its own: observers
+        registered with it, e.g. the instruments built within the scope,
+        are not notified when the global evaluation date changes, and
+        vice versa. The scope also opens a scope of ObservableSettings.
+
+        Scopes can be nested and must be closed in reverse order on the
+        thread which opened them. Tasks run on other threads are not in
+        the scope and see the global settings; ParallelFor therefore runs
+        its loops serially on a thread in a scope, which also keeps that
+        thread from running tasks of other callers while it waits for its
+        own. Code running in a scope should not hand work to a shared
+        pool: a thread in a scope must only run tasks of that scope.
+    */
+    public static Scope newScope() {
+        return new Scope();
+    }
+
+    //! whether a scope is open on the current thread
+    public static boolean inScope() {
+        return scoped_.get() != null;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Thread thread_ = Thread.currentThread();
+        private final Settings previous_ = scoped_.get();
+        private final Settings settings_ = new Settings();
+        private final ObservableSettings.Scope updates_;
+        private boolean closed_ = false;
+
+        private Scope() {
+            final Settings from = instance.current();
+            settings_.evaluationDate_.equal(from.evaluationDate_.getValue());
+            settings_.includeReferenceDateEvents_ = from.includeReferenceDateEvents_;
+            settings_.includeTodaysCashFlows_ = from.includeTodaysCashFlows_;
+            settings_.enforcesTodaysHistoricFixings_ = from.enforcesTodaysHistoricFixings_;
+            updates_ = ObservableSettings.newScope();
+            scoped_.set(settings_);
+        }
+
+        @Override
+        public void close() {
+            if (closed_)
+                return;
+            QL_REQUIRE(Thread.currentThread() == thread_, "settings scope closed on another thread");
+            QL_REQUIRE(scoped_.get() == settings_, "settings scopes closed out of order");
+            closed_ = true;
+            try {
+                updates_.close();
+            } finally {
+                if (previous_ == null)
+                    scoped_.remove();
+                else
+                    scoped_.set(previous_);
+            }
+        }
+    }
+
     //! the date at which pricing is to be performed.
     /*! Client code can inspect the evaluation date, as in:
         \code
@@ -37,7 +117,7 @@ public class Settings implements Singleton<Settings> {
                  changes as the clock strikes midnight.
     */
     public DateProxy evaluationDate() {
-        return evaluationDate_;
+        return current().evaluationDate_;
     }
     /*! Call this to prevent the evaluation date to change at
         midnight (and, incidentally, to gain quite a bit of
@@ -48,8 +128,9 @@ public class Settings implements Singleton<Settings> {
     */
     public void anchorEvaluationDate() {
         // set to today's date if not already set.
-        if (TimeUtils.equals(evaluationDate_.getValue() ,new Date()))
-            evaluationDate_.equal(Date.todaysDate());
+        final DateProxy evaluationDate = evaluationDate();
+        if (TimeUtils.equals(evaluationDate.getValue() ,new Date()))
+            evaluationDate.equal(Date.todaysDate());
         // If set, no-op since the date is already anchored.
     }
     /*! Call this to reset the evaluation date to
@@ -59,7 +140,7 @@ public class Settings implements Singleton<Settings> {
         the evaluation date is re-evaluated each time it is read.
     */
     public void resetEvaluationDate() {
-        evaluationDate_.equal(new Date());
+        evaluationDate().equal(new Date());
     }
     /*! This flag specifies whether or not Events occurring on the reference
         date should, by default, be taken into account as not happened yet.
@@ -68,10 +149,10 @@ public class Settings implements Singleton<Settings> {
     */
     // 支持对返回值修改
     public boolean includeReferenceDateEvents() {
-        return includeReferenceDateEvents_;
+        return current().includeReferenceDateEvents_;
     }
     public void setIncludeReferenceDateEvents(boolean includeReferenceDateEvents) {
-        this.includeReferenceDateEvents_ = includeReferenceDateEvents;
+        current().includeReferenceDateEvents_ = includeReferenceDateEvents;
     }
     /*! If set, this flag specifies whether or not CashFlows
         occurring on today's date should enter the NPV.  When the
@@ -81,13 +162,16 @@ public class Settings implements Singleton<Settings> {
         locally when calling the CashFlow::hasOccurred method.
     */
     public Optional<Boolean> includeTodaysCashFlows() {
-        return includeTodaysCashFlows_;
+        return current().includeTodaysCashFlows_;
+    }
+    public void setIncludeTodaysCashFlows(Optional<Boolean> includeTodaysCashFlows) {
+        current().includeTodaysCashFlows_ = includeTodaysCashFlows;
     }
 
     public boolean enforcesTodaysHistoricFixings() {
-        return enforcesTodaysHistoricFixings_;
+        return current().enforcesTodaysHistoricFixings_;
     }
     public void setEnforcesTodaysHistoricFixings(boolean todaysCashFlows) {
-        this.enforcesTodaysHistoricFixings_ = todaysCashFlows;
+        current().enforcesTodaysHistoricFixings_ = todaysCashFlows;
     }
 }
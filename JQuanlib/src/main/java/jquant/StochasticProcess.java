@@ -54,6 +54,22 @@ public abstract class StochasticProcess implements Observer, Observable {
     */
     public abstract Matrix diffusion(double t, final Array x);
 
+    /*! writes the drift into out, which holds size() values. The
+        default copies the result of drift(t, x); processes override
+        it to avoid the allocation.
+    */
+    public void drift(double t, final double[] x, double[] out) {
+        System.arraycopy(drift(t, Array.wrap(x)).dataRef(), 0, out, 0, size());
+    }
+
+    /*! writes the diffusion row-major into out, which holds
+        size() * factors() values. The default copies the result of
+        diffusion(t, x).
+    */
+    public void diffusion(double t, final double[] x, double[] out) {
+        System.arraycopy(diffusion(t, Array.wrap(x)).dataRef(), 0, out, 0, size() * factors());
+    }
+
     /*! returns the expectation
         \f$ E(\mathrm{x}_{t_0 + \Delta t}
             | \mathrm{x}_{t_0} = \mathrm{x}_0) \f$
@@ -101,7 +117,12 @@ public abstract class StochasticProcess implements Observer, Observable {
         standard deviation.
     */
     public Array evolve(double t0, final Array x0, double dt, final Array dw) {
-        return apply(expectation(t0, x0, dt), stdDeviation(t0, x0, dt).mutiply(dw));
+        if (discretization_ == null || !evolvesByDiscretization())
+            return apply(expectation(t0, x0, dt), stdDeviation(t0, x0, dt).mutiply(dw));
+        final Array x1 = new Array(size());
+        final double[] drift = new double[size()], diffusion = new double[size() * factors()];
+        discretizedStep(t0, x0.dataRef(), dt, dw.dataRef(), drift, diffusion, x1.dataRef());
+        return x1;
     }
 
     /*! applies a change to the asset value. By default, it
@@ -110,6 +131,94 @@ public abstract class StochasticProcess implements Observer, Observable {
     public Array apply(final Array x0, final Array dx) {
         return x0.add(dx);
     }
+
+    /*! advances the paths [begin, end) of a batch of n paths by one
+        step, in place. Component i of path p is x[i * n + p] and
+        factor k of its increment is dw[k * n + p]; x holds size() * n
+        values and dw factors() * n.
+
+        The default implementation applies the discretization path by
+        path on buffers allocated once per call if the process evolves
+        by its discretization alone, see evolvesByDiscretization(), and
+        calls evolve() path by path otherwise. Processes override it to
+        compute the quantities depending on time only once per step.
+        Disjoint ranges of the same buffers can be evolved concurrently.
+    */
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        final int size = size(), factors = factors();
+        if (discretization_ != null && evolvesByDiscretization()) {
+            // scratch buffers for the whole batch
+            final double[] x0 = new double[size], dw0 = new double[factors], x1 = new double[size];
+            final double[] drift = new double[size], diffusion = new double[size * factors];
+            for (int p = begin; p < end; p++) {
+                for (int i = 0; i < size; i++) {
+                    x0[i] = x[i * n + p];
+                }
+                for (int k = 0; k < factors; k++) {
+                    dw0[k] = dw[k * n + p];
+                }
+                discretizedStep(t0, x0, dt, dw0, drift, diffusion, x1);
+                for (int i = 0; i < size; i++) {
+                    x[i * n + p] = x1[i];
+                }
+            }
+            return;
+        }
+        final Array x0 = new Array(size);
+        final Array dw0 = new Array(factors);
+        for (int p = begin; p < end; p++) {
+            for (int i = 0; i < size; i++) {
+                x0.set(i, x[i * n + p]);
+            }
+            for (int k = 0; k < factors; k++) {
+                dw0.set(k, dw[k * n + p]);
+            }
+            final Array x1 = evolve(t0, x0, dt, dw0);
+            for (int i = 0; i < size; i++) {
+                x[i * n + p] = x1.get(i);
+            }
+        }
+    }
+
+    /*! whether evolve() can write the drift and diffusion of the
+        discretization into buffers instead of going through
+        expectation(), stdDeviation() and apply(). Processes keeping the
+        default implementations of those and of evolve() can return
+        true; the default is false.
+    */
+    protected boolean evolvesByDiscretization() {
+        return false;
+    }
+
+    /* x1 = x0 + drift + diffusion * dw, with drift and diffusion written
+       by the discretization into the given buffers; the same operations
+       as apply(expectation(), stdDeviation().mutiply(dw)) */
+    private void discretizedStep(double t0, final double[] x0, double dt, final double[] dw,
+                                 double[] drift, double[] diffusion, double[] x1) {
+        final int size = size(), factors = factors();
+        discretization_.drift(this, t0, x0, dt, drift);
+        discretization_.diffusion(this, t0, x0, dt, diffusion);
+        for (int i = 0; i < size; i++) {
+            double s = 0.0;
+            for (int k = 0, o = i * factors; k < factors; k++) {
+                s += diffusion[o + k] * dw[k];
+            }
+            x1[i] = (x0[i] + drift[i]) + s;
+        }
+    }
+
+    /*! tells the process that evolve() is going to be called on the
+        steps of the given grid, so that it can compute the quantities
+        depending on each step only once. The default does nothing.
+    */
+    public void prepare(final TimeGrid grid) {
+    }
+
+    //! advances all n paths of the batch, see above
+    public void evolve(double t0, double dt, double[] x, final double[] dw, int n) {
+        evolve(t0, dt, x, dw, n, 0, n);
+    }
     //@}
 
     //! \name utilities
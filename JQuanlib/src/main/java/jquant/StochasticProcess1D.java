@@ -76,6 +76,15 @@ public abstract class StochasticProcess1D extends StochasticProcess {
         return x0 + dx;
     }
 
+    //! batch evolve on x[p] and dw[p], see StochasticProcess
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        for (int p = begin; p < end; p++) {
+            x[p] = evolve(t0, x[p], dt, dw[p]);
+        }
+    }
+
     public int size() {
         return 1;
     }
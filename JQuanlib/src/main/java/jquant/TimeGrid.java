@@ -42,6 +42,7 @@ public class TimeGrid {
     }
 
     public TimeGrid(List<Double> arr, int begin, int end) {
+        times_ = new ArrayList<>();
         mandatoryTimes_ = CommonUtil.ArrayInit(end - begin);
         for (int i = begin; i < end; i++) {
             mandatoryTimes_.set(i - begin, arr.get(i));
@@ -63,6 +64,7 @@ public class TimeGrid {
     }
 
     public TimeGrid(List<Double> arr, int begin, int end, int steps) {
+        times_ = new ArrayList<>();
         mandatoryTimes_ = CommonUtil.ArrayInit(end - begin);
         for (int i = begin; i < end; i++) {
             mandatoryTimes_.set(i - begin, arr.get(i));
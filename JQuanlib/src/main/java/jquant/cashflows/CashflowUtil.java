@@ -3,6 +3,8 @@ package jquant.cashflows;
 import jquant.CashFlow;
 import jquant.indexes.IborIndex;
 import jquant.math.CommonUtil;
+import jquant.math.ad.ADouble;
+import jquant.termstructures.yield.AdZeroCurve;
 import jquant.time.*;
 
 import java.util.List;
@@ -129,4 +131,30 @@ public class CashflowUtil {
             i.accept(pricer);
         }
     }
+
+    //! amount of a cash flow on a taped forwarding curve
+    /*! Ibor coupons not yet fixed are forecast on the given curve; other
+        floating coupons are not supported, and any other cash flow has a
+        constant amount.
+    */
+    public static ADouble amountAD(final CashFlow cashFlow, final AdZeroCurve forwarding) {
+        if (cashFlow instanceof IborCoupon coupon)
+            return coupon.amountAD(forwarding);
+        QL_REQUIRE(!(cashFlow instanceof FloatingRateCoupon),
+                "taped amount not available for this floating-rate coupon");
+        return ADouble.constant(cashFlow.amount());
+    }
+
+    //! value of the cash flows paid after the settlement date, discounted at the reference date
+    public static ADouble npvAD(final List<CashFlow> leg,
+                                final AdZeroCurve discounting,
+                                final AdZeroCurve forwarding,
+                                final Date settlementDate) {
+        ADouble npv = ADouble.constant(0.0);
+        for (CashFlow cf : leg) {
+            if (TimeUtils.greater(cf.date(), settlementDate))
+                npv = npv.plus(amountAD(cf, forwarding).times(discounting.discountAD(cf.date())));
+        }
+        return npv;
+    }
 }
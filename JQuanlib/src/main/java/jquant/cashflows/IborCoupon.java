@@ -2,9 +2,11 @@ package jquant.cashflows;
 
 import jquant.Settings;
 import jquant.indexes.IborIndex;
+import jquant.math.ad.ADouble;
 import jquant.patterns.AcyclicVisitor;
 import jquant.patterns.Singleton;
 import jquant.patterns.Visitor;
+import jquant.termstructures.yield.AdZeroCurve;
 import jquant.time.Date;
 import jquant.time.DayCounter;
 import jquant.time.TimeUtils;
@@ -135,6 +137,20 @@ public class IborCoupon extends FloatingRateCoupon {
         }
     }
 
+    //! amount forecast on a taped forwarding curve
+    /*! The forecast is the par or indexed fixing of the coupon without
+        convexity adjustment, so in-arrears coupons are not supported;
+        the amount of a coupon already fixed is constant.
+    */
+    public ADouble amountAD(final AdZeroCurve forwarding) {
+        initializeCachedData();
+        if (hasFixed())
+            return ADouble.constant(amount());
+        QL_REQUIRE(!isInArrears(), "in-arrears coupons not supported on taped curves");
+        final ADouble fixing = forwarding.forwardRateAD(fixingValueDate_, fixingEndDate_, spanningTime_);
+        return fixing.times(gearing()).plus(spread()).times(accrualPeriod() * nominal());
+    }
+
     @Override
     public void setPricer(final FloatingRateCouponPricer pricer) {
         cachedDataIsInitialized_ = false;
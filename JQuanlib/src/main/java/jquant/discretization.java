@@ -8,4 +8,14 @@ public interface discretization {
     Array drift(final StochasticProcess p, double t0, final Array x0, double dt);
     Matrix diffusion(final StochasticProcess p, double t0, final Array x0, double dt);
     Matrix covariance(final StochasticProcess p, double t0, final Array x0, double dt);
+
+    //! drift(p, t0, x0, dt) written into out, which holds p.size() values
+    default void drift(final StochasticProcess p, double t0, final double[] x0, double dt, double[] out) {
+        System.arraycopy(drift(p, t0, Array.wrap(x0), dt).dataRef(), 0, out, 0, p.size());
+    }
+
+    //! diffusion(p, t0, x0, dt) written row-major into out, which holds p.size() * p.factors() values
+    default void diffusion(final StochasticProcess p, double t0, final double[] x0, double dt, double[] out) {
+        System.arraycopy(diffusion(p, t0, Array.wrap(x0), dt).dataRef(), 0, out, 0, p.size() * p.factors());
+    }
 }
@@ -4,44 +4,79 @@ import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 
 public class Array {
+    // 连续存储; realVector 是共享同一 double[] 的 commons-math 视图
+    private double[] data;
     public RealVector realVector;
 
     public Array(double[] a) {
-        realVector = new ArrayRealVector(a);
+        this(a.clone(), false);
     }
 
     public Array(RealVector v) {
-        this.realVector = v;
+        if (v instanceof ArrayRealVector) {
+            setData(((ArrayRealVector) v).getDataRef());
+        } else {
+            setData(v.toArray());
+        }
     }
 
     public Array(Array a) {
-        this.realVector = a.realVector.copy();
+        this(a.data.clone(), false);
     }
 
     public Array(int dim, double value) {
-        realVector = new ArrayRealVector(dim, value);
+        double[] d = new double[dim];
+        if (value != 0.0) {
+            Arrays.fill(d, value);
+        }
+        setData(d);
     }
 
     public Array(int dim) {
-        realVector = new ArrayRealVector(dim);
+        setData(new double[dim]);
+    }
+
+    private Array(double[] a, boolean copy) {
+        setData(copy ? a.clone() : a);
+    }
+
+    //! wraps the given buffer without copying it; the caller gives up ownership
+    public static Array wrap(double[] a) {
+        return new Array(a, false);
+    }
+
+    private void setData(double[] d) {
+        data = d;
+        realVector = new ArrayRealVector(d, false);
+    }
+
+    //! backing storage, for internal hot loops; writes are visible through this array
+    public double[] dataRef() {
+        return data;
     }
 
     public int size() {
-        return realVector.getDimension();
+        return data.length;
     }
 
     public void set(int index, double val) {
-        realVector.setEntry(index, val);
+        data[index] = val;
     }
 
     public double get(int index) {
-        QL_REQUIRE(index >= 0 && index < size(), "index out of bound!");
-        return realVector.getEntry(index);
+        QL_REQUIRE(index >= 0 && index < data.length, "index out of bound!");
+        return data[index];
+    }
+
+    //! element access without the range check of get()
+    public double at(int index) {
+        return data[index];
     }
 
     public int upperIndex(double x) {
@@ -82,15 +117,15 @@ public class Array {
     }
 
     public void addEq(int i, double eps) {
-        realVector.addToEntry(i, eps);
+        data[i] += eps;
     }
 
     public void multiplyEq(int i, double eps) {
-        set(i,get(i)*eps);
+        data[i] *= eps;
     }
 
     public void subtractEq(int i, double eps) {
-        realVector.addToEntry(i, -eps);
+        data[i] -= eps;
     }
 
     public double max() {
@@ -98,80 +133,160 @@ public class Array {
     }
 
     public Array add(Array a) {
-        Array result = new Array(this);
-        result.realVector = result.realVector.add(a.realVector);
-        return result;
+        checkSize(a);
+        double[] r = new double[data.length];
+        double[] o = a.data;
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] + o[i];
+        }
+        return new Array(r, false);
     }
 
     public Array multiply(Array a) {
-        Array result = new Array(this);
-        result.realVector = result.realVector.ebeMultiply(a.realVector);
-        return result;
+        checkSize(a);
+        double[] r = new double[data.length];
+        double[] o = a.data;
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] * o[i];
+        }
+        return new Array(r, false);
     }
 
     public Array subtract(Array a) {
-        Array result = new Array(this);
-        result.realVector = result.realVector.subtract(a.realVector);
-        return result;
+        checkSize(a);
+        double[] r = new double[data.length];
+        double[] o = a.data;
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] - o[i];
+        }
+        return new Array(r, false);
     }
 
     public Array mutiply(double x) {
-        Array result = new Array(this);
-        result.realVector = result.realVector.mapMultiply(x);
-        return result;
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] * x;
+        }
+        return new Array(r, false);
     }
 
     public Array add(double x) {
-        Array result = new Array(this);
-        result.realVector = result.realVector.mapAdd(x);
-        return result;
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] + x;
+        }
+        return new Array(r, false);
     }
 
     public Array div(double x) {
         if (x == 0) {
             throw new ArithmeticException("Division by zero!");
         }
-        Array result = new Array(this);
-        for (int i = 0; i < result.size(); i++) {
-            result.set(i, result.get(i)/x);
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] / x;
         }
-        return result;
+        return new Array(r, false);
+    }
+
+    // in-place compound operators, no allocation
+
+    //! this += a
+    public Array addAssign(Array a) {
+        checkSize(a);
+        double[] o = a.data;
+        for (int i = 0; i < data.length; i++) {
+            data[i] += o[i];
+        }
+        return this;
+    }
+
+    //! this += x
+    public Array addAssign(double x) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] += x;
+        }
+        return this;
+    }
+
+    //! this -= a
+    public Array subtractAssign(Array a) {
+        checkSize(a);
+        double[] o = a.data;
+        for (int i = 0; i < data.length; i++) {
+            data[i] -= o[i];
+        }
+        return this;
+    }
+
+    //! this *= a, element by element
+    public Array multiplyAssign(Array a) {
+        checkSize(a);
+        double[] o = a.data;
+        for (int i = 0; i < data.length; i++) {
+            data[i] *= o[i];
+        }
+        return this;
+    }
+
+    //! this *= x
+    public Array scaleInPlace(double x) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] *= x;
+        }
+        return this;
+    }
+
+    //! this += alpha * x
+    public Array axpy(double alpha, Array x) {
+        checkSize(x);
+        double[] o = x.data;
+        for (int i = 0; i < data.length; i++) {
+            data[i] += alpha * o[i];
+        }
+        return this;
+    }
+
+    //! copies the content of a into this array, sizes must match
+    public Array assign(Array a) {
+        checkSize(a);
+        System.arraycopy(a.data, 0, data, 0, data.length);
+        return this;
+    }
+
+    private void checkSize(Array a) {
+        QL_REQUIRE(a.data.length == data.length,
+                "arrays with different sizes (" + data.length + ", " + a.data.length + ") cannot be combined");
     }
 
     public List<Double> getList() {
-        List<Double> res = new ArrayList<>();
-        for (int i = 0; i < this.size(); i++) {
-            res.add(this.get(i));
+        List<Double> res = new ArrayList<>(data.length);
+        for (double v : data) {
+            res.add(v);
         }
         return res;
     }
 
     public void copy(double[] x, int start, int end) {
-        for (int i = start; i < end; i++) {
-            this.set(i, x[i]);
-        }
+        System.arraycopy(x, start, data, start, end - start);
     }
 
     public double[] toArray() {
-        double[] res = new double[this.size()];
-        for (int i = 0; i < res.length; i++) {
-            res[i] = this.get(i);
-        }
-        return res;
+        return data.clone();
     }
 
     public Array transform(Function f) {
-        Array res = new Array(this);
-        for (int i = 0; i < res.size(); i++) {
-            res.set(i, f.value(res.get(i)));
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = f.value(data[i]);
         }
-        return res;
+        return new Array(r, false);
     }
 
     public void swap(Array arr) {
-        RealVector tp = this.realVector;
-        this.realVector = arr.realVector;
-        arr.realVector = tp;
+        double[] tp = this.data;
+        this.setData(arr.data);
+        arr.setData(tp);
     }
 
     public boolean empty() {
@@ -181,10 +296,10 @@ public class Array {
     public int maxIndex() {
         int maxIndex = 0;
         double maxVal = get(0);
-        for (int i = 1; i < size(); i++) {
-            if (this.get(i) > maxVal) {
+        for (int i = 1; i < data.length; i++) {
+            if (data[i] > maxVal) {
                 maxIndex = i;
-                maxVal = this.get(i);
+                maxVal = data[i];
             }
         }
         return maxIndex;
@@ -199,15 +314,13 @@ public class Array {
     }
 
     public void fill(int begin, int end, double val) {
-        for (int i = begin; i < end; i++) {
-            set(i, val);
-        }
+        Arrays.fill(data, begin, end, val);
     }
 
     public void swap(int i, int j) {
-        double tmp = this.get(i);
-        this.set(i, this.get(j));
-        this.set(j, tmp);
+        double tmp = data[i];
+        data[i] = data[j];
+        data[j] = tmp;
     }
 
     @Override
@@ -186,6 +186,14 @@ public class CommonUtil {
         return res;
     }
 
+    public static List<Double> toList(double[] arr) {
+        List<Double> res = new ArrayList<>(arr.length);
+        for (double v : arr) {
+            res.add(v);
+        }
+        return res;
+    }
+
     public static double maxVal(List<Double> list) {
         Optional<Double> max = list.stream().max(Comparator.naturalOrder());
         if (max.isPresent()) {
@@ -1,127 +1,320 @@
 package jquant.math;
 
+import jquant.math.matrixutilities.BlockedLinearAlgebra;
 import org.apache.commons.math3.linear.*;
 
+import java.util.Arrays;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
 public class Matrix {
+    // 行优先连续存储, matrix 是共享同一 double[] 的 commons-math 视图 (空矩阵时为 null)
+    private double[] data;
+    private int rows_;
+    private int cols_;
     public RealMatrix matrix;
 
     public Matrix(double[][] m) {
-        matrix = new Array2DRowRealMatrix(m);
+        int r = m.length;
+        int c = r == 0 ? 0 : m[0].length;
+        double[] d = new double[r * c];
+        for (int i = 0; i < r; i++) {
+            QL_REQUIRE(m[i].length == c, "rows of different length");
+            System.arraycopy(m[i], 0, d, i * c, c);
+        }
+        setData(d, r, c);
     }
 
     public Matrix(RealMatrix matrix) {
-        this.matrix = matrix;
+        if (matrix == null) {
+            setData(new double[0], 0, 0);
+        } else if (matrix instanceof RowMajorRealMatrix) {
+            RowMajorRealMatrix m = (RowMajorRealMatrix) matrix;
+            data = m.data;
+            rows_ = m.rows;
+            cols_ = m.cols;
+            this.matrix = m;
+        } else {
+            int r = matrix.getRowDimension();
+            int c = matrix.getColumnDimension();
+            double[] d = new double[r * c];
+            if (matrix instanceof Array2DRowRealMatrix) {
+                double[][] ref = ((Array2DRowRealMatrix) matrix).getDataRef();
+                for (int i = 0; i < r; i++) {
+                    System.arraycopy(ref[i], 0, d, i * c, c);
+                }
+            } else {
+                for (int i = 0; i < r; i++) {
+                    for (int j = 0; j < c; j++) {
+                        d[i * c + j] = matrix.getEntry(i, j);
+                    }
+                }
+            }
+            setData(d, r, c);
+        }
     }
 
     public Matrix(int row, int col) {
-        if (row * col == 0) {
-            matrix = null;
-            return;
-        }
-        matrix = new Array2DRowRealMatrix(row, col);
-        matrix = matrix.scalarAdd(Double.NaN);
+        this(row, col, Double.NaN);
     }
 
     public Matrix(int row, int col, double value) {
-        if (row * col == 0) {
-            matrix = null;
-            return;
+        double[] d = new double[row * col];
+        if (value != 0.0) {
+            Arrays.fill(d, value);
         }
-        matrix = new Array2DRowRealMatrix(row, col);
-        matrix = matrix.scalarAdd(value);
+        setData(d, row, col);
+    }
+
+    public Matrix(Matrix m) {
+        setData(m.data.clone(), m.rows_, m.cols_);
+    }
+
+    private Matrix(double[] d, int row, int col) {
+        setData(d, row, col);
+    }
+
+    //! wraps a row-major buffer of size row*col without copying it
+    public static Matrix wrap(double[] d, int row, int col) {
+        QL_REQUIRE(d.length == row * col, "buffer size " + d.length + " does not match " + row + "x" + col);
+        return new Matrix(d, row, col);
+    }
+
+    private void setData(double[] d, int row, int col) {
+        data = d;
+        rows_ = row;
+        cols_ = col;
+        matrix = row * col == 0 ? null : new RowMajorRealMatrix(d, row, col);
+    }
+
+    //! row-major backing storage, for internal hot loops
+    public double[] dataRef() {
+        return data;
     }
 
     public int rows() {
-        return matrix.getRowDimension();
+        return rows_;
     }
 
     public int cols() {
-        return matrix.getColumnDimension();
+        return cols_;
     }
 
     public double get(int row, int col) {
-        return matrix.getEntry(row, col);
+        QL_REQUIRE(row >= 0 && row < rows_ && col >= 0 && col < cols_, "index out of bound!");
+        return data[row * cols_ + col];
+    }
+
+    //! element access without the range check of get()
+    public double at(int row, int col) {
+        return data[row * cols_ + col];
     }
 
     public void set(int i, int j, double val) {
-        matrix.setEntry(i, j, val);
+        QL_REQUIRE(i >= 0 && i < rows_ && j >= 0 && j < cols_, "index out of bound!");
+        data[i * cols_ + j] = val;
     }
 
     public Array getRowArray(int row) {
-        return new Array(matrix.getRowVector(row));
+        QL_REQUIRE(row >= 0 && row < rows_, "row index out of bound!");
+        return Array.wrap(Arrays.copyOfRange(data, row * cols_, (row + 1) * cols_));
     }
 
     public Array getColArray(int col) {
-        return new Array(matrix.getColumnVector(col));
+        QL_REQUIRE(col >= 0 && col < cols_, "column index out of bound!");
+        double[] r = new double[rows_];
+        for (int i = 0; i < rows_; i++) {
+            r[i] = data[i * cols_ + col];
+        }
+        return Array.wrap(r);
     }
 
     public Matrix transpose() {
-        RealMatrix transpose = matrix.transpose();
-        return new Matrix(transpose);
+        double[] t = new double[data.length];
+        for (int i = 0; i < rows_; i++) {
+            int off = i * cols_;
+            for (int j = 0; j < cols_; j++) {
+                t[j * rows_ + i] = data[off + j];
+            }
+        }
+        return new Matrix(t, cols_, rows_);
     }
 
 
     public Matrix multipy(Matrix m) {
-        return new Matrix(this.matrix.multiply(m.matrix));
+        QL_REQUIRE(cols_ == m.rows_,
+                "matrices with different sizes (" + rows_ + "x" + cols_ + ", "
+                        + m.rows_ + "x" + m.cols_ + ") cannot be multiplied");
+        double[] c = new double[rows_ * m.cols_];
+        if (BlockedLinearAlgebra.useBlocked(rows_, cols_, m.cols_)) {
+            BlockedLinearAlgebra.gemm(data, m.data, c, rows_, cols_, m.cols_);
+        } else {
+            gemm(data, m.data, c, rows_, cols_, m.cols_);
+        }
+        return new Matrix(c, rows_, m.cols_);
     }
 
     public Matrix multiply(double val) {
-        return new Matrix(this.matrix.scalarMultiply(val));
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] * val;
+        }
+        return new Matrix(r, rows_, cols_);
     }
 
     public Matrix add(Matrix m) {
-        return new Matrix(this.matrix.add(m.matrix));
+        checkSize(m);
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] + m.data[i];
+        }
+        return new Matrix(r, rows_, cols_);
     }
 
     public Matrix subtract(Matrix m) {
-        return new Matrix(this.matrix.subtract(m.matrix));
+        checkSize(m);
+        double[] r = new double[data.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = data[i] - m.data[i];
+        }
+        return new Matrix(r, rows_, cols_);
     }
 
     public Matrix inverse() {
         return new Matrix(MatrixUtils.inverse(matrix));
     }
 
-    public void row_fill(int row, int begin, int end, double val) {
-        for (int i = begin; i < end; i++) {
-            set(row, i, val);
+    // in-place compound operators, no allocation
+
+    //! this += m
+    public Matrix addAssign(Matrix m) {
+        checkSize(m);
+        for (int i = 0; i < data.length; i++) {
+            data[i] += m.data[i];
         }
+        return this;
     }
 
-    public double[] toArray() {
-        int r = rows();
-        int c = cols();
-        double[] res = new double[r * c];
-        for (int i = 0; i < rows(); i++) {
-            for (int j = 0; j < cols(); j++) {
-                res[i * c + j] = get(i, j);
+    //! this -= m
+    public Matrix subtractAssign(Matrix m) {
+        checkSize(m);
+        for (int i = 0; i < data.length; i++) {
+            data[i] -= m.data[i];
+        }
+        return this;
+    }
+
+    //! this *= x
+    public Matrix scaleInPlace(double x) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] *= x;
+        }
+        return this;
+    }
+
+    //! this += alpha * m
+    public Matrix axpy(double alpha, Matrix m) {
+        checkSize(m);
+        for (int i = 0; i < data.length; i++) {
+            data[i] += alpha * m.data[i];
+        }
+        return this;
+    }
+
+    //! y = alpha * this * x + beta * y, written into the caller's buffer
+    public Array gemv(double alpha, Array x, double beta, Array y) {
+        QL_REQUIRE(x.size() == cols_ && y.size() == rows_,
+                "matrix " + rows_ + "x" + cols_ + " and vectors of size "
+                        + x.size() + ", " + y.size() + " do not match");
+        gemv(data, rows_, cols_, alpha, x.dataRef(), beta, y.dataRef());
+        return y;
+    }
+
+    //! out = this * x, written into the caller's buffer
+    public Array gemv(Array x, Array out) {
+        return gemv(1.0, x, 0.0, out);
+    }
+
+    private void checkSize(Matrix m) {
+        QL_REQUIRE(rows_ == m.rows_ && cols_ == m.cols_,
+                "matrices with different sizes (" + rows_ + "x" + cols_ + ", "
+                        + m.rows_ + "x" + m.cols_ + ") cannot be combined");
+    }
+
+    // y = alpha * A * x + beta * y, A row-major n x m
+    static void gemv(double[] a, int n, int m, double alpha, double[] x, double beta, double[] y) {
+        for (int i = 0; i < n; i++) {
+            int off = i * m;
+            double s = 0.0;
+            for (int j = 0; j < m; j++) {
+                s += a[off + j] * x[j];
             }
+            y[i] = beta == 0.0 ? alpha * s : alpha * s + beta * y[i];
         }
-        return res;
     }
 
-    public void ArraytoMatrix(double[] arr) {
-        for (int i = 0; i < rows(); i++) {
-            for (int j = 0; j < cols(); j++) {
-                set(i, j, arr[i * cols() + j]);
+    // out = x^T * A, A row-major n x m
+    static void gemvTransposed(double[] a, int n, int m, double[] x, double[] out) {
+        Arrays.fill(out, 0.0);
+        for (int i = 0; i < n; i++) {
+            int off = i * m;
+            double xi = x[i];
+            for (int j = 0; j < m; j++) {
+                out[j] += xi * a[off + j];
             }
         }
     }
 
+    // c = a * b, a is n x k, b is k x m, all row-major; c must be zeroed
+    static void gemm(double[] a, double[] b, double[] c, int n, int k, int m) {
+        for (int i = 0; i < n; i++) {
+            int ci = i * m;
+            int ai = i * k;
+            for (int p = 0; p < k; p++) {
+                double aip = a[ai + p];
+                if (aip == 0.0) {
+                    continue;
+                }
+                int bp = p * m;
+                for (int j = 0; j < m; j++) {
+                    c[ci + j] += aip * b[bp + j];
+                }
+            }
+        }
+    }
+
+    public void row_fill(int row, int begin, int end, double val) {
+        Arrays.fill(data, row * cols_ + begin, row * cols_ + end, val);
+    }
+
+    public double[] toArray() {
+        return data.clone();
+    }
+
+    public void ArraytoMatrix(double[] arr) {
+        System.arraycopy(arr, 0, data, 0, data.length);
+    }
+
     //后乘 ， M * V
     public Array mutiply(Array arr) {
-        return new Array(matrix.transpose().preMultiply(arr.realVector));
+        QL_REQUIRE(arr.size() == cols_,
+                "vectors and matrices with different sizes (" + arr.size() + ", "
+                        + rows_ + "x" + cols_ + ") cannot be multiplied");
+        double[] r = new double[rows_];
+        gemv(data, rows_, cols_, 1.0, arr.dataRef(), 0.0, r);
+        return Array.wrap(r);
     }
 
     public void substractEq(int i, int j, double val) {
-        set(i, j, get(i, j) - val);
+        data[i * cols_ + j] -= val;
     }
 
     public void addEq(int i, int j, double val) {
-        substractEq(i, j, -val);
+        data[i * cols_ + j] += val;
     }
 
     public void multipyEq(int i, int j, double val) {
-        set(i, j, get(i, j) * val);
+        data[i * cols_ + j] *= val;
     }
 
     public void swap(int li, int lj, int ri, int rj) {
@@ -132,11 +325,9 @@ public class Matrix {
 
     public double maxEle() {
         double maxval =  Double.MIN_VALUE;
-        for (int i = 0; i < rows(); i++) {
-            for (int j = 0; j < cols(); j++) {
-                if (get(i, j) > maxval) {
-                    maxval = get(i, j);
-                }
+        for (double v : data) {
+            if (v > maxval) {
+                maxval = v;
             }
         }
         return maxval;
@@ -144,11 +335,9 @@ public class Matrix {
 
     public double minEle() {
         double minval =  Double.MAX_VALUE;
-        for (int i = 0; i < rows(); i++) {
-            for (int j = 0; j < cols(); j++) {
-                if (get(i, j) < minval) {
-                    minval = get(i, j);
-                }
+        for (double v : data) {
+            if (v < minval) {
+                minval = v;
             }
         }
         return minval;
@@ -158,17 +347,13 @@ public class Matrix {
         int size = Math.min(rows(), cols());
         Array res = new Array(size);
         for (int i = 0; i < size; i++) {
-            res.set(i, get(i, i));
+            res.set(i, data[i * cols_ + i]);
         }
         return res;
     }
 
     public void fill(double val) {
-        for (int i = 0; i < rows(); i++) {
-            for (int j = 0; j < cols(); j++) {
-                set(i, j, val);
-            }
-        }
+        Arrays.fill(data, val);
     }
 
     @Override
@@ -0,0 +1,44 @@
+package jquant.math;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Richardson Extrapolation
+/*! Richardson Extrapolation is a sequence acceleration technique for
+    \f[
+        f(\Delta h) = f_0 + \alpha\cdot (\Delta h)^n + O((\Delta h)^{n+1})
+    \f]
+    with a known order of convergence \f$ n \f$. For a lattice of
+    \f$ N \f$ steps, \f$ \Delta h = 1/N \f$ and
+    \f$ f(\Delta h / t) \f$ is the value on \f$ tN \f$ steps.
+
+    \ingroup math
+*/
+public class RichardsonExtrapolation {
+    private final Function f_;
+    private final double deltaH_, fdeltaH_, n_;
+
+    /*! \param f      function to be extrapolated to deltaH -> 0
+        \param deltaH step size
+        \param n      order of convergence
+    */
+    public RichardsonExtrapolation(final Function f, double deltaH, double n) {
+        QL_REQUIRE(deltaH > 0.0, "positive step size required");
+        QL_REQUIRE(n > 0.0, "positive order of convergence required");
+        f_ = f;
+        deltaH_ = deltaH;
+        fdeltaH_ = f.value(deltaH);
+        n_ = n;
+    }
+
+    //! extrapolation with the step sizes deltaH and deltaH / 2
+    public double value() {
+        return value(2.0);
+    }
+
+    //! extrapolation with the step sizes deltaH and deltaH / t
+    public double value(double t) {
+        QL_REQUIRE(t > 1.0, "scaling factor must be greater than 1");
+        final double tk = Math.pow(t, n_);
+        return (tk * f_.value(deltaH_ / t) - fdeltaH_) / (tk - 1.0);
+    }
+}
@@ -0,0 +1,106 @@
+package jquant.math;
+
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+// commons-math 视图: 直接读写 Matrix 的行优先 double[] 存储, 不做拷贝
+final class RowMajorRealMatrix extends AbstractRealMatrix {
+    final double[] data;
+    final int rows;
+    final int cols;
+
+    RowMajorRealMatrix(double[] data, int rows, int cols) {
+        this.data = data;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    @Override
+    public int getRowDimension() {
+        return rows;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return cols;
+    }
+
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return new RowMajorRealMatrix(new double[rowDimension * columnDimension], rowDimension, columnDimension);
+    }
+
+    @Override
+    public RealMatrix copy() {
+        return new RowMajorRealMatrix(data.clone(), rows, cols);
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        checkIndex(row, column);
+        return data[row * cols + column];
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        checkIndex(row, column);
+        data[row * cols + column] = value;
+    }
+
+    @Override
+    public void addToEntry(int row, int column, double increment) {
+        checkIndex(row, column);
+        data[row * cols + column] += increment;
+    }
+
+    @Override
+    public void multiplyEntry(int row, int column, double factor) {
+        checkIndex(row, column);
+        data[row * cols + column] *= factor;
+    }
+
+    @Override
+    public double[][] getData() {
+        double[][] res = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            res[i] = new double[cols];
+            System.arraycopy(data, i * cols, res[i], 0, cols);
+        }
+        return res;
+    }
+
+    @Override
+    public double[] operate(double[] v) {
+        QL_REQUIRE(v.length == cols, "vector size " + v.length + " does not match " + cols + " columns");
+        double[] out = new double[rows];
+        Matrix.gemv(data, rows, cols, 1.0, v, 0.0, out);
+        return out;
+    }
+
+    @Override
+    public RealVector operate(RealVector v) {
+        return new ArrayRealVector(operate(v.toArray()), false);
+    }
+
+    @Override
+    public double[] preMultiply(double[] v) {
+        QL_REQUIRE(v.length == rows, "vector size " + v.length + " does not match " + rows + " rows");
+        double[] out = new double[cols];
+        Matrix.gemvTransposed(data, rows, cols, v, out);
+        return out;
+    }
+
+    @Override
+    public RealVector preMultiply(RealVector v) {
+        return new ArrayRealVector(preMultiply(v.toArray()), false);
+    }
+
+    private void checkIndex(int row, int column) {
+        MatrixUtils.checkMatrixIndex(this, row, column);
+    }
+}
@@ -0,0 +1,111 @@
+package jquant.math.ad;
+
+//! real number recorded on an adjoint tape
+/*! Immutable; every operation returns a new number and records a node
+    on the tape of its arguments. Constants belong to no tape and record
+    nothing, so that only the operations depending on variables are
+    taped.
+*/
+public final class ADouble {
+    private final Tape tape_;
+    private final int index_;
+    private final double value_;
+
+    ADouble(final Tape tape, int index, double value) {
+        tape_ = tape;
+        index_ = index;
+        value_ = value;
+    }
+
+    public static ADouble constant(double value) {
+        return new ADouble(null, -1, value);
+    }
+
+    public double value() {
+        return value_;
+    }
+
+    //! the tape of the number, or null for a constant
+    public Tape tape() {
+        return tape_;
+    }
+
+    //! the index of the node on its tape, or -1 for a constant
+    public int index() {
+        return index_;
+    }
+
+    public boolean isConstant() {
+        return tape_ == null;
+    }
+
+    public ADouble plus(final ADouble b) {
+        return record(value_ + b.value_, this, 1.0, b, 1.0);
+    }
+
+    public ADouble plus(double b) {
+        return record(value_ + b, 1.0);
+    }
+
+    public ADouble minus(final ADouble b) {
+        return record(value_ - b.value_, this, 1.0, b, -1.0);
+    }
+
+    public ADouble minus(double b) {
+        return record(value_ - b, 1.0);
+    }
+
+    public ADouble times(final ADouble b) {
+        return record(value_ * b.value_, this, b.value_, b, value_);
+    }
+
+    public ADouble times(double b) {
+        return record(value_ * b, b);
+    }
+
+    public ADouble divide(final ADouble b) {
+        final double q = value_ / b.value_;
+        return record(q, this, 1.0 / b.value_, b, -q / b.value_);
+    }
+
+    public ADouble divide(double b) {
+        return record(value_ / b, 1.0 / b);
+    }
+
+    public ADouble negate() {
+        return record(-value_, -1.0);
+    }
+
+    public ADouble exp() {
+        final double e = Math.exp(value_);
+        return record(e, e);
+    }
+
+    public ADouble log() {
+        return record(Math.log(value_), 1.0 / value_);
+    }
+
+    public ADouble sqrt() {
+        final double s = Math.sqrt(value_);
+        return record(s, 0.5 / s);
+    }
+
+    public ADouble pow(double p) {
+        final double v = Math.pow(value_, p);
+        return record(v, p * Math.pow(value_, p - 1.0));
+    }
+
+    private ADouble record(double value, double d) {
+        return tape_ == null ? constant(value) : tape_.record(value, this, d);
+    }
+
+    private static ADouble record(double value, final ADouble a, double da, final ADouble b, double db) {
+        final Tape tape = a.tape_ != null ? a.tape_ : b.tape_;
+        return tape == null ? constant(value) : tape.record(value, a, da, b, db);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value_);
+    }
+}
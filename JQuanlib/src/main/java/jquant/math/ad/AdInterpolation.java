@@ -0,0 +1,87 @@
+package jquant.math.ad;
+
+import jquant.math.Interpolation;
+import jquant.math.interpolations.impl.Interpolator;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! 1-D interpolation of taped values
+/*! The interpolator must be linear in the data, as Linear, BackwardFlat,
+    ForwardFlat, Lagrange or cubic splines with fixed boundary conditions
+    and no monotonicity filter are; the derivative of the interpolated
+    value with respect to the j-th datum is then the interpolation of the
+    j-th unit vector, which is built once. With logarithmic data, the
+    logarithms of the values are interpolated instead, e.g. log-linear
+    interpolation of discount factors with the Linear interpolator.
+
+    Values are recorded as single nodes depending on the data with
+    non-null weights, i.e. the two surrounding points for local schemes.
+*/
+public class AdInterpolation {
+    private final ADouble[] y_;
+    private final boolean logarithmic_;
+    private final Interpolation interpolation_;
+    private final Interpolation[] responses_;
+    private final ADouble[] args_;
+    private final double[] partials_;
+
+    public AdInterpolation(final double[] x, final ADouble[] y, final Interpolator interpolator) {
+        this(x, y, interpolator, false);
+    }
+
+    public AdInterpolation(final double[] x, final ADouble[] y, final Interpolator interpolator,
+                           boolean logarithmic) {
+        final int n = x.length;
+        QL_REQUIRE(y.length == n, "x and y sizes differ (" + n + " vs " + y.length + ")");
+        QL_REQUIRE(n >= interpolator.getRequiredPoints(),
+                "not enough points to interpolate: at least " + interpolator.getRequiredPoints()
+                        + " required, " + n + " provided");
+        y_ = y.clone();
+        logarithmic_ = logarithmic;
+        final double[] data = new double[n];
+        for (int j = 0; j < n; ++j) {
+            QL_REQUIRE(!logarithmic || y[j].value() > 0.0,
+                    "non-positive datum (" + y[j].value() + ") for logarithmic interpolation");
+            data[j] = logarithmic ? Math.log(y[j].value()) : y[j].value();
+        }
+        interpolation_ = interpolator.interpolate(x.clone(), data);
+        responses_ = new Interpolation[n];
+        for (int j = 0; j < n; ++j) {
+            final double[] unit = new double[n];
+            unit[j] = 1.0;
+            responses_[j] = interpolator.interpolate(x.clone(), unit);
+        }
+        args_ = new ADouble[n];
+        partials_ = new double[n];
+    }
+
+    public double xMin() {
+        return interpolation_.xMin();
+    }
+
+    public double xMax() {
+        return interpolation_.xMax();
+    }
+
+    //! the interpolated value at t, extrapolating if needed, without recording
+    public double primalValue(double t) {
+        final double v = interpolation_.value(t, true);
+        return logarithmic_ ? Math.exp(v) : v;
+    }
+
+    //! the interpolated value at t, extrapolating if needed
+    public ADouble value(double t) {
+        final double value = primalValue(t);
+        int n = 0;
+        Tape tape = null;
+        for (int j = 0; j < y_.length; ++j) {
+            final double w = responses_[j].value(t, true);
+            if (w == 0.0 || y_[j].isConstant())
+                continue;
+            tape = y_[j].tape();
+            args_[n] = y_[j];
+            partials_[n++] = logarithmic_ ? value * w / y_[j].value() : w;
+        }
+        return tape == null ? ADouble.constant(value) : tape.record(value, args_, partials_, n);
+    }
+}
@@ -0,0 +1,162 @@
+package jquant.math.ad;
+
+import java.util.Arrays;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! tape of a reverse-mode (adjoint) algorithmic differentiation
+/*! Each operation on ADouble values records a node holding the indices
+    of its arguments and the partial derivatives with respect to them;
+    the derivatives of a result with respect to all the variables of the
+    tape are then given by a single backward sweep, see adjoints().
+
+    The nodes are stored in flat arrays which grow as needed and are kept
+    by clear() and rewind(), so that a tape reused across trades does not
+    allocate once it has grown to the largest of them. Variables recorded
+    before a mark(), e.g. the market inputs and the curve nodes, survive
+    rewind() to that mark.
+
+    A tape is not thread-safe; use one per thread.
+*/
+public final class Tape {
+    // arguments of node i are args_[start_[i]] ... args_[start_[i + 1] - 1]
+    private int[] start_;
+    private int[] args_;
+    private double[] partials_;
+    private int nodes_;
+
+    public Tape() {
+        this(1024);
+    }
+
+    //! a tape with room for the given number of nodes of two arguments
+    public Tape(int capacity) {
+        QL_REQUIRE(capacity > 0, "positive capacity required");
+        start_ = new int[capacity + 1];
+        args_ = new int[2 * capacity];
+        partials_ = new double[2 * capacity];
+        nodes_ = 0;
+    }
+
+    //! number of nodes recorded
+    public int size() {
+        return nodes_;
+    }
+
+    //! a new independent variable
+    public ADouble variable(double value) {
+        reserve(0);
+        return close(value, start_[nodes_], true);
+    }
+
+    //! records a node depending on a
+    public ADouble record(double value, final ADouble a, double da) {
+        reserve(1);
+        int e = start_[nodes_];
+        e = push(e, a, da);
+        return close(value, e, false);
+    }
+
+    //! records a node depending on a and b
+    public ADouble record(double value, final ADouble a, double da, final ADouble b, double db) {
+        reserve(2);
+        int e = start_[nodes_];
+        e = push(e, a, da);
+        e = push(e, b, db);
+        return close(value, e, false);
+    }
+
+    //! records a node depending on the first n arguments, with the given partial derivatives
+    public ADouble record(double value, final ADouble[] args, final double[] partials, int n) {
+        reserve(n);
+        int e = start_[nodes_];
+        for (int i = 0; i < n; ++i)
+            e = push(e, args[i], partials[i]);
+        return close(value, e, false);
+    }
+
+    //! removes all the nodes, keeping the storage
+    public void clear() {
+        nodes_ = 0;
+    }
+
+    //! the current position, to be passed to rewind()
+    public int mark() {
+        return nodes_;
+    }
+
+    //! removes the nodes recorded after the given mark, keeping the storage
+    public void rewind(int mark) {
+        QL_REQUIRE(mark >= 0 && mark <= nodes_, "invalid mark (" + mark + ")");
+        nodes_ = mark;
+    }
+
+    //! derivatives of the output with respect to every node of the tape
+    public double[] adjoints(final ADouble output) {
+        return adjoints(output, new double[nodes_]);
+    }
+
+    //! same as above, using the given buffer which must hold size() values
+    public double[] adjoints(final ADouble output, double[] adjoints) {
+        QL_REQUIRE(adjoints.length >= nodes_, "adjoint buffer too small (" + adjoints.length
+                + " < " + nodes_ + ")");
+        Arrays.fill(adjoints, 0, nodes_, 0.0);
+        if (output.isConstant())
+            return adjoints;
+        QL_REQUIRE(output.tape() == this, "output not recorded on this tape");
+        QL_REQUIRE(output.index() < nodes_, "output recorded after the last rewind");
+        adjoints[output.index()] = 1.0;
+        for (int i = output.index(); i >= 0; --i) {
+            final double a = adjoints[i];
+            if (a == 0.0)
+                continue;
+            for (int e = start_[i]; e < start_[i + 1]; ++e)
+                adjoints[args_[e]] += a * partials_[e];
+        }
+        return adjoints;
+    }
+
+    //! derivatives of the output with respect to the given variables
+    public double[] gradient(final ADouble output, final ADouble... inputs) {
+        final double[] adjoints = adjoints(output);
+        final double[] result = new double[inputs.length];
+        for (int i = 0; i < inputs.length; ++i) {
+            if (!inputs[i].isConstant()) {
+                QL_REQUIRE(inputs[i].tape() == this, "input " + i + " not recorded on this tape");
+                result[i] = adjoints[inputs[i].index()];
+            }
+        }
+        return result;
+    }
+
+    // makes room for a node of n arguments
+    private void reserve(int n) {
+        if (nodes_ + 2 > start_.length)
+            start_ = Arrays.copyOf(start_, 2 * start_.length);
+        final int needed = start_[nodes_] + n;
+        if (needed > args_.length) {
+            final int size = Math.max(needed, 2 * args_.length);
+            args_ = Arrays.copyOf(args_, size);
+            partials_ = Arrays.copyOf(partials_, size);
+        }
+    }
+
+    // appends an argument of the current node unless it is a constant
+    private int push(int e, final ADouble a, double da) {
+        if (a.isConstant())
+            return e;
+        QL_REQUIRE(a.tape() == this && a.index() < nodes_,
+                "argument recorded on another tape or after the last rewind");
+        args_[e] = a.index();
+        partials_[e] = da;
+        return e + 1;
+    }
+
+    // ends the current node; a node without variable arguments is a constant unless it is a variable
+    private ADouble close(double value, int e, boolean variable) {
+        if (e == start_[nodes_] && !variable)
+            return ADouble.constant(value);
+        start_[nodes_ + 1] = e;
+        return new ADouble(this, nodes_++, value);
+    }
+}
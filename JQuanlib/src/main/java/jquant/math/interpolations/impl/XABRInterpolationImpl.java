@@ -161,7 +161,7 @@ public class XABRInterpolationImpl extends templateImpl {
 
                 if (iterations > 0) {
                     final SampleVector s = halton.nextSequence();
-                    modelTmp.guess(guess, this.paramIsFixed_, this.forward_, this.t_, s.value, this.addParams_);
+                    modelTmp.guess(guess, this.paramIsFixed_, this.forward_, this.t_, CommonUtil.toList(s.value), this.addParams_);
                     for (int i = 0; i < this.paramIsFixed_.size(); ++i)
                         if (this.paramIsFixed_.get(i))
                             guess.set(i, this.params_.get(i));
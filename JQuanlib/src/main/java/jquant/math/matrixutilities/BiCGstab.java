@@ -3,82 +3,144 @@ package jquant.math.matrixutilities;
 import jquant.math.Array;
 import jquant.math.FunctionN;
 import jquant.math.matrixutilities.impl.BiCGStabResult;
+import jquant.math.matrixutilities.impl.KrylovResult;
 
 import static jquant.math.CommonUtil.*;
+import static jquant.math.matrixutilities.KrylovWorkspace.dot;
+import static jquant.math.matrixutilities.KrylovWorkspace.norm2;
 
+/*! The iteration runs on the flat vectors of a KrylovWorkspace. The
+    Array-based solve uses a workspace owned by this instance, so a BiCGstab
+    object must not be shared between threads; pass explicit workspaces
+    instead.
+*/
 public class BiCGstab {
     protected FunctionN A_, M_;
+    protected LinearOperator op_, precond_;
     protected int maxIter_;
     protected double relTol_;
+    private KrylovWorkspace workspace_;
 
     public BiCGstab(FunctionN A,
                     int maxIter,
                     double relTol,
                     FunctionN preConditioner) {
+        this(LinearOperator.of(A), maxIter, relTol,
+                preConditioner == null ? null : LinearOperator.of(preConditioner));
         A_ = A;
         M_ = preConditioner;
+    }
+
+    //! solver on in-place operators; default preConditioner = null
+    public static BiCGstab of(LinearOperator A, int maxIter, double relTol, LinearOperator preConditioner) {
+        return new BiCGstab(A, maxIter, relTol, preConditioner);
+    }
+
+    private BiCGstab(LinearOperator A,
+                    int maxIter,
+                    double relTol,
+                    LinearOperator preConditioner) {
+        op_ = A;
+        precond_ = preConditioner;
         maxIter_ = maxIter;
         relTol_ = relTol;
     }
 
     // Array& x0 = Array()
     public BiCGStabResult solve(Array b, Array x0) {
-        double bnorm2 = Norm2(b);
+        if (workspace_ == null) {
+            workspace_ = new KrylovWorkspace();
+        }
+        double[] x = (x0 == null || x0.empty()) ? new double[b.size()] : x0.toArray();
+        KrylovResult result = solve(b.dataRef(), x, workspace_);
+        return new BiCGStabResult(result.iterations, result.error, Array.wrap(x));
+    }
+
+    //! solves in place: x holds the initial guess on entry and the solution on exit
+    public KrylovResult solve(double[] b, double[] x, KrylovWorkspace ws) {
+        final int n = b.length;
+        QL_REQUIRE(x.length == n, "right-hand side and solution sizes differ");
+        ws.ensureBiCGstab(n);
+        KrylovResult result = ws.result;
+        result.reset();
+
+        double bnorm2 = norm2(b, n);
         if (bnorm2 == 0.0) {
-            return new BiCGStabResult(0, 0d, b);
+            System.arraycopy(b, 0, x, 0, n);
+            return result;
         }
 
-        Array x = ((!x0.empty()) ? x0 : new Array(b.size(), 0.0));
-        Array r = b.subtract(A_.value(x));
+        final double[] r = ws.r, rTld = ws.rTld, p = ws.p, v = ws.vb, s = ws.sb, t = ws.t;
+        op_.apply(x, r);
+        for (int k = 0; k < n; k++) {
+            r[k] = b[k] - r[k];
+        }
+        System.arraycopy(r, 0, rTld, 0, n);
 
-        Array rTld = r;
-        Array pTld, s, sTld, t, p = null, v = null;
+        double[] pTld, sTld;
         double omega = 1.0;
         double rho, rhoTld = 1.0;
         double alpha = 0.0, beta;
-        double error = Norm2(r) / bnorm2;
+        double error = norm2(r, n) / bnorm2;
 
         int i;
         for (i = 0; i < maxIter_ && error >= relTol_; ++i) {
-            rho = DotProduct(rTld, r);
+            rho = dot(rTld, 0, r, 0, n);
             if (rho == 0.0 || omega == 0.0)
                 break;
 
             if (i != 0) {
                 beta = (rho / rhoTld) * (alpha / omega);
-                p = r.add((p.subtract(v.mutiply(omega))).mutiply(beta));
-                //p = r + beta * (p - omega * v);
+                for (int k = 0; k < n; k++) {
+                    p[k] = r[k] + beta * (p[k] - omega * v[k]);
+                }
             } else {
-                p = r;
+                System.arraycopy(r, 0, p, 0, n);
             }
 
-            pTld = (M_ == null ? p : M_.value(p));
-            v = A_.value(pTld);
+            if (precond_ == null) {
+                pTld = p;
+            } else {
+                pTld = ws.pTld;
+                precond_.apply(p, pTld);
+            }
+            op_.apply(pTld, v);
 
-            alpha = rho / DotProduct(rTld, v);
-            s = r.subtract(v.mutiply(alpha));
-            //s = r - alpha * v;
-            if (Norm2(s) < relTol_ * bnorm2) {
-                x = x.add(pTld.mutiply(alpha));
-                // x += alpha * pTld;
-                error = Norm2(s) / bnorm2;
+            alpha = rho / dot(rTld, 0, v, 0, n);
+            for (int k = 0; k < n; k++) {
+                s[k] = r[k] - alpha * v[k];
+            }
+            final double snorm = norm2(s, n);
+            if (snorm < relTol_ * bnorm2) {
+                for (int k = 0; k < n; k++) {
+                    x[k] += alpha * pTld[k];
+                }
+                error = snorm / bnorm2;
                 break;
             }
 
-            sTld = (M_==null ? s : M_.value(s));
-            t = A_.value(sTld);
-            omega = DotProduct(t, s) / DotProduct(t, t);
-            x = x.add(pTld.mutiply(alpha)).add(sTld.mutiply(omega));
-            // x += alpha * pTld + omega * sTld;
-            r = s.subtract(t.mutiply(omega));
-            //r = s - omega * t;
-            error = Norm2(r) / bnorm2;
+            if (precond_ == null) {
+                sTld = s;
+            } else {
+                sTld = ws.sTld;
+                precond_.apply(s, sTld);
+            }
+            op_.apply(sTld, t);
+            omega = dot(t, 0, s, 0, n) / dot(t, 0, t, 0, n);
+            for (int k = 0; k < n; k++) {
+                x[k] += alpha * pTld[k] + omega * sTld[k];
+                r[k] = s[k] - omega * t[k];
+            }
+            error = norm2(r, n) / bnorm2;
             rhoTld = rho;
         }
 
+        result.iterations = i;
+        result.error = error;
+
         QL_REQUIRE(i < maxIter_, "max number of iterations exceeded");
         QL_REQUIRE(error < relTol_, "could not converge");
 
-        return new BiCGStabResult(i, error, x);
+        return result;
     }
 }
@@ -0,0 +1,182 @@
+package jquant.math.matrixutilities;
+
+import jquant.utilities.ParallelFor;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+import static jquant.math.MathUtils.close_enough;
+
+//! cache-blocked, multithreaded dense kernels on row-major double[] storage
+/*! Work is split across the common ForkJoinPool. Callers are expected to
+    use these kernels only above THRESHOLD; below it the plain loops of
+    Matrix and MatrixUtil are faster.
+*/
+public class BlockedLinearAlgebra {
+    //! matrix dimension from which the blocked, parallel kernels are used
+    public static final int THRESHOLD = Integer.getInteger("jquant.blockedThreshold", 128);
+    //! tile size, 64x64 doubles = 32KB fits in L1/L2
+    public static final int BLOCK = 64;
+
+    private BlockedLinearAlgebra() {
+    }
+
+    public static boolean useBlocked(int n) {
+        return n >= THRESHOLD;
+    }
+
+    public static boolean useBlocked(int n, int k, int m) {
+        return (long) n * k * m >= (long) THRESHOLD * THRESHOLD * THRESHOLD;
+    }
+
+    //! c += a * b with a n x k, b k x m and c n x m, all row-major
+    public static void gemm(double[] a, double[] b, double[] c, int n, int k, int m) {
+        int rowBlocks = (n + BLOCK - 1) / BLOCK;
+        ParallelFor.range(0, rowBlocks, 1, (rb0, rb1) -> {
+            for (int rb = rb0; rb < rb1; rb++) {
+                int i0 = rb * BLOCK, i1 = Math.min(i0 + BLOCK, n);
+                for (int p0 = 0; p0 < k; p0 += BLOCK) {
+                    int p1 = Math.min(p0 + BLOCK, k);
+                    for (int j0 = 0; j0 < m; j0 += BLOCK) {
+                        int j1 = Math.min(j0 + BLOCK, m);
+                        gemmTile(a, b, c, k, m, i0, i1, p0, p1, j0, j1);
+                    }
+                }
+            }
+        });
+    }
+
+    private static void gemmTile(double[] a, double[] b, double[] c, int k, int m,
+                                 int i0, int i1, int p0, int p1, int j0, int j1) {
+        for (int i = i0; i < i1; i++) {
+            int ci = i * m;
+            int ai = i * k;
+            for (int p = p0; p < p1; p++) {
+                double aip = a[ai + p];
+                if (aip == 0.0) {
+                    continue;
+                }
+                int bp = p * m;
+                for (int j = j0; j < j1; j++) {
+                    c[ci + j] += aip * b[bp + j];
+                }
+            }
+        }
+    }
+
+    //! in-place right-looking blocked Cholesky factorization
+    /*! On entry the lower triangle of the n x n row-major array a holds the
+        symmetric input; on exit a holds the lower-triangular factor L with
+        the strict upper triangle set to zero. The flexible flag has the
+        same meaning as in MatrixUtil.CholeskyDecomposition.
+    */
+    public static void cholesky(double[] a, int n, boolean flexible) {
+        for (int kb = 0; kb < n; kb += BLOCK) {
+            final int k0 = kb, k1 = Math.min(kb + BLOCK, n);
+            // diagonal block
+            for (int i = k0; i < k1; i++) {
+                for (int j = i; j < k1; j++) {
+                    factorEntry(a, n, k0, i, j, flexible);
+                }
+            }
+            if (k1 == n) {
+                break;
+            }
+            // panel below the diagonal block
+            ParallelFor.range(k1, n, ParallelFor.grain(n - k1, BLOCK / 4), (r0, r1) -> {
+                for (int j = r0; j < r1; j++) {
+                    for (int i = k0; i < k1; i++) {
+                        factorEntry(a, n, k0, i, j, flexible);
+                    }
+                }
+            });
+            // trailing update of the lower triangle: A22 -= L21 * L21^T
+            ParallelFor.range(k1, n, ParallelFor.grain(n - k1, BLOCK / 4), (r0, r1) -> {
+                for (int j = r0; j < r1; j++) {
+                    int rj = j * n;
+                    for (int c = k1; c <= j; c++) {
+                        int rc = c * n;
+                        double s = 0.0;
+                        for (int p = k0; p < k1; p++) {
+                            s += a[rj + p] * a[rc + p];
+                        }
+                        a[rj + c] -= s;
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                a[i * n + j] = 0.0;
+            }
+        }
+    }
+
+    // L[j][i] for i <= j, using only the columns of the current block
+    private static void factorEntry(double[] a, int n, int k0, int i, int j, boolean flexible) {
+        int ri = i * n, rj = j * n;
+        double sum = a[rj + i];
+        for (int p = k0; p < i; p++) {
+            sum -= a[ri + p] * a[rj + p];
+        }
+        if (i == j) {
+            QL_REQUIRE(flexible || sum > 0.0,
+                    "input matrix is not positive definite");
+            a[ri + i] = Math.sqrt(Math.max(sum, 0d));
+        } else {
+            double lii = a[ri + i];
+            a[rj + i] = close_enough(lii, 0d) ? 0d : sum / lii;
+        }
+    }
+
+    //! solves L X = B in place; L is n x n lower triangular, B is n x nrhs
+    public static void solveLower(double[] l, int n, double[] b, int nrhs) {
+        int colBlocks = (nrhs + BLOCK - 1) / BLOCK;
+        ParallelFor.range(0, colBlocks, 1, (cb0, cb1) -> {
+            int c0 = cb0 * BLOCK, c1 = Math.min(cb1 * BLOCK, nrhs);
+            for (int i = 0; i < n; i++) {
+                int ri = i * n, bi = i * nrhs;
+                for (int p = 0; p < i; p++) {
+                    double lip = l[ri + p];
+                    if (lip == 0.0) {
+                        continue;
+                    }
+                    int bp = p * nrhs;
+                    for (int c = c0; c < c1; c++) {
+                        b[bi + c] -= lip * b[bp + c];
+                    }
+                }
+                double lii = l[ri + i];
+                for (int c = c0; c < c1; c++) {
+                    b[bi + c] /= lii;
+                }
+            }
+        });
+    }
+
+    //! solves L^T X = B in place; L is n x n lower triangular, B is n x nrhs
+    /*! Runs along the rows of L so that the row-major storage is read
+        contiguously.
+    */
+    public static void solveLowerTransposed(double[] l, int n, double[] b, int nrhs) {
+        int colBlocks = (nrhs + BLOCK - 1) / BLOCK;
+        ParallelFor.range(0, colBlocks, 1, (cb0, cb1) -> {
+            int c0 = cb0 * BLOCK, c1 = Math.min(cb1 * BLOCK, nrhs);
+            for (int i = n - 1; i >= 0; i--) {
+                int ri = i * n, bi = i * nrhs;
+                double lii = l[ri + i];
+                for (int c = c0; c < c1; c++) {
+                    b[bi + c] /= lii;
+                }
+                for (int p = 0; p < i; p++) {
+                    double lip = l[ri + p];
+                    if (lip == 0.0) {
+                        continue;
+                    }
+                    int bp = p * nrhs;
+                    for (int c = c0; c < c1; c++) {
+                        b[bp + c] -= lip * b[bi + c];
+                    }
+                }
+            }
+        });
+    }
+}
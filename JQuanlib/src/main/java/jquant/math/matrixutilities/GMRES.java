@@ -3,15 +3,16 @@ package jquant.math.matrixutilities;
 
 import jquant.math.Array;
 import jquant.math.ArrayFunc;
-import jquant.math.CommonUtil;
 import jquant.math.matrixutilities.impl.GMRESResult;
+import jquant.math.matrixutilities.impl.KrylovResult;
 
 import java.util.Arrays;
-import java.util.List;
 
 import static jquant.math.CommonUtil.*;
 import static jquant.math.MathUtils.QL_EPSILON;
 import static jquant.math.MathUtils.squared;
+import static jquant.math.matrixutilities.KrylovWorkspace.dot;
+import static jquant.math.matrixutilities.KrylovWorkspace.norm2;
 
 /*! References:
     Saad, Yousef. 1996, Iterative methods for sparse linear systems,
@@ -27,15 +28,34 @@ import static jquant.math.MathUtils.squared;
     Chapter 6: GMRES und verwandte Verfahren
     http://bilder.buecher.de/zusatz/12/12950/12950560_lese_1.pdf
 */
+/*! The solver works on flat arrays held by a KrylovWorkspace. The
+    Array-based solve methods use a workspace owned by this instance, so a
+    GMRES object must not be shared between threads; use the methods taking
+    an explicit workspace for that.
+*/
 public class GMRES {
     protected ArrayFunc A_, M_;
+    protected LinearOperator op_, precond_;
     protected int maxIter_;
     protected double relTol_;
+    private KrylovWorkspace workspace_;
 
     //default preConditioner = null
     public GMRES(ArrayFunc A, int maxIter, double relTol, ArrayFunc preConditioner) {
+        this(LinearOperator.of(A), maxIter, relTol,
+                preConditioner == null ? null : LinearOperator.of(preConditioner));
         A_ = A;
         M_ = preConditioner;
+    }
+
+    //! solver on in-place operators; default preConditioner = null
+    public static GMRES of(LinearOperator A, int maxIter, double relTol, LinearOperator preConditioner) {
+        return new GMRES(A, maxIter, relTol, preConditioner);
+    }
+
+    private GMRES(LinearOperator A, int maxIter, double relTol, LinearOperator preConditioner) {
+        op_ = A;
+        precond_ = preConditioner;
         maxIter_ = maxIter;
         relTol_ = relTol;
         QL_REQUIRE(maxIter_ > 0, "maxIter must be greater than zero");
@@ -43,132 +63,173 @@ public class GMRES {
 
     // default x0 = Array()
     public GMRESResult solve(Array b, Array x0) {
-        GMRESResult result = solveImpl(b, x0);
-
-        QL_REQUIRE(result.back() < relTol_, "could not converge");
-
-        return result;
+        return solveWithRestart(1, b, x0);
     }
 
     //default x0 = Array()
     public GMRESResult solveWithRestart(int restart, Array b, Array x0) {
-        GMRESResult result = solveImpl(b, x0);
+        if (workspace_ == null) {
+            workspace_ = new KrylovWorkspace();
+        }
+        double[] x = (x0 == null || x0.empty()) ? new double[b.size()] : x0.toArray();
+        solveWithRestart(restart, b.dataRef(), x, workspace_);
+        return new GMRESResult(workspace_.errorList(), Array.wrap(x));
+    }
 
-        List<Double> errors = result.errors;
+    //! solves in place: x holds the initial guess on entry and the solution on exit
+    public KrylovResult solve(double[] b, double[] x, KrylovWorkspace ws) {
+        return solveWithRestart(1, b, x, ws);
+    }
 
-        for (int i = 0; i < restart - 1 && result.back() >= relTol_; ++i) {
-            result = solveImpl(b, result.x);
-            errors.addAll(result.errors);
-            // errors.insert(errors.end(), result.errors.begin(), result.errors.end());
+    //! restarted GMRES(maxIter) on caller buffers, allocation-free once ws is sized
+    public KrylovResult solveWithRestart(int restart, double[] b, double[] x, KrylovWorkspace ws) {
+        QL_REQUIRE(b.length == x.length, "right-hand side and solution sizes differ");
+        ws.ensureGMRES(b.length, maxIter_);
+        ws.clearErrors();
+        KrylovResult result = ws.result;
+        result.reset();
+
+        solveImpl(b, x, ws);
+        for (int i = 0; i < restart - 1 && ws.lastError() >= relTol_; ++i) {
+            solveImpl(b, x, ws);
+            result.restarts++;
         }
+        result.error = ws.lastError();
 
-        QL_REQUIRE(errors.get(errors.size() - 1) < relTol_, "could not converge");
+        QL_REQUIRE(result.error < relTol_, "could not converge");
 
-        result.errors = errors;
         return result;
     }
 
     protected GMRESResult solveImpl(Array b, Array x0) {
-        final double bn = Norm2(b);
+        KrylovWorkspace ws = new KrylovWorkspace();
+        ws.ensureGMRES(b.size(), maxIter_);
+        double[] x = (x0 == null || x0.empty()) ? new double[b.size()] : x0.toArray();
+        solveImpl(b.dataRef(), x, ws);
+        return new GMRESResult(ws.errorList(), Array.wrap(x));
+    }
+
+    // one GMRES cycle; appends the relative residuals to ws and updates x in place
+    private void solveImpl(double[] b, double[] x, KrylovWorkspace ws) {
+        final int n = b.length;
+        final int m = maxIter_;
+        final double bn = norm2(b, n);
         if (bn == 0.0) {
-            //{ std::list<Real>(1, 0.0), b };
-            return new GMRESResult(Arrays.asList(1d, 0d), b);
+            System.arraycopy(b, 0, x, 0, n);
+            ws.addError(0.0);
+            return;
         }
 
-        Array x = ((!x0.empty()) ? x0 : new Array(b.size(), 0.0));
-        Array r = b.subtract(A_.value(x));//b - A_(x);
+        final double[] v = ws.v, h = ws.h, c = ws.c, s = ws.s, z = ws.z, y = ws.y;
+        final double[] r = ws.r, w = ws.w, tmp = ws.tmp;
+
+        op_.apply(x, r);
+        for (int i = 0; i < n; i++) {
+            r[i] = b[i] - r[i];
+        }
 
-        final double g = Norm2(r);
+        final double g = norm2(r, n);
         if (g / bn < relTol_) {
-            //{ std::list<Real>(1, g/bn), x };
-            return new GMRESResult(Arrays.asList(1d, g / bn), x);
+            ws.addError(g / bn);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            v[i] = r[i] / g;
         }
-        List<Array> v = CommonUtil.ArrayInit(1, r.div(g));
-        // std::vector<Array> v(1, r/g);
-        List<Array> h = CommonUtil.ArrayInit(1, new Array(maxIter_, 0d));
-        // std::vector<Array> h(1, Array(maxIter_, 0.0));
-        List<Double> c = CommonUtil.ArrayInit(maxIter_ + 1);
-        List<Double> s = CommonUtil.ArrayInit(maxIter_ + 1);
-        List<Double> z = CommonUtil.ArrayInit(maxIter_ + 1);
-        // std::vector<Real>  c(maxIter_+1), s(maxIter_+1), z(maxIter_+1);
-        z.set(0, g);
-        List<Double> errors = CommonUtil.ArrayInit(1, g / bn);
-        // std::list<Real> errors(1, g/bn);
-        for (int j = 0; j < maxIter_ && errors.get(errors.size() - 1) >= relTol_; ++j) {
-            h.add(new Array(maxIter_, 0.0));
-            // h.emplace_back(maxIter_, 0.0);
-            Array w = A_.value(M_ == null ? v.get(j) : M_.value(v.get(j)));
+        int nv = 1;
+        Arrays.fill(h, 0, (m + 1) * m, 0.0);
+        z[0] = g;
+        double error = g / bn;
+        ws.addError(error);
+        for (int j = 0; j < m && error >= relTol_; ++j) {
+            ws.result.iterations++;
+            // w = A M v_j
+            if (precond_ == null) {
+                op_.apply(slice(v, j, n, tmp), w);
+            } else {
+                precond_.apply(slice(v, j, n, r), tmp);
+                op_.apply(tmp, w);
+            }
 
             for (int i = 0; i <= j; ++i) {
-                h.get(i).set(j, DotProduct(w, v.get(i)));
-                // h[i][j] = DotProduct(w, v[i]);
-                w = w.subtract(v.get(i).mutiply(h.get(i).get(j)));
-                // w -= h[i][j] * v[i];
+                final double hij = dot(w, 0, v, i * n, n);
+                h[i * m + j] = hij;
+                final int vi = i * n;
+                for (int k = 0; k < n; k++) {
+                    w[k] -= hij * v[vi + k];
+                }
             }
-            h.get(j + 1).set(j, Norm2(w));
-            // h[j+1][j] = Norm2(w);
+            h[(j + 1) * m + j] = norm2(w, n);
 
-            if (h.get(j + 1).get(j) < QL_EPSILON * QL_EPSILON)
+            if (h[(j + 1) * m + j] < QL_EPSILON * QL_EPSILON)
                 break;
-            v.add(w.div(h.get(j + 1).get(j)));
-            // v.push_back(w / h[j+1][j]);
+            final double hn = h[(j + 1) * m + j];
+            final int vn = (j + 1) * n;
+            for (int k = 0; k < n; k++) {
+                v[vn + k] = w[k] / hn;
+            }
+            nv++;
 
             for (int i = 0; i < j; ++i) {
-                double h0 = c.get(i) * h.get(i).get(j) + s.get(i) * h.get(i + 1).get(j);
-                double h1 = -s.get(i) * h.get(i).get(j) + c.get(i) * h.get(i + 1).get(j);
-                h.get(i).set(j, h0);
-                // h[i][j]   = h0;
-                h.get(i + 1).set(j, h1);
-                // h[i+1][j] = h1;
+                double h0 = c[i] * h[i * m + j] + s[i] * h[(i + 1) * m + j];
+                double h1 = -s[i] * h[i * m + j] + c[i] * h[(i + 1) * m + j];
+                h[i * m + j] = h0;
+                h[(i + 1) * m + j] = h1;
             }
 
-            double nu = Math.sqrt(squared(h.get(j).get(j)) + squared(h.get(j + 1).get(j)));
+            double nu = Math.sqrt(squared(h[j * m + j]) + squared(h[(j + 1) * m + j]));
 
-            c.set(j, h.get(j).get(j) / nu);
-            s.set(j, h.get(j + 1).get(j) / nu);
-//            c[j] = h[j][j]/nu;
-//            s[j] = h[j+1][j]/nu;
+            c[j] = h[j * m + j] / nu;
+            s[j] = h[(j + 1) * m + j] / nu;
 
-            h.get(j).set(j, nu);
-            h.get(j + 1).set(j, 0d);
-//            h[j][j]   = nu;
-//            h[j+1][j] = 0.0;
+            h[j * m + j] = nu;
+            h[(j + 1) * m + j] = 0.0;
 
-            z.set(j + 1, -s.get(j) * z.get(j));
-            z.set(j, c.get(j) * z.get(j));
-//            z[j+1] = -s[j]*z[j];
-//            z[j] = c[j] * z[j];
+            z[j + 1] = -s[j] * z[j];
+            z[j] = c[j] * z[j];
 
-            errors.add(Math.abs(z.get(j + 1) / bn));
+            error = Math.abs(z[j + 1] / bn);
+            ws.addError(error);
         }
 
-        int k = v.size() - 1;
-
-        Array y = new Array(k, 0.0);
-        y.set(k - 1, z.get(k - 1) / h.get(k - 1).get(k - 1));
-        // y[k-1]=z[k-1]/h[k-1][k-1];
+        final int k = nv - 1;
+        if (k == 0) {
+            return;
+        }
 
+        y[k - 1] = z[k - 1] / h[(k - 1) * m + k - 1];
         for (int i = k - 2; i >= 0; --i) {
-            double tmp = 0.0;
+            double acc = 0.0;
             for (int j = i + 1; j < k; j++) {
-                tmp += h.get(i).get(j) * y.get(j);
+                acc += h[i * m + j] * y[j];
             }
-            y.set(i, (z.get(i) - tmp) / h.get(i).get(i));
-            // y[i] = (z[i] - std::inner_product(h[i].begin()+i+1, h[i].begin()+k, y.begin()+i+1, Real(0.0)))/h[i][i];
+            y[i] = (z[i] - acc) / h[i * m + i];
         }
 
-        Array xm = new Array(x.size(), 0.0);
+        // xm = sum_i v_i y_i
+        Arrays.fill(w, 0.0);
         for (int i = 0; i < k; i++) {
-            xm = xm.add(v.get(i).mutiply(y.get(i)));
+            final double yi = y[i];
+            final int vi = i * n;
+            for (int l = 0; l < n; l++) {
+                w[l] += yi * v[vi + l];
+            }
+        }
+        if (precond_ == null) {
+            for (int l = 0; l < n; l++) {
+                x[l] += w[l];
+            }
+        } else {
+            precond_.apply(w, tmp);
+            for (int l = 0; l < n; l++) {
+                x[l] += tmp[l];
+            }
         }
-
-        // Array xm = std::inner_product(v.begin(), v.begin()+k, y.begin(), Array(x.size(), Real(0.0)));
-        xm = x.add(M_ == null ? xm : M_.value(xm));
-        // xm = x + (!M_ ? xm : M_(xm));
-
-        //{ errors, xm };
-        return new GMRESResult(errors, xm);
     }
 
-
+    // copies basis vector j into out
+    private static double[] slice(double[] v, int j, int n, double[] out) {
+        System.arraycopy(v, j * n, out, 0, n);
+        return out;
+    }
 }
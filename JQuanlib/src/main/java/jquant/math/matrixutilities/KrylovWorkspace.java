@@ -0,0 +1,117 @@
+package jquant.math.matrixutilities;
+
+import jquant.math.matrixutilities.impl.KrylovResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//! preallocated storage for GMRES and BiCGstab
+/*! Buffers grow on demand and are kept between solves, so repeated solves
+    of systems of the same size do not allocate. A workspace must not be
+    shared between threads.
+*/
+public class KrylovWorkspace {
+    int n_ = -1, m_ = -1;
+    // GMRES: Krylov basis, (m+1) x n, and Hessenberg matrix, (m+1) x m, row-major
+    double[] v, h;
+    double[] c, s, z, y;
+    // shared n-vectors
+    double[] r, w, tmp;
+    // BiCGstab
+    double[] rTld, p, vb, sb, t, pTld, sTld;
+    private double[] errors_ = new double[16];
+    private int nErrors_ = 0;
+    final KrylovResult result = new KrylovResult();
+
+    public KrylovWorkspace() {
+    }
+
+    //! sized for GMRES with the given dimension and maximum number of iterations
+    public KrylovWorkspace(int n, int maxIter) {
+        ensureGMRES(n, maxIter);
+    }
+
+    void ensureVectors(int n) {
+        if (n != n_) {
+            r = new double[n];
+            w = new double[n];
+            tmp = new double[n];
+            n_ = n;
+            v = null;
+            rTld = null;
+            m_ = -1;
+        }
+    }
+
+    void ensureGMRES(int n, int m) {
+        ensureVectors(n);
+        if (v == null || m > m_) {
+            v = new double[(m + 1) * n];
+            h = new double[(m + 1) * m];
+            c = new double[m + 1];
+            s = new double[m + 1];
+            z = new double[m + 1];
+            y = new double[m + 1];
+            m_ = m;
+        }
+    }
+
+    void ensureBiCGstab(int n) {
+        ensureVectors(n);
+        if (rTld == null) {
+            rTld = new double[n];
+            p = new double[n];
+            vb = new double[n];
+            sb = new double[n];
+            t = new double[n];
+            pTld = new double[n];
+            sTld = new double[n];
+        }
+    }
+
+    void clearErrors() {
+        nErrors_ = 0;
+    }
+
+    void addError(double e) {
+        if (nErrors_ == errors_.length) {
+            errors_ = Arrays.copyOf(errors_, 2 * nErrors_);
+        }
+        errors_[nErrors_++] = e;
+    }
+
+    double lastError() {
+        return errors_[nErrors_ - 1];
+    }
+
+    //! statistics of the last solve
+    public KrylovResult result() {
+        return result;
+    }
+
+    //! relative residuals recorded by the last GMRES solve
+    public double[] errors() {
+        return Arrays.copyOf(errors_, nErrors_);
+    }
+
+    List<Double> errorList() {
+        List<Double> res = new ArrayList<>(nErrors_);
+        for (int i = 0; i < nErrors_; i++) {
+            res.add(errors_[i]);
+        }
+        return res;
+    }
+
+    static double dot(double[] a, int aOff, double[] b, int bOff, int n) {
+        double res = 0.0;
+        for (int i = 0; i < n; i++) {
+            res += a[aOff + i] * b[bOff + i];
+        }
+        return res;
+    }
+
+    static double norm2(double[] a, int n) {
+        return Math.sqrt(dot(a, 0, a, 0, n));
+    }
+}
@@ -0,0 +1,30 @@
+package jquant.math.matrixutilities;
+
+import jquant.math.Array;
+import jquant.math.ArrayFunc;
+import jquant.math.FunctionN;
+import jquant.math.matrixutilities.impl.CsrMatrix;
+
+//! linear map y = A x written into a caller-provided buffer
+/*! x and y never alias when called from the Krylov solvers. */
+@FunctionalInterface
+public interface LinearOperator {
+    void apply(double[] x, double[] y);
+
+    static LinearOperator of(final CsrMatrix A) {
+        return A::multiply;
+    }
+
+    static LinearOperator of(final SparseILUPreconditioner M) {
+        return M::apply;
+    }
+
+    //! adapts an allocating operator; the result is copied into y
+    static LinearOperator of(final ArrayFunc f) {
+        return (x, y) -> System.arraycopy(f.value(Array.wrap(x)).dataRef(), 0, y, 0, y.length);
+    }
+
+    static LinearOperator of(final FunctionN f) {
+        return (x, y) -> System.arraycopy(f.value(Array.wrap(x)).dataRef(), 0, y, 0, y.length);
+    }
+}
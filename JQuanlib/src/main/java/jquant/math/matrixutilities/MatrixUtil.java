@@ -4,6 +4,7 @@ import jquant.math.Array;
 import jquant.math.CommonUtil;
 import jquant.math.MathUtils;
 import jquant.math.Matrix;
+import jquant.math.matrixutilities.impl.CsrMatrix;
 import jquant.math.matrixutilities.impl.HypersphereCostFunction;
 import jquant.math.matrixutilities.impl.SalvagingAlgorithm;
 import jquant.math.matrixutilities.impl.SparseMatrix;
@@ -29,6 +30,11 @@ public class MatrixUtil {
 
         QL_REQUIRE(size == S.cols(), "input matrix is not a square matrix");
         check_symmetric(S);
+        if (BlockedLinearAlgebra.useBlocked(size)) {
+            double[] l = S.toArray();
+            BlockedLinearAlgebra.cholesky(l, size, flexible);
+            return Matrix.wrap(l, size, size);
+        }
         Matrix result = new Matrix(size, size, 0.0);
         double sum;
         for (i = 0; i < size; i++) {
@@ -62,6 +68,13 @@ public class MatrixUtil {
         QL_REQUIRE(L.cols() == n && L.rows() == n,
                 "Size of input matrix and vector does not match.");
 
+        if (BlockedLinearAlgebra.useBlocked(n)) {
+            double[] x = b.toArray();
+            BlockedLinearAlgebra.solveLower(L.dataRef(), n, x, 1);
+            BlockedLinearAlgebra.solveLowerTransposed(L.dataRef(), n, x, 1);
+            return Array.wrap(x);
+        }
+
         Array x = new Array(n);
         for (int i = 0; i < n; ++i) {
             double tmp = -b.get(i);
@@ -87,6 +100,19 @@ public class MatrixUtil {
         return x;
     }
 
+    //! solves L L^T X = B for all the columns of B at once
+    public static Matrix CholeskySolveFor(final Matrix L, final Matrix B) {
+        final int n = B.rows();
+
+        QL_REQUIRE(L.cols() == n && L.rows() == n,
+                "Size of input matrix and right-hand sides does not match.");
+
+        double[] x = B.toArray();
+        BlockedLinearAlgebra.solveLower(L.dataRef(), n, x, B.cols());
+        BlockedLinearAlgebra.solveLowerTransposed(L.dataRef(), n, x, B.cols());
+        return Matrix.wrap(x, n, B.cols());
+    }
+
     //! matrix exponential based on the ordinary differential equations method
 
     /*! References:
@@ -783,7 +809,7 @@ public class MatrixUtil {
             r.set(i, i, rdiag[i]);
             // r[i][i] = rdiag[i];
             if (i < m) {
-                for (int j = i + 1; j < mT.cols(); j++) {
+                for (int j = i + 1; j < mT.rows(); j++) {
                     r.set(i, j, mT.get(j, i));
                 }
                 // std::copy(mT.column_begin(i)+i+1, mT.column_end(i), r.row_begin(i)+i+1);
@@ -943,13 +969,11 @@ public class MatrixUtil {
     }
 
     public static Array prod(SparseMatrix A, Array x) {
-        QL_REQUIRE(x.size() == A.size2(),
-                "vectors and sparse matrices with different sizes ("
-                        + x.size() + ", " + A.size1() + "x" + A.size2() + ") cannot be multiplied");
+        return A.multiply(x);
+    }
 
-        double[][] data = {x.toArray()};
-        Matrix m = new Matrix(data).transpose();
-        return A.multiply(m).getColArray(0);
+    public static Array prod(CsrMatrix A, Array x) {
+        return A.multiply(x);
     }
 
     /*  returns hypotenuse of real (non-complex) scalars a and b by
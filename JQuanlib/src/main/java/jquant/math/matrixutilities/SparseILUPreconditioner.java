@@ -1,10 +1,11 @@
 package jquant.math.matrixutilities;
 
 import jquant.math.Array;
-import jquant.math.CommonUtil;
+import jquant.math.matrixutilities.impl.CsrMatrix;
 import jquant.math.matrixutilities.impl.SparseMatrix;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 import static jquant.math.MathUtils.QL_EPSILON;
@@ -15,117 +16,135 @@ import static jquant.math.MathUtils.QL_EPSILON;
 */
 public class SparseILUPreconditioner {
     private SparseMatrix L_, U_;
-    private List<Integer> lBands_, uBands_;
+    private CsrMatrix lCsr_, uCsr_;
 
     // default lfil = 1
     public SparseILUPreconditioner(final SparseMatrix A, int lfil) {
-        L_ = new SparseMatrix(A.size1(), A.size2());
-        U_ = new SparseMatrix(A.size1(), A.size2());
+        this(A.toCsr(), lfil);
+    }
 
+    //! ILU(lfil) factorization working on the compressed rows of A
+    /*! Only the stored entries of each row and its fill-ins are visited,
+        so the cost is proportional to the number of non-zeros of the
+        factors rather than to n^2.
+    */
+    public SparseILUPreconditioner(final CsrMatrix A, int lfil) {
         QL_REQUIRE(A.size1() == A.size2(),
                 "sparse ILU preconditioner works only with square matrices");
 
-        for (int i = 0; i < L_.size1(); ++i)
+        final int n = A.size1();
+        L_ = new SparseMatrix(n, n);
+        U_ = new SparseMatrix(n, n);
+        for (int i = 0; i < n; ++i)
             L_.set(i, i, 1d);
 
-        final int n = A.size1();
-        Set<Integer> lBandSet = new TreeSet<>();
-        Set<Integer> uBandSet = new TreeSet<>();
+        final int[] aPtr = A.rowPtr();
+        final int[] aIdx = A.colIdx();
+        final double[] aVal = A.values();
 
-        SparseMatrix levs = new SparseMatrix(n, n);
-        int lfilp = lfil + 1;
+        // levels of the entries of U, row by row, aligned with U_.rowIndices
+        int[][] uLevs = new int[n][];
+        final int lfilp = lfil + 1;
+
+        // dense work row, reset through the touched list after each row
+        double[] w = new double[n];
+        int[] levii = new int[n];
+        BitSet pattern = new BitSet(n);
+        int[] stamp = new int[n];
+        int[] touched = new int[16];
+
+        int[] wNonZeros = new int[16];
+        int[] leviiNonZeroEntries = new int[16];
 
         for (int ii = 0; ii < n; ++ii) {
-            Array w = new Array(n);
-            for (int k = 0; k < n; ++k) {
-                w.set(k, A.get(ii, k));
+            final int mark = ii + 1;
+            int nTouched = 0;
+            for (int k = aPtr[ii]; k < aPtr[ii + 1]; ++k) {
+                final int j = aIdx[k];
+                w[j] = aVal[k];
+                if (stamp[j] != mark) {
+                    stamp[j] = mark;
+                    if (nTouched == touched.length) touched = Arrays.copyOf(touched, 2 * nTouched);
+                    touched[nTouched++] = j;
+                }
+                if (w[j] > QL_EPSILON || w[j] < -1.0 * QL_EPSILON) {
+                    levii[j] = 1;
+                    pattern.set(j);
+                }
             }
 
-            List<Integer> levii = CommonUtil.ArrayInit(n, 0);
-            for (int i = 0; i < n; ++i) {
-                if (w.get(i) > QL_EPSILON || w.get(i) < -1.0 * QL_EPSILON)
-                    levii.set(i, 1);
-            }
             int jj = -1;
-            while (jj < ii) {
-                for (int k = jj + 1; k < n; ++k) {
-                    if (levii.get(k) != 0) {
-                        jj = k;
-                        break;
-                    }
-                }
-                if (jj >= ii) {
+            while (true) {
+                jj = pattern.nextSetBit(jj + 1);
+                if (jj < 0 || jj >= ii) {
                     break;
                 }
-                int jlev = levii.get(jj);
+                final int jlev = levii[jj];
                 if (jlev <= lfilp) {
-                    List<Integer> nonZeros = new ArrayList<>();
-                    List<Double> nonZeroEntries = new ArrayList<>();
-                    final double entry = U_.get(jj, jj);
-                    if (entry > QL_EPSILON || entry < -1.0 * QL_EPSILON) {
-                        nonZeros.add(jj);
-                        nonZeroEntries.add(entry);
-                    }
-                    for (int val : uBandSet) {
-                        final double entry1 = U_.get(jj, jj + val);
-                        if (entry1 > QL_EPSILON || entry1 < -1.0 * QL_EPSILON) {
-                            nonZeros.add(jj + val);
-                            nonZeroEntries.add(entry1);
-                        }
+                    // stored entries of U row jj, diagonal first, all non-zero
+                    final int[] uIdx = U_.rowIndices(jj);
+                    final double[] uVal = U_.rowValues(jj);
+                    final int[] uLev = uLevs[jj];
+                    final int uSize = U_.rowSize(jj);
+                    double fact = w[jj];
+                    if (uSize > 0) {
+                        fact /= uVal[0];
                     }
-                    double fact = w.get(jj);
-                    if (!nonZeroEntries.isEmpty()) {
-                        fact /= nonZeroEntries.get(0);
-                    }
-                    for (int k = 0; k < nonZeros.size(); ++k) {
-                        final int j = nonZeros.get(k);
-                        final int temp = (int) (levs.get(jj, j) + jlev);
-                        if (levii.get(j) == 0) {
+                    for (int k = 0; k < uSize; ++k) {
+                        final int j = uIdx[k];
+                        final int temp = uLev[k] + jlev;
+                        if (levii[j] == 0) {
                             if (temp <= lfilp) {
-                                w.set(j, -fact * nonZeroEntries.get(k));
-                                levii.set(j, temp);
+                                if (stamp[j] != mark) {
+                                    stamp[j] = mark;
+                                    if (nTouched == touched.length) touched = Arrays.copyOf(touched, 2 * nTouched);
+                                    touched[nTouched++] = j;
+                                }
+                                w[j] = -fact * uVal[k];
+                                levii[j] = temp;
+                                pattern.set(j);
                             }
                         } else {
-                            w.set(j, -fact * nonZeroEntries.get(k));
-                            levii.set(j, Math.min(temp, levii.get(j)));
+                            w[j] -= fact * uVal[k];
+                            levii[j] = Math.min(temp, levii[j]);
                         }
                     }
-                    w.set(jj, fact);
-                }
-            }
-            List<Integer> wNonZeros = new ArrayList<>();
-            List<Double> wNonZeroEntries = new ArrayList<>();
-            for (int i = 0; i < w.size(); ++i) {
-                final double entry = w.get(i);
-                if (entry > QL_EPSILON || entry < -1.0 * QL_EPSILON) {
-                    wNonZeros.add(i);
-                    wNonZeroEntries.add(entry);
+                    w[jj] = fact;
                 }
             }
-            List<Integer> leviiNonZeroEntries = new ArrayList<>();
-            for (int entry : levii) {
-                if (entry > QL_EPSILON || entry < -1.0 * QL_EPSILON) {
-                    leviiNonZeroEntries.add(entry);
+
+            // non-zeros of w and of the level row, both in column order
+            int nw = 0, nl = 0;
+            for (int j = pattern.nextSetBit(0); j >= 0; j = pattern.nextSetBit(j + 1)) {
+                if (nw == wNonZeros.length) wNonZeros = Arrays.copyOf(wNonZeros, 2 * nw);
+                if (nl == leviiNonZeroEntries.length) leviiNonZeroEntries = Arrays.copyOf(leviiNonZeroEntries, 2 * nl);
+                if (w[j] > QL_EPSILON || w[j] < -1.0 * QL_EPSILON) {
+                    wNonZeros[nw++] = j;
                 }
+                leviiNonZeroEntries[nl++] = levii[j];
             }
-            for (int k = 0; k < wNonZeros.size(); ++k) {
-                int j = wNonZeros.get(k);
+            int nu = 0;
+            int[] uLevRow = new int[nw];
+            for (int k = 0; k < nw; ++k) {
+                final int j = wNonZeros[k];
                 if (j < ii) {
-                    L_.set(ii, j, wNonZeroEntries.get(k));
-                    lBandSet.add(ii - j);
+                    L_.set(ii, j, w[j]);
                 } else {
-                    U_.set(ii, j, wNonZeroEntries.get(k));
-                    levs.set(ii, j, leviiNonZeroEntries.get(k));
-                    if (j - ii > 0) {
-                        uBandSet.add(j - ii);
-                    }
+                    U_.set(ii, j, w[j]);
+                    uLevRow[nu++] = leviiNonZeroEntries[k];
                 }
             }
+            uLevs[ii] = nu == nw ? uLevRow : Arrays.copyOf(uLevRow, nu);
+
+            for (int k = 0; k < nTouched; ++k) {
+                final int j = touched[k];
+                w[j] = 0.0;
+                levii[j] = 0;
+                pattern.clear(j);
+            }
         }
-        lBands_ = new ArrayList<>();
-        uBands_ = new ArrayList<>();
-        lBands_.addAll(lBandSet);
-        uBands_.addAll(uBandSet);
+        lCsr_ = L_.toCsr();
+        uCsr_ = U_.toCsr();
     }
 
     public final SparseMatrix L() {
@@ -137,40 +156,53 @@ public class SparseILUPreconditioner {
     }
 
     public Array apply(final Array b) {
-        return backwardSolve(forwardSolve(b));
+        double[] x = new double[b.size()];
+        apply(b.dataRef(), x);
+        return Array.wrap(x);
+    }
+
+    //! x = (LU)^{-1} b without allocating; x and b may be the same buffer
+    public void apply(final double[] b, final double[] x) {
+        forwardSolve(b, x);
+        backwardSolve(x);
     }
 
-    private Array forwardSolve(final Array b) {
-        int n = b.size();
-        Array y = new Array(n, 0.0);
-        y.set(0, b.get(0) / L_.get(0, 0));
-        for (int i = 1; i <= n - 1; ++i) {
-            y.set(i, b.get(i) / L_.get(i, i));
-            // y[i] = b[i]/L_(i,i);
-            for (int j = lBands_.size() - 1;
-                 j >= 0 && i - lBands_.get(j) <= i - 1; --j) {
-                final int k = i - lBands_.get(j);
-                if (k >= 0)
-                    y.subtractEq(i, L_.get(i, k) * y.get(k) / L_.get(i, i));
-                // y[i]-=L_(i,k)*y[k]/L_(i,i);
+    private void forwardSolve(final double[] b, final double[] y) {
+        final int n = b.length;
+        final int[] rp = lCsr_.rowPtr();
+        final int[] ci = lCsr_.colIdx();
+        final double[] v = lCsr_.values();
+        for (int i = 0; i < n; ++i) {
+            double s = b[i], lii = 1.0;
+            for (int k = rp[i]; k < rp[i + 1]; ++k) {
+                final int j = ci[k];
+                if (j < i) {
+                    s -= v[k] * y[j];
+                } else if (j == i) {
+                    lii = v[k];
+                }
             }
+            y[i] = s / lii;
         }
-        return y;
     }
 
-    private Array backwardSolve(final Array y) {
-        int n = y.size();
-        Array x = new Array(n, 0.0);
-        x.set(n - 1, y.get(n - 1) / U_.get(n - 1, n - 1));
-        // x[n-1] = y[n-1]/U_(n-1,n-1);
-        for (int i = n - 2; i >= 0; --i) {
-            x.set(i, y.get(i) / U_.get(i, i));
-            // x[i] = y[i]/U_(i,i);
-            for (int j = 0; j < uBands_.size() && i + uBands_.get(j) <= n - 1; ++j) {
-                // x[i] -= U_(i,i+uBands_[j])*x[i+uBands_[j]]/U_(i,i);
-                x.subtractEq(i, U_.get(i, i + uBands_.get(j)) * x.get(i + uBands_.get(j)) / U_.get(i, i));
+    // in place: x holds y on entry
+    private void backwardSolve(final double[] x) {
+        final int n = x.length;
+        final int[] rp = uCsr_.rowPtr();
+        final int[] ci = uCsr_.colIdx();
+        final double[] v = uCsr_.values();
+        for (int i = n - 1; i >= 0; --i) {
+            double s = x[i], uii = 0.0;
+            for (int k = rp[i]; k < rp[i + 1]; ++k) {
+                final int j = ci[k];
+                if (j > i) {
+                    s -= v[k] * x[j];
+                } else if (j == i) {
+                    uii = v[k];
+                }
             }
+            x[i] = s / uii;
         }
-        return x;
     }
 }
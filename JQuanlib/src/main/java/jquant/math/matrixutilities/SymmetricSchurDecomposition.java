@@ -121,9 +121,10 @@ public class SymmetricSchurDecomposition {
 
         // sort (eigenvalues, eigenvectors)
         List<Pair> temp = CommonUtil.ArrayInit(size);
-        List<Double> eigenVector = CommonUtil.ArrayInit(size);
         int row, col;
         for (col=0; col<size; col++) {
+            // one list per column, the pairs keep a reference to it
+            List<Double> eigenVector = CommonUtil.ArrayInit(size);
             for (int i = 0; i < eigenVectors_.rows(); i++) {
                 eigenVector.set(i, eigenVectors_.get(i, col));
             }
@@ -0,0 +1,237 @@
+package jquant.math.matrixutilities.impl;
+
+import jquant.math.Array;
+import jquant.utilities.ParallelFor;
+
+import java.util.Arrays;
+
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+// 压缩行存储 (CSR) 稀疏矩阵, 构造后结构不可变
+/*! Row i holds the column indices colIdx[rowPtr[i]..rowPtr[i+1]) in
+    increasing order and the matching values. The transpose, i.e. the
+    compressed-column (CSC) form of the same matrix, is built on first use
+    and cached for transposeMultiply.
+*/
+public class CsrMatrix {
+    //! number of stored entries above which mat-vec products run in parallel
+    public static final int PARALLEL_NNZ = 1 << 16;
+
+    private final int rows_, cols_;
+    private final int[] rowPtr_;
+    private final int[] colIdx_;
+    private final double[] values_;
+    private volatile CsrMatrix transpose_;
+
+    public CsrMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        QL_REQUIRE(rows >= 0 && cols >= 0, "negative matrix size");
+        QL_REQUIRE(rowPtr.length == rows + 1 && rowPtr[0] == 0,
+                "row pointer array must have " + (rows + 1) + " entries starting at 0");
+        QL_REQUIRE(colIdx.length >= rowPtr[rows] && values.length >= rowPtr[rows],
+                "column index and value arrays shorter than the number of entries");
+        rows_ = rows;
+        cols_ = cols;
+        rowPtr_ = rowPtr;
+        colIdx_ = colIdx;
+        values_ = values;
+    }
+
+    public static Builder builder(int rows, int cols) {
+        return new Builder(rows, cols);
+    }
+
+    public int size1() {
+        return rows_;
+    }
+
+    public int size2() {
+        return cols_;
+    }
+
+    public int nnz() {
+        return rowPtr_[rows_];
+    }
+
+    public int[] rowPtr() {
+        return rowPtr_;
+    }
+
+    public int[] colIdx() {
+        return colIdx_;
+    }
+
+    public double[] values() {
+        return values_;
+    }
+
+    public double get(int row, int col) {
+        QL_REQUIRE(row >= 0 && row < rows_ && col >= 0 && col < cols_, "index out of bound!");
+        int k = Arrays.binarySearch(colIdx_, rowPtr_[row], rowPtr_[row + 1], col);
+        return k >= 0 ? values_[k] : 0.0;
+    }
+
+    //! y = A x
+    public void multiply(final double[] x, final double[] y) {
+        QL_REQUIRE(x.length == cols_ && y.length == rows_,
+                "vectors and sparse matrices with different sizes ("
+                        + x.length + ", " + rows_ + "x" + cols_ + ") cannot be multiplied");
+        if (nnz() >= PARALLEL_NNZ) {
+            ParallelFor.range(0, rows_, ParallelFor.grain(rows_, 1024), (r0, r1) -> spmv(x, y, r0, r1));
+        } else {
+            spmv(x, y, 0, rows_);
+        }
+    }
+
+    public Array multiply(Array x) {
+        double[] y = new double[rows_];
+        multiply(x.dataRef(), y);
+        return Array.wrap(y);
+    }
+
+    private void spmv(double[] x, double[] y, int r0, int r1) {
+        for (int i = r0; i < r1; i++) {
+            double s = 0.0;
+            for (int k = rowPtr_[i], end = rowPtr_[i + 1]; k < end; k++) {
+                s += values_[k] * x[colIdx_[k]];
+            }
+            y[i] = s;
+        }
+    }
+
+    //! y = A^T x
+    public void transposeMultiply(final double[] x, final double[] y) {
+        QL_REQUIRE(x.length == rows_ && y.length == cols_,
+                "vectors and transposed sparse matrices with different sizes ("
+                        + x.length + ", " + cols_ + "x" + rows_ + ") cannot be multiplied");
+        if (nnz() >= PARALLEL_NNZ) {
+            transpose().multiply(x, y);
+            return;
+        }
+        Arrays.fill(y, 0.0);
+        for (int i = 0; i < rows_; i++) {
+            double xi = x[i];
+            for (int k = rowPtr_[i], end = rowPtr_[i + 1]; k < end; k++) {
+                y[colIdx_[k]] += values_[k] * xi;
+            }
+        }
+    }
+
+    public Array transposeMultiply(Array x) {
+        double[] y = new double[cols_];
+        transposeMultiply(x.dataRef(), y);
+        return Array.wrap(y);
+    }
+
+    //! the transposed matrix, equivalently the CSC form of this one
+    public CsrMatrix transpose() {
+        CsrMatrix t = transpose_;
+        if (t == null) {
+            t = transposeOf(rows_, cols_, rowPtr_, colIdx_, values_, nnz());
+            t.transpose_ = this;
+            transpose_ = t;
+        }
+        return t;
+    }
+
+    // counting sort on the column index; rows of the result come out sorted
+    private static CsrMatrix transposeOf(int rows, int cols, int[] rowOf, int[] colIdx, double[] values, int nnz) {
+        int[] ptr = new int[cols + 1];
+        for (int k = 0; k < nnz; k++) {
+            ptr[colIdx[k] + 1]++;
+        }
+        for (int j = 0; j < cols; j++) {
+            ptr[j + 1] += ptr[j];
+        }
+        int[] next = Arrays.copyOf(ptr, cols);
+        int[] idx = new int[nnz];
+        double[] val = new double[nnz];
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowOf[i]; k < rowOf[i + 1]; k++) {
+                int p = next[colIdx[k]]++;
+                idx[p] = i;
+                val[p] = values[k];
+            }
+        }
+        return new CsrMatrix(cols, rows, ptr, idx, val);
+    }
+
+    //! collects (row, column, value) triplets and compresses them into CSR
+    /*! Duplicate entries are summed, as when assembling finite-difference
+        or finite-element stencils.
+    */
+    public static class Builder {
+        private final int rows_, cols_;
+        private int[] r_ = new int[16];
+        private int[] c_ = new int[16];
+        private double[] v_ = new double[16];
+        private int n_ = 0;
+
+        public Builder(int rows, int cols) {
+            QL_REQUIRE(rows >= 0 && cols >= 0, "negative matrix size");
+            rows_ = rows;
+            cols_ = cols;
+        }
+
+        public Builder add(int row, int col, double value) {
+            if (row < 0 || row >= rows_ || col < 0 || col >= cols_)
+                QL_FAIL("entry (" + row + "," + col + ") outside " + rows_ + "x" + cols_ + " matrix");
+            if (n_ == r_.length) {
+                int cap = 2 * n_;
+                r_ = Arrays.copyOf(r_, cap);
+                c_ = Arrays.copyOf(c_, cap);
+                v_ = Arrays.copyOf(v_, cap);
+            }
+            r_[n_] = row;
+            c_[n_] = col;
+            v_[n_] = value;
+            n_++;
+            return this;
+        }
+
+        public int size() {
+            return n_;
+        }
+
+        public CsrMatrix build() {
+            // bucket the triplets by column, then transpose back: rows end up column-sorted
+            int[] ptr = new int[cols_ + 1];
+            for (int k = 0; k < n_; k++) {
+                ptr[c_[k] + 1]++;
+            }
+            for (int j = 0; j < cols_; j++) {
+                ptr[j + 1] += ptr[j];
+            }
+            int[] next = Arrays.copyOf(ptr, cols_);
+            int[] rowIdx = new int[n_];
+            double[] val = new double[n_];
+            for (int k = 0; k < n_; k++) {
+                int p = next[c_[k]]++;
+                rowIdx[p] = r_[k];
+                val[p] = v_[k];
+            }
+            CsrMatrix sorted = transposeOf(cols_, rows_, ptr, rowIdx, val, n_);
+
+            // sum duplicates in place
+            int[] rp = sorted.rowPtr_;
+            int[] ci = sorted.colIdx_;
+            double[] vs = sorted.values_;
+            int w = 0;
+            for (int i = 0; i < rows_; i++) {
+                int start = rp[i], end = rp[i + 1];
+                rp[i] = w;
+                for (int k = start; k < end; k++) {
+                    if (k > start && ci[k] == ci[w - 1]) {
+                        vs[w - 1] += vs[k];
+                    } else {
+                        ci[w] = ci[k];
+                        vs[w] = vs[k];
+                        w++;
+                    }
+                }
+            }
+            rp[rows_] = w;
+            return new CsrMatrix(rows_, cols_, rp, Arrays.copyOf(ci, w), Arrays.copyOf(vs, w));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package jquant.math.matrixutilities.impl;
+
+// GMRES / BiCGstab 单次求解的统计, 由 KrylovWorkspace 持有并在每次求解时重置
+public class KrylovResult {
+    public int iterations;
+    public int restarts;
+    public double error;
+
+    public void reset() {
+        iterations = 0;
+        restarts = 0;
+        error = 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "KrylovResult{" +
+                "iterations=" + iterations +
+                ", restarts=" + restarts +
+                ", error=" + error +
+                '}';
+    }
+}
@@ -1,33 +1,175 @@
 package jquant.math.matrixutilities.impl;
 
+import jquant.math.Array;
 import jquant.math.Matrix;
-import org.apache.commons.math3.linear.OpenMapRealMatrix;
+
+import java.util.Arrays;
+
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.CommonUtil.QL_REQUIRE;
 
 // 稀疏矩阵
+/*! Rows are kept as sorted (column, value) arrays, i.e. an uncompressed
+    CSR layout that still accepts insertions; toCsr() freezes it into a
+    CsrMatrix for the iterative solvers.
+*/
 public class SparseMatrix {
-    private OpenMapRealMatrix matrix;
+    private final int rows_, cols_;
+    private final int[][] colIdx_;
+    private final double[][] values_;
+    private final int[] rowNnz_;
 
     public SparseMatrix(int row,  int col) {
-        matrix = new OpenMapRealMatrix(row, col);
+        QL_REQUIRE(row >= 0 && col >= 0, "negative matrix size");
+        rows_ = row;
+        cols_ = col;
+        colIdx_ = new int[row][];
+        values_ = new double[row][];
+        rowNnz_ = new int[row];
     }
 
     public int size1() {
-        return matrix.getRowDimension();
+        return rows_;
     }
 
     public int size2() {
-        return matrix.getColumnDimension();
+        return cols_;
+    }
+
+    public int nnz() {
+        int n = 0;
+        for (int k : rowNnz_) {
+            n += k;
+        }
+        return n;
     }
 
     public void set(int row, int col, double value) {
-        matrix.setEntry(row, col, value);
+        checkIndex(row, col);
+        int k = find(row, col);
+        if (k >= 0) {
+            if (value == 0.0) {
+                remove(row, k);
+            } else {
+                values_[row][k] = value;
+            }
+        } else if (value != 0.0) {
+            insert(row, -k - 1, col, value);
+        }
     }
 
     public double get(int row, int col) {
-        return matrix.getEntry(row, col);
+        checkIndex(row, col);
+        int k = find(row, col);
+        return k >= 0 ? values_[row][k] : 0.0;
+    }
+
+    //! number of stored entries in the given row
+    public int rowSize(int row) {
+        return rowNnz_[row];
+    }
+
+    //! sorted column indices of the given row; only the first rowSize(row) entries are valid
+    public int[] rowIndices(int row) {
+        return colIdx_[row] == null ? new int[0] : colIdx_[row];
+    }
+
+    //! values of the given row, aligned with rowIndices(row)
+    public double[] rowValues(int row) {
+        return values_[row] == null ? new double[0] : values_[row];
     }
 
     public Matrix multiply(Matrix m) {
-        return new Matrix(matrix.multiply(m.matrix));
+        QL_REQUIRE(m.rows() == cols_,
+                "matrices with different sizes (" + rows_ + "x" + cols_ + ", "
+                        + m.rows() + "x" + m.cols() + ") cannot be multiplied");
+        int mc = m.cols();
+        double[] b = m.dataRef();
+        double[] c = new double[rows_ * mc];
+        for (int i = 0; i < rows_; i++) {
+            int[] ci = colIdx_[i];
+            double[] vi = values_[i];
+            for (int k = 0; k < rowNnz_[i]; k++) {
+                double a = vi[k];
+                int bp = ci[k] * mc;
+                for (int j = 0; j < mc; j++) {
+                    c[i * mc + j] += a * b[bp + j];
+                }
+            }
+        }
+        return Matrix.wrap(c, rows_, mc);
+    }
+
+    //! y = A x
+    public Array multiply(Array x) {
+        QL_REQUIRE(x.size() == cols_,
+                "vectors and sparse matrices with different sizes ("
+                        + x.size() + ", " + rows_ + "x" + cols_ + ") cannot be multiplied");
+        double[] xs = x.dataRef();
+        double[] y = new double[rows_];
+        for (int i = 0; i < rows_; i++) {
+            int[] ci = colIdx_[i];
+            double[] vi = values_[i];
+            double s = 0.0;
+            for (int k = 0; k < rowNnz_[i]; k++) {
+                s += vi[k] * xs[ci[k]];
+            }
+            y[i] = s;
+        }
+        return Array.wrap(y);
+    }
+
+    //! compressed copy of the current content
+    public CsrMatrix toCsr() {
+        int[] rowPtr = new int[rows_ + 1];
+        for (int i = 0; i < rows_; i++) {
+            rowPtr[i + 1] = rowPtr[i] + rowNnz_[i];
+        }
+        int[] idx = new int[rowPtr[rows_]];
+        double[] val = new double[rowPtr[rows_]];
+        for (int i = 0; i < rows_; i++) {
+            if (rowNnz_[i] > 0) {
+                System.arraycopy(colIdx_[i], 0, idx, rowPtr[i], rowNnz_[i]);
+                System.arraycopy(values_[i], 0, val, rowPtr[i], rowNnz_[i]);
+            }
+        }
+        return new CsrMatrix(rows_, cols_, rowPtr, idx, val);
+    }
+
+    private int find(int row, int col) {
+        if (colIdx_[row] == null) {
+            return -1;
+        }
+        return Arrays.binarySearch(colIdx_[row], 0, rowNnz_[row], col);
+    }
+
+    private void insert(int row, int pos, int col, double value) {
+        int n = rowNnz_[row];
+        if (colIdx_[row] == null) {
+            colIdx_[row] = new int[4];
+            values_[row] = new double[4];
+        } else if (n == colIdx_[row].length) {
+            colIdx_[row] = Arrays.copyOf(colIdx_[row], 2 * n);
+            values_[row] = Arrays.copyOf(values_[row], 2 * n);
+        }
+        int[] ci = colIdx_[row];
+        double[] vi = values_[row];
+        System.arraycopy(ci, pos, ci, pos + 1, n - pos);
+        System.arraycopy(vi, pos, vi, pos + 1, n - pos);
+        ci[pos] = col;
+        vi[pos] = value;
+        rowNnz_[row] = n + 1;
+    }
+
+    private void remove(int row, int pos) {
+        int n = rowNnz_[row];
+        System.arraycopy(colIdx_[row], pos + 1, colIdx_[row], pos, n - pos - 1);
+        System.arraycopy(values_[row], pos + 1, values_[row], pos, n - pos - 1);
+        rowNnz_[row] = n - 1;
+    }
+
+    private void checkIndex(int row, int col) {
+        if (row < 0 || row >= rows_ || col < 0 || col >= cols_)
+            QL_FAIL("index (" + row + "," + col + ") out of bound for " + rows_ + "x" + cols_ + " matrix");
     }
 }
@@ -102,7 +102,7 @@ public class Qrfact {
         for (j = 0; j < minmn; j++) {
             if (params.pivot == 0) {
                 L40();
-                return;
+                continue;
             }
 
             /*
@@ -115,7 +115,7 @@ public class Qrfact {
             }
             if (kmax == j) {
                 L40();
-                return;
+                continue;
             }
 
             ij = params.m * j;
@@ -1,5 +1,6 @@
 package jquant.math.randomnumbers;
 
+import jquant.math.randomnumbers.impl.BlockRng;
 import jquant.math.randomnumbers.impl.RngImpl;
 import jquant.methods.montecarlo.SampleReal;
 
@@ -15,7 +16,7 @@ import jquant.methods.montecarlo.SampleReal;
  *       RNG::sample_type RNG::next() const;
  *   \endcode
  */
-public class BoxMullerGaussianRng {
+public class BoxMullerGaussianRng implements BlockRng {
     private RngImpl uniformGenerator_;
     private boolean returnFirst_ = true;
     private double firstValue_,secondValue_;
@@ -55,4 +56,33 @@ public class BoxMullerGaussianRng {
             return new SampleReal(secondValue_, weight_);
         }
     }
+
+    //! fills out with the values next() would return, two deviates per polar draw
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        int i = offset;
+        final int end = offset + len;
+        if (!returnFirst_ && i < end) {
+            out[i++] = secondValue_;
+            returnFirst_ = true;
+        }
+        while (i < end) {
+            double x1, x2, r;
+            do {
+                x1 = uniformGenerator_.nextReal() * 2.0 - 1.0;
+                x2 = uniformGenerator_.nextReal() * 2.0 - 1.0;
+                r = x1 * x1 + x2 * x2;
+            } while (r >= 1.0 || r == 0.0);
+            double ratio = Math.sqrt(-2.0 * Math.log(r) / r);
+            out[i++] = x1 * ratio;
+            if (i < end) {
+                out[i++] = x2 * ratio;
+            } else {
+                firstValue_ = x1 * ratio;
+                secondValue_ = x2 * ratio;
+                weight_ = 1.0;
+                returnFirst_ = false;
+            }
+        }
+    }
 }
@@ -1,11 +1,12 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.randomnumbers.impl.RandomUtil;
 import jquant.methods.montecarlo.SampleVector;
 import jquant.models.marketmodels.browniangenerators.Burley2020SobolBrownianGenerator;
 import jquant.models.marketmodels.browniangenerators.SobolBrownianGenerator;
 
+import java.util.Arrays;
+
 import static jquant.models.marketmodels.browniangenerators.SobolBrownianGeneratorBase.Ordering.Diagonal;
 
 public class Burley2020SobolBrownianBridgeRsg {
@@ -27,7 +28,7 @@ public class Burley2020SobolBrownianBridgeRsg {
                                             long seed,
                                             SobolRsg.DirectionIntegers directionIntegers,
                                             long scrambleSeed) {
-        seq_ = new SampleVector(CommonUtil.ArrayInit(factors * steps, 0d), 1.0);
+        seq_ = new SampleVector(factors * steps, 1.0);
         gen_ = new Burley2020SobolBrownianGenerator(factors, steps, ordering, seed, directionIntegers, scrambleSeed);
     }
 
@@ -48,7 +49,7 @@ public class Burley2020SobolBrownianBridgeRsg {
         Burley2020SobolBrownianBridgeRsg rsg = new Burley2020SobolBrownianBridgeRsg(2,3,
                 Diagonal,42, SobolRsg.DirectionIntegers.JoeKuoD7, 43);
         for (int i = 0; i < 10; i++) {
-            System.out.println(rsg.nextSequence().value);
+            System.out.println(Arrays.toString(rsg.nextSequence().value));
         }
 
     }
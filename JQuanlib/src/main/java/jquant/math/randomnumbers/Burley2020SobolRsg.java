@@ -1,12 +1,10 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.randomnumbers.impl.RandomUtil;
-import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.math.randomnumbers.impl.SkippableUsg;
 import jquant.methods.montecarlo.SampleVector;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 
@@ -15,15 +13,15 @@ import static jquant.math.CommonUtil.QL_REQUIRE;
  * ! Reference: Brent Burley: Practical Hash-based Owen Scrambling,
  * Journal of Computer Graphics Techniques, Vol. 9, No. 4, 2020
  */
-public class Burley2020SobolRsg implements UsgImpl {
+public class Burley2020SobolRsg implements SkippableUsg<Burley2020SobolRsg> {
     private int dimensionality_;
     private long seed_;
     private SobolRsg.DirectionIntegers directionIntegers_;
     private SobolRsg sobolRsg_;
-    private List<Long> integerSequence_;
+    private long[] integerSequence_;
     private SampleVector sequence_;
     private int nextSequenceCounter_;
-    private List<Integer> group4Seeds_;
+    private int[] group4Seeds_;
 
     /**
      *
@@ -39,49 +37,66 @@ public class Burley2020SobolRsg implements UsgImpl {
         dimensionality_ = dimensionality;
         seed_ = seed;
         directionIntegers_ = directionIntegers;
-        integerSequence_ = CommonUtil.ArrayInit(dimensionality);
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality,0d), 1.0);
-        reset();
-        group4Seeds_ = CommonUtil.ArrayInit((dimensionality_ - 1) / 4 + 1);
+        integerSequence_ = new long[dimensionality];
+        sequence_ = new SampleVector(dimensionality, 1.0);
+        sobolRsg_ = new SobolRsg(dimensionality_, seed_, directionIntegers_, false);
+        group4Seeds_ = new int[(dimensionality_ - 1) / 4 + 1];
         MersenneTwisterUniformRng mt = new MersenneTwisterUniformRng(scrambleSeed);
-        group4Seeds_.replaceAll(ignored -> (int) mt.nextInt32());
-        integerSequence_ = new ArrayList<>();
+        for (int k = 0; k < group4Seeds_.length; k++) {
+            group4Seeds_[k] = (int) mt.nextInt32();
+        }
     }
 
-    public final List<Long> skipTo(int n) {
-        reset();
-        for (int k = 0; k < n + 1; ++k) {
-            nextInt32Sequence();
-        }
-        return integerSequence_;
+    private Burley2020SobolRsg(Burley2020SobolRsg other, int draw) {
+        dimensionality_ = other.dimensionality_;
+        seed_ = other.seed_;
+        directionIntegers_ = other.directionIntegers_;
+        integerSequence_ = new long[dimensionality_];
+        sequence_ = new SampleVector(dimensionality_, 1.0);
+        // the unscrambled generator is only used through skipTo, so a fresh buffer is enough
+        sobolRsg_ = other.sobolRsg_.startingAt(0);
+        group4Seeds_ = other.group4Seeds_;
+        nextSequenceCounter_ = draw;
+    }
+
+    //! generator positioned at the given draw, sharing the scrambling seeds
+    @Override
+    public Burley2020SobolRsg startingAt(int draw) {
+        QL_REQUIRE(draw >= 0, "negative draw index");
+        return new Burley2020SobolRsg(this, draw);
     }
 
-    public final List<Long> nextInt32Sequence() {
-        int n = RandomUtil.nested_uniform_scramble(nextSequenceCounter_, group4Seeds_.get(0));
-        List<Long> seq = sobolRsg_.skipTo(n);
-        integerSequence_.addAll(seq);
+    //! draws are independent of each other, so skipping is a single draw
+    public final long[] skipTo(int n) {
+        nextSequenceCounter_ = n;
+        return nextInt32Sequence();
+    }
+
+    //! the unsigned 32-bit integers of the next draw; the buffer is reused by later draws
+    public final long[] nextInt32Sequence() {
+        int n = RandomUtil.nested_uniform_scramble(nextSequenceCounter_, group4Seeds_[0]);
+        final long[] seq = sobolRsg_.skipTo(n);
+        final long[] out = integerSequence_;
         int i = 0, group = 0;
         do {
-            long seed = group4Seeds_.get(group++);
+            long seed = group4Seeds_[group++];
             for (int g = 0; g < 4 && i < dimensionality_; ++g, ++i) {
                 seed = RandomUtil.local_hash_combine(seed, g);
-                long l = integerSequence_.get(i);
-                integerSequence_.set(i,
-                        RandomUtil.nested_uniform_scramble((int)l, (int) seed) & 0xFFFFFFFFL) ;
+                out[i] = RandomUtil.nested_uniform_scramble((int) seq[i], (int) seed) & 0xFFFFFFFFL;
             }
         } while (i < dimensionality_);
         QL_REQUIRE(++nextSequenceCounter_ != 0,
                 "Burley2020SobolRsg::nextIn32Sequence(): period exceeded");
-        integerSequence_.replaceAll(aLong -> aLong & 0xFFFFFFFFL);
-        return integerSequence_;
+        return out;
     }
 
     @Override
     public final SampleVector nextSequence() {
-        final List<Long> v = nextInt32Sequence();
+        final long[] v = nextInt32Sequence();
+        final double[] out = sequence_.value;
         // normalize to get a double in (0,1)
         for (int k = 0; k < dimensionality_; ++k) {
-            sequence_.value.set(k, (double) (v.get(k)) / 4294967296.0);
+            out[k] = v[k] / 4294967296.0;
         }
         return sequence_;
     }
@@ -92,15 +107,10 @@ public class Burley2020SobolRsg implements UsgImpl {
     public int dimension() { return dimensionality_; }
 
 
-    private void reset() {
-        sobolRsg_ = new SobolRsg(dimensionality_, seed_, directionIntegers_, false);
-        nextSequenceCounter_ = 0;
-    }
-
     public static void main(String[] args) {
         Burley2020SobolRsg rsg = new Burley2020SobolRsg(3, 42, SobolRsg.DirectionIntegers.Jaeckel, 43);
         for (int i = 0; i < 10; i++) {
-            System.out.println(rsg.nextInt32Sequence());
+            System.out.println(Arrays.toString(rsg.nextInt32Sequence()));
         }
     }
 }
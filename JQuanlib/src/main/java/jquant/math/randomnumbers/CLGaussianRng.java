@@ -1,5 +1,6 @@
 package jquant.math.randomnumbers;
 
+import jquant.math.randomnumbers.impl.BlockRng;
 import jquant.math.randomnumbers.impl.RngImpl;
 import jquant.methods.montecarlo.SampleReal;
 
@@ -15,7 +16,7 @@ import jquant.methods.montecarlo.SampleReal;
  * RNG::sample_type RNG::next() const;
  * \endcode
  */
-public class CLGaussianRng {
+public class CLGaussianRng implements BlockRng {
     private RngImpl uniformGenerator_;
 
     public CLGaussianRng(RngImpl uniformGenerator) {
@@ -34,4 +35,15 @@ public class CLGaussianRng {
         }
         return new SampleReal(gaussPoint, gaussWeight);
     }
+
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            double gaussPoint = -6.0;
+            for (int k = 1; k <= 12; k++) {
+                gaussPoint += uniformGenerator_.nextReal();
+            }
+            out[i] = gaussPoint;
+        }
+    }
 }
@@ -1,13 +1,10 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.PrimeNumbers;
 import jquant.methods.montecarlo.SampleVector;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
-import static jquant.math.CommonUtil.ArrayInit;
 import static jquant.math.CommonUtil.QL_REQUIRE;
 
 /**
@@ -26,22 +23,22 @@ public class FaureRsg {
     private int dimensionality_;
     // mutable unsigned Integer sequenceCounter_;
     private SampleVector sequence_;
-    private List<Integer> integerSequence_;
-    private List<Integer> bary_;
-    private List<List<Integer>> gray_;
+    private int[] integerSequence_;
+    private int[] bary_;
+    private int[][] gray_;
     private int base_, mbit_;
-    private List<List<Integer>> powBase_;
-    private List<Integer> addOne_;
-    private List<List<List<Integer>>> pascal3D;
+    private int[][] powBase_;
+    private int[] addOne_;
+    // pascal3D[k][i] has k+1 entries
+    private int[][][] pascal3D;
     private double normalizationFactor_;
 
     public FaureRsg(int dimensionality) {
         dimensionality_ = dimensionality;
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality, 0d), 1d);
-        integerSequence_ = CommonUtil.ArrayInit(dimensionality, 0);
+        sequence_ = new SampleVector(dimensionality, 1d);
+        integerSequence_ = new int[dimensionality];
         QL_REQUIRE(dimensionality > 0,
                 "dimensionality must be greater than 0");
-
         // base is the lowest prime number >= dimensionality_
         int i, j, k = 1;
         base_ = 2;
@@ -49,57 +46,42 @@ public class FaureRsg {
             base_ = (int) PrimeNumbers.get(k);
             k++;
         }
-
-
         mbit_ = (int) (Math.log(Integer.MAX_VALUE) / Math.log((double) base_));
-        gray_ = new ArrayList<>();
-        for (int l = 0; l < dimensionality_; l++) {
-            gray_.add(CommonUtil.ArrayInit(mbit_ + 1, 0));
-        }
-        bary_ = CommonUtil.ArrayInit(mbit_ + 1, 0);
+        gray_ = new int[dimensionality_][mbit_ + 1];
+        bary_ = new int[mbit_ + 1];
 
         //setMatrixValues();
-        powBase_ = new ArrayList<>();
-        for (int l = 0; l < mbit_; l++) {
-            powBase_.add(CommonUtil.ArrayInit(2 * base_ - 1, 0));
-        }
-        powBase_.get(mbit_ - 1).set(base_, 1);
+        powBase_ = new int[mbit_][2 * base_ - 1];
+        powBase_[mbit_ - 1][base_] = 1;
         for (int i2 = mbit_ - 2; i2 >= 0; --i2)
-            powBase_.get(i2).set(base_, powBase_.get(i2 + 1).get(base_) * base_);
-        for (int ii = 0; ii < (int) mbit_; ii++) {
-            for (int j1 = base_ + 1; j1 < 2 * (int) base_ - 1; j1++)
-                powBase_.get(ii).set(j1, powBase_.get(ii).get(j1 - 1) + powBase_.get(ii).get(base_));
+            powBase_[i2][base_] = powBase_[i2 + 1][base_] * base_;
+        for (int ii = 0; ii < mbit_; ii++) {
+            for (int j1 = base_ + 1; j1 < 2 * base_ - 1; j1++)
+                powBase_[ii][j1] = powBase_[ii][j1 - 1] + powBase_[ii][base_];
             for (int j2 = base_ - 1; j2 >= 0; --j2)
-                powBase_.get(ii).set(j2, powBase_.get(ii).get(j2 + 1) - powBase_.get(ii).get(base_));
+                powBase_[ii][j2] = powBase_[ii][j2 + 1] - powBase_[ii][base_];
         }
 
-        addOne_ = CommonUtil.ArrayInit(base_);
+        addOne_ = new int[base_];
         for (j = 0; j < base_; j++)
-            addOne_.set(j, (Integer) (j + 1) % base_);
-
+            addOne_[j] = (j + 1) % base_;
 
         //setPascalMatrix();
-        pascal3D = new ArrayList<>();
+        pascal3D = new int[mbit_][][];
         for (k = 0; k < mbit_; k++) {
-            List<List<Integer>> mm = new ArrayList<>();
-            for (int l = 0; l < dimensionality_ + 1; l++) {
-                mm.add(ArrayInit(k + 1, 0));
-            }
-            pascal3D.add(mm);
-            pascal3D.get(k).get(0).set(k, 1);
-            pascal3D.get(k).get(1).set(0, 1);
-            pascal3D.get(k).get(1).set(k, 1);
+            pascal3D[k] = new int[dimensionality_ + 1][k + 1];
+            pascal3D[k][0][k] = 1;
+            pascal3D[k][1][0] = 1;
+            pascal3D[k][1][k] = 1;
         }
-
         int p1, p2;
         for (k = 2; k < mbit_; k++) {
             for (i = 1; i < k; i++) {
-                p1 = pascal3D.get(k - 1).get(1).get(i - 1);
-                p2 = pascal3D.get(k - 1).get(1).get(i);
-                pascal3D.get(k).get(1).set(i, (p1 + p2) % base_);
+                p1 = pascal3D[k - 1][1][i - 1];
+                p2 = pascal3D[k - 1][1][i];
+                pascal3D[k][1][i] = (p1 + p2) % base_;
             }
         }
-
         int fact = 1, diag;
         for (j = 2; j < dimensionality_; j++) {
             for (int kk = mbit_ - 1; kk >= 0; --kk) {
@@ -109,31 +91,28 @@ public class FaureRsg {
                 else
                     fact = (fact * j) % base_;
                 for (int ii = 0; ii <= kk; ii++)
-                    pascal3D.get((int) (diag + ii)).get(j).set((int) (ii), (fact *
-                            pascal3D.get((int) (diag + ii)).get(1).get((int) (ii))) % base_);
+                    pascal3D[diag + ii][j][ii] = (fact * pascal3D[diag + ii][1][ii]) % base_;
             }
         }
 
-
-        normalizationFactor_ = (double) base_ * (double) powBase_.get(0).get(base_);
-        // std::cout << IntegerFormatter::toString(dimensionality_) << ", " ;
-        // std::cout << IntegerFormatter::toString(normalizationFactor_);
-        // std::cout << std::endl;
+        normalizationFactor_ = (double) base_ * (double) powBase_[0][base_];
     }
 
-    public final List<Integer> nextIntSequence() {
+    //! the buffer is reused by later draws
+    public final int[] nextIntSequence() {
         generateNextIntSequence();
         return integerSequence_;
     }
 
-    public final List<Integer> lastIntSequence() {
+    public final int[] lastIntSequence() {
         return integerSequence_;
     }
 
     public final SampleVector nextSequence() {
         generateNextIntSequence();
+        final double[] out = sequence_.value;
         for (int i = 0; i < dimensionality_; i++)
-            sequence_.value.set(i, integerSequence_.get(i) / normalizationFactor_);
+            out[i] = integerSequence_[i] / normalizationFactor_;
         return sequence_;
     }
 
@@ -147,27 +126,29 @@ public class FaureRsg {
 
     private void generateNextIntSequence() {
         // sequenceCounter_++;
-
         int bit = 0;
-        int l = bary_.get(bit);
-        bary_.set(bit, addOne_.get((int) l));
-        while (bary_.get(bit) == 0) {
+        bary_[bit] = addOne_[bary_[bit]];
+        while (bary_[bit] == 0) {
             bit++;
-            l = bary_.get(bit);
-            bary_.set(bit, addOne_.get((int) l));
+            bary_[bit] = addOne_[bary_[bit]];
         }
         QL_REQUIRE(bit != mbit_,
                 "Error processing Faure sequence.");
 
+        final int[][] pascal = pascal3D[bit];
         int tmp, g1, g2;
         for (int i = 0; i < dimensionality_; i++) {
+            final int[] gi = gray_[i];
+            final int[] pi = pascal[i];
+            int seq = integerSequence_[i];
             for (int j = 0; j <= bit; j++) {
-                tmp = gray_.get(i).get(j);
-                gray_.get(i).set(j, (pascal3D.get(bit).get(i).get(j) + tmp) % base_);
-                g1 = gray_.get(i).get(j);
+                tmp = gi[j];
+                gi[j] = (pi[j] + tmp) % base_;
+                g1 = gi[j];
                 g2 = base_ - 1 + g1 - tmp;
-                integerSequence_.set(i, integerSequence_.get(i) + powBase_.get(j).get((int) g2));
+                seq += powBase_[j][g2];
             }
+            integerSequence_[i] = seq;
         }
     }
 
@@ -175,7 +156,7 @@ public class FaureRsg {
         System.out.println(Math.log(Integer.MAX_VALUE));
         FaureRsg faureRsg = new FaureRsg(3);
         for (int i = 0; i < 10; i++) {
-            System.out.println(faureRsg.nextIntSequence());
+            System.out.println(Arrays.toString(faureRsg.nextIntSequence()));
         }
     }
 }
@@ -1,11 +1,9 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.PrimeNumbers;
 import jquant.methods.montecarlo.SampleVector;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 
@@ -24,8 +22,9 @@ public class HaltonRsg {
     private int dimensionality_;
     private long sequenceCounter_ = 0;
     private SampleVector sequence_;
-    private List<Long> randomStart_;
-    private List<Double> randomShift_;
+    private long[] randomStart_;
+    private double[] randomShift_;
+    private long[] bases_;
 
     /**
      * @param dimensionality dimension
@@ -38,9 +37,9 @@ public class HaltonRsg {
                      boolean randomStart,
                      boolean randomShift) {
         dimensionality_ = dimensionality;
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality), 1.0);
-        randomStart_ = CommonUtil.ArrayInit(dimensionality, 0L);
-        randomShift_ = CommonUtil.ArrayInit(dimensionality, 0.0);
+        sequence_ = new SampleVector(dimensionality, 1.0);
+        randomStart_ = new long[dimensionality];
+        randomShift_ = new double[dimensionality];
         QL_REQUIRE(dimensionality>0,
                 "dimensionality must be greater than 0");
 
@@ -48,26 +47,31 @@ public class HaltonRsg {
             RandomSequenceGenerator uniformRsg = new RandomSequenceGenerator(dimensionality_,
                     RandomSequenceGenerator.RNG.MersenneTwisterUniformRng, seed);
             if (randomStart)
-                randomStart_ = uniformRsg.nextInt32Sequence();
+                randomStart_ = uniformRsg.nextInt32Sequence().clone();
             if (randomShift)
-                randomShift_ = uniformRsg.nextSequence().value;
+                randomShift_ = uniformRsg.nextSequence().value.clone();
+        }
+        bases_ = new long[dimensionality];
+        for (int i = 0; i < dimensionality; ++i) {
+            bases_[i] = PrimeNumbers.get(i);
         }
     }
 
     public SampleVector nextSequence() {
         ++sequenceCounter_;
+        final double[] out = sequence_.value;
         for (int i=0; i<dimensionality_; ++i) {
             double h = 0.0;
-            long b = PrimeNumbers.get(i);
+            long b = bases_[i];
             double f = 1.0;
-            long k = sequenceCounter_+randomStart_.get(i);
+            long k = sequenceCounter_+randomStart_[i];
             while (k != 0) {
                 f /= b;
                 h += (k%b)*f;
                 k /= b;
             }
-            sequence_.value.set(i, h+randomShift_.get(i));
-            sequence_.value.set(i, sequence_.value.get(i) - (long)((double)sequence_.value.get(i)));
+            double x = h+randomShift_[i];
+            out[i] = x - (long) x;
         }
         return sequence_;
     }
@@ -81,7 +85,7 @@ public class HaltonRsg {
     public static void main(String[] args) {
         HaltonRsg rsg = new HaltonRsg(3, 0, true, false);
         for (int i = 0; i < 10; i++) {
-            System.out.println(rsg.nextSequence().value);
+            System.out.println(Arrays.toString(rsg.nextSequence().value));
         }
     }
 }
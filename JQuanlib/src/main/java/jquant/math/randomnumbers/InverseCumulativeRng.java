@@ -1,6 +1,7 @@
 package jquant.math.randomnumbers;
 
 import jquant.math.Function;
+import jquant.math.randomnumbers.impl.BlockRng;
 import jquant.math.randomnumbers.impl.RngImpl;
 import jquant.methods.montecarlo.SampleReal;
 
@@ -25,7 +26,7 @@ import jquant.methods.montecarlo.SampleReal;
         Real IC::operator() const;
     \endcode
 */
-public class InverseCumulativeRng {
+public class InverseCumulativeRng implements BlockRng {
     private RngImpl uniformGenerator_;
     private Function ICND_;
 
@@ -39,4 +40,13 @@ public class InverseCumulativeRng {
         SampleReal sample = uniformGenerator_.next();
         return new SampleReal(ICND_.value(sample.value), sample.weight);
     }
+
+    //! draws the uniforms in bulk, then inverts them in place
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        uniformGenerator_.nextBlock(out, offset, len);
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = ICND_.value(out[i]);
+        }
+    }
 }
@@ -1,7 +1,7 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.Function;
+import jquant.math.distributions.InverseCumulativeNormal;
 import jquant.math.randomnumbers.impl.UsgImpl;
 import jquant.methods.montecarlo.SampleVector;
 
@@ -27,35 +27,70 @@ import jquant.methods.montecarlo.SampleVector;
         Real IC::operator() const;
     \endcode
 */
-public class InverseCumulativeRsg {
+public class InverseCumulativeRsg implements UsgImpl {
     private UsgImpl uniformSequenceGenerator_;
     private int dimension_;
     private SampleVector x_;
     private Function ICD_;
+    // typed handle on the usual inverse normal, so the hot loop is a direct call
+    private InverseCumulativeNormal inverseNormal_;
 
     public InverseCumulativeRsg(UsgImpl usg) {
         uniformSequenceGenerator_ = usg;
         dimension_ = uniformSequenceGenerator_.dimension();
-        x_ = new SampleVector(CommonUtil.ArrayInit(dimension_, 0d), 1.0);
+        x_ = new SampleVector(dimension_, 1.0);
+        ICD_ = inverseNormal_ = new InverseCumulativeNormal();
     }
 
     public InverseCumulativeRsg(UsgImpl usg, Function inverseCum) {
         uniformSequenceGenerator_ = usg;
         dimension_ = uniformSequenceGenerator_.dimension();
-        x_ = new SampleVector(CommonUtil.ArrayInit(dimension_, 0d), 1.0);
+        x_ = new SampleVector(dimension_, 1.0);
         ICD_ = inverseCum;
+        if (inverseCum instanceof InverseCumulativeNormal) {
+            inverseNormal_ = (InverseCumulativeNormal) inverseCum;
+        }
     }
 
     //! returns next sample from the inverse cumulative distribution
+    @Override
     public final SampleVector nextSequence() {
         SampleVector sample = uniformSequenceGenerator_.nextSequence();
         x_.weight = sample.weight;
-        for (int i = 0; i < dimension_; i++) {
-            x_.value.set(i, ICD_.value(sample.value.get(i)));
+        final double[] u = sample.value, x = x_.value;
+        if (inverseNormal_ != null) {
+            for (int i = 0; i < dimension_; i++) {
+                x[i] = inverseNormal_.value(u[i]);
+            }
+        } else {
+            for (int i = 0; i < dimension_; i++) {
+                x[i] = ICD_.value(u[i]);
+            }
         }
         return x_;
     }
 
+    //! draws the next uniform sequence and overwrites it with the deviates
+    /*! Skips the copy into the generator's own buffer; the returned sample
+        is the one owned by the uniform generator, so lastSequence() is not
+        updated.
+    */
+    public final SampleVector nextSequenceInPlace() {
+        SampleVector sample = uniformSequenceGenerator_.nextSequence();
+        final double[] u = sample.value;
+        if (inverseNormal_ != null) {
+            for (int i = 0; i < dimension_; i++) {
+                u[i] = inverseNormal_.value(u[i]);
+            }
+        } else {
+            for (int i = 0; i < dimension_; i++) {
+                u[i] = ICD_.value(u[i]);
+            }
+        }
+        return sample;
+    }
+
     public final SampleVector lastSequence() { return x_; }
+    @Override
     public int dimension() { return dimension_; }
 }
@@ -1,9 +1,9 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
+import jquant.math.randomnumbers.impl.BlockRng;
 import jquant.methods.montecarlo.SampleReal;
 
-import java.util.List;
+import java.util.Arrays;
 
 //! Uniform random number generator
 /*! Random number generator by Knuth.
@@ -17,77 +17,100 @@ import java.util.List;
           structures used, which were converted to their standard C++
           equivalents.
 */
-public class KnuthUniformRng {
+public class KnuthUniformRng implements BlockRng {
     private static final int KK = 100, LL = 37, TT = 70, QUALITY = 1009;
-    private List<Double> ranf_arr_buf;
+    private final double[] ranf_arr_buf;
     private int ranf_arr_ptr, ranf_arr_sentinel;
-    private List<Double> ran_u;
+    private final double[] ran_u;
 
     /**! if the given seed is 0, a random seed will be chosen
             based on clock() */
     public KnuthUniformRng(long seed) {
-        ranf_arr_buf = CommonUtil.ArrayInit(QUALITY, Double.NaN);
-        ran_u = CommonUtil.ArrayInit(QUALITY, Double.NaN);
-        ranf_arr_ptr = ranf_arr_sentinel = ranf_arr_buf.size();
+        ranf_arr_buf = new double[QUALITY];
+        ran_u = new double[QUALITY];
+        Arrays.fill(ranf_arr_buf, Double.NaN);
+        Arrays.fill(ran_u, Double.NaN);
+        ranf_arr_ptr = ranf_arr_sentinel = ranf_arr_buf.length;
         ranf_start(seed != 0 ? seed : SeedGenerator.INSTANCE.get());
     }
     /**! returns a sample with weight 1.0 containing a random number
           uniformly chosen from (0.0,1.0) */
     public SampleReal next() {
-        double result = (ranf_arr_ptr != ranf_arr_sentinel ?
-                ranf_arr_buf.get(ranf_arr_ptr++) :
+        return new SampleReal(nextReal(), 1.0);
+    }
+
+    //! the value of next() without the sample object
+    public double nextReal() {
+        return (ranf_arr_ptr != ranf_arr_sentinel ?
+                ranf_arr_buf[ranf_arr_ptr++] :
                 ranf_arr_cycle());
-        return new SampleReal(result, 1.0);
+    }
+
+    //! fills out with consecutive draws, copying whole cycles of the lagged buffer
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        int i = offset;
+        final int end = offset + len;
+        while (i < end) {
+            if (ranf_arr_ptr == ranf_arr_sentinel) {
+                out[i++] = ranf_arr_cycle();
+                continue;
+            }
+            int n = Math.min(ranf_arr_sentinel - ranf_arr_ptr, end - i);
+            System.arraycopy(ranf_arr_buf, ranf_arr_ptr, out, i, n);
+            ranf_arr_ptr += n;
+            i += n;
+        }
     }
 
     private void ranf_start(long seed) {
         int t, s, j;
-        List<Double> u = CommonUtil.ArrayInit(KK + KK - 1, Double.NaN);
-        List<Double> ul = CommonUtil.ArrayInit(KK + KK - 1, Double.NaN);
+        double[] u = new double[KK + KK - 1];
+        double[] ul = new double[KK + KK - 1];
         double ulp = (1.0 / (1L << 30)) / (1L << 22);                // 2 to the -52
         double ss = 2.0 * ulp * ((seed & 0x3fffffff) + 2);
 
         for (j = 0; j < KK; j++) {
-            u.set(j, ss);
-            ul.set(j, 0.0);                    // bootstrap the buffer
+            u[j] = ss;
+            ul[j] = 0.0;                    // bootstrap the buffer
             ss += ss;
             if (ss >= 1.0) ss -= 1.0 - 2 * ulp; // cyclic shift of 51 bits
         }
         for (; j < KK + KK - 1; j++) {
-            u.set(j, 0d);
-            ul.set(j, 0.0);
+            u[j] = 0d;
+            ul[j] = 0.0;
         }
-        u.set(1, u.get(1) + ulp);
-        ul.set(1, ulp);            // make u[1] (and only u[1]) "odd"
+        u[1] = u[1] + ulp;
+        ul[1] = ulp;            // make u[1] (and only u[1]) "odd"
         s = (int) (seed & 0x3fffffff);
         t = TT - 1;
         while (t != 0) {
             for (j = KK - 1; j > 0; --j) {
-                ul.set(j + j, ul.get(j));
-                u.set(j + j, u.get(j));
+                ul[j + j] = ul[j];
+                u[j + j] = u[j];
             }   // "square"
             for (j = KK + KK - 2; j > KK - LL; j -= 2) {
-                ul.set(KK + KK - 1 - j, 0.0);
-                u.set(KK + KK - 1 - j, u.get(j) - ul.get(j));
+                ul[KK + KK - 1 - j] = 0.0;
+                u[KK + KK - 1 - j] = u[j] - ul[j];
             }
             for (j = KK + KK - 2; j >= KK; --j) {
-                if (ul.get(j) != 0.0) {
-                    ul.set(j - (KK - LL), ulp - ul.get(j - (KK - LL)));
-                    u.set(j - (KK - LL), mod_sum(u.get(j - (KK - LL)), u.get(j)));
-                    ul.set(j - KK, ulp - ul.get(j - KK));
-                    u.set(j - KK, mod_sum(u.get(j - KK), u.get(j)));
+                if (ul[j] != 0.0) {
+                    ul[j - (KK - LL)] = ulp - ul[j - (KK - LL)];
+                    u[j - (KK - LL)] = mod_sum(u[j - (KK - LL)], u[j]);
+                    ul[j - KK] = ulp - ul[j - KK];
+                    u[j - KK] = mod_sum(u[j - KK], u[j]);
                 }
             }
             if (is_odd(s)) {                            // "multiply by z"
                 for (j = KK; j > 0; --j) {
-                    ul.set(j, ul.get(j - 1));
-                    u.set(j, u.get(j - 1));
+                    ul[j] = ul[j - 1];
+                    u[j] = u[j - 1];
                 }
-                ul.set(0, ul.get(KK));
-                u.set(0, u.get(KK));    // shift the buffer cyclically
-                if (ul.get(KK) != 0.0) {
-                    ul.set(LL, ulp - ul.get(LL));
-                    u.set(LL, mod_sum(u.get(LL), u.get(KK)));
+                ul[0] = ul[KK];
+                u[0] = u[KK];    // shift the buffer cyclically
+                if (ul[KK] != 0.0) {
+                    ul[LL] = ulp - ul[LL];
+                    u[LL] = mod_sum(u[LL], u[KK]);
                 }
             }
             if (s != 0)
@@ -96,10 +119,10 @@ public class KnuthUniformRng {
                 t--;
         }
         for (j = 0; j < LL; j++) {
-            ran_u.set(j + KK - LL, u.get(j));
+            ran_u[j + KK - LL] = u[j];
         }
         for (; j < KK; j++) {
-            ran_u.set(j - LL, u.get(j));
+            ran_u[j - LL] = u[j];
         }
     }
 
@@ -111,20 +134,20 @@ public class KnuthUniformRng {
         return (s & 1) != 0;
     }
 
-    private void ranf_array(List<Double> aa,
+    private void ranf_array(double[] aa,
                             int n) {
         int i, j;
-        for (j = 0; j < KK; j++) aa.set(j, ran_u.get(j));
-        for (; j < n; j++) aa.set(j, mod_sum(aa.get(j - KK), aa.get(j - LL)));
-        for (i = 0; i < LL; i++, j++) ran_u.set(i, mod_sum(aa.get(j - KK), aa.get(j - LL)));
-        for (; i < KK; i++, j++) ran_u.set(i, mod_sum(aa.get(j - KK), ran_u.get(i - LL)));
+        for (j = 0; j < KK; j++) aa[j] = ran_u[j];
+        for (; j < n; j++) aa[j] = mod_sum(aa[j - KK], aa[j - LL]);
+        for (i = 0; i < LL; i++, j++) ran_u[i] = mod_sum(aa[j - KK], aa[j - LL]);
+        for (; i < KK; i++, j++) ran_u[i] = mod_sum(aa[j - KK], ran_u[i - LL]);
     }
 
     private double ranf_arr_cycle() {
         ranf_array(ranf_arr_buf,QUALITY);
         ranf_arr_ptr = 1;
         ranf_arr_sentinel = 100;
-        return ranf_arr_buf.get(0);
+        return ranf_arr_buf[0];
     }
 
     public static void main(String[] args) {
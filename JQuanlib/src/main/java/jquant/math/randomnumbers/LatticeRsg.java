@@ -10,15 +10,15 @@ public class LatticeRsg {
     private int dimensionality_;
     private int N_;
     private long i_ = 0;
-    private List<Double> z_;
+    private double[] z_;
 
     private SampleVector sequence_;
 
     public LatticeRsg(int dimensionality, List<Double> z, int N) {
         dimensionality_ = dimensionality;
         N_ = N;
-        z_ = z;
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality, 0d), 1.0);
+        z_ = CommonUtil.toArray(z);
+        sequence_ = new SampleVector(dimensionality, 1.0);
     }
 
     /**
@@ -29,9 +29,10 @@ public class LatticeRsg {
     }
 
     public final SampleVector nextSequence() {
+        final double[] out = sequence_.value;
         for (int j = 0; j < dimensionality_; ++j) {
-            double theta = i_ * z_.get(j) / N_;
-            sequence_.value.set(j, Math.IEEEremainder(theta, 1.0));
+            double theta = i_ * z_[j] / N_;
+            out[j] = Math.IEEEremainder(theta, 1.0);
         }
         ++i_;
 
@@ -57,12 +58,12 @@ public class LatticeRsg {
         // 3. 生成前5个样本
         for (int i = 0; i < 5; i++) {
             SampleVector sample = rsg.nextSequence();
-            System.out.printf("第%d个样本：%s%n", i+1, sample.value);
+            System.out.printf("第%d个样本：%s%n", i+1, Arrays.toString(sample.value));
         }
 
         // 4. 跳过前100个样本，生成第106个样本
         rsg.skipTo(100);
         SampleVector sample106 = rsg.nextSequence();
-        System.out.printf("第106个样本：%s%n", sample106.value);
+        System.out.printf("第106个样本：%s%n", Arrays.toString(sample106.value));
     }
 }
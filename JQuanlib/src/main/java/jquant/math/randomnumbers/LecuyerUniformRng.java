@@ -1,10 +1,9 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
+import jquant.math.randomnumbers.impl.BlockRng;
+import jquant.math.randomnumbers.impl.SplittableRng;
 import jquant.methods.montecarlo.SampleReal;
 
-import java.util.List;
-
 import static jquant.math.MathUtils.QL_EPSILON;
 
 /**
@@ -15,11 +14,16 @@ import static jquant.math.MathUtils.QL_EPSILON;
  * For more details see Section 7.1 of Numerical Recipes in C, 2nd
  * Edition, Cambridge University Press (available at
  * http://www.nr.com/)
+ * <p>
+ * jump() advances both congruential generators by 2^40 steps with
+ * modular exponentiation and reloads the shuffle table from there, so
+ * substreams use disjoint stretches of the two underlying generators.
+ * Because of the shuffle they are not a skip of the serial stream.
  */
-public class LecuyerUniformRng {
+public class LecuyerUniformRng implements BlockRng, SplittableRng<LecuyerUniformRng> {
     private long temp1, temp2;
     private long y;
-    private List<Long> buffer;
+    private final long[] buffer;
     private static final long m1 = 2147483563L;
     private static final long a1 = 40014L;
     private static final long q1 = 53668L;
@@ -31,15 +35,27 @@ public class LecuyerUniformRng {
     private static final int bufferSize = 32;
     private static final long bufferNormalizer = 67108862L;
     private static final double maxRandom = 1.0 - QL_EPSILON;
+    private static final long jumpSteps = 1L << 40;
 
     /**
      * ! if the given seed is 0, a random seed will be chosen
      * based on clock()
      */
     public LecuyerUniformRng(long seed) {
-        buffer = CommonUtil.ArrayInit(bufferSize);
+        buffer = new long[bufferSize];
         // Need to prevent seed=0, so use seed=0 to have a "random" seed
         temp2 = temp1 = (seed != 0 ? seed : SeedGenerator.INSTANCE.get());
+        loadShuffleTable();
+    }
+
+    private LecuyerUniformRng(LecuyerUniformRng other) {
+        buffer = other.buffer.clone();
+        temp1 = other.temp1;
+        temp2 = other.temp2;
+        y = other.y;
+    }
+
+    private void loadShuffleTable() {
         // Load the shuffle table (after 8 warm-ups)
         for (int j = bufferSize + 7; j >= 0; j--) {
             long k = temp1 / q1;
@@ -47,9 +63,34 @@ public class LecuyerUniformRng {
             if (temp1 < 0)
                 temp1 += m1;
             if (j < bufferSize)
-                buffer.set(j, temp1);
+                buffer[j] = temp1;
+        }
+        y = buffer[0];
+    }
+
+    @Override
+    public LecuyerUniformRng copy() {
+        return new LecuyerUniformRng(this);
+    }
+
+    @Override
+    public void jump() {
+        temp1 = Math.floorMod(temp1, m1) * powMod(a1, jumpSteps, m1) % m1;
+        temp2 = Math.floorMod(temp2, m2) * powMod(a2, jumpSteps, m2) % m2;
+        loadShuffleTable();
+    }
+
+    // a^e mod m; all operands are below 2^31, so products fit in a long
+    private static long powMod(long a, long e, long m) {
+        long res = 1L;
+        a %= m;
+        while (e > 0) {
+            if ((e & 1L) != 0)
+                res = res * a % m;
+            a = a * a % m;
+            e >>>= 1;
         }
-        y = buffer.get(0);
+        return res;
     }
 
     /**
@@ -57,6 +98,11 @@ public class LecuyerUniformRng {
      * uniformly chosen from (0.0,1.0)
      */
     public SampleReal next() {
+        return new SampleReal(nextReal(), 1.0);
+    }
+
+    //! the value of next() without the sample object
+    public double nextReal() {
         long k = temp1 / q1;
         // Compute temp1=(a1*temp1) % m1
         // without overflows (Schrage's method)
@@ -73,15 +119,22 @@ public class LecuyerUniformRng {
         int j = (int) (y / bufferNormalizer);
         // Here temp1 is shuffled, temp1 and temp2 are
         // combined to generate output
-        y = buffer.get(j) - temp2;
-        buffer.set(j, temp1);
+        y = buffer[j] - temp2;
+        buffer[j] = temp1;
         if (y < 1)
             y += m1 - 1;
         double result = y / (double) (m1);
         // users don't expect endpoint values
         if (result > maxRandom)
             result = (double) maxRandom;
-        return new SampleReal(result, 1.0);
+        return result;
+    }
+
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = nextReal();
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,250 @@
+package jquant.math.randomnumbers;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+// 梅森旋转的跳跃: GF(2) 上的多项式运算
+/*! The state transition A of MT19937 is linear over GF(2) with a
+    characteristic polynomial P of degree 19937. Advancing by J draws is
+    A^J = g(A) with g(x) = x^J mod P, which is applied to the state with
+    about 19937 single-word steps; see Haramoto, Matsumoto, Nishimura,
+    Panneton, L'Ecuyer, "Efficient jump ahead for F2-linear random number
+    generators", INFORMS J. on Computing 20 (2008).
+
+    P itself is recovered once by Berlekamp-Massey from the output of the
+    recurrence. Polynomials are bit arrays, bit i of the array being the
+    coefficient of x^i.
+*/
+final class MersenneTwisterJump {
+    static final int N = 624;
+    static final int M = 397;
+    static final int DEGREE = 19937;
+    private static final long MATRIX_A = 0x9908b0dfL;
+    private static final long UPPER_MASK = 0x80000000L;
+    private static final long LOWER_MASK = 0x7fffffffL;
+    private static final int WORDS = DEGREE / 64 + 1;
+
+    //! number of draws skipped by MersenneTwisterUniformRng.jump()
+    static final int JUMP_LOG2 = 64;
+
+    private MersenneTwisterJump() {
+    }
+
+    private static final class Holder {
+        static final long[] CHARACTERISTIC = characteristicPolynomial();
+        // CHARACTERISTIC << b for b = 0..63, so reductions only xor whole words
+        static final long[][] SHIFTED = shiftedCopies(CHARACTERISTIC);
+        static final long[] JUMP = powerOfTwo(JUMP_LOG2);
+    }
+
+    //! x^(2^JUMP_LOG2) mod P
+    static long[] jumpPolynomial() {
+        return Holder.JUMP;
+    }
+
+    //! x^steps mod P
+    static long[] skipPolynomial(long steps) {
+        QL_REQUIRE(steps >= 0, "negative number of steps");
+        long[] g = new long[WORDS];
+        g[0] = 1L;
+        for (int b = 63 - Long.numberOfLeadingZeros(steps); b >= 0; b--) {
+            g = square(g);
+            if ((steps >>> b & 1L) != 0) {
+                g = timesX(g);
+            }
+        }
+        return g;
+    }
+
+    //! x^(2^e) mod P
+    static long[] powerOfTwo(int e) {
+        long[] g = new long[WORDS];
+        g[0] = 2L;
+        for (int k = 0; k < e; k++) {
+            g = square(g);
+        }
+        return g;
+    }
+
+    //! replaces the state block mt by g(A) mt
+    /*! mt holds N consecutive words of the recurrence starting at index 0;
+        only the upper bit of mt[0] is part of the state, its lower bits are
+        left undefined, which is fine as long as mt[0] has already been
+        consumed by the caller.
+    */
+    static void apply(long[] g, long[] mt) {
+        final long[] cur = mt.clone();
+        final long[] acc = new long[N];
+        int p = 0;
+        final int deg = degree(g);
+        for (int i = 0; i <= deg; i++) {
+            if ((g[i >>> 6] >>> (i & 63) & 1L) != 0) {
+                final int head = N - p;
+                for (int k = 0; k < head; k++) {
+                    acc[k] ^= cur[p + k];
+                }
+                for (int k = head; k < N; k++) {
+                    acc[k] ^= cur[k - head];
+                }
+            }
+            step(cur, p);
+            if (++p == N) p = 0;
+        }
+        System.arraycopy(acc, 0, mt, 0, N);
+    }
+
+    // one word of the recurrence: the state starting at p moves to p+1
+    private static void step(long[] s, int p) {
+        int p1 = p + 1 == N ? 0 : p + 1;
+        int pm = p + M >= N ? p + M - N : p + M;
+        long y = (s[p] & UPPER_MASK) | (s[p1] & LOWER_MASK);
+        s[p] = s[pm] ^ (y >>> 1) ^ (-(y & 0x1L) & MATRIX_A);
+    }
+
+    // Berlekamp-Massey on the lowest bit of consecutive words
+    private static long[] characteristicPolynomial() {
+        final int len = 2 * DEGREE + 64;
+        final int words = len / 64 + 2;
+
+        // r holds the bit sequence reversed: bit q is s_{len-1-q}
+        long[] r = new long[words + 1];
+        long[] s = new long[N];
+        s[0] = 5489L;
+        for (int i = 1; i < N; i++) {
+            s[i] = (1812433253L * (s[i - 1] ^ (s[i - 1] >>> 30)) + i) & 0xffffffffL;
+        }
+        int p = 0;
+        for (int n = 0; n < len; n++) {
+            step(s, p);
+            if ((s[p] & 1L) != 0) {
+                int q = len - 1 - n;
+                r[q >>> 6] |= 1L << (q & 63);
+            }
+            if (++p == N) p = 0;
+        }
+
+        long[] c = new long[words];
+        long[] b = new long[words];
+        long[] t = new long[words];
+        c[0] = b[0] = 1L;
+        int l = 0, m = 1;
+        for (int n = 0; n < len; n++) {
+            // d = sum_i c_i s_{n-i}, where s_{n-i} is bit o+i of r
+            final int o = len - 1 - n;
+            long d = 0L;
+            for (int w = 0; w < words; w++) {
+                d ^= c[w] & window(r, o + (w << 6));
+            }
+            if ((Long.bitCount(d) & 1) == 0) {
+                m++;
+            } else if (2 * l <= n) {
+                System.arraycopy(c, 0, t, 0, words);
+                xorShifted(c, b, m);
+                l = n + 1 - l;
+                long[] tmp = b;
+                b = t;
+                t = tmp;
+                m = 1;
+            } else {
+                xorShifted(c, b, m);
+                m++;
+            }
+        }
+        QL_REQUIRE(l == DEGREE, "unexpected linear complexity " + l + " of the Mersenne twister");
+
+        // P(x) = x^l c(1/x)
+        long[] poly = new long[WORDS];
+        for (int i = 0; i <= l; i++) {
+            if ((c[i >>> 6] >>> (i & 63) & 1L) != 0) {
+                int k = l - i;
+                poly[k >>> 6] |= 1L << (k & 63);
+            }
+        }
+        return poly;
+    }
+
+    // 64 bits of a starting at bit position pos
+    private static long window(long[] a, int pos) {
+        int w = pos >>> 6, sh = pos & 63;
+        long lo = w < a.length ? a[w] : 0L;
+        if (sh == 0) {
+            return lo;
+        }
+        long hi = w + 1 < a.length ? a[w + 1] : 0L;
+        return (lo >>> sh) | (hi << (64 - sh));
+    }
+
+    // c ^= b << m
+    private static void xorShifted(long[] c, long[] b, int m) {
+        int ws = m >>> 6, bs = m & 63;
+        for (int j = 0; j < b.length && j + ws < c.length; j++) {
+            c[j + ws] ^= b[j] << bs;
+            if (bs != 0 && j + ws + 1 < c.length) {
+                c[j + ws + 1] ^= b[j] >>> (64 - bs);
+            }
+        }
+    }
+
+    private static long[][] shiftedCopies(long[] poly) {
+        long[][] res = new long[64][WORDS + 1];
+        for (int b = 0; b < 64; b++) {
+            xorShifted(res[b], poly, b);
+        }
+        return res;
+    }
+
+    private static long[] square(long[] a) {
+        long[] sq = new long[2 * WORDS];
+        for (int j = 0; j < WORDS; j++) {
+            sq[2 * j] = spread(a[j]);
+            sq[2 * j + 1] = spread(a[j] >>> 32);
+        }
+        return reduce(sq);
+    }
+
+    private static long[] timesX(long[] a) {
+        long[] res = new long[WORDS + 1];
+        for (int j = 0; j < WORDS; j++) {
+            res[j] |= a[j] << 1;
+            res[j + 1] = a[j] >>> 63;
+        }
+        return reduce(res);
+    }
+
+    // remainder modulo P of a polynomial of degree < 2 DEGREE
+    private static long[] reduce(long[] a) {
+        final long[][] shifted = Holder.SHIFTED;
+        for (int k = a.length * 64 - 1; k >= DEGREE; k--) {
+            if ((a[k >>> 6] >>> (k & 63) & 1L) != 0) {
+                final int off = k - DEGREE;
+                final long[] q = shifted[off & 63];
+                final int ws = off >>> 6;
+                for (int j = 0; j < q.length && j + ws < a.length; j++) {
+                    a[j + ws] ^= q[j];
+                }
+            }
+        }
+        long[] res = new long[WORDS];
+        System.arraycopy(a, 0, res, 0, WORDS);
+        return res;
+    }
+
+    // bits 0..31 of x moved to the even positions
+    private static long spread(long x) {
+        x &= 0xffffffffL;
+        x = (x | (x << 16)) & 0x0000ffff0000ffffL;
+        x = (x | (x << 8)) & 0x00ff00ff00ff00ffL;
+        x = (x | (x << 4)) & 0x0f0f0f0f0f0f0f0fL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    private static int degree(long[] g) {
+        for (int w = g.length - 1; w >= 0; w--) {
+            if (g[w] != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(g[w]);
+            }
+        }
+        return -1;
+    }
+}
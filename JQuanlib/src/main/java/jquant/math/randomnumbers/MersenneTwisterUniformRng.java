@@ -1,6 +1,8 @@
 package jquant.math.randomnumbers;
 
+import jquant.math.randomnumbers.impl.BlockIntRng;
 import jquant.math.randomnumbers.impl.RngImpl;
+import jquant.math.randomnumbers.impl.SplittableRng;
 import jquant.methods.montecarlo.SampleReal;
 
 import java.util.List;
@@ -13,7 +15,8 @@ import java.util.List;
     \test the correctness of the returned values is tested by
           checking them against known good results.
 */
-public class MersenneTwisterUniformRng extends RngImpl {
+public class MersenneTwisterUniformRng extends RngImpl
+        implements BlockIntRng, SplittableRng<MersenneTwisterUniformRng> {
     private static final int N = 624; // state size
     private static final int M = 397; // shift size
     private static final long MATRIX_A = 0x9908b0dfL;
@@ -50,6 +53,27 @@ public class MersenneTwisterUniformRng extends RngImpl {
         mt[0] = UPPER_MASK; /*MSB is 1; assuring non-zero initial array*/
     }
 
+    private MersenneTwisterUniformRng(MersenneTwisterUniformRng other) {
+        System.arraycopy(other.mt, 0, mt, 0, N);
+        mti = other.mti;
+    }
+
+    @Override
+    public MersenneTwisterUniformRng copy() {
+        return new MersenneTwisterUniformRng(this);
+    }
+
+    //! skips 2^64 draws
+    @Override
+    public void jump() {
+        MersenneTwisterJump.apply(MersenneTwisterJump.jumpPolynomial(), mt);
+    }
+
+    //! skips n draws, as n calls to nextInt32() would
+    public void skip(long n) {
+        MersenneTwisterJump.apply(MersenneTwisterJump.skipPolynomial(n), mt);
+    }
+
     private void seedInitialization(long seed) {
         long s = (seed != 0 ? seed : SeedGenerator.INSTANCE.get());
         mt[0]= s & 0xffffffffL;
@@ -66,24 +90,32 @@ public class MersenneTwisterUniformRng extends RngImpl {
     }
 
     private void twist() {
-        final long[] mag01={0x0L, MATRIX_A};
-        /* mag01[x] = x * MATRIX_A  for x=0,1 */
+        /* mag01[x] = x * MATRIX_A  for x=0,1, computed branch-free */
         int kk;
         long y;
 
         for (kk=0;kk<N-M;kk++) {
             y = (mt[kk]&UPPER_MASK)|(mt[kk+1]&LOWER_MASK);
-            mt[kk] = mt[kk+M] ^ (y >>> 1) ^ mag01[(int) (y & 0x1L)];
+            mt[kk] = mt[kk+M] ^ (y >>> 1) ^ (-(y & 0x1L) & MATRIX_A);
         }
         for (;kk<N-1;kk++) {
             y = (mt[kk]&UPPER_MASK)|(mt[kk+1]&LOWER_MASK);
-            mt[kk] = mt[(kk+M)-N] ^ (y >>> 1) ^ mag01[(int) (y & 0x1L)];
+            mt[kk] = mt[(kk+M)-N] ^ (y >>> 1) ^ (-(y & 0x1L) & MATRIX_A);
         }
         y = (mt[N-1]&UPPER_MASK)|(mt[0]&LOWER_MASK);
-        mt[N-1] = mt[M-1] ^ (y >>> 1) ^ mag01[(int) (y & 0x1L)];
+        mt[N-1] = mt[M-1] ^ (y >>> 1) ^ (-(y & 0x1L) & MATRIX_A);
 
         mti = 0;
     }
+
+    private static long temper(long y) {
+        y ^= (y >>> 11);
+        y ^= (y << 7) & 0x9d2c5680L;
+        y ^= (y << 15) & 0xefc60000L;
+        y ^= (y >>> 18);
+        return y;
+    }
+
     //! return a random number in the (0.0, 1.0)-interval
     public double nextReal() {
         return ((nextInt32()) + 0.5)/4294967296.0;
@@ -101,14 +133,37 @@ public class MersenneTwisterUniformRng extends RngImpl {
         if (mti==N)
             twist(); /* generate N words at a time */
 
-        long y = mt[mti++];
+        return temper(mt[mti++]);
+    }
 
-        /* Tempering */
-        y ^= (y >>> 11);
-        y ^= (y << 7) & 0x9d2c5680L;
-        y ^= (y << 15) & 0xefc60000L;
-        y ^= (y >>> 18);
-        return y;
+    //! fills out with consecutive nextReal() values, one whole state block at a time
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        int i = offset;
+        final int end = offset + len;
+        while (i < end) {
+            if (mti == N)
+                twist();
+            int n = Math.min(N - mti, end - i);
+            for (int k = 0; k < n; k++) {
+                out[i++] = (temper(mt[mti++]) + 0.5) / 4294967296.0;
+            }
+        }
+    }
+
+    //! fills out with consecutive nextInt32() values
+    @Override
+    public void nextLongs(long[] out, int offset, int len) {
+        int i = offset;
+        final int end = offset + len;
+        while (i < end) {
+            if (mti == N)
+                twist();
+            int n = Math.min(N - mti, end - i);
+            for (int k = 0; k < n; k++) {
+                out[i++] = temper(mt[mti++]);
+            }
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,76 @@
+package jquant.math.randomnumbers;
+
+import jquant.math.randomnumbers.impl.SkippableUsg;
+import jquant.utilities.ParallelFor;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! splits the first `samples` draws of a low-discrepancy sequence into contiguous blocks
+/*! Partition p covers draws [begin(p), end(p)) and gets its own generator,
+    positioned with one skip and then advanced draw by draw (by Gray code
+    for SobolRsg). The union of the partitions is exactly the point set of
+    the serial generator, so results do not depend on the number of
+    threads as long as per-partition results are combined in partition
+    order.
+*/
+public class PartitionedSobolRsg<T extends SkippableUsg<T>> {
+
+    @FunctionalInterface
+    public interface Worker<T> {
+        //! consumes draws [begin, end) from rsg
+        void run(int partition, T rsg, int begin, int end);
+    }
+
+    private final T sequence_;
+    private final int samples_;
+    private final int partitions_;
+
+    public PartitionedSobolRsg(T sequence, int samples, int partitions) {
+        QL_REQUIRE(samples >= 0, "negative number of samples");
+        QL_REQUIRE(partitions > 0, "at least one partition required");
+        sequence_ = sequence;
+        samples_ = samples;
+        partitions_ = partitions;
+    }
+
+    //! one partition per worker of the common pool
+    public PartitionedSobolRsg(T sequence, int samples) {
+        this(sequence, samples, Math.max(ParallelFor.parallelism(), 1));
+    }
+
+    public int samples() {
+        return samples_;
+    }
+
+    public int partitions() {
+        return partitions_;
+    }
+
+    public int dimension() {
+        return sequence_.dimension();
+    }
+
+    public int begin(int partition) {
+        return (int) ((long) samples_ * partition / partitions_);
+    }
+
+    public int end(int partition) {
+        return begin(partition + 1);
+    }
+
+    //! generator whose next draw is draw begin(partition) of the sequence
+    public T generator(int partition) {
+        QL_REQUIRE(partition >= 0 && partition < partitions_,
+                "partition " + partition + " out of range [0, " + partitions_ + ")");
+        return sequence_.startingAt(begin(partition));
+    }
+
+    //! runs the worker on every partition, in parallel on the common pool
+    public void forEach(Worker<T> worker) {
+        ParallelFor.range(0, partitions_, 1, (p0, p1) -> {
+            for (int p = p0; p < p1; p++) {
+                worker.run(p, generator(p), begin(p), end(p));
+            }
+        });
+    }
+}
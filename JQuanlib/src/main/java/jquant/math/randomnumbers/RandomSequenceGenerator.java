@@ -1,13 +1,9 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.randomnumbers.impl.RngImpl;
 import jquant.math.randomnumbers.impl.UsgImpl;
-import jquant.methods.montecarlo.SampleReal;
 import jquant.methods.montecarlo.SampleVector;
 
-import java.util.List;
-
 import static jquant.math.CommonUtil.QL_REQUIRE;
 
 //! Random sequence generator based on a pseudo-random number generator
@@ -34,13 +30,13 @@ public class RandomSequenceGenerator implements UsgImpl {
     private int dimensionality_;
     private RngImpl rng_;
     private SampleVector sequence_;
-    private List<Long> int32Sequence_;
+    private long[] int32Sequence_;
 
     public RandomSequenceGenerator(int dimensionality, final RngImpl rng) {
         dimensionality_ = dimensionality;
         rng_ = rng;
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality), 1.0);
-        int32Sequence_ = CommonUtil.ArrayInit(dimensionality);
+        sequence_ = new SampleVector(dimensionality, 1.0);
+        int32Sequence_ = new long[dimensionality];
         QL_REQUIRE(dimensionality>0, "dimensionality must be greater than 0");
     }
 
@@ -49,25 +45,23 @@ public class RandomSequenceGenerator implements UsgImpl {
         dimensionality_ = dimensionality;
         if (rng == RNG.MersenneTwisterUniformRng)
             rng_ = new MersenneTwisterUniformRng(seed);
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality), 1.0);
-        int32Sequence_ = CommonUtil.ArrayInit(dimensionality);
+        sequence_ = new SampleVector(dimensionality, 1.0);
+        int32Sequence_ = new long[dimensionality];
     }
 
     @Override
     public SampleVector nextSequence() {
+        // the uniform generators all produce unit weights, see BlockRng
         sequence_.weight = 1.0;
-        for (int i=0; i<dimensionality_; i++) {
-            SampleReal x = rng_.next();
-            // typename RNG::sample_type x(rng_.next());
-            sequence_.value.set(i, x.value);
-            sequence_.weight  *= x.weight;
-        }
+        rng_.nextBlock(sequence_.value, 0, dimensionality_);
         return sequence_;
     }
 
-    public List<Long> nextInt32Sequence() {
+    //! the buffer is reused by later draws
+    public long[] nextInt32Sequence() {
+        final long[] out = int32Sequence_;
         for (int i=0; i<dimensionality_; i++) {
-            int32Sequence_.set(i, rng_.nextInt32());
+            out[i] = rng_.nextInt32();
         }
         return int32Sequence_;
     }
@@ -1,6 +1,5 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.randomnumbers.impl.UsgImpl;
 import jquant.methods.montecarlo.SampleVector;
 
@@ -42,15 +41,15 @@ public class RandomizedLDS<LDS extends UsgImpl, PRS extends UsgImpl> {
         pristineldsg_ = ldsg;
         prsg_ = prsg;
         dimension_ = ldsg_.dimension();
-        x = new SampleVector(CommonUtil.ArrayInit(dimension_, 0d), 1.0);
-        randomizer_ = new SampleVector(CommonUtil.ArrayInit(dimension_, 0d), 1.0);
+        x = new SampleVector(dimension_, 1.0);
+        randomizer_ = new SampleVector(dimension_, 1.0);
 
         QL_REQUIRE(prsg_.dimension() == dimension_,
                 "generator mismatch: "
                         + dimension_ + "-dim low discrepancy "
                         + "and " + prsg_.dimension() + "-dim pseudo random");
 
-        randomizer_ = prsg_.nextSequence();
+        copyRandomizer();
     }
 
     /**
@@ -59,10 +58,10 @@ public class RandomizedLDS<LDS extends UsgImpl, PRS extends UsgImpl> {
     public final SampleVector nextSequence() {
         SampleVector sample = ldsg_.nextSequence();
         x.weight = randomizer_.weight * sample.weight;
+        final double[] r = randomizer_.value, u = sample.value, out = x.value;
         for (int i = 0; i < dimension_; i++) {
-            x.value.set(i, randomizer_.value.get(i) + sample.value.get(i));
-            if (x.value.get(i) > 1.0)
-                x.value.set(i, x.value.get(i) - 1.0);
+            double v = r[i] + u[i];
+            out[i] = v > 1.0 ? v - 1.0 : v;
         }
         return x;
     }
@@ -76,10 +75,17 @@ public class RandomizedLDS<LDS extends UsgImpl, PRS extends UsgImpl> {
      * the low discrepancy generator
      */
     public void nextRandomizer() {
-        randomizer_ = prsg_.nextSequence();
+        copyRandomizer();
         ldsg_ = pristineldsg_;
     }
 
+    // the pseudo-random generator reuses its buffer, so keep a copy
+    private void copyRandomizer() {
+        SampleVector r = prsg_.nextSequence();
+        System.arraycopy(r.value, 0, randomizer_.value, 0, dimension_);
+        randomizer_.weight = r.weight;
+    }
+
     public int dimension() {
         return dimension_;
     }
@@ -1,5 +1,7 @@
 package jquant.math.randomnumbers;
 
+import jquant.math.randomnumbers.impl.BlockIntRng;
+import jquant.math.randomnumbers.impl.BlockRng;
 import jquant.math.randomnumbers.impl.DiscardBlockEngine;
 import jquant.math.randomnumbers.impl.Ranlux64Base01;
 import jquant.methods.montecarlo.SampleReal;
@@ -17,7 +19,7 @@ import jquant.methods.montecarlo.SampleReal;
              of being observed.
     Ranlux4: highest possible luxury.
 */
-public class Ranlux64UniformRng {
+public class Ranlux64UniformRng implements BlockRng, BlockIntRng {
     private static final double NX = 1.0 / (1L << 48);
     private final DiscardBlockEngine engine;
 
@@ -26,7 +28,27 @@ public class Ranlux64UniformRng {
     }
 
     public SampleReal next() {
-        return new SampleReal(engine.next() * NX, 1.0);
+        return new SampleReal(nextReal(), 1.0);
+    }
+
+    //! the value of next() without the sample object
+    public double nextReal() {
+        return engine.next() * NX;
+    }
+
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = engine.next() * NX;
+        }
+    }
+
+    //! raw 48-bit output of the engine
+    @Override
+    public void nextLongs(long[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = engine.next();
+        }
     }
 
     public static void main(String[] args) {
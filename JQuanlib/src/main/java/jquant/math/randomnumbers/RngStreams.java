@@ -0,0 +1,38 @@
+package jquant.math.randomnumbers;
+
+import jquant.math.randomnumbers.impl.SplittableRng;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! numbered substreams of a splittable generator
+/*! stream(k) always starts at the k-th jump of the base generator, so work
+    item k draws the same numbers whichever thread runs it and however many
+    threads there are. Assign streams to fixed work items (e.g. blocks of
+    paths), never to threads.
+
+    The starting states are computed once, by successive jumps, and shared
+    between callers; the generators handed out are independent copies.
+*/
+public final class RngStreams<T extends SplittableRng<T>> {
+    private final List<T> starts_ = new ArrayList<>();
+
+    public RngStreams(T base) {
+        starts_.add(base.copy());
+    }
+
+    //! fresh generator at the start of substream k
+    public T stream(int k) {
+        QL_REQUIRE(k >= 0, "negative stream index");
+        synchronized (starts_) {
+            while (starts_.size() <= k) {
+                T next = starts_.get(starts_.size() - 1).copy();
+                next.jump();
+                starts_.add(next);
+            }
+            return starts_.get(k).copy();
+        }
+    }
+}
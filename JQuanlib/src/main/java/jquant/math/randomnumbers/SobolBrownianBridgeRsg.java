@@ -1,11 +1,12 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.CommonUtil;
 import jquant.math.randomnumbers.impl.RandomUtil;
 import jquant.math.randomnumbers.impl.UsgImpl;
 import jquant.methods.montecarlo.SampleVector;
 import jquant.models.marketmodels.browniangenerators.SobolBrownianGenerator;
 
+import java.util.Arrays;
+
 import static jquant.math.randomnumbers.SobolRsg.DirectionIntegers.JoeKuoD7;
 import static jquant.models.marketmodels.browniangenerators.SobolBrownianGeneratorBase.Ordering.Diagonal;
 
@@ -26,7 +27,7 @@ public class SobolBrownianBridgeRsg implements UsgImpl {
                                   SobolBrownianGenerator.Ordering ordering,
                                   long seed,
                                   SobolRsg.DirectionIntegers directionIntegers) {
-        seq_ = new SampleVector(CommonUtil.ArrayInit(factors*steps, 0d), 1.0);
+        seq_ = new SampleVector(factors*steps, 1.0);
         gen_ = new SobolBrownianGenerator(factors, steps, ordering, seed, directionIntegers);
     }
 
@@ -48,7 +49,7 @@ public class SobolBrownianBridgeRsg implements UsgImpl {
     public static void main(String[] args) {
         SobolBrownianBridgeRsg rsg = new SobolBrownianBridgeRsg(10,2, Diagonal, 0, JoeKuoD7);
         for (int i = 0; i < 20; i++) {
-            System.out.println(rsg.nextSequence().value);
+            System.out.println(Arrays.toString(rsg.nextSequence().value));
         }
     }
 }
@@ -2,10 +2,10 @@ package jquant.math.randomnumbers;
 
 import jquant.math.CommonUtil;
 import jquant.math.randomnumbers.impl.RandomUtil;
-import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.math.randomnumbers.impl.SkippableUsg;
 import jquant.methods.montecarlo.SampleVector;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
@@ -89,7 +89,7 @@ import static jquant.math.randomnumbers.SobolRsg.DirectionIntegers.*;
  * - the correctness of the returned values is tested by checking
  * their discrepancy against known good values.
  */
-public class SobolRsg implements UsgImpl {
+public class SobolRsg implements SkippableUsg<SobolRsg> {
     public enum DirectionIntegers {
         Unit, Jaeckel, SobolLevitan, SobolLevitanLemieux,
         JoeKuoD5, JoeKuoD6, JoeKuoD7,
@@ -100,8 +100,8 @@ public class SobolRsg implements UsgImpl {
     private int sequenceCounter_ = 0;
     private boolean firstDraw_ = true;
     private SampleVector sequence_;
-    private List<Long> integerSequence_;
-    private List<List<Long>> directionIntegers_;
+    private long[] integerSequence_;
+    private long[][] directionIntegers_;
     private boolean useGrayCode_;
 
     /**
@@ -124,12 +124,9 @@ public class SobolRsg implements UsgImpl {
                     DirectionIntegers directionIntegers,
                     boolean useGrayCode) {
         dimensionality_ = dimensionality;
-        sequence_ = new SampleVector(CommonUtil.ArrayInit(dimensionality), 1d);
-        integerSequence_ = CommonUtil.ArrayInit(dimensionality, 0L);
-        directionIntegers_ = new ArrayList<>();
-        for (int i = 0; i < dimensionality; ++i) {
-            directionIntegers_.add(CommonUtil.ArrayInit(32, 0L)); // 每次调用返回新 List
-        }
+        sequence_ = new SampleVector(dimensionality, 1d);
+        integerSequence_ = new long[dimensionality];
+        directionIntegers_ = new long[dimensionality][32];
         useGrayCode_ = useGrayCode;
         QL_REQUIRE(dimensionality > 0,
                 "dimensionality must be greater than 0");
@@ -194,7 +191,7 @@ public class SobolRsg implements UsgImpl {
         // degenerate (no free direction integers) first dimension
         int j;
         for (j = 0; j < 32; j++)
-            directionIntegers_.get(0).set(j, (1L << (32 - j - 1)));
+            directionIntegers_[0][j] = (1L << (32 - j - 1));
 
 
         int maxTabulated = 0;
@@ -205,8 +202,8 @@ public class SobolRsg implements UsgImpl {
                 maxTabulated = dimensionality_;
                 for (k = 1; k < maxTabulated; k++) {
                     for (int l = 1; l <= degree.get(k); l++) {
-                        directionIntegers_.get(k).set(l - 1, 1L);
-                        directionIntegers_.get(k).set(l - 1, directionIntegers_.get(k).get(l - 1) << (32 - l));
+                        directionIntegers_[k][l - 1] = 1L;
+                        directionIntegers_[k][l - 1] = directionIntegers_[k][l - 1] << (32 - l);
                     }
                 }
                 break;
@@ -217,8 +214,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.initializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.initializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.initializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -230,8 +227,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.SLinitializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.SLinitializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.SLinitializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -243,8 +240,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.Linitializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.Linitializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.Linitializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -256,8 +253,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.JoeKuoD5initializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.JoeKuoD5initializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.JoeKuoD5initializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -269,8 +266,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.JoeKuoD6initializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.JoeKuoD5initializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.JoeKuoD5initializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -282,8 +279,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.JoeKuoD7initializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.JoeKuoD7initializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.JoeKuoD7initializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -297,8 +294,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.Kuoinitializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.Kuoinitializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.Kuoinitializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -310,8 +307,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.Kuo2initializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.Kuo2initializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.Kuo2initializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -324,8 +321,8 @@ public class SobolRsg implements UsgImpl {
                     j = 0;
                     // 0UL marks coefficients' end for a given dimension
                     while (RandomUtil.Kuo3initializers.get(k - 1).get(j) != 0) {
-                        directionIntegers_.get(k).set(j, (long)RandomUtil.Kuo3initializers.get(k - 1).get(j));
-                        directionIntegers_.get(k).set(j, directionIntegers_.get(k).get(j) << (32 - j - 1));
+                        directionIntegers_[k][j] = (long)RandomUtil.Kuo3initializers.get(k - 1).get(j);
+                        directionIntegers_[k][j] = directionIntegers_[k][j] << (32 - j - 1);
                         j++;
                     }
                 }
@@ -345,8 +342,8 @@ public class SobolRsg implements UsgImpl {
                         double u = uniformRng.next().value;
                         // the direction integer has at most the
                         // rightmost l bits non-zero
-                        directionIntegers_.get(k).set(l - 1,  (long)(u * (1L << l)));
-                    } while ((directionIntegers_.get(k).get(l - 1) & 1) == 0);
+                        directionIntegers_[k][l - 1] =  (long)(u * (1L << l));
+                    } while ((directionIntegers_[k][l - 1] & 1) == 0);
                     // iterate until the direction integer is odd
                     // that is it has the rightmost bit set
 
@@ -354,7 +351,7 @@ public class SobolRsg implements UsgImpl {
                     // we are guaranteed that the l-th leftmost bit
                     // is set, and only the first l leftmost bit
                     // can be non-zero
-                    directionIntegers_.get(k).set(l - 1, directionIntegers_.get(k).get(l - 1) << (32 - l));
+                    directionIntegers_[k][l - 1] = directionIntegers_[k][l - 1] << (32 - l);
                 }
             }
         }
@@ -365,7 +362,7 @@ public class SobolRsg implements UsgImpl {
             int gk = degree.get(k);
             for (int l = gk; l < 32; l++) {
                 // eq. 8.19 "Monte Carlo Methods in Finance" by P. J�ckel
-                long n = (directionIntegers_.get(k).get(l - gk) >>> gk);
+                long n = (directionIntegers_[k][l - gk] >>> gk);
                 // a[k][j] are the coefficients of the monomials in ppmt[k]
                 // The highest order coefficient a[k][0] is not actually
                 // used in the recurrence relation, and the lowest order
@@ -378,28 +375,63 @@ public class SobolRsg implements UsgImpl {
                     // XORed with a selection of (unshifted) direction
                     // integers controlled by which of the a[k][j] are set
                     if (((ppmt.get(k) >>> (gk - j - 1)) & 1) != 0)
-                        n ^= directionIntegers_.get(k).get(l - j);
+                        n ^= directionIntegers_[k][l - j];
                 }
                 // a[k][gk] is always set, so directionIntegers_[k][l-gk]
                 // will always enter
-                n ^= directionIntegers_.get(k).get(l - gk);
-                directionIntegers_.get(k).set(l, n);
+                n ^= directionIntegers_[k][l - gk];
+                directionIntegers_[k][l] = n;
             }
         }
         // initialize the Sobol integer/double vectors
         // first draw, this is only needed if Gray code is used
         if (useGrayCode_) {
             for (k = 0; k < dimensionality_; k++) {
-                integerSequence_.set(k, directionIntegers_.get(k).get(0) & 0xFFFFFFFFL);
+                integerSequence_[k] = directionIntegers_[k][0] & 0xFFFFFFFFL;
             }
         }
     }
 
+    // shares the (read-only) direction integers of other
+    private SobolRsg(SobolRsg other) {
+        dimensionality_ = other.dimensionality_;
+        directionIntegers_ = other.directionIntegers_;
+        useGrayCode_ = other.useGrayCode_;
+        sequence_ = new SampleVector(dimensionality_, 1d);
+        integerSequence_ = new long[dimensionality_];
+    }
+
+    /**
+     * ! generator positioned at the given draw, sharing the direction integers
+     * <p>
+     * The draws of startingAt(k) are draws k, k+1, ... of a fresh generator, so
+     * disjoint index blocks can be produced on different threads and still give
+     * exactly the serial point set; after the initial skip each draw is a single
+     * Gray-code update.
+     */
+    @Override
+    public SobolRsg startingAt(int draw) {
+        QL_REQUIRE(draw >= 0, "negative draw index");
+        SobolRsg rsg = new SobolRsg(this);
+        if (useGrayCode_) {
+            rsg.skipTo(draw);
+            rsg.firstDraw_ = true;
+        } else {
+            // draws 0 and 1 both come from skipTo(0), draw k > 0 from skipTo(k - 1)
+            rsg.sequenceCounter_ = Math.max(draw - 1, 0);
+            rsg.firstDraw_ = draw == 0;
+        }
+        return rsg;
+    }
+
     /**
      * ! skip to the n-th sample in the low-discrepancy sequence
+     * <p>
+     * The returned buffer is reused by later draws.
      */
-    public final List<Long> skipTo(int skip) {
+    public final long[] skipTo(int skip) {
         int N = skip + 1;
+        final long[] seq = integerSequence_;
 
         if (useGrayCode_) {
             int ops = (int) (Math.log((double) N) / M_LN2) + 1;
@@ -407,19 +439,21 @@ public class SobolRsg implements UsgImpl {
             // Convert to Gray code
             int G = N ^ (N >>> 1);
             for (int k = 0; k < dimensionality_; k++) {
-                integerSequence_.set(k, 0L);
+                final long[] dk = directionIntegers_[k];
+                long v = 0L;
                 for (int index = 0; index < ops; index++) {
                     if ((G >>> index & 1) != 0)
-                        integerSequence_.set(k, integerSequence_.get(k) ^ directionIntegers_.get(k).get(index));
+                        v ^= dk[index];
                 }
+                seq[k] = v;
             }
         } else {
-            integerSequence_ = CommonUtil.ArrayInit(integerSequence_.size(), 0L);
+            Arrays.fill(seq, 0L);
             int mask = 1;
             for (int index = 0; index < 32; index++) {
                 if ((N & mask) != 0) {
                     for (int k = 0; k < dimensionality_; k++) {
-                        integerSequence_.set(k, integerSequence_.get(k) ^ directionIntegers_.get(k).get(index));
+                        seq[k] ^= directionIntegers_[k][index];
                     }
                 }
                 mask = mask << 1;
@@ -427,10 +461,12 @@ public class SobolRsg implements UsgImpl {
         }
 
         sequenceCounter_ = skip;
-        return integerSequence_;
+        return seq;
     }
 
-    public final List<Long> nextInt32Sequence() {
+    //! the unsigned 32-bit integers of the next draw; the buffer is reused by later draws
+    public final long[] nextInt32Sequence() {
+        final long[] seq = integerSequence_;
         if (!useGrayCode_) {
             skipTo(sequenceCounter_);
             if (firstDraw_) {
@@ -439,15 +475,15 @@ public class SobolRsg implements UsgImpl {
                 ++sequenceCounter_;
                 QL_REQUIRE(sequenceCounter_ != 0, "period exceeded");
             }
-            integerSequence_.replaceAll(aLong -> aLong & 0xFFFFFFFFL);
-            return integerSequence_;
+            mask32(seq, dimensionality_);
+            return seq;
         }
 
         if (firstDraw_) {
             // it was precomputed in the constructor
             firstDraw_ = false;
-            integerSequence_.replaceAll(aLong -> aLong & 0xFFFFFFFFL);
-            return integerSequence_;
+            mask32(seq, dimensionality_);
+            return seq;
         }
         // increment the counter
         sequenceCounter_++;
@@ -457,32 +493,33 @@ public class SobolRsg implements UsgImpl {
         // instead of using the counter n as new unique generating integer
         // for the n-th draw use the Gray code G(n) as proposed
         // by Antonov and Saleev
-        int n = sequenceCounter_;
         // Find rightmost zero bit of n
-        int j = 0;
-        while ((n & 1) != 0) {
-            n >>>= 1;
-            j++;
-        }
+        final int j = Integer.numberOfTrailingZeros(~sequenceCounter_);
         for (int k = 0; k < dimensionality_; k++) {
             // XOR the appropriate direction number into each component of
             // the integer sequence to obtain a new Sobol integer for that
             // component
-            integerSequence_.set(k, integerSequence_.get(k) ^ directionIntegers_.get(k).get(j));
+            seq[k] = (seq[k] ^ directionIntegers_[k][j]) & 0xFFFFFFFFL;
         }
-        integerSequence_.replaceAll(aLong -> aLong & 0xFFFFFFFFL);
-        return integerSequence_;
+        return seq;
     }
 
     @Override
     public final SampleVector nextSequence() {
-        final List<Long> v = nextInt32Sequence();
+        final long[] v = nextInt32Sequence();
+        final double[] out = sequence_.value;
         // normalize to get a double in (0,1)
         for (int k = 0; k < dimensionality_; ++k)
-            sequence_.value.set(k, v.get(k) * (0.5 / (1L << 31)));
+            out[k] = v[k] * (0.5 / (1L << 31));
         return sequence_;
     }
 
+    private static void mask32(long[] seq, int n) {
+        for (int k = 0; k < n; k++) {
+            seq[k] &= 0xFFFFFFFFL;
+        }
+    }
+
     public final SampleVector lastSequence() { return sequence_; }
 
     @Override
@@ -491,7 +528,7 @@ public class SobolRsg implements UsgImpl {
     public static void main(String[] args) {
         SobolRsg rsg = new SobolRsg(3, 200, JoeKuoD7, true);
         for (int i = 0; i < 10; i++) {
-            System.out.println(rsg.nextSequence().value);
+            System.out.println(Arrays.toString(rsg.nextSequence().value));
         }
     }
 }
@@ -1,6 +1,7 @@
 package jquant.math.randomnumbers;
 
-import jquant.math.randomnumbers.impl.RandomUtil;
+import jquant.math.randomnumbers.impl.RngInt64;
+import jquant.math.randomnumbers.impl.SplittableRng;
 import jquant.math.randomnumbers.impl.SplitMix64;
 import jquant.methods.montecarlo.SampleReal;
 
@@ -16,7 +17,13 @@ import jquant.methods.montecarlo.SampleReal;
  * \test the correctness of the returned values is tested by checking them
  * against the reference implementation in c.
  */
-public class Xoshiro256StarStarUniformRng {
+public class Xoshiro256StarStarUniformRng extends RngInt64
+        implements SplittableRng<Xoshiro256StarStarUniformRng> {
+    private static final long[] JUMP = {
+            0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+    private static final long[] LONG_JUMP = {
+            0x76e15d3efefdcbbfL, 0xc5004e441c522fb3L, 0x77710069854ee241L, 0x39109bb02acbe635L};
+
     private long s0_, s1_, s2_, s3_;
 
     /**
@@ -53,11 +60,13 @@ public class Xoshiro256StarStarUniformRng {
     }
 
     //! return a random number in the (0.0, 1.0)-interval
+    @Override
     public double nextReal() {
-        return ((double) (nextInt64() >> 11L) + 0.5) * (1.0 / (double) (1L << 53));
+        return ((double) (nextInt64() >>> 11L) + 0.5) * (1.0 / (double) (1L << 53));
     }
 
     //! return a random integer in the [0,0xffffffffffffffffULL]-interval
+    @Override
     public long nextInt64() {
         long result = rotl(s1_ * 5, 7) * 9;
 
@@ -76,6 +85,82 @@ public class Xoshiro256StarStarUniformRng {
     }
 
 
+    //! fills out with consecutive nextReal() values, keeping the state in locals
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        long s0 = s0_, s1 = s1_, s2 = s2_, s3 = s3_;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            long result = rotl(s1 * 5, 7) * 9;
+            long t = s1 << 17L;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = rotl(s3, 45);
+            out[i] = ((double) (result >>> 11L) + 0.5) * (1.0 / (double) (1L << 53));
+        }
+        s0_ = s0;
+        s1_ = s1;
+        s2_ = s2;
+        s3_ = s3;
+    }
+
+    //! fills out with consecutive nextInt64() values
+    @Override
+    public void nextLongs(long[] out, int offset, int len) {
+        long s0 = s0_, s1 = s1_, s2 = s2_, s3 = s3_;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = rotl(s1 * 5, 7) * 9;
+            long t = s1 << 17L;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = rotl(s3, 45);
+        }
+        s0_ = s0;
+        s1_ = s1;
+        s2_ = s2;
+        s3_ = s3;
+    }
+
+    @Override
+    public Xoshiro256StarStarUniformRng copy() {
+        return new Xoshiro256StarStarUniformRng(s0_, s1_, s2_, s3_);
+    }
+
+    //! skips 2^128 draws; up to 2^128 non-overlapping substreams
+    @Override
+    public void jump() {
+        jump(JUMP);
+    }
+
+    //! skips 2^192 draws, e.g. to give each machine a family of jump() substreams
+    public void longJump() {
+        jump(LONG_JUMP);
+    }
+
+    private void jump(long[] poly) {
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (long p : poly) {
+            for (int b = 0; b < 64; b++) {
+                if ((p & 1L << b) != 0) {
+                    s0 ^= s0_;
+                    s1 ^= s1_;
+                    s2 ^= s2_;
+                    s3 ^= s3_;
+                }
+                nextInt64();
+            }
+        }
+        s0_ = s0;
+        s1_ = s1;
+        s2_ = s2;
+        s3_ = s3;
+    }
+
     private static long rotl(long x, long k) {
         return (x << k) | (x >>> (64 - k));
     }
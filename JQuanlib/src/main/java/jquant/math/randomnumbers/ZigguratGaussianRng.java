@@ -1,6 +1,7 @@
 package jquant.math.randomnumbers;
 
 
+import jquant.math.randomnumbers.impl.BlockRng;
 import jquant.math.randomnumbers.impl.RandomUtil;
 import jquant.math.randomnumbers.impl.RngInt64;
 import jquant.methods.montecarlo.SampleReal;
@@ -29,7 +30,7 @@ import jquant.methods.montecarlo.SampleReal;
  * \endcode
  * Currently, Xoshiro256StarStarUniformRng is the only RNG supporting this.
  */
-public class ZigguratGaussianRng {
+public class ZigguratGaussianRng implements BlockRng {
     private RngInt64 uint64Generator_;
 
     public ZigguratGaussianRng(RngInt64 uint64Generator) {
@@ -69,6 +70,14 @@ public class ZigguratGaussianRng {
         }
     }
 
+    //! fills out with consecutive nextReal() values
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = nextReal();
+        }
+    }
+
     private double pdf(double x) {
         return Math.exp(-x * x / 2.0);
     }
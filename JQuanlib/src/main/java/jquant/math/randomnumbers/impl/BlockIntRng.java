@@ -0,0 +1,11 @@
+package jquant.math.randomnumbers.impl;
+
+//! bulk generation of the raw integer output of a generator
+public interface BlockIntRng {
+    //! fills out[offset, offset+len) with consecutive raw integers
+    void nextLongs(long[] out, int offset, int len);
+
+    default void nextLongs(long[] out) {
+        nextLongs(out, 0, out.length);
+    }
+}
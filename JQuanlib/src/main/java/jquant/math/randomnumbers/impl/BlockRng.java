@@ -0,0 +1,15 @@
+package jquant.math.randomnumbers.impl;
+
+//! bulk generation of variates into a primitive buffer
+/*! Draws written by nextBlock are the same values, in the same order, as
+    consecutive calls to the generator's single-draw method; weights are
+    not reported since all generators here produce unit weights.
+*/
+public interface BlockRng {
+    //! fills out[offset, offset+len) with consecutive draws
+    void nextBlock(double[] out, int offset, int len);
+
+    default void nextBlock(double[] out) {
+        nextBlock(out, 0, out.length);
+    }
+}
@@ -319,18 +319,11 @@ public class RandomUtil {
         return result;
     }
 
-    private static void copy(List<Double> arr, List<Double> out, int start) {
-        for (int i = 0; i < out.size(); i++) {
-            arr.set(i + start, out.get(i));
-        }
-    }
-
-    public static void setNextSequence(SobolBrownianGeneratorBase gen, List<Double> seq) {
+    public static void setNextSequence(SobolBrownianGeneratorBase gen, double[] seq) {
         gen.nextPath();
-        List<Double> output = CommonUtil.ArrayInit(gen.numberOfFactors(), 0d);
+        final int factors = gen.numberOfFactors();
         for (int i = 0; i < gen.numberOfSteps(); ++i) {
-            gen.nextStep(output);
-            copy(seq, output, i * gen.numberOfFactors());
+            gen.nextStep(seq, i * factors);
         }
     }
 
@@ -20,7 +20,8 @@ public class Ranlux64Base01 {
 
     public long next() {
         int i = index;
-        int j = (i + r - s) % r;
+        int j = i - s;
+        if (j < 0) j += r;
 
         long xi = state[i];
         long xj = state[j];
@@ -34,7 +35,7 @@ public class Ranlux64Base01 {
         }
 
         state[i] = res & MASK48;
-        index = (i + 1) % r;
+        index = (i + 1 == r) ? 0 : i + 1;
 
         return res;
     }
@@ -2,11 +2,23 @@ package jquant.math.randomnumbers.impl;
 
 import jquant.methods.montecarlo.SampleReal;
 
-public abstract class RngImpl {
+public abstract class RngImpl implements BlockRng {
     public RngImpl(){}
     public RngImpl(long seed) {}
     public abstract SampleReal next();
     public long nextInt32() {
         return 0;
     }
+
+    //! the value of next() without the sample object
+    public double nextReal() {
+        return next().value;
+    }
+
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = nextReal();
+        }
+    }
 }
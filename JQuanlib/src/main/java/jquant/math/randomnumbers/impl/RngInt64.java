@@ -1,6 +1,20 @@
 package jquant.math.randomnumbers.impl;
 
-public abstract class RngInt64 {
+public abstract class RngInt64 implements BlockRng, BlockIntRng {
     public abstract long nextInt64();
     public abstract double nextReal();
+
+    @Override
+    public void nextBlock(double[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = nextReal();
+        }
+    }
+
+    @Override
+    public void nextLongs(long[] out, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            out[i] = nextInt64();
+        }
+    }
 }
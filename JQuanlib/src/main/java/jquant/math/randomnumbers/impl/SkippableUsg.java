@@ -0,0 +1,7 @@
+package jquant.math.randomnumbers.impl;
+
+//! uniform sequence generator that can be positioned at any draw in O(1) time
+public interface SkippableUsg<T extends SkippableUsg<T>> extends UsgImpl {
+    //! independent generator whose next draw is draw number `draw` of this sequence
+    T startingAt(int draw);
+}
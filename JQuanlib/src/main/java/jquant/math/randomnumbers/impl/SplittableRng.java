@@ -0,0 +1,24 @@
+package jquant.math.randomnumbers.impl;
+
+//! generator whose stream can be cut into non-overlapping substreams
+/*! jump() advances the state by a fixed, very large number of draws, so
+    substream(0), substream(1), ... of the same generator never overlap in
+    practice and are reproducible however they are later shared among
+    threads.
+*/
+public interface SplittableRng<T extends SplittableRng<T>> {
+    //! independent generator in the current state
+    T copy();
+
+    //! advances the state by one substream length
+    void jump();
+
+    //! copy of this generator advanced by i substream lengths
+    default T substream(int i) {
+        T rng = copy();
+        for (int k = 0; k < i; k++) {
+            rng.jump();
+        }
+        return rng;
+    }
+}
@@ -0,0 +1,144 @@
+package jquant.methods.finitedifferences;
+
+import jquant.math.Array;
+import jquant.math.Matrix;
+
+import java.util.Arrays;
+
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.CommonUtil.QL_REQUIRE;
+import static jquant.math.MathUtils.close;
+
+//! Tridiagonal operator with periodic boundary conditions
+/*! Besides the three diagonals, the first row has an element in the
+    last column and the last row one in the first column, as for the
+    discretization of an operator on a periodic grid. Systems are solved
+    by the Sherman-Morrison formula on top of the tridiagonal solver.
+
+    The reduced system and the correction vector of the formula are
+    built on the first solve and kept until the corners are set or the
+    diagonals change, also when changed in place through the inspectors.
+
+    The corners are not carried over by the operations of FDUtils, and
+    SOR() is not available.
+*/
+public class CyclicTridiagonalOperator extends TridiagonalOperator {
+    private double bottomLeft_, topRight_;
+    // Sherman-Morrison terms, null until the first solve and after setCorners
+    private TridiagonalOperator reduced_;
+    private Array correction_;
+    // the diagonal the terms were built from; the reduced system keeps the off-diagonals
+    private Array builtDiagonal_;
+    private double gamma_;
+
+    public CyclicTridiagonalOperator(int size) {
+        super(size);
+        QL_REQUIRE(size >= 3,
+                "invalid size (" + size + ") for cyclic tridiagonal operator " +
+                        "(must be >= 3)");
+    }
+
+    public CyclicTridiagonalOperator(Array low,
+                                     Array mid,
+                                     Array high,
+                                     double bottomLeft,
+                                     double topRight) {
+        super(low, mid, high);
+        QL_REQUIRE(n_ >= 3,
+                "invalid size (" + n_ + ") for cyclic tridiagonal operator " +
+                        "(must be >= 3)");
+        bottomLeft_ = bottomLeft;
+        topRight_ = topRight;
+    }
+
+    //! \name Inspectors
+    //@{
+    //! element of the last row in the first column
+    public final double bottomLeft() {
+        return bottomLeft_;
+    }
+
+    //! element of the first row in the last column
+    public final double topRight() {
+        return topRight_;
+    }
+    //@}
+
+    public void setCorners(double bottomLeft, double topRight) {
+        bottomLeft_ = bottomLeft;
+        topRight_ = topRight;
+        reduced_ = null;
+    }
+
+    @Override
+    public void applyTo(final Array v, Array result) {
+        super.applyTo(v, result);
+        final double[] x = v.dataRef(), r = result.dataRef();
+        r[0] += topRight_ * x[n_ - 1];
+        r[n_ - 1] += bottomLeft_ * x[0];
+    }
+
+    @Override
+    public void solveFor(final Array rhs, Array result) {
+        prepare();
+        final double gamma = gamma_;
+        reduced_.solveFor(rhs, result);
+        final double[] x = result.dataRef(), zs = correction_.dataRef();
+        final double factor = (x[0] + topRight_ * x[n_ - 1] / gamma)
+                / (1.0 + zs[0] + topRight_ * zs[n_ - 1] / gamma);
+        for (int j = 0; j < n_; ++j)
+            x[j] -= factor * zs[j];
+    }
+
+    @Override
+    public void solveFor(final Matrix rhs, Matrix result) {
+        prepare();
+        final double gamma = gamma_;
+        reduced_.solveFor(rhs, result);
+        final int m = result.cols();
+        final double[] x = result.dataRef(), zs = correction_.dataRef();
+        final double denominator = 1.0 + zs[0] + topRight_ * zs[n_ - 1] / gamma;
+        final double[] factors = new double[m];
+        for (int k = 0; k < m; ++k)
+            factors[k] = (x[k] + topRight_ * x[(n_ - 1) * m + k] / gamma) / denominator;
+        for (int j = 0, o = 0; j < n_; ++j, o += m) {
+            final double zj = zs[j];
+            for (int k = 0; k < m; ++k)
+                x[o + k] -= factors[k] * zj;
+        }
+    }
+
+    @Override
+    public Array SOR(final Array rhs, double tol) {
+        QL_FAIL("SOR not available for cyclic tridiagonal operators");
+        return null;
+    }
+
+    // builds the Sherman-Morrison terms unless they are up to date
+    private void prepare() {
+        if (reduced_ != null
+                && Arrays.equals(builtDiagonal_.dataRef(), diagonal_.dataRef())
+                && Arrays.equals(reduced_.lowerDiagonal_.dataRef(), lowerDiagonal_.dataRef())
+                && Arrays.equals(reduced_.upperDiagonal_.dataRef(), upperDiagonal_.dataRef()))
+            return;
+        final double gamma = -diagonal_.get(0);
+        QL_REQUIRE(!close(gamma, 0.0),
+                "diagonal's first element (" + (-gamma) +
+                        ") cannot be close to zero");
+        // the tridiagonal part, with the diagonal modified as by Sherman-Morrison
+        final Array mid = new Array(diagonal_);
+        mid.subtractEq(0, gamma);
+        mid.subtractEq(n_ - 1, bottomLeft_ * topRight_ / gamma);
+        final TridiagonalOperator reduced =
+                new TridiagonalOperator(new Array(lowerDiagonal_), mid, new Array(upperDiagonal_));
+        // solution of the reduced system for the correction vector (gamma, 0, ..., 0, bottomLeft)
+        final Array u = new Array(n_);
+        u.set(0, gamma);
+        u.set(n_ - 1, bottomLeft_);
+        reduced.solveFor(u, u);
+        reduced_ = reduced;
+        correction_ = u;
+        builtDiagonal_ = new Array(diagonal_);
+        gamma_ = gamma;
+    }
+}
@@ -1,5 +1,7 @@
 package jquant.methods.finitedifferences;
 
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
 public class FDUtils {
     public static TridiagonalOperator positive(final  TridiagonalOperator D) {
         return new TridiagonalOperator(D.lowerDiagonal_, D.diagonal_, D.upperDiagonal_);
@@ -35,6 +37,17 @@ public class FDUtils {
     public static TridiagonalOperator multiply(double x, final TridiagonalOperator D) {
         return multiply(D, x);
     }
+    //! a * X + Y in a single pass over the diagonals
+    public static TridiagonalOperator axpy(double a, final TridiagonalOperator X, final TridiagonalOperator Y) {
+        QL_REQUIRE(X.size() == Y.size(),
+                "operators of different sizes (" + X.size() + " and " + Y.size() + ")");
+        final TridiagonalOperator result = new TridiagonalOperator(X.size());
+        TridiagonalOperator.axpy(a, X.lowerDiagonal_, Y.lowerDiagonal_, result.lowerDiagonal_);
+        TridiagonalOperator.axpy(a, X.diagonal_, Y.diagonal_, result.diagonal_);
+        TridiagonalOperator.axpy(a, X.upperDiagonal_, Y.upperDiagonal_, result.upperDiagonal_);
+        return result;
+    }
+
     public static TridiagonalOperator divide(final TridiagonalOperator D, double x) {
         return new TridiagonalOperator(
                 D.lowerDiagonal_.div(x),
@@ -1,6 +1,7 @@
 package jquant.methods.finitedifferences;
 
 import jquant.math.Array;
+import jquant.math.Matrix;
 import jquant.methods.finitedifferences.impl.TimeSetter;
 
 import static jquant.math.CommonUtil.QL_FAIL;
@@ -50,21 +51,32 @@ public class TridiagonalOperator {
 
     //! apply operator to a given array
     public Array applyTo(final Array v) {
+        Array result = new Array(n_);
+        applyTo(v, result);
+        return result;
+    }
+
+    /*! apply operator to a given array without result Array
+        allocation; v and result cannot be the same Array
+    */
+    public void applyTo(final Array v, Array result) {
         QL_REQUIRE(n_ != 0,
                 "uninitialized TridiagonalOperator");
         QL_REQUIRE(v.size() == n_,
                 "vector of the wrong size " + v.size() +
                         " instead of " + n_);
-        Array result = new Array(n_);
-        for (int i = 0; i < diagonal_.size(); i++) {
-            result.set(i, diagonal_.get(i) * v.get(i));
-        }
+        QL_REQUIRE(result.size() == n_,
+                "result vector of size " + result.size() +
+                        " instead of " + n_);
+        QL_REQUIRE(v != result, "cannot apply the operator in place");
+        final double[] x = v.dataRef(), r = result.dataRef();
+        final double[] l = lowerDiagonal_.dataRef(), d = diagonal_.dataRef(), u = upperDiagonal_.dataRef();
+        final int n = n_;
         // matricial product
-        result.addEq(0, upperDiagonal_.get(0) * v.get(1));
-        for (int j = 1; j <= n_ - 2; j++)
-            result.addEq(j, lowerDiagonal_.get(j - 1) * v.get(j - 1) + upperDiagonal_.get(j) * v.get(j + 1));
-        result.addEq(n_ - 1, lowerDiagonal_.get(n_ - 2) * v.get(n_ - 2));
-        return result;
+        r[0] = d[0] * x[0] + u[0] * x[1];
+        for (int j = 1; j < n - 1; j++)
+            r[j] = d[j] * x[j] + (l[j - 1] * x[j - 1] + u[j] * x[j + 1]);
+        r[n - 1] = d[n - 1] * x[n - 1] + l[n - 2] * x[n - 2];
     }
 
     //! solve linear system for a given right-hand side
@@ -85,22 +97,71 @@ public class TridiagonalOperator {
         QL_REQUIRE(rhs.size() == n_,
                 "rhs vector of size " + rhs.size() +
                         " instead of " + n_);
+        QL_REQUIRE(result.size() == n_,
+                "result vector of size " + result.size() +
+                        " instead of " + n_);
+
+        final double[] r = rhs.dataRef(), x = result.dataRef(), t = temp_.dataRef();
+        final double[] l = lowerDiagonal_.dataRef(), d = diagonal_.dataRef(), u = upperDiagonal_.dataRef();
+        double bet = d[0];
+        QL_REQUIRE(!close(bet, 0.0),
+                "diagonal's first element (" + bet +
+                        ") cannot be close to zero");
+        x[0] = r[0] / bet;
+        for (int j = 1; j <= n_ - 1; ++j) {
+            t[j] = u[j - 1] / bet;
+            bet = d[j] - l[j - 1] * t[j];
+            QL_REQUIRE(!close(bet, 0.0), "division by zero");
+            x[j] = (r[j] - l[j - 1] * x[j - 1]) / bet;
+        }
+        for (int j = n_ - 2; j >= 0; --j)
+            x[j] -= t[j + 1] * x[j + 1];
+    }
+
+    /*! solve linear system for several right-hand sides at once, the
+        columns of rhs, without result allocation. The elimination is
+        done once for all the columns, and each column gets the same
+        result as solveFor(Array, Array). The rhs and result parameters
+        can be the same Matrix.
+    */
+    public void solveFor(final Matrix rhs, Matrix result) {
+        QL_REQUIRE(n_ != 0,
+                "uninitialized TridiagonalOperator");
+        QL_REQUIRE(rhs.rows() == n_,
+                "rhs matrix with " + rhs.rows() +
+                        " rows instead of " + n_);
+        QL_REQUIRE(result.rows() == n_ && result.cols() == rhs.cols(),
+                "result matrix of size " + result.rows() + "x" + result.cols() +
+                        " instead of " + n_ + "x" + rhs.cols());
 
-        double bet = diagonal_.get(0);
+        final int m = rhs.cols();
+        final double[] r = rhs.dataRef(), x = result.dataRef(), t = temp_.dataRef();
+        final double[] l = lowerDiagonal_.dataRef(), d = diagonal_.dataRef(), u = upperDiagonal_.dataRef();
+        final double[] pivots = new double[n_];
+        double bet = d[0];
         QL_REQUIRE(!close(bet, 0.0),
                 "diagonal's first element (" + bet +
                         ") cannot be close to zero");
-        result.set(0, rhs.get(0) / bet);
+        pivots[0] = bet;
         for (int j = 1; j <= n_ - 1; ++j) {
-            temp_.set(j, upperDiagonal_.get(j - 1) / bet);
-            bet = diagonal_.get(j) - lowerDiagonal_.get(j - 1) * temp_.get(j);
+            t[j] = u[j - 1] / bet;
+            bet = d[j] - l[j - 1] * t[j];
             QL_REQUIRE(!close(bet, 0.0), "division by zero");
-            result.set(j, (rhs.get(j) - lowerDiagonal_.get(j - 1) * result.get(j - 1)) / bet);
+            pivots[j] = bet;
+        }
+        // row j of the columns at j * m, so that the inner loops are contiguous
+        for (int k = 0; k < m; ++k)
+            x[k] = r[k] / pivots[0];
+        for (int j = 1, o = m; j <= n_ - 1; ++j, o += m) {
+            final double lj = l[j - 1], pj = pivots[j];
+            for (int k = 0; k < m; ++k)
+                x[o + k] = (r[o + k] - lj * x[o - m + k]) / pj;
+        }
+        for (int j = n_ - 2, o = j * m; j >= 0; --j, o -= m) {
+            final double tj = t[j + 1];
+            for (int k = 0; k < m; ++k)
+                x[o + k] -= tj * x[o + m + k];
         }
-        // cannot be j>=0 with Size j
-        for (int j = n_ - 2; j > 0; --j)
-            result.subtractEq(j, temp_.get(j + 1) * result.get(j + 1));
-        result.subtractEq(0, temp_.get(1) * result.get(1));
     }
 
     //! solve linear system with SOR approach
@@ -211,6 +272,23 @@ public class TridiagonalOperator {
         diagonal_.set(n_ - 1, valB);
     }
 
+    //! adds a times x to this operator in place, i.e. this = a * x + this
+    public TridiagonalOperator axpy(double a, final TridiagonalOperator x) {
+        QL_REQUIRE(x.n_ == n_,
+                "operator of size " + x.n_ + " instead of " + n_);
+        axpy(a, x.lowerDiagonal_, lowerDiagonal_, lowerDiagonal_);
+        axpy(a, x.diagonal_, diagonal_, diagonal_);
+        axpy(a, x.upperDiagonal_, upperDiagonal_, upperDiagonal_);
+        return this;
+    }
+
+    // result = a * x + y, elementwise; result may be y
+    static void axpy(double a, final Array x, final Array y, Array result) {
+        final double[] xs = x.dataRef(), ys = y.dataRef(), rs = result.dataRef();
+        for (int i = 0; i < rs.length; i++)
+            rs[i] = a * xs[i] + ys[i];
+    }
+
     public void setTime(double t) {
         if (timeSetter_ != null)
             timeSetter_.setTime(t, this);
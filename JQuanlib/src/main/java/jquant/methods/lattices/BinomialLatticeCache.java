@@ -0,0 +1,158 @@
+package jquant.methods.lattices;
+
+import jquant.StochasticProcess1D;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! bounded cache of Black-Scholes binomial lattices
+/*! Lattices are keyed by the type of tree, the values of the process
+    the trees are built on, i.e. its initial value, its drift at the
+    start and its variances over a step and over the whole tree, the
+    risk-free rate, the end time, the number of steps and, for the trees
+    centred on it, the strike. Pricing again on the same lattice reuses
+    its values of the underlying, see BlackScholesLattice.
+
+    The least recently used lattice is dropped when the cache is full.
+    Neither the cache nor its lattices are thread-safe: each thread must
+    use a cache of its own.
+
+    \ingroup lattices
+*/
+public class BinomialLatticeCache {
+
+    //! the binomial trees available
+    public enum Type {
+        CoxRossRubinstein(false) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new CoxRossRubinstein(process, end, steps, strike);
+            }
+        },
+        JarrowRudd(false) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new JarrowRudd(process, end, steps, strike);
+            }
+        },
+        AdditiveEQP(false) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new AdditiveEQPBinomialTree(process, end, steps, strike);
+            }
+        },
+        Trigeorgis(false) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new Trigeorgis(process, end, steps, strike);
+            }
+        },
+        Tian(false) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new Tian(process, end, steps, strike);
+            }
+        },
+        LeisenReimer(true) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new LeisenReimer(process, end, steps, strike);
+            }
+        },
+        Joshi4(true) {
+            BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike) {
+                return new Joshi4(process, end, steps, strike);
+            }
+        };
+
+        private final boolean strikeDependent_;
+
+        Type(boolean strikeDependent) {
+            strikeDependent_ = strikeDependent;
+        }
+
+        //! whether the tree is centred on the strike
+        public boolean isStrikeDependent() {
+            return strikeDependent_;
+        }
+
+        abstract BinomialTree<?> create(StochasticProcess1D process, double end, int steps, double strike);
+    }
+
+    private static final class Key {
+        private final Type type_;
+        private final int steps_;
+        private final double[] values_;
+
+        Key(Type type, int steps, double... values) {
+            type_ = type;
+            steps_ = steps;
+            values_ = values;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            final Key k = (Key) o;
+            return type_ == k.type_ && steps_ == k.steps_ && Arrays.equals(values_, k.values_);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type_.hashCode() + steps_) + Arrays.hashCode(values_);
+        }
+    }
+
+    private final int maxSize_;
+    private final LinkedHashMap<Key, BlackScholesLattice> lattices_;
+    private long hits_, misses_;
+
+    public BinomialLatticeCache(int maxSize) {
+        QL_REQUIRE(maxSize > 0, "positive cache size required");
+        maxSize_ = maxSize;
+        lattices_ = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BlackScholesLattice> eldest) {
+                return size() > maxSize_;
+            }
+        };
+    }
+
+    /*! The lattice has the number of steps of the tree, which is odd
+        for the trees centred on the strike.
+    */
+    public BlackScholesLattice lattice(Type type, StochasticProcess1D process, double riskFreeRate,
+                                       double end, int steps, double strike) {
+        QL_REQUIRE(end > 0.0, "positive end time required");
+        QL_REQUIRE(steps > 0, "positive number of steps required");
+        final double x0 = process.x0();
+        final Key key = new Key(type, steps, x0, process.drift(0.0, x0),
+                process.variance(0.0, x0, end / steps), process.variance(0.0, x0, end),
+                riskFreeRate, end, type.isStrikeDependent() ? strike : 0.0);
+        final BlackScholesLattice cached = lattices_.get(key);
+        if (cached != null) {
+            ++hits_;
+            return cached;
+        }
+        ++misses_;
+        final BinomialTree<?> tree = type.create(process, end, steps, strike);
+        final BlackScholesLattice lattice =
+                new BlackScholesLattice(tree, riskFreeRate, end, tree.getColumns() - 1);
+        lattices_.put(key, lattice);
+        return lattice;
+    }
+
+    public int size() {
+        return lattices_.size();
+    }
+
+    public long hits() {
+        return hits_;
+    }
+
+    public long misses() {
+        return misses_;
+    }
+
+    public void clear() {
+        lattices_.clear();
+    }
+}
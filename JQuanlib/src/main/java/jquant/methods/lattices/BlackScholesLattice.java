@@ -4,25 +4,44 @@ import jquant.TimeGrid;
 import jquant.math.Array;
 import jquant.methods.lattices.impl.TreeLatticeImpl;
 
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
 //! Simple binomial lattice approximating the Black-Scholes model
-/*! \ingroup lattices */
-public class BlackScholesLattice extends TreeLattice1D {
+/*! The probabilities and the discount are the same for all the nodes,
+    so that a step back is a single pass over the slice.
+
+    The lattice keeps the values of the underlying at each slice once
+    computed, which is worth keeping the lattice for several pricings,
+    see BinomialLatticeCache. Like the other tree lattices, it builds its
+    state prices and tables lazily and is not thread-safe: each thread
+    must price on lattices of its own.
+
+    \ingroup lattices
+*/
+public class BlackScholesLattice extends TreeLattice1D implements TreeLatticeImpl {
+    protected final BinomialTree<?> tree_;
     protected double riskFreeRate_;
     protected double dt_;
     protected double discount_;
     protected double pd_, pu_;
+    // underlying values by slice, built on demand
+    private final Array[] grids_;
 
-    public BlackScholesLattice(TreeLatticeImpl tree,
+    public BlackScholesLattice(BinomialTree<?> tree,
                                double riskFreeRate,
                                double end,
                                int steps) {
         super(new TimeGrid(end, steps), 2);
-        setImpl_(tree);
+        QL_REQUIRE(tree.getColumns() == steps + 1,
+                "tree with " + (tree.getColumns() - 1) + " steps given for a lattice of " + steps);
+        setImpl_(this);
+        tree_ = tree;
         riskFreeRate_ = riskFreeRate;
         dt_ = end / steps;
         discount_ = Math.exp(-riskFreeRate * (dt_));
         pd_ = tree.probability(0, 0, 0);
         pu_ = tree.probability(0, 0, 1);
+        grids_ = new Array[steps + 1];
     }
 
     public double riskFreeRate() {
@@ -34,7 +53,7 @@ public class BlackScholesLattice extends TreeLattice1D {
     }
 
     public int size(int i) {
-        return impl_.size(i);
+        return tree_.size(i);
     }
 
     public double discount(int i, int j) {
@@ -42,16 +61,44 @@ public class BlackScholesLattice extends TreeLattice1D {
     }
 
     public void stepback(int i, Array values, Array newValues) {
-        for (int j = 0; j < size(i); j++) {
-            newValues.set(j, (pd_ * values.get(j) + pu_ * values.get(j + 1)) * discount_);
-        }
+        final double[] v = values.dataRef(), nv = newValues.dataRef();
+        final double pd = pd_, pu = pu_, discount = discount_;
+        // node j only reads nodes j and j + 1, so that values and newValues may be the same array
+        for (int j = 0, n = size(i); j < n; j++)
+            nv[j] = (pd * v[j] + pu * v[j + 1]) * discount;
+    }
+
+    @Override
+    public void stepback(int i, Array[] values, Array[] newValues, int count) {
+        for (int a = 0; a < count; ++a)
+            stepback(i, values[a], newValues[a]);
     }
 
     public int descendant(int i, int index, int branch) {
-        return impl_.descendant(i, index, branch);
+        return tree_.descendant(i, index, branch);
     }
 
     public double probability(int i, int index, int branch) {
-        return impl_.probability(i, index, branch);
+        return tree_.probability(i, index, branch);
+    }
+
+    @Override
+    public double underlying(int i, int index) {
+        return tree_.underlying(i, index);
+    }
+
+    @Override
+    public Array grid(double t) {
+        return new Array(slice(timeGrid().index(t)));
+    }
+
+    private Array slice(int i) {
+        if (grids_[i] == null) {
+            final Array grid = new Array(size(i));
+            for (int j = 0; j < grid.size(); j++)
+                grid.set(j, tree_.underlying(i, j));
+            grids_[i] = grid;
+        }
+        return grids_[i];
     }
 }
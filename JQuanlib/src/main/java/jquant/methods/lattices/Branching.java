@@ -1,22 +1,25 @@
 package jquant.methods.lattices;
 
 
-import jquant.math.CommonUtil;
-
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /* Branching scheme for a trinomial node.  Each node has three
    descendants, with the middle branch linked to the node
    which is closest to the expectation of the variable. */
 public class Branching {
-    private List<Integer> k_;
-    private List<List<Double>> probs_;
+    private int[] k_;
+    // probability of branch b of node j at 3 * j + b
+    private double[] probs_;
+    private int nodes_;
     private int kMin_, jMin_, kMax_, jMax_;
+    // flattened tables, built on demand
+    private int[] descendants_;
+    private double[] probabilities_;
 
     public Branching() {
-        probs_ = Arrays.asList(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        k_ = new int[16];
+        probs_ = new double[48];
+        nodes_ = 0;
 
         kMin_ = Integer.MAX_VALUE;
         jMin_ = Integer.MAX_VALUE;
@@ -26,11 +29,11 @@ public class Branching {
 
     public int descendant(int index,
                           int branch) {
-        return k_.get(index) - jMin_ - 1 + branch;
+        return k_[index] - jMin_ - 1 + branch;
     }
 
     public double probability(int index, int branch) {
-        return probs_.get(branch).get(index);
+        return probs_[3 * index + branch];
     }
 
     public int size() {
@@ -45,12 +48,43 @@ public class Branching {
         return jMax_;
     }
 
+    //! descendants of the nodes added, branch b of node j at 3 * j + b
+    /*! The returned array is shared and must not be modified. */
+    public int[] descendants() {
+        if (descendants_ == null) {
+            final int[] d = new int[3 * nodes_];
+            for (int j = 0; j < nodes_; ++j) {
+                final int k = k_[j] - jMin_ - 1;
+                d[3 * j] = k;
+                d[3 * j + 1] = k + 1;
+                d[3 * j + 2] = k + 2;
+            }
+            descendants_ = d;
+        }
+        return descendants_;
+    }
+
+    //! probabilities of the nodes added, branch b of node j at 3 * j + b
+    /*! The returned array is shared and must not be modified. */
+    public double[] probabilities() {
+        if (probabilities_ == null)
+            probabilities_ = Arrays.copyOf(probs_, 3 * nodes_);
+        return probabilities_;
+    }
+
     public void add(int k, double p1, double p2, double p3) {
         // store
-        k_.add(k);
-        probs_.get(0).add(p1);
-        probs_.get(1).add(p2);
-        probs_.get(2).add(p3);
+        if (nodes_ == k_.length) {
+            k_ = Arrays.copyOf(k_, 2 * nodes_);
+            probs_ = Arrays.copyOf(probs_, 6 * nodes_);
+        }
+        k_[nodes_] = k;
+        probs_[3 * nodes_] = p1;
+        probs_[3 * nodes_ + 1] = p2;
+        probs_[3 * nodes_ + 2] = p3;
+        ++nodes_;
+        descendants_ = null;
+        probabilities_ = null;
         // maintain invariants
         kMin_ = Math.min(kMin_, k);
         jMin_ = kMin_ - 1;
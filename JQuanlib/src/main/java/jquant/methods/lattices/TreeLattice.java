@@ -6,7 +6,9 @@ import jquant.TimeGrid;
 import jquant.math.Array;
 import jquant.math.CommonUtil;
 import jquant.methods.lattices.impl.TreeLatticeImpl;
+import jquant.utilities.ParallelFor;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static jquant.math.CommonUtil.DotProduct;
@@ -33,15 +35,41 @@ import static jquant.math.MathUtils.close;
                     Array& newValues) const;
     \endcode
 
+    The transition data of each time slice, i.e. the descendants and
+    probabilities of the branches of its nodes and the discounts of the
+    nodes, are flattened into primitive arrays the first time the slice
+    is rolled back or used for state prices; the rollbacks that follow
+    only read those arrays. Derived classes whose discounts change after
+    that, e.g. by a change of spread, must call clearTables().
+
+    The nodes of slices with at least parallelThreshold() nodes are
+    rolled back in parallel chunks; the results do not depend on the
+    chunks. The discounts of the derived class must then be safe to
+    compute concurrently. During a rollback the array of values an asset
+    held before a step is reused for a later step of the same size, so
+    that slices of constant width are rolled back on two buffers.
+
+    Several assets, e.g. a book of options on the same tree, can be
+    rolled back together; the transition data of each slice are then
+    read once per node for all of them.
+
     \ingroup lattices
 */
 public abstract class TreeLattice extends Lattice {
+    //! default number of nodes from which slices are rolled back in parallel
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+
     private int n_;
     private int statePricesLimit_;
+    private int parallelThreshold_ = DEFAULT_PARALLEL_THRESHOLD;
     protected TreeLatticeImpl impl_;
     protected TimeGrid t_;
     // Arrow-Debrew state prices
     protected List<Array> statePrices_;
+    // flattened transition tables by slice, branch l of node j at j * n + l
+    private int[][] descendants_;
+    private double[][] probabilities_;
+    private double[][] discounts_;
 
     public TreeLattice(TimeGrid timeGrid, int n) {
         super(timeGrid);
@@ -82,17 +110,84 @@ public abstract class TreeLattice extends Lattice {
         int iFrom = (t_.index(from));
         int iTo = (t_.index(to));
 
+        // the values released by the previous step
+        Array spare = null;
         for (int i = iFrom - 1; i >= iTo; --i) {
-            Array newValues = new Array(impl_.size(i));
-            impl_.stepback(i, asset.values(), newValues);
+            final int size = impl_.size(i);
+            Array values = asset.values();
+            Array newValues = spare != null && spare.size() == size ? spare : new Array(size);
+            impl_.stepback(i, values, newValues);
             asset.setTime(t_.get(i));
             asset.setValues(newValues);
+            spare = values;
             // skip the very last adjustment
             if (i != iTo)
                 asset.adjustValues();
         }
     }
 
+    @Override
+    public void rollback(final List<? extends DiscretizedAsset> assets, double to) {
+        partialRollback(assets, to);
+        for (DiscretizedAsset asset : assets)
+            asset.adjustValues();
+    }
+
+    /*! The assets can be at different times, each one joining the
+        rollback at its own. At each step, all the assets are rolled
+        back before any of them is adjusted, in the given order; the
+        values are the same as if the assets were rolled back one at a
+        time.
+    */
+    @Override
+    public void partialRollback(final List<? extends DiscretizedAsset> assets, double to) {
+        final int k = assets.size();
+        final int iTo = t_.index(to);
+        int iFrom = iTo;
+        // index of the time of each asset; iTo for the assets already there
+        final int[] from = new int[k];
+        for (int a = 0; a < k; ++a) {
+            final double t = assets.get(a).time();
+            if (close(t, to)) {
+                from[a] = iTo;
+                continue;
+            }
+            QL_REQUIRE(t > to, "cannot roll the asset back to" + to
+                    + " (it is already at t = " + t + ")");
+            from[a] = t_.index(t);
+            iFrom = Math.max(iFrom, from[a]);
+        }
+
+        final Array[] values = new Array[k], newValues = new Array[k], spare = new Array[k];
+        for (int i = iFrom - 1; i >= iTo; --i) {
+            final int size = impl_.size(i);
+            int m = 0;
+            for (int a = 0; a < k; ++a) {
+                if (from[a] <= i)
+                    continue;
+                values[m] = assets.get(a).values();
+                newValues[m++] = spare[a] != null && spare[a].size() == size ? spare[a] : new Array(size);
+            }
+            stepback(i, values, newValues, m);
+            m = 0;
+            for (int a = 0; a < k; ++a) {
+                if (from[a] <= i)
+                    continue;
+                final DiscretizedAsset asset = assets.get(a);
+                asset.setTime(t_.get(i));
+                asset.setValues(newValues[m]);
+                spare[a] = values[m++];
+            }
+            // skip the very last adjustment
+            if (i != iTo) {
+                for (int a = 0; a < k; ++a) {
+                    if (from[a] > i)
+                        assets.get(a).adjustValues();
+                }
+            }
+        }
+    }
+
     //! Computes the present value of an asset using Arrow-Debrew prices
     public double presentValue(DiscretizedAsset asset) {
         int i = t_.index(asset.time());
@@ -106,31 +201,141 @@ public abstract class TreeLattice extends Lattice {
     }
 
     public void stepback(int i, Array values, Array newValues) {
-        for (int j = 0; j < impl_.size(i); j++) {
-            double value = 0.0;
-            for (int l = 0; l < n_; l++) {
-                value += impl_.probability(i, j, l) *
-                        values.get(impl_.descendant(i, j, l));
+        compileSlice(i);
+        final int[] descendants = descendants_[i];
+        final double[] probabilities = probabilities_[i], discounts = discounts_[i];
+        final double[] v = values.dataRef(), nv = newValues.dataRef();
+        final int n = n_;
+        ParallelFor.range(0, discounts.length, grain(discounts.length), (begin, end) -> {
+            for (int j = begin, b = begin * n; j < end; j++) {
+                double value = 0.0;
+                for (int l = 0; l < n; l++, b++)
+                    value += probabilities[b] * v[descendants[b]];
+                nv[j] = value * discounts[j];
             }
-            value *= impl_.discount(i, j);
-            newValues.set(j, value);
+        });
+    }
+
+    //! rolls back the values of the first count assets at once
+    public void stepback(int i, final Array[] values, final Array[] newValues, int count) {
+        if (count == 0)
+            return;
+        compileSlice(i);
+        final int[] descendants = descendants_[i];
+        final double[] probabilities = probabilities_[i], discounts = discounts_[i];
+        final double[][] v = new double[count][], nv = new double[count][];
+        for (int a = 0; a < count; ++a) {
+            v[a] = values[a].dataRef();
+            nv[a] = newValues[a].dataRef();
         }
+        final int n = n_;
+        ParallelFor.range(0, discounts.length, grain(discounts.length * count) / count + 1, (begin, end) -> {
+            final double[] sums = new double[count];
+            for (int j = begin, b = begin * n; j < end; j++) {
+                Arrays.fill(sums, 0.0);
+                for (int l = 0; l < n; l++, b++) {
+                    final double p = probabilities[b];
+                    final int d = descendants[b];
+                    for (int a = 0; a < count; ++a)
+                        sums[a] += p * v[a][d];
+                }
+                for (int a = 0; a < count; ++a)
+                    nv[a][j] = sums[a] * discounts[j];
+            }
+        });
+    }
+
+    //! number of nodes from which a slice is rolled back in parallel
+    public int parallelThreshold() {
+        return parallelThreshold_;
+    }
+
+    /*! Integer.MAX_VALUE keeps all the rollbacks serial. */
+    public void setParallelThreshold(int nodes) {
+        QL_REQUIRE(nodes > 0, "positive threshold required");
+        parallelThreshold_ = nodes;
+    }
+
+    // the chunk size for the nodes of a slice; the whole slice below the threshold
+    protected int grain(int nodes) {
+        return nodes < parallelThreshold_ ? nodes : ParallelFor.grain(nodes, 1024);
     }
 
     public abstract Array grid(double t);
 
     protected void computeStatePrices(int until) {
         for (int i = statePricesLimit_; i < until; i++) {
-            statePrices_.add(new Array(impl_.size(i + 1), 0.0));
-            for (int j = 0; j < impl_.size(i); j++) {
-                double disc = impl_.discount(i, j);
-                double statePrice = statePrices_.get(i).get(j);
-                for (int l = 0; l < n_; l++) {
-                    double temp = statePrices_.get(i + 1).get(impl_.descendant(i, j, l)) + statePrice * disc * impl_.probability(i, j, l);
-                    statePrices_.get(i + 1).set(impl_.descendant(i, j, l), temp);
-                }
+            compileSlice(i);
+            final int[] descendants = descendants_[i];
+            final double[] probabilities = probabilities_[i], discounts = discounts_[i];
+            final double[] current = statePrices_.get(i).dataRef();
+            final Array next = new Array(impl_.size(i + 1), 0.0);
+            final double[] p = next.dataRef();
+            for (int j = 0, b = 0; j < discounts.length; j++) {
+                final double statePrice = current[j] * discounts[j];
+                for (int l = 0; l < n_; l++, b++)
+                    p[descendants[b]] += statePrice * probabilities[b];
             }
+            statePrices_.add(next);
         }
         statePricesLimit_ = until;
     }
+
+    //! \name Flattened transition tables
+    //@{
+    //! the descendants of the nodes of slice i, branch l of node j at j * n + l
+    protected int[] flattenDescendants(int i) {
+        final int size = impl_.size(i);
+        final int[] d = new int[size * n_];
+        for (int j = 0, b = 0; j < size; j++)
+            for (int l = 0; l < n_; l++, b++)
+                d[b] = impl_.descendant(i, j, l);
+        return d;
+    }
+
+    //! the probabilities of the branches of the nodes of slice i, as above
+    protected double[] flattenProbabilities(int i) {
+        final int size = impl_.size(i);
+        final double[] p = new double[size * n_];
+        for (int j = 0, b = 0; j < size; j++)
+            for (int l = 0; l < n_; l++, b++)
+                p[b] = impl_.probability(i, j, l);
+        return p;
+    }
+
+    //! the discounts of the nodes of slice i
+    protected double[] flattenDiscounts(int i) {
+        final double[] d = new double[impl_.size(i)];
+        for (int j = 0; j < d.length; j++)
+            d[j] = impl_.discount(i, j);
+        return d;
+    }
+
+    //! drops the flattened tables, to be rebuilt on demand
+    protected void clearTables() {
+        descendants_ = null;
+        probabilities_ = null;
+        discounts_ = null;
+    }
+
+    // flattens the transition data of slice i unless already done
+    protected final void compileSlice(int i) {
+        if (discounts_ == null) {
+            final int slices = t_.size() - 1;
+            descendants_ = new int[slices][];
+            probabilities_ = new double[slices][];
+            discounts_ = new double[slices][];
+        }
+        if (discounts_[i] != null)
+            return;
+        final int[] d = flattenDescendants(i);
+        final double[] p = flattenProbabilities(i);
+        final double[] disc = flattenDiscounts(i);
+        QL_REQUIRE(d.length == disc.length * n_ && p.length == d.length,
+                "inconsistent transition tables at slice " + i);
+        descendants_[i] = d;
+        probabilities_[i] = p;
+        discounts_[i] = disc;
+    }
+    //@}
 }
@@ -2,6 +2,9 @@ package jquant.methods.lattices;
 
 import jquant.math.Array;
 import jquant.math.Matrix;
+import jquant.utilities.ParallelFor;
+
+import java.util.Arrays;
 
 import static jquant.math.CommonUtil.QL_FAIL;
 
@@ -9,6 +12,13 @@ import static jquant.math.CommonUtil.QL_FAIL;
 /*! This lattice is based on two trinomial trees and primarily used
     for the G2 short-rate model.
 
+    The probabilities of the nine branches of a node are products of the
+    probabilities of the two trees plus a correlation term; stepback()
+    reads them from the flattened tables of the trees instead of
+    building tables for the product lattice, and computes the discounts
+    of the nodes while rolling back. Large slices are split by rows of
+    the second tree across the threads of ParallelFor.
+
     \ingroup lattices
 */
 public class TreeLattice2D extends TreeLattice {
@@ -76,6 +86,78 @@ public class TreeLattice2D extends TreeLattice {
         return prob1 * prob2 + rho_ * (m_.get(branch1, branch2)) / 36.0;
     }
 
+    @Override
+    public void stepback(int i, Array values, Array newValues) {
+        final int n1 = tree1_.size(i), n2 = tree2_.size(i), next1 = tree1_.size(i + 1);
+        final int[] d1 = tree1_.descendants(i), d2 = tree2_.descendants(i);
+        final double[] p1 = tree1_.probabilities(i), p2 = tree2_.probabilities(i);
+        // correlation terms, branch b1 of the first tree and b2 of the second at 3 * b2 + b1
+        final double[] c = new double[9];
+        for (int b = 0; b < 9; ++b)
+            c[b] = rho_ * (m_.get(b % 3, b / 3)) / 36.0;
+        final double[] v = values.dataRef(), nv = newValues.dataRef();
+        final int rowGrain = Math.max(1, grain(n1 * n2) / n1);
+        ParallelFor.range(0, n2, rowGrain, (begin, end) -> {
+            for (int j2 = begin; j2 < end; ++j2) {
+                final int o2 = 3 * j2;
+                for (int j1 = 0; j1 < n1; ++j1) {
+                    final int o1 = 3 * j1;
+                    double value = 0.0;
+                    for (int b2 = 0; b2 < 3; ++b2) {
+                        final double q2 = p2[o2 + b2];
+                        final int row = d2[o2 + b2] * next1;
+                        for (int b1 = 0; b1 < 3; ++b1)
+                            value += (p1[o1 + b1] * q2 + c[3 * b2 + b1]) * v[d1[o1 + b1] + row];
+                    }
+                    final int j = j1 + j2 * n1;
+                    nv[j] = value * impl_.discount(i, j);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void stepback(int i, final Array[] values, final Array[] newValues, int count) {
+        if (count == 0)
+            return;
+        final int n1 = tree1_.size(i), n2 = tree2_.size(i), next1 = tree1_.size(i + 1);
+        final int[] d1 = tree1_.descendants(i), d2 = tree2_.descendants(i);
+        final double[] p1 = tree1_.probabilities(i), p2 = tree2_.probabilities(i);
+        final double[] c = new double[9];
+        for (int b = 0; b < 9; ++b)
+            c[b] = rho_ * (m_.get(b % 3, b / 3)) / 36.0;
+        final double[][] v = new double[count][], nv = new double[count][];
+        for (int a = 0; a < count; ++a) {
+            v[a] = values[a].dataRef();
+            nv[a] = newValues[a].dataRef();
+        }
+        final int rowGrain = Math.max(1, grain(n1 * n2 * count) / (n1 * count));
+        ParallelFor.range(0, n2, rowGrain, (begin, end) -> {
+            final double[] sums = new double[count];
+            for (int j2 = begin; j2 < end; ++j2) {
+                final int o2 = 3 * j2;
+                for (int j1 = 0; j1 < n1; ++j1) {
+                    final int o1 = 3 * j1;
+                    Arrays.fill(sums, 0.0);
+                    for (int b2 = 0; b2 < 3; ++b2) {
+                        final double q2 = p2[o2 + b2];
+                        final int row = d2[o2 + b2] * next1;
+                        for (int b1 = 0; b1 < 3; ++b1) {
+                            final double p = p1[o1 + b1] * q2 + c[3 * b2 + b1];
+                            final int d = d1[o1 + b1] + row;
+                            for (int a = 0; a < count; ++a)
+                                sums[a] += p * v[a][d];
+                        }
+                    }
+                    final int j = j1 + j2 * n1;
+                    final double discount = impl_.discount(i, j);
+                    for (int a = 0; a < count; ++a)
+                        nv[a][j] = sums[a] * discount;
+                }
+            }
+        });
+    }
+
     @Override
     public Array grid(double t) {
         QL_FAIL("not implemented");
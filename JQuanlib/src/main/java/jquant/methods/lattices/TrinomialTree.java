@@ -2,8 +2,8 @@ package jquant.methods.lattices;
 
 import jquant.StochasticProcess1D;
 import jquant.TimeGrid;
-import jquant.math.CommonUtil;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
@@ -21,18 +21,19 @@ public class TrinomialTree {
 
     protected List<Branching> branchings_;
     protected double x0_;
-    protected List<Double> dx_;
+    protected double[] dx_;
     protected TimeGrid timeGrid_;
     private int columns_;
 
     // isPositive = false
     public TrinomialTree(StochasticProcess1D process, TimeGrid timeGrid, boolean isPositive) {
         columns_ = timeGrid.size();
-        dx_ = CommonUtil.ArrayInit(1, 0.0);
+        branchings_ = new ArrayList<>();
         timeGrid_ = timeGrid;
         x0_ = process.x0();
         int nTimeSteps = timeGrid.size() - 1;
         QL_REQUIRE(nTimeSteps > 0, "null time steps for trinomial tree");
+        dx_ = new double[nTimeSteps + 1];
 
         int jMin = 0;
         int jMax = 0;
@@ -44,21 +45,21 @@ public class TrinomialTree {
             //Variance must be independent of x
             double v2 = process.variance(t, 0.0, dt);
             double v = Math.sqrt(v2);
-            dx_.add(v * Math.sqrt(3.0));
+            dx_[i + 1] = v * Math.sqrt(3.0);
 
             Branching branching = new Branching();
             for (int j = jMin; j <= jMax; j++) {
-                double x = x0_ + j * dx_.get(i);
+                double x = x0_ + j * dx_[i];
                 double m = process.expectation(t, x, dt);
-                int temp = (int) (Math.floor((m - x0_) / dx_.get(i + 1) + 0.5));
+                int temp = (int) (Math.floor((m - x0_) / dx_[i + 1] + 0.5));
 
                 if (isPositive) {
-                    while (x0_ + (temp - 1) * dx_.get(i + 1) <= 0) {
+                    while (x0_ + (temp - 1) * dx_[i + 1] <= 0) {
                         temp++;
                     }
                 }
 
-                double e = m - (x0_ + temp * dx_.get(i + 1));
+                double e = m - (x0_ + temp * dx_[i + 1]);
                 double e2 = e * e;
                 double e3 = e * Math.sqrt(3.0);
 
@@ -80,7 +81,7 @@ public class TrinomialTree {
     }
 
     public double dx(int i) {
-        return dx_.get(i);
+        return dx_[i];
     }
 
     public final TimeGrid timeGrid() {
@@ -105,4 +106,16 @@ public class TrinomialTree {
     public double probability(int i, int j, int b) {
         return branchings_.get(i).probability(j, b);
     }
+
+    //! descendants of the nodes at step i, branch b of node j at 3 * j + b
+    /*! The returned array is shared and must not be modified. */
+    public int[] descendants(int i) {
+        return branchings_.get(i).descendants();
+    }
+
+    //! probabilities of the nodes at step i, branch b of node j at 3 * j + b
+    /*! The returned array is shared and must not be modified. */
+    public double[] probabilities(int i) {
+        return branchings_.get(i).probabilities();
+    }
 }
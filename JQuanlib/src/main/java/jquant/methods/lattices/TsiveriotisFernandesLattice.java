@@ -2,7 +2,6 @@ package jquant.methods.lattices;
 
 import jquant.DiscretizedAsset;
 import jquant.math.Array;
-import jquant.methods.lattices.impl.TreeLatticeImpl;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 import static jquant.math.MathUtils.close;
@@ -15,7 +14,7 @@ import static jquant.math.MathUtils.close;
 public class TsiveriotisFernandesLattice extends BlackScholesLattice {
     private double creditSpread_;
 
-    public TsiveriotisFernandesLattice(TreeLatticeImpl tree, double riskFreeRate, double end, int steps,
+    public TsiveriotisFernandesLattice(BinomialTree<?> tree, double riskFreeRate, double end, int steps,
                                        double creditSpread, double volatility, double divYield) {
         super(tree, riskFreeRate, end, steps);
         creditSpread_ = creditSpread;
@@ -0,0 +1,118 @@
+package jquant.methods.montecarlo;
+
+import jquant.TimeGrid;
+import jquant.processes.GeneralizedBlackScholesProcess;
+import jquant.termstructures.volatility.equityfx.BlackVolTermStructure;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Monte Carlo Greeks under a generalized Black-Scholes process
+/*! The paths are evolved with the exact log-normal steps of the
+    process, so that over step i
+    \f[
+        \ln S_{i+1} = \ln S_i + \mu_i + \sqrt{v_i} Z_i
+    \f]
+    where \f$ v_i \f$ is the increment of the Black variance. The tangent
+    of \f$ \ln S_i \f$ is \f$ 1/S_0 \f$ for the spot,
+    \f$ t_i \f$ for a shift of the rates and
+    \f$ \sum_{j<i} \partial v_j/\partial\sigma\,(Z_j/(2\sqrt{v_j}) - 1/2) \f$
+    for a parallel shift \f$ \sigma \f$ of the Black volatility.
+
+    \ingroup mcarlo
+*/
+public class BlackScholesMonteCarloGreeks extends MonteCarloGreeks {
+    private final GeneralizedBlackScholesProcess process_;
+    // standard deviation, variance and its derivative with respect to the volatility for each step
+    private double[] stdDev_, variance_, varianceVega_;
+
+    public BlackScholesMonteCarloGreeks(final GeneralizedBlackScholesProcess process,
+                                        final TimeGrid timeGrid,
+                                        final PathwisePayoff payoff,
+                                        Method method) {
+        super(timeGrid, payoff, method);
+        process_ = process;
+    }
+
+    @Override
+    public int factors() {
+        return 1;
+    }
+
+    @Override
+    public double underlying() {
+        return process_.x0();
+    }
+
+    @Override
+    protected double riskFreeDiscount(double t) {
+        return process_.riskFreeRate().getValue().discount(t, true);
+    }
+
+    @Override
+    protected double dividendDiscount(double t) {
+        return process_.dividendYield().getValue().discount(t, true);
+    }
+
+    @Override
+    protected void prepare() {
+        QL_REQUIRE(process_.hasExactSteps(),
+                "exact log-normal steps required, i.e. strike-independent volatility");
+        final int steps = timeGrid_.size() - 1;
+        final double s0 = process_.x0();
+        final BlackVolTermStructure vol = process_.blackVolatility().getValue();
+        stdDev_ = new double[steps];
+        variance_ = new double[steps];
+        varianceVega_ = new double[steps];
+        // sigma(t) t, half the derivative of the Black variance at t with respect to sigma
+        double sigmaT0 = 0.0;
+        for (int i = 0; i < steps; ++i) {
+            final double t1 = timeGrid_.get(i + 1);
+            variance_[i] = process_.variance(timeGrid_.get(i), s0, timeGrid_.dt(i));
+            QL_REQUIRE(variance_[i] > 0.0, "null variance over step " + i);
+            stdDev_[i] = Math.sqrt(variance_[i]);
+            final double sigmaT1 = Math.sqrt(vol.blackVariance(t1, 0.01, true) * t1);
+            varianceVega_[i] = 2.0 * (sigmaT1 - sigmaT0);
+            sigmaT0 = sigmaT1;
+        }
+    }
+
+    @Override
+    protected void simulate(final double[] z, int nb, double[] s, double[] vega, double[] weights) {
+        final int points = timeGrid_.size(), steps = points - 1;
+        final boolean pathwise = method_ == Method.Pathwise;
+        final double s0 = process_.x0();
+        final double[] x = new double[nb], dw = new double[nb];
+        final double[] vegaWeight = new double[nb], driftWeight = new double[nb];
+        for (int q = 0; q < nb; ++q) {
+            x[q] = s0;
+            s[q * points] = s0;
+        }
+        for (int i = 0; i < steps; ++i) {
+            for (int q = 0; q < nb; ++q)
+                dw[q] = z[q * steps + i];
+            process_.evolve(timeGrid_.get(i), timeGrid_.dt(i), x, dw, nb);
+            final double sd = stdDev_[i], var = variance_[i], dv = varianceVega_[i];
+            final double dt = timeGrid_.dt(i);
+            for (int q = 0; q < nb; ++q) {
+                final int k = q * points + i + 1;
+                final double w = dw[q];
+                s[k] = x[q];
+                if (pathwise) {
+                    vega[k] = vega[k - 1] + dv * (0.5 * w / sd - 0.5);
+                } else {
+                    vegaWeight[q] += dv * (0.5 * (w * w - 1.0) / var - 0.5 * w / sd);
+                    driftWeight[q] += w * dt / sd;
+                }
+            }
+        }
+        final double sd = stdDev_[0];
+        for (int q = 0; q < nb; ++q) {
+            final double w = z[q * steps];
+            final int o = q * WEIGHTS;
+            weights[o + W_DELTA] = w / (s0 * sd);
+            weights[o + W_GAMMA] = ((w * w - 1.0) / (sd * sd) - w / sd) / (s0 * s0);
+            weights[o + W_VEGA] = vegaWeight[q];
+            weights[o + W_DRIFT] = driftWeight[q];
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package jquant.methods.montecarlo;
+
+import jquant.TimeGrid;
+import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.utilities.ParallelFor;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Gaussian increments of a block of paths
+/*! A block holds one row of factors * steps values per path; value
+    i * factors + k of a row is the increment of factor k over step i,
+    normalized to unit variance. This is the order in which
+    MultiPathGenerator and PathStore read a Gaussian sequence.
+
+    With the Brownian bridge, variate i of every factor is taken from
+    dimensions i * factors to (i + 1) * factors - 1 of the sequence, so
+    that the first dimensions of a low-discrepancy sequence build the
+    largest steps of all factors.
+
+    Antithetic blocks hold pairs of rows, row 2q + 1 being the opposite
+    of row 2q, so that the sequence generator is drawn once per pair.
+    Moment matching shifts and scales each column of the block so that
+    its sample mean is 0 and its sample variance is 1.
+
+    \ingroup mcarlo
+*/
+public class BrownianBlockGenerator {
+    private final UsgImpl generator_;
+    private final int factors_, steps_, dimension_;
+    private final BrownianBridge bridge_;
+    private final boolean antithetic_, momentMatching_;
+
+    public BrownianBlockGenerator(final UsgImpl generator,
+                                  int factors,
+                                  final TimeGrid timeGrid,
+                                  boolean brownianBridge,
+                                  boolean antithetic,
+                                  boolean momentMatching) {
+        generator_ = generator;
+        factors_ = factors;
+        steps_ = timeGrid.size() - 1;
+        dimension_ = factors * steps_;
+        QL_REQUIRE(generator.dimension() == dimension_,
+                "sequence generator dimensionality (" + generator.dimension()
+                        + ") != factors * timeSteps (" + dimension_ + ")");
+        bridge_ = brownianBridge ? new BrownianBridge(timeGrid) : null;
+        antithetic_ = antithetic;
+        momentMatching_ = momentMatching;
+    }
+
+    //! values per path, i.e. factors * steps
+    public int dimension() {
+        return dimension_;
+    }
+
+    public int factors() {
+        return factors_;
+    }
+
+    public boolean antithetic() {
+        return antithetic_;
+    }
+
+    public boolean momentMatching() {
+        return momentMatching_;
+    }
+
+    //! a new block of the given number of paths
+    public double[] next(int paths) {
+        double[] block = new double[paths * dimension_];
+        next(block, paths);
+        return block;
+    }
+
+    //! fills the first paths rows of block
+    public void next(double[] block, int paths) {
+        QL_REQUIRE(block.length >= paths * dimension_, "block too small for " + paths + " paths");
+        QL_REQUIRE(!antithetic_ || paths % 2 == 0,
+                "even number of paths required for antithetic pairs (" + paths + " given)");
+        QL_REQUIRE(!momentMatching_ || paths > 1, "at least two paths required to match moments");
+        final int stride = antithetic_ ? 2 : 1;
+        // the sequence generator is not thread-safe and is drawn in order
+        for (int q = 0; q < paths; q += stride) {
+            System.arraycopy(generator_.nextSequence().value, 0, block, q * dimension_, dimension_);
+        }
+        if (bridge_ != null) {
+            ParallelFor.range(0, (paths + stride - 1) / stride, ParallelFor.grain(paths / stride, 64),
+                    (begin, end) -> {
+                        final double[] in = new double[steps_], out = new double[steps_];
+                        for (int q = begin * stride; q < end * stride; q += stride) {
+                            bridge(block, q * dimension_, in, out);
+                        }
+                    });
+        }
+        if (antithetic_) {
+            for (int q = 0; q < paths; q += 2) {
+                final int row = q * dimension_;
+                for (int j = 0; j < dimension_; j++) {
+                    block[row + dimension_ + j] = -block[row + j];
+                }
+            }
+        }
+        if (momentMatching_) {
+            matchMoments(block, paths);
+        }
+    }
+
+    private void bridge(double[] block, int row, double[] in, double[] out) {
+        for (int k = 0; k < factors_; k++) {
+            for (int i = 0; i < steps_; i++) {
+                in[i] = block[row + i * factors_ + k];
+            }
+            bridge_.transform(in, 0, out, 0);
+            for (int i = 0; i < steps_; i++) {
+                block[row + i * factors_ + k] = out[i];
+            }
+        }
+    }
+
+    private void matchMoments(double[] block, int paths) {
+        final double[] mean = new double[dimension_], scale = new double[dimension_];
+        for (int p = 0; p < paths; p++) {
+            final int row = p * dimension_;
+            for (int j = 0; j < dimension_; j++) {
+                mean[j] += block[row + j];
+            }
+        }
+        for (int j = 0; j < dimension_; j++) {
+            mean[j] /= paths;
+        }
+        for (int p = 0; p < paths; p++) {
+            final int row = p * dimension_;
+            for (int j = 0; j < dimension_; j++) {
+                final double d = block[row + j] - mean[j];
+                scale[j] += d * d;
+            }
+        }
+        for (int j = 0; j < dimension_; j++) {
+            scale[j] = scale[j] > 0.0 ? Math.sqrt((paths - 1) / scale[j]) : 1.0;
+        }
+        for (int p = 0; p < paths; p++) {
+            final int row = p * dimension_;
+            for (int j = 0; j < dimension_; j++) {
+                block[row + j] = (block[row + j] - mean[j]) * scale[j];
+            }
+        }
+    }
+}
@@ -3,8 +3,9 @@ package jquant.methods.montecarlo;
 //! Builds Wiener process paths using Gaussian variates
 
 import jquant.TimeGrid;
-import jquant.math.CommonUtil;
+import jquant.utilities.ParallelFor;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
@@ -19,11 +20,11 @@ import static jquant.math.CommonUtil.QL_REQUIRE;
  * \ingroup mcarlo
  */
 public class BrownianBridge {
-    private int size_;
-    private List<Double> t_;
-    private List<Double> sqrtdt_;
-    private List<Integer> bridgeIndex_, leftIndex_, rightIndex_;
-    private List<Double> leftWeight_, rightWeight_, stdDev_;
+    private final int size_;
+    private final double[] t_;
+    private final double[] sqrtdt_;
+    private final int[] bridgeIndex_, leftIndex_, rightIndex_;
+    private final double[] leftWeight_, rightWeight_, stdDev_;
 
     /**
      * !The constructor generates the time grid so that each step
@@ -32,18 +33,7 @@ public class BrownianBridge {
      * \param steps The number of steps in the path
      */
     public BrownianBridge(int steps) {
-        size_ = steps;
-        t_ = CommonUtil.ArrayInit(size_);
-        sqrtdt_ = CommonUtil.ArrayInit(size_);
-        bridgeIndex_ = CommonUtil.ArrayInit(size_);
-        leftIndex_ = CommonUtil.ArrayInit(size_);
-        rightIndex_ = CommonUtil.ArrayInit(size_);
-        leftWeight_ = CommonUtil.ArrayInit(size_);
-        rightWeight_ = CommonUtil.ArrayInit(size_);
-        stdDev_ = CommonUtil.ArrayInit(size_);
-        for (int i = 0; i < size_; ++i)
-            t_.set(i, i + 1d);
-        initialize();
+        this(unitTimes(steps));
     }
 
     /**
@@ -57,16 +47,7 @@ public class BrownianBridge {
      * must not be included
      */
     public BrownianBridge(final List<Double> times) {
-        size_ = times.size();
-        t_ = times;
-        sqrtdt_ = CommonUtil.ArrayInit(size_);
-        bridgeIndex_ = CommonUtil.ArrayInit(size_);
-        leftIndex_ = CommonUtil.ArrayInit(size_);
-        rightIndex_ = CommonUtil.ArrayInit(size_);
-        leftWeight_ = CommonUtil.ArrayInit(size_);
-        rightWeight_ = CommonUtil.ArrayInit(size_);
-        stdDev_ = CommonUtil.ArrayInit(size_);
-        initialize();
+        this(times.stream().mapToDouble(Double::doubleValue).toArray());
     }
 
     /**
@@ -76,20 +57,36 @@ public class BrownianBridge {
      * the steps will occur
      */
     public BrownianBridge(final TimeGrid timeGrid) {
-        size_ = timeGrid.size() - 1;
-        t_ = CommonUtil.ArrayInit(size_);
-        sqrtdt_ = CommonUtil.ArrayInit(size_);
-        bridgeIndex_ = CommonUtil.ArrayInit(size_);
-        leftIndex_ = CommonUtil.ArrayInit(size_);
-        rightIndex_ = CommonUtil.ArrayInit(size_);
-        leftWeight_ = CommonUtil.ArrayInit(size_);
-        rightWeight_ = CommonUtil.ArrayInit(size_);
-        stdDev_ = CommonUtil.ArrayInit(size_);
-        for (int i = 0; i < size_; ++i)
-            t_.set(i, timeGrid.get(i + 1));
+        this(gridTimes(timeGrid));
+    }
+
+    private BrownianBridge(final double[] times) {
+        size_ = times.length;
+        t_ = times;
+        sqrtdt_ = new double[size_];
+        bridgeIndex_ = new int[size_];
+        leftIndex_ = new int[size_];
+        rightIndex_ = new int[size_];
+        leftWeight_ = new double[size_];
+        rightWeight_ = new double[size_];
+        stdDev_ = new double[size_];
         initialize();
     }
 
+    private static double[] unitTimes(int steps) {
+        double[] t = new double[steps];
+        for (int i = 0; i < steps; ++i)
+            t[i] = i + 1d;
+        return t;
+    }
+
+    private static double[] gridTimes(final TimeGrid timeGrid) {
+        double[] t = new double[timeGrid.size() - 1];
+        for (int i = 0; i < t.length; ++i)
+            t[i] = timeGrid.get(i + 1);
+        return t;
+    }
+
     //! \name inspectors
     //@{
     public int size() {
@@ -97,31 +94,31 @@ public class BrownianBridge {
     }
 
     public final List<Double> times() {
-        return t_;
+        return asList(t_);
     }
 
     public final List<Integer> bridgeIndex() {
-        return bridgeIndex_;
+        return asList(bridgeIndex_);
     }
 
     public final List<Integer> leftIndex() {
-        return leftIndex_;
+        return asList(leftIndex_);
     }
 
     public final List<Integer> rightIndex() {
-        return rightIndex_;
+        return asList(rightIndex_);
     }
 
     public final List<Double> leftWeight() {
-        return leftWeight_;
+        return asList(leftWeight_);
     }
 
     public final List<Double> rightWeight() {
-        return rightWeight_;
+        return asList(rightWeight_);
     }
 
     public final List<Double> stdDeviation() {
-        return stdDev_;
+        return asList(stdDev_);
     }
     //@}
 
@@ -146,82 +143,123 @@ public class BrownianBridge {
     public void transform(List<Double> input, List<Double> output, int start) {
         QL_REQUIRE(input.size() == size_,
                 "incompatible sequence size");
+        double[] in = new double[size_], out = new double[size_];
+        for (int i = 0; i < size_; ++i)
+            in[i] = input.get(i);
+        transform(in, 0, out, 0);
+        for (int i = 0; i < size_; ++i)
+            output.set(start + i, out[i]);
+    }
+
+    //! same as transform(input, output, 0) on primitive buffers
+    public void transform(final double[] input, double[] output) {
+        QL_REQUIRE(input.length >= size_ && output.length >= size_,
+                "incompatible sequence size");
+        transform(input, 0, output, 0);
+    }
+
+    //! transforms input[inOffset, inOffset + size()) into output[outOffset, outOffset + size())
+    public void transform(final double[] input, int inOffset, double[] output, int outOffset) {
         // We use output to store the path...
-        output.set(start + size_ - 1, stdDev_.get(0) * input.get(0));
+        output[outOffset + size_ - 1] = stdDev_[0] * input[inOffset];
         for (int i = 1; i < size_; ++i) {
-            int j = leftIndex_.get(i);
-            int k = rightIndex_.get(i);
-            int l = bridgeIndex_.get(i);
+            final int j = leftIndex_[i];
+            final int k = rightIndex_[i];
+            final int l = bridgeIndex_[i];
             if (j != 0) {
-                output.set(l + start,
-                        leftWeight_.get(i) * output.get(start + j - 1) +
-                                rightWeight_.get(i) * output.get(start + k) +
-                                stdDev_.get(i) * input.get(i));
+                output[outOffset + l] = leftWeight_[i] * output[outOffset + j - 1] +
+                        rightWeight_[i] * output[outOffset + k] +
+                        stdDev_[i] * input[inOffset + i];
             } else {
-                output.set(l+start,
-                        rightWeight_.get(i) * output.get(start + k) +
-                                stdDev_.get(i) * input.get(i));
+                output[outOffset + l] = rightWeight_[i] * output[outOffset + k] +
+                        stdDev_[i] * input[inOffset + i];
             }
         }
         // ...after which, we calculate the variations and
         // normalize to unit times
         for (int i = size_ - 1; i >= 1; --i) {
-            output.set(start + i, output.get(start + i) - output.get(start + i - 1));
-            output.set(start + i, output.get(start + i) / sqrtdt_.get(i));
+            output[outOffset + i] = (output[outOffset + i] - output[outOffset + i - 1]) / sqrtdt_[i];
         }
-        output.set(start, output.get(start) / sqrtdt_.get(0));
+        output[outOffset] /= sqrtdt_[0];
+    }
+
+    /*! transforms a block of paths: row p of input, i.e. the size()
+        values from p * size(), is bridged into the same row of output.
+        Rows are independent and are processed in parallel.
+    */
+    public void transformPaths(final double[] input, double[] output, int paths) {
+        QL_REQUIRE(input.length >= paths * size_ && output.length >= paths * size_,
+                "incompatible block size");
+        ParallelFor.range(0, paths, ParallelFor.grain(paths, 256), (begin, end) -> {
+            for (int p = begin; p < end; p++) {
+                transform(input, p * size_, output, p * size_);
+            }
+        });
     }
 
     private void initialize() {
 
-        sqrtdt_.set(0, Math.sqrt(t_.get(0)));
+        sqrtdt_[0] = Math.sqrt(t_[0]);
         for (int i = 1; i < size_; ++i)
-            sqrtdt_.set(i, Math.sqrt(t_.get(i) - t_.get(i - 1)));
+            sqrtdt_[i] = Math.sqrt(t_[i] - t_[i - 1]);
 
         // map is used to indicate which points are already constructed.
         // If map[i] is zero, path point i is yet unconstructed.
         // map[i]-1 is the index of the variate that constructs
         // the path point # i.
-        List<Integer> map = CommonUtil.ArrayInit(size_, 0);
+        int[] map = new int[size_];
 
         //  The first point in the construction is the global step.
-        map.set(size_ - 1, 1);
+        map[size_ - 1] = 1;
         //  The global step is constructed from the first variate.
-        bridgeIndex_.set(0, size_ - 1);
+        bridgeIndex_[0] = size_ - 1;
         //  The variance of the global step
-        stdDev_.set(0, Math.sqrt(t_.get(size_ - 1)));
+        stdDev_[0] = Math.sqrt(t_[size_ - 1]);
         //  The global step to the last point in time is special.
-        leftWeight_.set(0, 0d);
-        rightWeight_.set(0, 0.0);
+        leftWeight_[0] = 0.0;
+        rightWeight_[0] = 0.0;
         for (int j = 0, i = 1; i < size_; ++i) {
             // Find the next unpopulated entry in the map.
-            while (map.get(j) != 0)
+            while (map[j] != 0)
                 ++j;
             int k = j;
             // Find the next populated entry in the map from there.
-            while (map.get(k) == 0)
+            while (map[k] == 0)
                 ++k;
             // l-1 is now the index of the point to be constructed next.
             int l = j + ((k - 1 - j) >>> 1);
-            map.set(l, i);
+            map[l] = i;
             // The i-th Gaussian variate will be used to set point l-1.
-            bridgeIndex_.set(i, l);
-            leftIndex_.set(i, j);
-            rightIndex_.set(i, k);
+            bridgeIndex_[i] = l;
+            leftIndex_[i] = j;
+            rightIndex_[i] = k;
             if (j != 0) {
-                leftWeight_.set(i, (t_.get(k) - t_.get(l)) / (t_.get(k) - t_.get(j - 1)));
-                rightWeight_.set(i, (t_.get(l) - t_.get(j - 1)) / (t_.get(k) - t_.get(j - 1)));
-                stdDev_.set(i,
-                        Math.sqrt(((t_.get(l) - t_.get(j - 1)) * (t_.get(k) - t_.get(l)))
-                                / (t_.get(k) - t_.get(j - 1))));
+                leftWeight_[i] = (t_[k] - t_[l]) / (t_[k] - t_[j - 1]);
+                rightWeight_[i] = (t_[l] - t_[j - 1]) / (t_[k] - t_[j - 1]);
+                stdDev_[i] = Math.sqrt(((t_[l] - t_[j - 1]) * (t_[k] - t_[l]))
+                        / (t_[k] - t_[j - 1]));
             } else {
-                leftWeight_.set(i, (t_.get(k) - t_.get(l)) / t_.get(k));
-                rightWeight_.set(i, t_.get(l) / t_.get(k));
-                stdDev_.set(i, Math.sqrt(t_.get(l) * (t_.get(k) - t_.get(l)) / t_.get(k)));
+                leftWeight_[i] = (t_[k] - t_[l]) / t_[k];
+                rightWeight_[i] = t_[l] / t_[k];
+                stdDev_[i] = Math.sqrt(t_[l] * (t_[k] - t_[l]) / t_[k]);
             }
             j = k + 1;
             if (j >= size_)
                 j = 0;    //  wrap around
         }
     }
+
+    private static List<Double> asList(final double[] a) {
+        List<Double> l = new ArrayList<>(a.length);
+        for (double v : a)
+            l.add(v);
+        return l;
+    }
+
+    private static List<Integer> asList(final int[] a) {
+        List<Integer> l = new ArrayList<>(a.length);
+        for (int v : a)
+            l.add(v);
+        return l;
+    }
 }
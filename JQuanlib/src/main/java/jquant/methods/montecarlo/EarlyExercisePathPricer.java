@@ -0,0 +1,23 @@
+package jquant.methods.montecarlo;
+
+import jquant.math.Function;
+
+import java.util.List;
+
+//! base class for early exercise path pricers
+/*! Returns the value of an option on a given path at grid point t,
+    and the state on which the continuation value is regressed.
+    Values are deflated to time 0 along the path, so that discounting
+    may depend on the path, e.g. for short-rate processes.
+
+    \ingroup mcarlo
+*/
+public interface EarlyExercisePathPricer<P> {
+    //! exercise value at grid point t, deflated to time 0
+    double value(final P path, int t);
+
+    //! regression state at grid point t
+    double state(final P path, int t);
+
+    List<Function> basisSystem();
+}
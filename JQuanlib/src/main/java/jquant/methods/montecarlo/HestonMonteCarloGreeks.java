@@ -0,0 +1,147 @@
+package jquant.methods.montecarlo;
+
+import jquant.TimeGrid;
+import jquant.processes.HestonProcess;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+import static jquant.processes.HestonProcess.Discretization.*;
+
+//! Monte Carlo Greeks under the Heston process
+/*! The paths are evolved with the log-Euler steps of the process
+    (PartialTruncation, FullTruncation or Reflection), where
+    \f[
+        \ln S_{i+1} = \ln S_i + (\mu_i - \frac{1}{2}\nu_i^2)\Delta t
+                    + \nu_i \sqrt{\Delta t} Z^1_i
+    \f]
+    with \f$ \nu_i \f$ the square root of the (truncated) variance. The
+    log of the asset does not depend on the spot, and its tangent with
+    respect to the initial variance is carried along with the tangent of
+    the variance through each step of the scheme. Vega is the derivative
+    with respect to the initial volatility \f$ \sqrt{v_0} \f$.
+
+    The likelihood-ratio weights for the spot and the initial variance
+    come from the Gaussian density of the first step. A shift of the
+    rates cannot be moved into the density of the steps where the
+    variance is truncated to zero, so with the likelihood-ratio method
+    rho and dividend rho are left null (NaN).
+
+    \ingroup mcarlo
+*/
+public class HestonMonteCarloGreeks extends MonteCarloGreeks {
+    private final HestonProcess process_;
+
+    public HestonMonteCarloGreeks(final HestonProcess process,
+                                  final TimeGrid timeGrid,
+                                  final PathwisePayoff payoff,
+                                  Method method) {
+        super(timeGrid, payoff, method);
+        final HestonProcess.Discretization d = process.discretization();
+        QL_REQUIRE(d == PartialTruncation || d == FullTruncation || d == Reflection,
+                "log-Euler discretization required, " + d + " given");
+        process_ = process;
+    }
+
+    @Override
+    public int factors() {
+        return 2;
+    }
+
+    @Override
+    public double underlying() {
+        return process_.s0().getValue().value();
+    }
+
+    @Override
+    protected double riskFreeDiscount(double t) {
+        return process_.riskFreeRate().getValue().discount(t, true);
+    }
+
+    @Override
+    protected double dividendDiscount(double t) {
+        return process_.dividendYield().getValue().discount(t, true);
+    }
+
+    @Override
+    protected void prepare() {
+        QL_REQUIRE(process_.v0() > 0.0, "positive initial variance required");
+        QL_REQUIRE(Math.abs(process_.rho()) < 1.0,
+                "correlation must be within (-1, 1) for the weights of the first step");
+        process_.prepare(timeGrid_);
+    }
+
+    @Override
+    protected void simulate(final double[] z, int nb, double[] s, double[] vega, double[] weights) {
+        final int points = timeGrid_.size(), steps = points - 1, dimension = 2 * steps;
+        final HestonProcess.Discretization scheme = process_.discretization();
+        final double s0 = underlying(), v0 = process_.v0();
+        final double kappa = process_.kappa(), sigma = process_.sigma(), rho = process_.rho();
+        final double sqrhov = Math.sqrt(1.0 - rho * rho);
+        final double[] x = new double[2 * nb], dw = new double[2 * nb], v = new double[nb];
+        // derivatives of the variance and of the log of the asset with respect to v0
+        final double[] dv = new double[nb], dlns = new double[nb];
+        for (int q = 0; q < nb; ++q) {
+            x[q] = s0;
+            x[nb + q] = v0;
+            s[q * points] = s0;
+            dv[q] = 1.0;
+        }
+        for (int i = 0; i < steps; ++i) {
+            for (int q = 0; q < nb; ++q) {
+                dw[q] = z[q * dimension + 2 * i];
+                dw[nb + q] = z[q * dimension + 2 * i + 1];
+            }
+            System.arraycopy(x, nb, v, 0, nb);
+            final double dt = timeGrid_.dt(i), sdt = Math.sqrt(dt);
+            process_.evolve(timeGrid_.get(i), dt, x, dw, nb);
+            for (int q = 0; q < nb; ++q) {
+                final int k = q * points + i + 1;
+                s[k] = x[q];
+                if (method_ != Method.Pathwise)
+                    continue;
+                final double vi = v[q];
+                final double vol, dvol;
+                if (scheme == Reflection) {
+                    vol = Math.sqrt(Math.abs(vi));
+                    dvol = vi != 0.0 ? Math.signum(vi) * 0.5 / vol * dv[q] : 0.0;
+                } else {
+                    vol = vi > 0.0 ? Math.sqrt(vi) : 0.0;
+                    dvol = vi > 0.0 ? 0.5 / vol * dv[q] : 0.0;
+                }
+                final double shock = sigma * sdt * (rho * dw[q] + sqrhov * dw[nb + q]) * dvol;
+                dlns[q] += (dw[q] * sdt - vol * dt) * dvol;
+                switch (scheme) {
+                    case PartialTruncation:
+                        dv[q] += -kappa * dt * dv[q] + shock;
+                        break;
+                    case FullTruncation:
+                        dv[q] += -2.0 * kappa * dt * vol * dvol + shock;
+                        break;
+                    default:
+                        dv[q] = 2.0 * vol * dvol * (1.0 - kappa * dt) + shock;
+                        break;
+                }
+                // dV/d sqrt(v0) = 2 sqrt(v0) dV/dv0
+                vega[k] = 2.0 * Math.sqrt(v0) * dlns[q];
+            }
+        }
+
+        // the first step is Gaussian with Cholesky factor sd [[1, 0], [sigma rho, sigma sqrhov]];
+        // the log density derivative along a shift m of its mean is u . L^-1 m
+        final double dt = timeGrid_.dt(0), sd = Math.sqrt(v0 * dt);
+        // derivatives of the means of the log-asset and variance increments with respect to v0
+        final double dmS = -0.5 * dt, dmV = 1.0 - kappa * dt;
+        final double w0 = dmS / sd, w1 = (dmV / sd - sigma * rho * w0) / (sigma * sqrhov);
+        // the same for a unit shift of ln s0, and |L^-1 (1, 0)|^2
+        final double a0 = 1.0 / sd, a1 = -rho / (sqrhov * sd), a2 = a0 * a0 + a1 * a1;
+        for (int q = 0; q < nb; ++q) {
+            final double u0 = z[q * dimension], u1 = z[q * dimension + 1];
+            final double a = u0 * a0 + u1 * a1;
+            final int o = q * WEIGHTS;
+            weights[o + W_DELTA] = a / s0;
+            weights[o + W_GAMMA] = (a * a - a2 - a) / (s0 * s0);
+            weights[o + W_VEGA] = 2.0 * Math.sqrt(v0)
+                    * (u0 * w0 + u1 * w1 + 0.5 * (u0 * u0 + u1 * u1 - 2.0) / v0);
+            weights[o + W_DRIFT] = Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package jquant.methods.montecarlo;
+
+import jquant.TimeGrid;
+import jquant.math.Array;
+import jquant.math.Function;
+import jquant.math.Matrix;
+import jquant.math.statistics.IncrementalStatistics;
+import jquant.utilities.ParallelFor;
+
+import java.util.List;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+import static jquant.math.matrixutilities.MatrixUtil.qrSolve;
+
+//! Longstaff-Schwarz path pricer for early exercise options
+/*! References:
+
+    Francis Longstaff, Eduardo Schwartz, 2001. Valuing American Options
+    by Simulation: A Simple Least-Squares Approach, The Review of
+    Financial Studies, Volume 14, No. 1, 113-147
+
+    calibrate() goes backwards over the exercise points of a set of
+    calibration paths and regresses the deflated value of the cash flows
+    still to come on the basis functions of the state, using the paths
+    in the money only; the coefficients estimate the continuation value.
+    The paths are then priced by exercising at the first point where the
+    exercise value is positive and not below the estimate. Both phases
+    work on batches of paths in parallel.
+
+    Once calibrated, the pricer keeps no state per path and can be used
+    by McSimulation or price() on independent paths.
+
+    \ingroup mcarlo
+*/
+public class LongstaffSchwartzPathPricer<P> implements PathPricer<P> {
+    private final int[] exercise_;
+    private final EarlyExercisePathPricer<P> pathPricer_;
+    private final Function[] v_;
+    private final double[][] coeff_;
+    private boolean calibrated_;
+
+    //! exercise at all the points of the grid but the first
+    public LongstaffSchwartzPathPricer(final TimeGrid times,
+                                       final EarlyExercisePathPricer<P> pathPricer) {
+        this(allPoints(times), pathPricer);
+    }
+
+    //! exercise at the given increasing grid indices, the last one being the expiry
+    public LongstaffSchwartzPathPricer(final int[] exerciseIndices,
+                                       final EarlyExercisePathPricer<P> pathPricer) {
+        QL_REQUIRE(exerciseIndices.length > 0, "no exercise points given");
+        for (int i = 1; i < exerciseIndices.length; ++i)
+            QL_REQUIRE(exerciseIndices[i] > exerciseIndices[i - 1], "exercise indices must be increasing");
+        exercise_ = exerciseIndices.clone();
+        pathPricer_ = pathPricer;
+        v_ = pathPricer.basisSystem().toArray(new Function[0]);
+        QL_REQUIRE(v_.length > 0, "empty basis system");
+        coeff_ = new double[exercise_.length - 1][];
+        calibrated_ = false;
+    }
+
+    private static int[] allPoints(final TimeGrid times) {
+        int[] indices = new int[times.size() - 1];
+        for (int i = 0; i < indices.length; ++i)
+            indices[i] = i + 1;
+        return indices;
+    }
+
+    //! regression coefficients at the j-th exercise point (not the last one)
+    public double[] coefficients(int j) {
+        QL_REQUIRE(calibrated_, "pricer not calibrated");
+        return coeff_[j].clone();
+    }
+
+    public void calibrate(final List<? extends P> paths) {
+        final int n = paths.size();
+        final int k = v_.length;
+        QL_REQUIRE(n > 0, "no calibration paths given");
+        final int grain = ParallelFor.grain(n, 256);
+
+        final double[] prices = new double[n];
+        final double[] exercise = new double[n];
+        final double[] basis = new double[n * k];
+        final int last = exercise_[exercise_.length - 1];
+        ParallelFor.range(0, n, grain, (begin, end) -> {
+            for (int p = begin; p < end; ++p)
+                prices[p] = pathPricer_.value(paths.get(p), last);
+        });
+
+        for (int j = exercise_.length - 2; j >= 0; --j) {
+            final int t = exercise_[j];
+            ParallelFor.range(0, n, grain, (begin, end) -> {
+                for (int p = begin; p < end; ++p) {
+                    final P path = paths.get(p);
+                    exercise[p] = pathPricer_.value(path, t);
+                    if (exercise[p] > 0.0) {
+                        final double x = pathPricer_.state(path, t);
+                        for (int l = 0; l < k; ++l)
+                            basis[p * k + l] = v_[l].value(x);
+                    }
+                }
+            });
+
+            // regression on the paths in the money
+            int m = 0;
+            for (int p = 0; p < n; ++p)
+                if (exercise[p] > 0.0)
+                    ++m;
+            final double[] coeff = new double[k];
+            if (m >= k) {
+                Matrix a = new Matrix(m, k, 0.0);
+                Array y = new Array(m);
+                final double[] ad = a.dataRef(), yd = y.dataRef();
+                for (int p = 0, row = 0; p < n; ++p) {
+                    if (exercise[p] > 0.0) {
+                        System.arraycopy(basis, p * k, ad, row * k, k);
+                        yd[row++] = prices[p];
+                    }
+                }
+                final double[] x = qrSolve(a, y, true, new Array(0)).toArray();
+                System.arraycopy(x, 0, coeff, 0, k);
+            }
+            coeff_[j] = coeff;
+
+            ParallelFor.range(0, n, grain, (begin, end) -> {
+                for (int p = begin; p < end; ++p) {
+                    if (exercise[p] > 0.0 && exercise[p] >= continuation(coeff, basis, p * k))
+                        prices[p] = exercise[p];
+                }
+            });
+        }
+        calibrated_ = true;
+    }
+
+    @Override
+    public double value(final P path) {
+        QL_REQUIRE(calibrated_, "pricer not calibrated");
+        for (int j = 0; j < exercise_.length - 1; ++j) {
+            final double exercise = pathPricer_.value(path, exercise_[j]);
+            if (exercise > 0.0) {
+                final double x = pathPricer_.state(path, exercise_[j]);
+                double continuation = 0.0;
+                for (int l = 0; l < v_.length; ++l)
+                    continuation += coeff_[j][l] * v_[l].value(x);
+                if (exercise >= continuation)
+                    return exercise;
+            }
+        }
+        return pathPricer_.value(path, exercise_[exercise_.length - 1]);
+    }
+
+    //! prices the paths in parallel; the samples are added in path order
+    public IncrementalStatistics price(final List<? extends P> paths) {
+        final int n = paths.size();
+        final double[] values = new double[n];
+        ParallelFor.range(0, n, ParallelFor.grain(n, 256), (begin, end) -> {
+            for (int p = begin; p < end; ++p)
+                values[p] = value(paths.get(p));
+        });
+        IncrementalStatistics stats = new IncrementalStatistics();
+        for (double v : values)
+            stats.add(v, 1.0);
+        return stats;
+    }
+
+    private double continuation(final double[] coeff, final double[] basis, int offset) {
+        double s = 0.0;
+        for (int l = 0; l < coeff.length; ++l)
+            s += coeff[l] * basis[offset + l];
+        return s;
+    }
+}
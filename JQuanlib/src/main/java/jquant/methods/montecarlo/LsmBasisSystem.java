@@ -0,0 +1,84 @@
+package jquant.methods.montecarlo;
+
+import jquant.math.Function;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! utility functions for Longstaff-Schwartz basis systems
+/*! The polynomials of degree 0 to order, evaluated with their
+    three-term recurrences.
+
+    \ingroup mcarlo
+*/
+public final class LsmBasisSystem {
+    public enum PolynomialType {
+        Monomial, Laguerre, Hermite, Legendre, Chebyshev
+    }
+
+    private LsmBasisSystem() {
+    }
+
+    public static List<Function> pathBasisSystem(int order, PolynomialType polyType) {
+        QL_REQUIRE(order >= 0, "negative order given");
+        List<Function> ret = new ArrayList<>(order + 1);
+        for (int i = 0; i <= order; ++i) {
+            final int degree = i;
+            ret.add(x -> polynomial(polyType, degree, x));
+        }
+        return ret;
+    }
+
+    //! the polynomial of the given type and degree at x
+    public static double polynomial(PolynomialType polyType, int degree, double x) {
+        if (polyType == PolynomialType.Monomial) {
+            double p = 1.0;
+            for (int i = 0; i < degree; ++i)
+                p *= x;
+            return p;
+        }
+        // p_{n+1} = (a_n x + b_n) p_n - c_n p_{n-1}
+        double p0 = 1.0;
+        if (degree == 0)
+            return p0;
+        double p1;
+        switch (polyType) {
+            case Laguerre:
+                p1 = 1.0 - x;
+                break;
+            case Hermite:
+                p1 = 2.0 * x;
+                break;
+            case Legendre:
+            case Chebyshev:
+                p1 = x;
+                break;
+            default:
+                QL_FAIL("unknown polynomial type");
+                return Double.NaN;
+        }
+        for (int n = 1; n < degree; ++n) {
+            final double p2;
+            switch (polyType) {
+                case Laguerre:
+                    p2 = ((2 * n + 1 - x) * p1 - n * p0) / (n + 1);
+                    break;
+                case Hermite:
+                    p2 = 2.0 * x * p1 - 2.0 * n * p0;
+                    break;
+                case Legendre:
+                    p2 = ((2 * n + 1) * x * p1 - n * p0) / (n + 1);
+                    break;
+                default:
+                    p2 = 2.0 * x * p1 - p0;
+                    break;
+            }
+            p0 = p1;
+            p1 = p2;
+        }
+        return p1;
+    }
+}
@@ -0,0 +1,173 @@
+package jquant.methods.montecarlo;
+
+import jquant.math.statistics.IncrementalStatistics;
+import jquant.math.statistics.impl.Stat;
+import jquant.methods.montecarlo.impl.PathGeneratorImpl;
+import jquant.utilities.ParallelFor;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! base class for Monte Carlo engines
+/*! Paths are simulated in blocks of blockSize samples, each block by its
+    own MonteCarloModel whose generators come from the factories for that
+    block index. Blocks run in parallel on the ForkJoinPool; their samples
+    are then added to the accumulator in block order, so the results do not
+    depend on the number of threads as long as the generator of block k
+    depends on k only, e.g.
+
+    \code
+        RngStreams<MersenneTwisterUniformRng> streams = ...;
+        k -> new PathGenerator(process, grid,
+                 new InverseCumulativeRsg(
+                     new RandomSequenceGenerator(steps, streams.stream(k))), false)
+    \endcode
+
+    Block numbers keep increasing over successive calls, so samples added
+    later never reuse the numbers of earlier ones. The path pricers and the
+    process are shared between threads and must not keep state per path.
+
+    \ingroup mcarlo
+*/
+public class McSimulation<P> {
+
+    //! generator for the paths of block k
+    @FunctionalInterface
+    public interface GeneratorFactory<P> {
+        PathGeneratorImpl<P> generator(int block);
+    }
+
+    private final GeneratorFactory<P> pathGenerators_;
+    private final PathPricer<P> pathPricer_;
+    private final boolean antitheticVariate_;
+    private final Stat sampleAccumulator_;
+    private final int blockSize_;
+    private PathPricer<P> cvPathPricer_;
+    private double cvOptionValue_;
+    private GeneratorFactory<P> cvPathGenerators_;
+    private int nextBlock_;
+
+    // default statistics = IncrementalStatistics, blockSize = 1024
+    public McSimulation(final GeneratorFactory<P> pathGenerators,
+                        final PathPricer<P> pathPricer,
+                        boolean antitheticVariate) {
+        this(pathGenerators, pathPricer, antitheticVariate, new IncrementalStatistics(), 1024);
+    }
+
+    public McSimulation(final GeneratorFactory<P> pathGenerators,
+                        final PathPricer<P> pathPricer,
+                        boolean antitheticVariate,
+                        final Stat sampleAccumulator,
+                        int blockSize) {
+        QL_REQUIRE(blockSize > 0, "block size must be positive");
+        pathGenerators_ = pathGenerators;
+        pathPricer_ = pathPricer;
+        antitheticVariate_ = antitheticVariate;
+        sampleAccumulator_ = sampleAccumulator;
+        blockSize_ = blockSize;
+    }
+
+    //! prices the control variate on the option paths, or on paths from cvPathGenerators if given
+    public void setControlVariate(final PathPricer<P> cvPathPricer,
+                                  double cvOptionValue,
+                                  final GeneratorFactory<P> cvPathGenerators) {
+        QL_REQUIRE(sampleAccumulator_.samples() == 0,
+                "control variate must be set before simulating");
+        cvPathPricer_ = cvPathPricer;
+        cvOptionValue_ = cvOptionValue;
+        cvPathGenerators_ = cvPathGenerators;
+    }
+
+    //! add samples until the required absolute tolerance is reached
+    public double value(double tolerance, int maxSamples, int minSamples) {
+        int sampleNumber = sampleAccumulator_.samples();
+        if (sampleNumber < minSamples) {
+            addSamples(minSamples - sampleNumber);
+            sampleNumber = sampleAccumulator_.samples();
+        }
+
+        int nextBatch;
+        double order;
+        double error = sampleAccumulator_.errorEstimate();
+        while (error > tolerance) {
+            QL_REQUIRE(sampleNumber < maxSamples,
+                    "max number of samples (" + maxSamples
+                            + ") reached, while error (" + error
+                            + ") is still above tolerance (" + tolerance + ")");
+
+            // conservative estimate of how many samples are needed
+            order = error * error / tolerance / tolerance;
+            nextBatch = (int) Math.max((double) sampleNumber * order * 0.8 - sampleNumber,
+                    (double) minSamples);
+
+            // do not exceed maxSamples
+            nextBatch = Math.min(nextBatch, maxSamples - sampleNumber);
+            sampleNumber += nextBatch;
+            addSamples(nextBatch);
+            error = sampleAccumulator_.errorEstimate();
+        }
+
+        return sampleAccumulator_.mean();
+    }
+
+    //! simulate a fixed number of samples
+    public double valueWithSamples(int samples) {
+        int sampleNumber = sampleAccumulator_.samples();
+
+        QL_REQUIRE(samples >= sampleNumber,
+                "number of already simulated samples (" + sampleNumber
+                        + ") greater than requested samples (" + samples + ")");
+
+        addSamples(samples - sampleNumber);
+
+        return sampleAccumulator_.mean();
+    }
+
+    //! error estimated using the samples simulated so far
+    public double errorEstimate() {
+        return sampleAccumulator_.errorEstimate();
+    }
+
+    //! simulates the given number of samples in parallel blocks
+    public void addSamples(int samples) {
+        if (samples <= 0) {
+            return;
+        }
+        final int blocks = (samples + blockSize_ - 1) / blockSize_;
+        final int firstBlock = nextBlock_;
+        final double[] values = new double[samples];
+        final double[] weights = new double[samples];
+
+        ParallelFor.Body body = (begin, end) -> {
+            for (int b = begin; b < end; b++) {
+                MonteCarloModel<P> model = model(firstBlock + b);
+                for (int i = b * blockSize_, last = Math.min(i + blockSize_, samples); i < last; i++) {
+                    values[i] = model.nextSample();
+                    weights[i] = model.lastWeight();
+                }
+            }
+        };
+        if (firstBlock == 0) {
+            // one block on the calling thread first, so that state the process
+            // or the pricers build lazily is not built concurrently
+            body.run(0, 1);
+            ParallelFor.range(1, blocks, 1, body);
+        } else {
+            ParallelFor.range(0, blocks, 1, body);
+        }
+        nextBlock_ += blocks;
+
+        for (int i = 0; i < samples; i++) {
+            sampleAccumulator_.add(values[i], weights[i]);
+        }
+    }
+
+    private MonteCarloModel<P> model(int block) {
+        return new MonteCarloModel<>(pathGenerators_.generator(block), pathPricer_, null,
+                antitheticVariate_, cvPathPricer_, cvOptionValue_,
+                cvPathGenerators_ == null ? null : cvPathGenerators_.generator(block));
+    }
+
+    public final Stat sampleAccumulator() {
+        return sampleAccumulator_;
+    }
+}
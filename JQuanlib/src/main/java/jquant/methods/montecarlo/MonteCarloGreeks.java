@@ -0,0 +1,228 @@
+package jquant.methods.montecarlo;
+
+import jquant.Greeks;
+import jquant.MoreGreeks;
+import jquant.TimeGrid;
+import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.math.statistics.IncrementalStatistics;
+import jquant.utilities.ParallelFor;
+
+import java.util.Arrays;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Monte Carlo value and Greeks in a single simulation pass
+/*! The payoff is paid at the end of the time grid and discounted with
+    the risk-free curve of the process.
+
+    With the pathwise method the Greeks are the discounted derivatives
+    of the payoff along each path, obtained from the tangents of the
+    path with respect to the spot, the volatility and a parallel shift
+    of the rates; gamma uses the likelihood-ratio weight of the first
+    step on top of the pathwise delta, so that only first derivatives of
+    the payoff are needed. This requires a payoff that is continuous
+    along the path.
+
+    With the likelihood-ratio method the Greeks are the discounted payoff
+    times the derivative of the log density of the path, so that the
+    payoff may be discontinuous (e.g. digital) but need not be
+    differentiated; the estimators have a larger variance.
+
+    Rho and dividend rho are the derivatives with respect to a parallel
+    shift of the continuously-compounded zero rates. Theta is not
+    estimated and is left null (NaN).
+
+    \ingroup mcarlo
+*/
+public abstract class MonteCarloGreeks {
+    public enum Method {
+        Pathwise, LikelihoodRatio
+    }
+
+    // per-path likelihood-ratio weights filled by simulate():
+    // d log p / d s0, (d^2 p / d s0^2) / p, d log p / d vol and
+    // d log p / d h for a shift h of the drift of log S
+    protected static final int W_DELTA = 0, W_GAMMA = 1, W_VEGA = 2, W_DRIFT = 3;
+    protected static final int WEIGHTS = 4;
+
+    // per-path samples
+    private static final int VALUE = 0, DELTA = 1, GAMMA = 2, VEGA = 3, RHO = 4, DIVIDEND_RHO = 5, ITM = 6;
+    private static final int SAMPLES = 7;
+
+    protected final TimeGrid timeGrid_;
+    protected final PathwisePayoff payoff_;
+    protected final Method method_;
+    private final IncrementalStatistics[] stats_;
+
+    protected MonteCarloGreeks(final TimeGrid timeGrid, final PathwisePayoff payoff, Method method) {
+        QL_REQUIRE(timeGrid.size() > 1, "time grid with at least one step required");
+        QL_REQUIRE(timeGrid.front() == 0.0, "time grid must start at 0");
+        timeGrid_ = timeGrid;
+        payoff_ = payoff;
+        method_ = method;
+        stats_ = new IncrementalStatistics[SAMPLES];
+        for (int k = 0; k < SAMPLES; ++k)
+            stats_[k] = new IncrementalStatistics();
+    }
+
+    //! number of Gaussian deviates per step
+    public abstract int factors();
+
+    //! spot value of the asset
+    public abstract double underlying();
+
+    protected abstract double riskFreeDiscount(double t);
+
+    protected abstract double dividendDiscount(double t);
+
+    //! called once before the paths of a calculation are drawn
+    protected void prepare() {
+    }
+
+    /*! Evolves nb paths from the deviates z, row q holding the
+        factors() * steps deviates of path q as for MultiPathGenerator.
+        Sets s[q * points + i] to the asset value of path q at point i
+        and, for the pathwise method, vega[q * points + i] to the
+        derivative of its logarithm with respect to the volatility; for
+        the likelihood-ratio method, sets the weights of path q at
+        weights[q * WEIGHTS + W_...]. W_DELTA is needed by both.
+        Called concurrently on different blocks.
+    */
+    protected abstract void simulate(final double[] z, int nb,
+                                     double[] s, double[] vega, double[] weights);
+
+    //! draws the given number of paths in blocks, block b using sequences.sequence(b)
+    public void calculate(final PathStore.SequenceFactory sequences, int samples, int blockSize) {
+        QL_REQUIRE(samples > 0, "number of samples must be positive");
+        QL_REQUIRE(blockSize > 0, "block size must be positive");
+        prepare();
+        final int points = timeGrid_.size();
+        final int dimension = factors() * (points - 1);
+        final double maturity = timeGrid_.back();
+        final double discount = riskFreeDiscount(maturity);
+        final double s0 = underlying();
+        final double[] times = new double[points];
+        for (int i = 0; i < points; ++i)
+            times[i] = timeGrid_.get(i);
+
+        final double[] results = new double[samples * SAMPLES];
+        final int blocks = (samples + blockSize - 1) / blockSize;
+        ParallelFor.range(0, blocks, 1, (begin, end) -> {
+            for (int b = begin; b < end; ++b) {
+                final int first = b * blockSize;
+                final int nb = Math.min(blockSize, samples - first);
+                final UsgImpl generator = sequences.sequence(b);
+                QL_REQUIRE(generator.dimension() == dimension,
+                        "sequence generator dimensionality (" + generator.dimension()
+                                + ") != factors * timeSteps (" + dimension + ")");
+                final double[] z = new double[nb * dimension];
+                for (int q = 0; q < nb; ++q)
+                    System.arraycopy(generator.nextSequence().value, 0, z, q * dimension, dimension);
+                final double[] s = new double[nb * points], vega = new double[nb * points];
+                final double[] weights = new double[nb * WEIGHTS];
+                simulate(z, nb, s, vega, weights);
+
+                final double[] path = new double[points], gradient = new double[points];
+                for (int q = 0; q < nb; ++q) {
+                    System.arraycopy(s, q * points, path, 0, points);
+                    Arrays.fill(gradient, 0.0);
+                    final double f = payoff_.value(path, gradient);
+                    sample(f, gradient, path, vega, q * points, times, weights, q * WEIGHTS,
+                            s0, maturity, discount, results, (first + q) * SAMPLES);
+                }
+            }
+        });
+
+        for (IncrementalStatistics stats : stats_)
+            stats.reset();
+        for (int p = 0; p < samples; ++p) {
+            for (int k = 0; k < SAMPLES; ++k)
+                stats_[k].add(results[p * SAMPLES + k], 1.0);
+        }
+    }
+
+    private void sample(double f, final double[] gradient, final double[] path,
+                        final double[] vega, int offset, final double[] times,
+                        final double[] w, int wo, double s0, double maturity, double discount,
+                        double[] out, int o) {
+        out[o + VALUE] = discount * f;
+        out[o + ITM] = f > 0.0 ? 1.0 : 0.0;
+        if (method_ == Method.Pathwise) {
+            double h = 0.0, ht = 0.0, hv = 0.0;
+            for (int i = 0; i < path.length; ++i) {
+                final double gs = gradient[i] * path[i];
+                h += gs;
+                ht += gs * times[i];
+                hv += gs * vega[offset + i];
+            }
+            out[o + DELTA] = discount * h / s0;
+            out[o + GAMMA] = discount * h * (w[wo + W_DELTA] * s0 - 1.0) / (s0 * s0);
+            out[o + VEGA] = discount * hv;
+            out[o + RHO] = discount * (ht - maturity * f);
+            out[o + DIVIDEND_RHO] = -discount * ht;
+        } else {
+            out[o + DELTA] = discount * f * w[wo + W_DELTA];
+            out[o + GAMMA] = discount * f * w[wo + W_GAMMA];
+            out[o + VEGA] = discount * f * w[wo + W_VEGA];
+            out[o + RHO] = discount * f * (w[wo + W_DRIFT] - maturity);
+            out[o + DIVIDEND_RHO] = -discount * f * w[wo + W_DRIFT];
+        }
+    }
+
+    public Method method() {
+        return method_;
+    }
+
+    public int samples() {
+        return stats_[VALUE].samples();
+    }
+
+    public double value() {
+        return stats_[VALUE].mean();
+    }
+
+    public double errorEstimate() {
+        return stats_[VALUE].errorEstimate();
+    }
+
+    public Greeks greeks() {
+        QL_REQUIRE(samples() > 0, "no paths drawn");
+        Greeks greeks = new Greeks();
+        greeks.reset();
+        greeks.delta = stats_[DELTA].mean();
+        greeks.gamma = stats_[GAMMA].mean();
+        greeks.vega = stats_[VEGA].mean();
+        greeks.rho = stats_[RHO].mean();
+        greeks.dividendRho = stats_[DIVIDEND_RHO].mean();
+        return greeks;
+    }
+
+    //! standard errors of the estimates returned by greeks()
+    public Greeks errorEstimates() {
+        QL_REQUIRE(samples() > 0, "no paths drawn");
+        Greeks errors = new Greeks();
+        errors.reset();
+        errors.delta = stats_[DELTA].errorEstimate();
+        errors.gamma = stats_[GAMMA].errorEstimate();
+        errors.vega = stats_[VEGA].errorEstimate();
+        errors.rho = stats_[RHO].errorEstimate();
+        errors.dividendRho = stats_[DIVIDEND_RHO].errorEstimate();
+        return errors;
+    }
+
+    //! the probability that the payoff is positive, forward delta and elasticity
+    public MoreGreeks moreGreeks() {
+        QL_REQUIRE(samples() > 0, "no paths drawn");
+        final double maturity = timeGrid_.back();
+        final double delta = stats_[DELTA].mean();
+        MoreGreeks more = new MoreGreeks();
+        more.reset();
+        more.itmCashProbability = stats_[ITM].mean();
+        // dS/dF = D_r / D_q
+        more.deltaForward = delta * riskFreeDiscount(maturity) / dividendDiscount(maturity);
+        final double value = value();
+        if (value != 0.0)
+            more.elasticity = delta * underlying() / value;
+        return more;
+    }
+}
@@ -0,0 +1,109 @@
+package jquant.methods.montecarlo;
+
+import jquant.math.statistics.impl.Stat;
+import jquant.methods.montecarlo.impl.PathGeneratorImpl;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! General-purpose Monte Carlo model for path samples
+/*! Any Monte Carlo which uses path samples has three main components,
+    namely,
+    - S, a sample accumulator,
+    - PG, a path generator,
+    - PP, a path pricer.
+    MonteCarloModel puts together these three elements.
+    In case of control variate simulation the path pricer and the
+    value of the control variate option must be passed as well.
+
+    The model is sequential; McSimulation runs one model per block of
+    paths to spread a simulation over several threads.
+
+    \ingroup mcarlo
+*/
+public class MonteCarloModel<P> {
+    private final PathGeneratorImpl<P> pathGenerator_;
+    private final PathPricer<P> pathPricer_;
+    private final Stat sampleAccumulator_;
+    private final boolean isAntitheticVariate_;
+    private final PathPricer<P> cvPathPricer_;
+    private final double cvOptionValue_;
+    private final boolean isControlVariate_;
+    private final PathGeneratorImpl<P> cvPathGenerator_;
+    private double lastWeight_;
+
+    public MonteCarloModel(final PathGeneratorImpl<P> pathGenerator,
+                           final PathPricer<P> pathPricer,
+                           final Stat sampleAccumulator,
+                           boolean antitheticVariate) {
+        this(pathGenerator, pathPricer, sampleAccumulator, antitheticVariate, null, 0.0, null);
+    }
+
+    /*! Without a cvPathGenerator the control variate is priced on the
+        same paths as the option; sampleAccumulator may be null if only
+        nextSample() is used.
+    */
+    public MonteCarloModel(final PathGeneratorImpl<P> pathGenerator,
+                           final PathPricer<P> pathPricer,
+                           final Stat sampleAccumulator,
+                           boolean antitheticVariate,
+                           final PathPricer<P> cvPathPricer,
+                           double cvOptionValue,
+                           final PathGeneratorImpl<P> cvPathGenerator) {
+        pathGenerator_ = pathGenerator;
+        pathPricer_ = pathPricer;
+        sampleAccumulator_ = sampleAccumulator;
+        isAntitheticVariate_ = antitheticVariate;
+        cvPathPricer_ = cvPathPricer;
+        cvOptionValue_ = cvOptionValue;
+        cvPathGenerator_ = cvPathGenerator;
+        isControlVariate_ = cvPathPricer_ != null;
+    }
+
+    public void addSamples(int samples) {
+        QL_REQUIRE(sampleAccumulator_ != null, "no sample accumulator given");
+        for (int j = 1; j <= samples; j++) {
+            double price = nextSample();
+            sampleAccumulator_.add(price, lastWeight_);
+        }
+    }
+
+    //! prices one (antithetic pair of) path(s) without accumulating it
+    public double nextSample() {
+        Sample<P> path = pathGenerator_.next();
+        double price = pathPricer_.value(path.value);
+        lastWeight_ = path.weight;
+
+        if (isControlVariate_) {
+            if (cvPathGenerator_ == null) {
+                price += cvOptionValue_ - cvPathPricer_.value(path.value);
+            } else {
+                Sample<P> cvPath = cvPathGenerator_.next();
+                price += cvOptionValue_ - cvPathPricer_.value(cvPath.value);
+            }
+        }
+
+        if (isAntitheticVariate_) {
+            Sample<P> atPath = pathGenerator_.antithetic();
+            double price2 = pathPricer_.value(atPath.value);
+            if (isControlVariate_) {
+                if (cvPathGenerator_ == null) {
+                    price2 += cvOptionValue_ - cvPathPricer_.value(atPath.value);
+                } else {
+                    Sample<P> cvPath = cvPathGenerator_.antithetic();
+                    price2 += cvOptionValue_ - cvPathPricer_.value(cvPath.value);
+                }
+            }
+            return (price + price2) / 2.0;
+        }
+        return price;
+    }
+
+    //! weight of the sample returned by the last nextSample()
+    public double lastWeight() {
+        return lastWeight_;
+    }
+
+    public final Stat sampleAccumulator() {
+        return sampleAccumulator_;
+    }
+}
@@ -0,0 +1,44 @@
+package jquant.methods.montecarlo;
+
+import jquant.TimeGrid;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Correlated multiple asset paths
+/*! MultiPath contains the list of paths for each asset, i.e.,
+    multipath[j] is the path followed by the j-th asset.
+
+    \ingroup mcarlo
+*/
+public class MultiPath {
+    private final Path[] multiPath_;
+
+    public MultiPath(int nAsset, final TimeGrid timeGrid) {
+        QL_REQUIRE(nAsset > 0, "number of asset must be positive");
+        multiPath_ = new Path[nAsset];
+        for (int j = 0; j < nAsset; j++) {
+            multiPath_[j] = new Path(timeGrid);
+        }
+    }
+
+    public MultiPath(final Path[] multiPath) {
+        QL_REQUIRE(multiPath.length > 0, "number of asset must be positive");
+        multiPath_ = multiPath;
+    }
+
+    //! \name inspectors
+    //@{
+    public int assetNumber() {
+        return multiPath_.length;
+    }
+
+    public int pathSize() {
+        return multiPath_[0].length();
+    }
+    //@}
+
+    //! path of the j-th asset
+    public Path get(int j) {
+        return multiPath_[j];
+    }
+}
@@ -0,0 +1,96 @@
+package jquant.methods.montecarlo;
+
+import jquant.StochasticProcess;
+import jquant.TimeGrid;
+import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.methods.montecarlo.impl.PathGeneratorImpl;
+
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Generates a multipath from a random number generator.
+/*! \ingroup mcarlo
+
+    The generator needs factors() * (timeGrid.size() - 1) Gaussian deviates
+    per path, step-major: the deviates driving step i are at
+    [i * factors, (i + 1) * factors).
+*/
+public class MultiPathGenerator implements PathGeneratorImpl<MultiPath> {
+    private final boolean brownianBridge_;
+    private final StochasticProcess process_;
+    private final UsgImpl generator_;
+    private final Sample<MultiPath> next_;
+    private final TimeGrid timeGrid_;
+    private final int factors_;
+    private final double[] sequence_;
+    // state and increments of the current step, evolved in place
+    private final double[] x_, dw_;
+
+    // default brownianBridge = false
+    public MultiPathGenerator(final StochasticProcess process,
+                              final TimeGrid times,
+                              final UsgImpl generator,
+                              boolean brownianBridge) {
+        brownianBridge_ = brownianBridge;
+        process_ = process;
+        generator_ = generator;
+        timeGrid_ = times;
+        factors_ = process_.factors();
+        next_ = new Sample<>(new MultiPath(process.size(), times), 1.0);
+        QL_REQUIRE(generator_.dimension() == factors_ * (times.size() - 1),
+                "dimension (" + generator_.dimension()
+                        + ") is not equal to ("
+                        + factors_ + " * " + (times.size() - 1)
+                        + ") the number of factors "
+                        + "times the number of time steps");
+        QL_REQUIRE(times.size() > 1, "no times given");
+        sequence_ = new double[generator_.dimension()];
+        x_ = new double[process.size()];
+        dw_ = new double[factors_];
+        process_.prepare(timeGrid_);
+    }
+
+    @Override
+    public Sample<MultiPath> next() {
+        return next(false);
+    }
+
+    @Override
+    public Sample<MultiPath> antithetic() {
+        return next(true);
+    }
+
+    private Sample<MultiPath> next(boolean antithetic) {
+        if (brownianBridge_) {
+            QL_FAIL("Brownian bridge not supported");
+        }
+        if (!antithetic) {
+            SampleVector sequence = generator_.nextSequence();
+            next_.weight = sequence.weight;
+            System.arraycopy(sequence.value, 0, sequence_, 0, sequence_.length);
+        }
+        final MultiPath path = next_.value;
+        final int m = process_.size();
+        final double sign = antithetic ? -1.0 : 1.0;
+
+        final double[] x = x_, dw = dw_;
+        System.arraycopy(process_.initialValues().dataRef(), 0, x, 0, m);
+        for (int j = 0; j < m; j++) {
+            path.get(j).set(0, x[j]);
+        }
+        for (int i = 1; i < path.pathSize(); i++) {
+            final int offset = (i - 1) * factors_;
+            double t = timeGrid_.get(i - 1);
+            double dt = timeGrid_.dt(i - 1);
+            for (int k = 0; k < factors_; k++) {
+                dw[k] = sign * sequence_[offset + k];
+            }
+            // a batch of one path
+            process_.evolve(t, dt, x, dw, 1);
+            for (int j = 0; j < m; j++) {
+                path.get(j).set(i, x[j]);
+            }
+        }
+        return next_;
+    }
+}
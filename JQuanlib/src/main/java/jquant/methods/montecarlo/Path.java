@@ -0,0 +1,75 @@
+package jquant.methods.montecarlo;
+
+import jquant.TimeGrid;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! single-factor random walk
+/*! \ingroup mcarlo
+    The asset values are held in a primitive array with one entry per
+    point of the time grid.
+*/
+public class Path {
+    private final TimeGrid timeGrid_;
+    private final double[] values_;
+
+    public Path(final TimeGrid timeGrid) {
+        this(timeGrid, new double[timeGrid.size()]);
+    }
+
+    public Path(final TimeGrid timeGrid, double[] values) {
+        QL_REQUIRE(values.length == timeGrid.size(),
+                "different number of times and asset values");
+        timeGrid_ = timeGrid;
+        values_ = values;
+    }
+
+    //! \name inspectors
+    //@{
+    public boolean empty() {
+        return timeGrid_.empty();
+    }
+
+    public int length() {
+        return timeGrid_.size();
+    }
+
+    //! asset value at the \f$ i \f$-th point
+    public double get(int i) {
+        return values_[i];
+    }
+
+    public double value(int i) {
+        return values_[i];
+    }
+
+    public void set(int i, double value) {
+        values_[i] = value;
+    }
+
+    //! time at the \f$ i \f$-th point
+    public double time(int i) {
+        return timeGrid_.get(i);
+    }
+
+    //! initial asset value
+    public double front() {
+        return values_[0];
+    }
+
+    //! final asset value
+    public double back() {
+        return values_[values_.length - 1];
+    }
+
+    //! time grid
+    public final TimeGrid timeGrid() {
+        return timeGrid_;
+    }
+
+    //! backing storage; writes are visible through this path
+    public double[] values() {
+        return values_;
+    }
+    //@}
+}
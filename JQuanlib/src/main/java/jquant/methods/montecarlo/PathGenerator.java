@@ -0,0 +1,97 @@
+package jquant.methods.montecarlo;
+
+import jquant.StochasticProcess1D;
+import jquant.TimeGrid;
+import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.methods.montecarlo.impl.PathGeneratorImpl;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Generates random paths using a sequence generator
+/*! Generates random paths with drift(S,t) and variance(S,t)
+    using a gaussian sequence generator
+
+    \ingroup mcarlo
+
+    The returned path is reused by the next draw; the Gaussian increments of
+    the last draw are kept so that antithetic() does not need the sequence
+    generator to remember them.
+*/
+public class PathGenerator implements PathGeneratorImpl<Path> {
+    private final boolean brownianBridge_;
+    private final UsgImpl generator_;
+    private final int dimension_;
+    private final TimeGrid timeGrid_;
+    private final StochasticProcess1D process_;
+    private final Sample<Path> next_;
+    private final double[] temp_;
+    private final BrownianBridge bb_;
+
+    public PathGenerator(final StochasticProcess1D process,
+                         double length,
+                         int timeSteps,
+                         final UsgImpl generator,
+                         boolean brownianBridge) {
+        this(process, new TimeGrid(length, timeSteps), generator, brownianBridge);
+    }
+
+    public PathGenerator(final StochasticProcess1D process,
+                         final TimeGrid timeGrid,
+                         final UsgImpl generator,
+                         boolean brownianBridge) {
+        brownianBridge_ = brownianBridge;
+        generator_ = generator;
+        dimension_ = generator_.dimension();
+        timeGrid_ = timeGrid;
+        process_ = process;
+        next_ = new Sample<>(new Path(timeGrid_), 1.0);
+        temp_ = new double[dimension_];
+        QL_REQUIRE(dimension_ == timeGrid_.size() - 1,
+                "sequence generator dimensionality (" + dimension_
+                        + ") != timeSteps (" + (timeGrid_.size() - 1) + ")");
+        bb_ = brownianBridge_ ? new BrownianBridge(timeGrid_) : null;
+        process_.prepare(timeGrid_);
+    }
+
+    //! \name inspectors
+    //@{
+    @Override
+    public Sample<Path> next() {
+        return next(false);
+    }
+
+    @Override
+    public Sample<Path> antithetic() {
+        return next(true);
+    }
+
+    public int size() {
+        return dimension_;
+    }
+
+    public final TimeGrid timeGrid() {
+        return timeGrid_;
+    }
+    //@}
+
+    private Sample<Path> next(boolean antithetic) {
+        if (!antithetic) {
+            SampleVector sequence = generator_.nextSequence();
+            next_.weight = sequence.weight;
+            if (brownianBridge_) {
+                bb_.transform(sequence.value, temp_);
+            } else {
+                System.arraycopy(sequence.value, 0, temp_, 0, dimension_);
+            }
+        }
+        final double sign = antithetic ? -1.0 : 1.0;
+        final double[] path = next_.value.values();
+        path[0] = process_.x0();
+        for (int i = 1; i < path.length; i++) {
+            double t = timeGrid_.get(i - 1);
+            double dt = timeGrid_.dt(i - 1);
+            path[i] = process_.evolve(t, path[i - 1], dt, sign * temp_[i - 1]);
+        }
+        return next_;
+    }
+}
@@ -0,0 +1,11 @@
+package jquant.methods.montecarlo;
+
+//! base class for path pricers
+/*! Returns the value of an option on a given path.
+
+    \ingroup mcarlo
+*/
+@FunctionalInterface
+public interface PathPricer<P> {
+    double value(final P path);
+}
@@ -0,0 +1,403 @@
+package jquant.methods.montecarlo;
+
+import jquant.StochasticProcess;
+import jquant.TimeGrid;
+import jquant.math.Array;
+import jquant.math.randomnumbers.impl.UsgImpl;
+import jquant.methods.montecarlo.impl.PathGeneratorImpl;
+import jquant.utilities.ParallelFor;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! simulated paths of several assets held in one contiguous array
+/*! Value (p, a, i) is the value of asset a at the i-th point of the time
+    grid on path p. With PATH_MAJOR storage each path is one contiguous run
+    ([path][asset][step]), which is what the generators write; with
+    TIME_MAJOR storage each time slice is contiguous ([step][asset][path]),
+    which suits regression and other pricers scanning all paths at a given
+    time. Views give both access patterns on either layout without copying.
+
+    \ingroup mcarlo
+*/
+public class PathStore {
+
+    public enum Layout {
+        PATH_MAJOR, TIME_MAJOR
+    }
+
+    private final TimeGrid timeGrid_;
+    private final int paths_;
+    private final int assets_;
+    private final int points_;
+    private final Layout layout_;
+    private final double[] data_;
+    // strides of the path, asset and time indices
+    private final int pathStride_, assetStride_, stepStride_;
+
+    public PathStore(int paths, int assets, final TimeGrid timeGrid, Layout layout) {
+        QL_REQUIRE(paths > 0, "number of paths must be positive");
+        QL_REQUIRE(assets > 0, "number of asset must be positive");
+        QL_REQUIRE(!timeGrid.empty(), "empty time grid");
+        final long size = (long) paths * assets * timeGrid.size();
+        QL_REQUIRE(size <= Integer.MAX_VALUE - 8,
+                "path store too large (" + size + " values)");
+        timeGrid_ = timeGrid;
+        paths_ = paths;
+        assets_ = assets;
+        points_ = timeGrid.size();
+        layout_ = layout;
+        data_ = new double[(int) size];
+        if (layout == Layout.PATH_MAJOR) {
+            pathStride_ = assets * points_;
+            assetStride_ = points_;
+            stepStride_ = 1;
+        } else {
+            pathStride_ = 1;
+            assetStride_ = paths;
+            stepStride_ = assets * paths;
+        }
+    }
+
+    // default layout = PATH_MAJOR
+    public PathStore(int paths, int assets, final TimeGrid timeGrid) {
+        this(paths, assets, timeGrid, Layout.PATH_MAJOR);
+    }
+
+    //! \name inspectors
+    //@{
+    public int paths() {
+        return paths_;
+    }
+
+    public int assetNumber() {
+        return assets_;
+    }
+
+    //! number of points on the time grid, i.e. steps + 1
+    public int pathSize() {
+        return points_;
+    }
+
+    public final TimeGrid timeGrid() {
+        return timeGrid_;
+    }
+
+    public Layout layout() {
+        return layout_;
+    }
+
+    //! backing storage, for internal hot loops
+    public double[] data() {
+        return data_;
+    }
+
+    public int index(int path, int asset, int i) {
+        return path * pathStride_ + asset * assetStride_ + i * stepStride_;
+    }
+
+    public double get(int path, int asset, int i) {
+        return data_[index(path, asset, i)];
+    }
+
+    public void set(int path, int asset, int i, double value) {
+        data_[index(path, asset, i)] = value;
+    }
+    //@}
+
+    //! view of a single path
+    public PathView path(int path) {
+        QL_REQUIRE(path >= 0 && path < paths_, "path index out of range");
+        return new PathView(path);
+    }
+
+    //! views of all paths, e.g. for path pricers
+    public List<PathView> pathViews() {
+        return new AbstractList<PathView>() {
+            @Override
+            public PathView get(int path) {
+                return path(path);
+            }
+
+            @Override
+            public int size() {
+                return paths_;
+            }
+        };
+    }
+
+    //! view of all paths at the i-th point of the time grid
+    public SliceView slice(int i) {
+        QL_REQUIRE(i >= 0 && i < points_, "time index out of range");
+        return new SliceView(i);
+    }
+
+    //! fills the store with 1-D paths, block k of blockSize paths from generators.generator(k)
+    /*! With antithetic set, paths 2j and 2j + 1 are a path and its
+        reflection. Blocks run in parallel; as in McSimulation the content
+        depends only on the generators, not on the number of threads.
+    */
+    public void generatePaths(final McSimulation.GeneratorFactory<Path> generators,
+                              int blockSize, boolean antithetic) {
+        QL_REQUIRE(assets_ == 1, "1-D paths require a single-asset store");
+        generate(generators, blockSize, antithetic, (path, p) -> {
+            final double[] v = path.values();
+            QL_REQUIRE(v.length == points_, "path size differs from the time grid");
+            final int base = p * pathStride_;
+            for (int i = 0; i < points_; i++) {
+                data_[base + i * stepStride_] = v[i];
+            }
+        });
+    }
+
+    //! fills the store with multi-asset paths, see generatePaths
+    public void generateMultiPaths(final McSimulation.GeneratorFactory<MultiPath> generators,
+                                   int blockSize, boolean antithetic) {
+        generate(generators, blockSize, antithetic, (path, p) -> {
+            QL_REQUIRE(path.assetNumber() == assets_ && path.pathSize() == points_,
+                    "multi-path size differs from the store");
+            for (int a = 0; a < assets_; a++) {
+                final double[] v = path.get(a).values();
+                final int base = p * pathStride_ + a * assetStride_;
+                for (int i = 0; i < points_; i++) {
+                    data_[base + i * stepStride_] = v[i];
+                }
+            }
+        });
+    }
+
+    //! Gaussian sequence generator for the paths of block k
+    @FunctionalInterface
+    public interface SequenceFactory {
+        UsgImpl sequence(int block);
+    }
+
+    //! fills the store by stepping each block of paths together
+    /*! Each path draws one sequence of factors() * steps deviates, laid out
+        as for MultiPathGenerator, so the paths are those the generator
+        would build from the same sequences; but every step of a block is a
+        single batch evolve of the process, which computes the time-only
+        quantities once per step instead of once per path.
+    */
+    public void generate(final StochasticProcess process,
+                         final SequenceFactory sequences, int blockSize) {
+        final int dimension = process.factors() * (points_ - 1);
+        generate(process, blockSize, (b, z, nb) -> {
+            final UsgImpl generator = sequences.sequence(b);
+            QL_REQUIRE(generator.dimension() == dimension,
+                    "sequence generator dimensionality (" + generator.dimension()
+                            + ") != factors * timeSteps (" + dimension + ")");
+            for (int q = 0; q < nb; q++) {
+                System.arraycopy(generator.nextSequence().value, 0, z, q * dimension, dimension);
+            }
+        });
+    }
+
+    //! Brownian increments for the paths of block k
+    @FunctionalInterface
+    public interface IncrementsFactory {
+        BrownianBlockGenerator increments(int block);
+    }
+
+    //! same as above, each block drawing its increments at once, see BrownianBlockGenerator
+    public void generateBlocks(final StochasticProcess process,
+                               final IncrementsFactory increments, int blockSize) {
+        final int dimension = process.factors() * (points_ - 1);
+        // the first block's generator is drawn up front so that an odd
+        // split of antithetic pairs fails before any block is simulated
+        final BrownianBlockGenerator first = increments.increments(0);
+        QL_REQUIRE(!first.antithetic() || (paths_ % 2 == 0 && blockSize % 2 == 0),
+                "antithetic paths need an even number of paths and block size");
+        generate(process, blockSize, (b, z, nb) -> {
+            final BrownianBlockGenerator generator = b == 0 ? first : increments.increments(b);
+            QL_REQUIRE(generator.dimension() == dimension,
+                    "increments dimensionality (" + generator.dimension()
+                            + ") != factors * timeSteps (" + dimension + ")");
+            generator.next(z, nb);
+        });
+    }
+
+    // fills z with the nb rows of deviates of block b
+    private interface Deviates {
+        void fill(int block, double[] z, int nb);
+    }
+
+    private void generate(final StochasticProcess process, int blockSize, final Deviates deviates) {
+        QL_REQUIRE(process.size() == assets_,
+                "process size (" + process.size() + ") differs from the number of assets ("
+                        + assets_ + ")");
+        QL_REQUIRE(blockSize > 0, "block size must be positive");
+        final int factors = process.factors();
+        final int dimension = factors * (points_ - 1);
+        final Array initialValues = process.initialValues();
+        process.prepare(timeGrid_);
+        final int blocks = (paths_ + blockSize - 1) / blockSize;
+        final ParallelFor.Body body = (begin, end) -> {
+            for (int b = begin; b < end; b++) {
+                final int first = b * blockSize;
+                final int nb = Math.min(blockSize, paths_ - first);
+                final double[] z = new double[nb * dimension];
+                deviates.fill(b, z, nb);
+                final double[] x = new double[assets_ * nb];
+                final double[] dw = new double[factors * nb];
+                for (int a = 0; a < assets_; a++) {
+                    final double x0 = initialValues.get(a);
+                    for (int q = 0; q < nb; q++) {
+                        x[a * nb + q] = x0;
+                    }
+                }
+                write(x, nb, first, 0);
+                for (int i = 1; i < points_; i++) {
+                    final int offset = (i - 1) * factors;
+                    for (int k = 0; k < factors; k++) {
+                        for (int q = 0; q < nb; q++) {
+                            dw[k * nb + q] = z[q * dimension + offset + k];
+                        }
+                    }
+                    process.evolve(timeGrid_.get(i - 1), timeGrid_.dt(i - 1), x, dw, nb);
+                    write(x, nb, first, i);
+                }
+            }
+        };
+        // one block on the calling thread first, so that state the process
+        // builds lazily is not built concurrently
+        body.run(0, 1);
+        ParallelFor.range(1, blocks, 1, body);
+    }
+
+    // copies a batch state x[a * nb + q] into paths first + q at point i
+    private void write(final double[] x, int nb, int first, int i) {
+        for (int a = 0; a < assets_; a++) {
+            final int base = first * pathStride_ + a * assetStride_ + i * stepStride_;
+            for (int q = 0; q < nb; q++) {
+                data_[base + q * pathStride_] = x[a * nb + q];
+            }
+        }
+    }
+
+    private interface Writer<P> {
+        void write(P path, int p);
+    }
+
+    private <P> void generate(final McSimulation.GeneratorFactory<P> generators,
+                              int blockSize, boolean antithetic, final Writer<P> writer) {
+        QL_REQUIRE(blockSize > 0, "block size must be positive");
+        if (antithetic) {
+            QL_REQUIRE(paths_ % 2 == 0 && blockSize % 2 == 0,
+                    "antithetic paths need an even number of paths and block size");
+        }
+        final int blocks = (paths_ + blockSize - 1) / blockSize;
+        final ParallelFor.Body body = (begin, end) -> {
+            for (int b = begin; b < end; b++) {
+                PathGeneratorImpl<P> generator = generators.generator(b);
+                for (int p = b * blockSize, last = Math.min(p + blockSize, paths_); p < last; p++) {
+                    writer.write(generator.next().value, p);
+                    if (antithetic) {
+                        writer.write(generator.antithetic().value, ++p);
+                    }
+                }
+            }
+        };
+        // one block on the calling thread first, as in McSimulation.addSamples
+        body.run(0, 1);
+        ParallelFor.range(1, blocks, 1, body);
+    }
+
+    //! one path of the store; no copy is made
+    public final class PathView {
+        private final int path_;
+        private final int base_;
+
+        private PathView(int path) {
+            path_ = path;
+            base_ = path * pathStride_;
+        }
+
+        public int path() {
+            return path_;
+        }
+
+        public int assetNumber() {
+            return assets_;
+        }
+
+        public int length() {
+            return points_;
+        }
+
+        public final TimeGrid timeGrid() {
+            return timeGrid_;
+        }
+
+        public double get(int asset, int i) {
+            return data_[base_ + asset * assetStride_ + i * stepStride_];
+        }
+
+        public void set(int asset, int i, double value) {
+            data_[base_ + asset * assetStride_ + i * stepStride_] = value;
+        }
+
+        //! final value of the given asset
+        public double back(int asset) {
+            return get(asset, points_ - 1);
+        }
+
+        //! copies the values of one asset along the path into out
+        public void copyTo(int asset, double[] out) {
+            final int base = base_ + asset * assetStride_;
+            if (stepStride_ == 1) {
+                System.arraycopy(data_, base, out, 0, points_);
+            } else {
+                for (int i = 0; i < points_; i++) {
+                    out[i] = data_[base + i * stepStride_];
+                }
+            }
+        }
+    }
+
+    //! all paths at one point of the time grid; no copy is made
+    public final class SliceView {
+        private final int step_;
+        private final int base_;
+
+        private SliceView(int step) {
+            step_ = step;
+            base_ = step * stepStride_;
+        }
+
+        //! index of the slice on the time grid
+        public int step() {
+            return step_;
+        }
+
+        public double time() {
+            return timeGrid_.get(step_);
+        }
+
+        public int paths() {
+            return paths_;
+        }
+
+        public double get(int path, int asset) {
+            return data_[base_ + path * pathStride_ + asset * assetStride_];
+        }
+
+        public void set(int path, int asset, double value) {
+            data_[base_ + path * pathStride_ + asset * assetStride_] = value;
+        }
+
+        //! copies the values of one asset on all paths into out
+        public void copyTo(int asset, double[] out) {
+            final int base = base_ + asset * assetStride_;
+            if (pathStride_ == 1) {
+                System.arraycopy(data_, base, out, 0, paths_);
+            } else {
+                for (int p = 0; p < paths_; p++) {
+                    out[p] = data_[base + p * pathStride_];
+                }
+            }
+        }
+    }
+}
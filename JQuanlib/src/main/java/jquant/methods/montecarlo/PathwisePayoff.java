@@ -0,0 +1,16 @@
+package jquant.methods.montecarlo;
+
+//! payoff of a single-asset path with its derivatives
+/*! Returns the undiscounted payoff of the values of the asset at the
+    points of a time grid, the first being the spot, and sets gradient[i]
+    to the derivative of the payoff with respect to path[i]; the gradient
+    is zero on entry, so that only its non-null entries need be set. It
+    is only used by pathwise estimators and is left untouched by payoffs
+    meant for the likelihood-ratio method only.
+
+    \ingroup mcarlo
+*/
+@FunctionalInterface
+public interface PathwisePayoff {
+    double value(final double[] path, double[] gradient);
+}
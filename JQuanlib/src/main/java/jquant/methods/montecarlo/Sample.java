@@ -0,0 +1,16 @@
+package jquant.methods.montecarlo;
+
+//! weighted sample
+/*! \ingroup mcarlo
+    As with SampleVector, the value is owned by the generator that returned
+    the sample and is overwritten by its next draw.
+*/
+public class Sample<T> {
+    public T value;
+    public double weight;
+
+    public Sample(T value, double weight) {
+        this.value = value;
+        this.weight = weight;
+    }
+}
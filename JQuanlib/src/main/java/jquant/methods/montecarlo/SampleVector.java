@@ -1,13 +1,18 @@
 package jquant.methods.montecarlo;
 
-import java.util.List;
-
+/*! The value buffer is owned by the generator that returned the sample and
+    is overwritten by its next draw; copy it if it has to outlive that call.
+*/
 public class SampleVector {
-    public List<Double> value;
+    public double[] value;
     public double weight;
 
-    public SampleVector(List<Double> value, double weight) {
+    public SampleVector(double[] value, double weight) {
         this.value = value;
         this.weight = weight;
     }
+
+    public SampleVector(int size, double weight) {
+        this(new double[size], weight);
+    }
 }
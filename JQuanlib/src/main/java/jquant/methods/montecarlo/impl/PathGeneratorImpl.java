@@ -0,0 +1,13 @@
+package jquant.methods.montecarlo.impl;
+
+import jquant.methods.montecarlo.Sample;
+
+//! path generator interface used by MonteCarloModel
+/*! antithetic() returns the reflection of the path returned by the last
+    call to next(). Both return a sample owned by the generator.
+*/
+public interface PathGeneratorImpl<P> {
+    Sample<P> next();
+
+    Sample<P> antithetic();
+}
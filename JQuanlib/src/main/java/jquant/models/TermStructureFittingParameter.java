@@ -16,6 +16,8 @@ public class TermStructureFittingParameter extends Parameter {
         private List<Double> times_;
         private List<Double> values_;
         private Handle<YieldTermStructure> termStructure_;
+        // index of the last time looked up, which trees ask for over and over
+        private int last_ = 0;
 
         public NumericalImpl(Handle<YieldTermStructure> termStructure) {
             times_ = new ArrayList<>();
@@ -35,6 +37,7 @@ public class TermStructureFittingParameter extends Parameter {
         public void reset() {
             times_.clear();
             values_.clear();
+            last_ = 0;
         }
 
         public final Handle<YieldTermStructure> termStructure() {
@@ -43,10 +46,13 @@ public class TermStructureFittingParameter extends Parameter {
 
         @Override
         public double value(Array params, double t) {
-            int result = times_.indexOf(t);
-            QL_REQUIRE(result != -1,
+            int i = last_;
+            if (i >= times_.size() || times_.get(i) != t)
+                i = times_.indexOf(t);
+            QL_REQUIRE(i != -1,
                     "fitting parameter not set!");
-            return values_.get(result);
+            last_ = i;
+            return values_.get(i);
         }
     }
 
@@ -42,7 +42,9 @@ public abstract class SobolBrownianGeneratorBase extends BrownianGenerator {
     // work variables
     private int lastStep_ = 0;
     private List<List<Integer>> orderedIndices_;
-    private List<List<Double>> bridgedVariates_;
+    private final int[][] indices_;
+    private final double[][] bridgedVariates_;
+    private final double[] sample_;
 
     public SobolBrownianGeneratorBase(int factors,
                                       int steps,
@@ -55,10 +57,8 @@ public abstract class SobolBrownianGeneratorBase extends BrownianGenerator {
         for (int i = 0; i < factors; i++) {
             orderedIndices_.add(CommonUtil.ArrayInit(steps, 0));
         }
-        bridgedVariates_ = new ArrayList<>();
-        for (int i = 0; i < factors; i++) {
-            bridgedVariates_.add(CommonUtil.ArrayInit(steps, 0d));
-        }
+        bridgedVariates_ = new double[factors][steps];
+        sample_ = new double[steps];
         switch (ordering_) {
             case Factors:
                 BrownUtil.fillByFactor(orderedIndices_, factors_, steps_);
@@ -72,6 +72,10 @@ public abstract class SobolBrownianGeneratorBase extends BrownianGenerator {
             default:
                 QL_FAIL("unknown ordering");
         }
+        indices_ = new int[factors][];
+        for (int i = 0; i < factors; i++) {
+            indices_[i] = orderedIndices_.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
     }
 
     public final List<List<Integer>> orderedIndices() {
@@ -108,7 +112,16 @@ public abstract class SobolBrownianGeneratorBase extends BrownianGenerator {
         QL_REQUIRE(output.size() == factors_, "size mismatch");
         QL_REQUIRE(lastStep_ < steps_, "sequence exhausted");
         for (int i = 0; i < factors_; ++i)
-            output.set(i, bridgedVariates_.get(i).get(lastStep_));
+            output.set(i, bridgedVariates_[i][lastStep_]);
+        ++lastStep_;
+        return 1.0;
+    }
+
+    //! same as nextStep(List), writing the factors into output[offset, offset + factors)
+    public double nextStep(double[] output, int offset) {
+        QL_REQUIRE(lastStep_ < steps_, "sequence exhausted");
+        for (int i = 0; i < factors_; ++i)
+            output[offset + i] = bridgedVariates_[i][lastStep_];
         ++lastStep_;
         return 1.0;
     }
@@ -118,7 +131,10 @@ public abstract class SobolBrownianGeneratorBase extends BrownianGenerator {
         final SampleVector sample = nextSequence();
         // Brownian-bridge the variates according to the ordered indices
         for (int i = 0; i < factors_; ++i) {
-            bridge_.transform(make_permutation_iterator(sample.value, orderedIndices_.get(i)), bridgedVariates_.get(i), 0);
+            final int[] indices = indices_[i];
+            for (int j = 0; j < steps_; ++j)
+                sample_[j] = sample.value[indices[j]];
+            bridge_.transform(sample_, bridgedVariates_[i]);
         }
         lastStep_ = 0;
         return sample.weight;
@@ -8,6 +8,7 @@ import jquant.math.Function;
 import jquant.math.solvers1d.Brent;
 import jquant.methods.lattices.TreeLattice1D;
 import jquant.methods.lattices.TrinomialTree;
+import jquant.methods.lattices.impl.TreeLatticeImpl;
 import jquant.models.ShortRateModel;
 import jquant.models.TermStructureFittingParameter;
 
@@ -40,7 +41,7 @@ public abstract class OneFactorModel extends ShortRateModel {
     }
 
     //! Recombining trinomial tree discretizing the state variable
-    public static class ShortRateTree extends TreeLattice1D {
+    public static class ShortRateTree extends TreeLattice1D implements TreeLatticeImpl {
         private TrinomialTree tree_;
         private ShortRateDynamics dynamics_;
 
@@ -80,6 +81,7 @@ public abstract class OneFactorModel extends ShortRateModel {
         //! Plain tree build-up from short-rate dynamics
         public ShortRateTree(final TrinomialTree tree, ShortRateDynamics dynamics, final TimeGrid timeGrid) {
             super(timeGrid, tree.size(1));
+            setImpl_(this);
             tree_ = tree;
             dynamics_ = dynamics;
             spread_ = 0.0;
@@ -90,6 +92,7 @@ public abstract class OneFactorModel extends ShortRateModel {
                              final TermStructureFittingParameter.NumericalImpl theta,
                              final TimeGrid timeGrid) {
             super(timeGrid, tree.size(1));
+            setImpl_(this);
             tree_ = tree;
             dynamics_ = dynamics;
             spread_ = 0.0;
@@ -132,8 +135,20 @@ public abstract class OneFactorModel extends ShortRateModel {
             return tree_.probability(i, index, branch);
         }
 
-        public void setSpread(int spread) {
+        public void setSpread(double spread) {
             spread_ = spread;
+            clearTables();
+        }
+
+        // the branching data of the trinomial tree are already flat
+        @Override
+        protected int[] flattenDescendants(int i) {
+            return tree_.descendants(i);
+        }
+
+        @Override
+        protected double[] flattenProbabilities(int i) {
+            return tree_.probabilities(i);
         }
     }
 
@@ -1,14 +1,69 @@
 package jquant.patterns;
 import java.util.*;
 
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+/*! Settings of the notifications; process-wide unless a scope is open
+    on the current thread, see newScope(), in which case getInstance()
+    returns the settings of the scope and updates disabled on that
+    thread do not affect the others.
+*/
 public class ObservableSettings {
     private static final ObservableSettings instance = new ObservableSettings();
-    private boolean updatesEnabled = true;
-    private boolean updatesDeferred = false;
+    // settings of the innermost scope open on each thread
+    private static final ThreadLocal<ObservableSettings> scoped_ = new ThreadLocal<>();
+    private volatile boolean updatesEnabled = true;
+    private volatile boolean updatesDeferred = false;
     // 存储等待更新的观察者
     private final Set<Observer> deferredObservers = new LinkedHashSet<>();
 
-    public static ObservableSettings getInstance() { return instance; }
+    public static ObservableSettings getInstance() {
+        final ObservableSettings s = scoped_.get();
+        return s != null ? s : instance;
+    }
+
+    //! notification settings of their own for the current thread
+    /*! Updates are enabled when the scope is opened; the updates still
+        deferred when it is closed are applied. Scopes must be closed in
+        reverse order on the thread which opened them.
+    */
+    public static Scope newScope() {
+        return new Scope();
+    }
+
+    //! whether a scope is open on the current thread
+    public static boolean inScope() {
+        return scoped_.get() != null;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Thread thread_ = Thread.currentThread();
+        private final ObservableSettings previous_ = scoped_.get();
+        private final ObservableSettings settings_ = new ObservableSettings();
+        private boolean closed_ = false;
+
+        private Scope() {
+            scoped_.set(settings_);
+        }
+
+        @Override
+        public void close() {
+            if (closed_)
+                return;
+            QL_REQUIRE(Thread.currentThread() == thread_, "observable settings scope closed on another thread");
+            QL_REQUIRE(scoped_.get() == settings_, "observable settings scopes closed out of order");
+            closed_ = true;
+            try {
+                if (!settings_.updatesEnabled)
+                    settings_.enableUpdates();
+            } finally {
+                if (previous_ == null)
+                    scoped_.remove();
+                else
+                    scoped_.set(previous_);
+            }
+        }
+    }
 
     public void disableUpdates(boolean deferred) {
         this.updatesEnabled = false;
@@ -23,17 +78,22 @@ public class ObservableSettings {
 
     public void registerDeferred(Collection<Observer> observers) {
         if (updatesDeferred) {
-            deferredObservers.addAll(observers);
+            synchronized (deferredObservers) {
+                deferredObservers.addAll(observers);
+            }
         }
     }
 
     private void applyDeferredUpdates() {
-        if (!deferredObservers.isEmpty()) {
-            List<Observer> toUpdate = new ArrayList<>(deferredObservers);
+        final List<Observer> toUpdate;
+        synchronized (deferredObservers) {
+            if (deferredObservers.isEmpty())
+                return;
+            toUpdate = new ArrayList<>(deferredObservers);
             deferredObservers.clear();
-            for (Observer observer : toUpdate) {
-                observer.update();
-            }
+        }
+        for (Observer observer : toUpdate) {
+            observer.update();
         }
     }
 
@@ -2,6 +2,8 @@ package jquant.pricingengines;
 
 import jquant.Option;
 import jquant.math.Function;
+import jquant.math.ad.ADouble;
+import jquant.math.ad.Tape;
 import jquant.math.distributions.CumulativeNormalDistribution;
 import jquant.math.distributions.NormalDistribution;
 import jquant.math.solvers1d.NewtonSafe;
@@ -27,7 +29,7 @@ public class BlackFormula {
         QL_REQUIRE(discount > 0.0,
                 "discount (" + discount + ") must be positive");
 
-        int sign = optionType == Option.Type.Put ? 1 : -1;
+        int sign = optionType == Option.Type.Call ? 1 : -1;
 
         if (stdDev == 0.0)
             return Math.max((forward - strike) * sign, (0.0)) * discount;
@@ -55,6 +57,57 @@ public class BlackFormula {
         return result;
     }
 
+    /*! Black 1976 formula on taped inputs; the value is recorded as a
+        single node with the analytic derivatives with respect to the
+        strike, forward, standard deviation, discount and displacement.
+    */
+    public static ADouble blackFormula(Option.Type optionType,
+                                       final ADouble strike,
+                                       final ADouble forward,
+                                       final ADouble stdDev,
+                                       final ADouble discount,
+                                       final ADouble displacement) {
+        final double value = blackFormula(optionType, strike.value(), forward.value(), stdDev.value(),
+                discount.value(), displacement.value());
+        final int sign = optionType == Option.Type.Call ? 1 : -1;
+        final double d = discount.value();
+        final double f = forward.value() + displacement.value(), k = strike.value() + displacement.value();
+        // derivatives with respect to forward, strike, stdDev and discount
+        double dF, dK, dS = 0.0, dD;
+        if (stdDev.value() == 0.0) {
+            final boolean itm = (forward.value() - strike.value()) * sign > 0.0;
+            dF = itm ? sign * d : 0.0;
+            dK = -dF;
+            dD = value / d;
+        } else if (k == 0.0) {
+            dF = optionType == Option.Type.Call ? d : 0.0;
+            dK = 0.0;
+            dD = value / d;
+        } else {
+            final double sd = stdDev.value();
+            final double d1 = Math.log(f / k) / sd + 0.5 * sd, d2 = d1 - sd;
+            CumulativeNormalDistribution phi = new CumulativeNormalDistribution();
+            final double nd1 = phi.value(sign * d1), nd2 = phi.value(sign * d2);
+            dF = d * sign * nd1;
+            dK = -d * sign * nd2;
+            dS = d * f * phi.derivative(d1);
+            dD = sign * (f * nd1 - k * nd2);
+        }
+        final Tape tape = tapeOf(strike, forward, stdDev, discount, displacement);
+        if (tape == null)
+            return ADouble.constant(value);
+        return tape.record(value, new ADouble[]{strike, forward, stdDev, discount, displacement},
+                new double[]{dK, dF, dS, dD, dF + dK}, 5);
+    }
+
+    private static Tape tapeOf(final ADouble... x) {
+        for (ADouble a : x) {
+            if (!a.isConstant())
+                return a.tape();
+        }
+        return null;
+    }
+
     public static double bachelierBlackFormula(Option.Type optionType,
                                                double strike,
                                                double forward,
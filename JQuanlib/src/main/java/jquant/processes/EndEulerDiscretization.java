@@ -2,6 +2,7 @@ package jquant.processes;
 
 import jquant.StochasticProcess;
 import jquant.StochasticProcess1D;
+import jquant.discretization;
 import jquant.math.Array;
 import jquant.math.Matrix;
 
@@ -9,7 +10,7 @@ import static jquant.math.CommonUtil.transpose;
 
 //! Euler end-point discretization for stochastic processes
 /*! \ingroup processes */
-public class EndEulerDiscretization {
+public class EndEulerDiscretization implements discretization {
     /*! Returns an approximation of the drift defined as
         \f$ \mu(t_0 + \Delta t, \mathbf{x}_0) \Delta t \f$.
     */
@@ -45,6 +46,27 @@ public class EndEulerDiscretization {
         return process.diffusion(t0 + dt, x0) * Math.sqrt(dt);
     }
 
+    //! same as drift(process, t0, x0, dt), written into out
+    public void drift(final StochasticProcess process,
+                      double t0, final double[] x0,
+                      double dt, double[] out) {
+        process.drift(t0 + dt, x0, out);
+        for (int i = 0, n = process.size(); i < n; i++) {
+            out[i] *= dt;
+        }
+    }
+
+    //! same as diffusion(process, t0, x0, dt), written row-major into out
+    public void diffusion(final StochasticProcess process,
+                          double t0, final double[] x0,
+                          double dt, double[] out) {
+        process.diffusion(t0 + dt, x0, out);
+        final double sdt = Math.sqrt(dt);
+        for (int i = 0, n = process.size() * process.factors(); i < n; i++) {
+            out[i] *= sdt;
+        }
+    }
+
     /*! Returns an approximation of the covariance defined as
         \f$ \sigma(t_0 + \Delta t, \mathbf{x}_0)^2 \Delta t \f$.
     */
@@ -51,6 +51,25 @@ public class EulerDiscretization implements discretization, StochasticProcess1DI
         return p.diffusion(t0, x0).multiply(Math.sqrt(dt));
     }
 
+    //! same as drift(p, t0, x0, dt), written into out
+    @Override
+    public void drift(StochasticProcess p, double t0, final double[] x0, double dt, double[] out) {
+        p.drift(t0, x0, out);
+        for (int i = 0, n = p.size(); i < n; i++) {
+            out[i] *= dt;
+        }
+    }
+
+    //! same as diffusion(p, t0, x0, dt), written row-major into out
+    @Override
+    public void diffusion(StochasticProcess p, double t0, final double[] x0, double dt, double[] out) {
+        p.diffusion(t0, x0, out);
+        final double sdt = Math.sqrt(dt);
+        for (int i = 0, n = p.size() * p.factors(); i < n; i++) {
+            out[i] *= sdt;
+        }
+    }
+
     /*! Returns an approximation of the covariance defined as
         \f$ \sigma(t_0, \mathbf{x}_0)^2 \Delta t \f$.
     */
@@ -61,6 +61,20 @@ public class G2Process extends StochasticProcess {
         return tmp;
     }
 
+    @Override
+    public void drift(double t, final double[] x, double[] out) {
+        out[0] = xProcess_.drift(t, x[0]);
+        out[1] = yProcess_.drift(t, x[1]);
+    }
+
+    @Override
+    public void diffusion(double t, final double[] x, double[] out) {
+        out[0] = sigma_;
+        out[1] = 0.0;
+        out[2] = rho_ * sigma_;
+        out[3] = Math.sqrt(1.0 - rho_ * rho_) * eta_;
+    }
+
     public Array expectation(double t0, final Array x0, double dt) {
         double[] aa = {xProcess_.expectation(t0, x0.get(0), dt), yProcess_.expectation(t0, x0.get(1), dt)};
         return new Array(aa);
@@ -89,6 +103,20 @@ public class G2Process extends StochasticProcess {
         return tmp;
     }
 
+    //! the standard deviation of a step does not depend on the state and is computed once
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        final double[] s = stdDeviation(t0, initialValues(), dt).dataRef();
+        final double ex = Math.exp(-xProcess_.speed() * dt), lx = xProcess_.level();
+        final double ey = Math.exp(-yProcess_.speed() * dt), ly = yProcess_.level();
+        for (int p = begin; p < end; p++) {
+            final double dw0 = dw[p], dw1 = dw[n + p];
+            x[p] = lx + (x[p] - lx) * ex + (s[0] * dw0 + s[1] * dw1);
+            x[n + p] = ly + (x[n + p] - ly) * ey + (s[2] * dw0 + s[3] * dw1);
+        }
+    }
+
     public Matrix covariance(double t0, final Array x0, double dt) {
         Matrix sigma = stdDeviation(t0, x0, dt);
         return sigma.multipy(transpose(sigma));
@@ -27,7 +27,7 @@ public class GeneralizedBlackScholesProcess extends StochasticProcess1D {
     private Handle<LocalVolTermStructure> externalLocalVolTS_;
     private boolean forceDiscretization_;
     private boolean hasExternalLocalVol_;
-    private RelinkableHandle<LocalVolTermStructure> localVolatility_;
+    private final RelinkableHandle<LocalVolTermStructure> localVolatility_ = new RelinkableHandle<>(null, true);
     private boolean updated_, isStrikeIndependent_;
 
     public GeneralizedBlackScholesProcess(
@@ -159,6 +159,36 @@ public class GeneralizedBlackScholesProcess extends StochasticProcess1D {
                     stdDeviation(t0, x0, dt) * dw);
     }
 
+    //! with strike-independent volatility the rates and variance of the step are computed once
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        localVolatility(); // trigger update
+        if (isStrikeIndependent_ && !forceDiscretization_) {
+            // exact value for curves
+            final double var = variance(t0, 0.0, dt);
+            final double drift = (riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Compounding.Continuous,
+                    Frequency.NO_FREQUENCY, true).rate() -
+                    dividendYield_.getValue().forwardRate(t0, t0 + dt, Compounding.Continuous,
+                            Frequency.NO_FREQUENCY, true).rate()) * dt - 0.5 * var;
+            final double stdDev = Math.sqrt(var);
+            for (int p = begin; p < end; p++) {
+                x[p] = x[p] * Math.exp(stdDev * dw[p] + drift);
+            }
+        } else {
+            super.evolve(t0, dt, x, dw, n, begin, end);
+        }
+    }
+
+    //! whether evolve() takes exact log-normal steps
+    /*! i.e. the volatility is strike-independent and no discretization
+        is forced; the log of the asset is then Gaussian over each step.
+    */
+    public boolean hasExactSteps() {
+        localVolatility(); // trigger update
+        return isStrikeIndependent_ && !forceDiscretization_;
+    }
+
     //@}
     public double time(final Date d) {
         return riskFreeRate_.getValue().dayCounter().yearFraction(
@@ -2,31 +2,37 @@ package jquant.processes;
 
 import jquant.math.Array;
 import jquant.math.CommonUtil;
-import jquant.math.Point;
+import jquant.utilities.DoublePairCache;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 import static jquant.math.MathUtils.QL_EPSILON;
 import static jquant.math.MathUtils.QL_MIN_POSITIVE_REAL;
 
 public class GsrProcessCore {
+    //! default bound of each of the caches
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
     protected Array times_;
     protected Array vols_;
     protected Array reversions_;
-    private Map<Point<Double, Double>, Double> cache1_;
-    private Map<Point<Double, Double>, Double> cache2a_;
-    private Map<Point<Double, Double>, Double> cache2b_;
-    private Map<Point<Double, Double>, Double> cache3_;
-    private Map<Point<Double, Double>, Double> cache5_;
-    private Map<Double, Double> cache4_;
+    private final DoublePairCache cache1_;
+    private final DoublePairCache cache2a_;
+    private final DoublePairCache cache2b_;
+    private final DoublePairCache cache3_;
+    private final DoublePairCache cache5_;
+    private final DoublePairCache cache4_;
     private double T_;
     private List<Boolean> revZero_;
 
     public GsrProcessCore(final Array times, final Array vols,
                           final Array reversions, final double T) {
+        this(times, vols, reversions, T, DEFAULT_CACHE_SIZE);
+    }
+
+    public GsrProcessCore(final Array times, final Array vols,
+                          final Array reversions, final double T, int cacheSize) {
         times_ = times;
         vols_ = vols;
         reversions_ = reversions;
@@ -47,28 +53,28 @@ public class GsrProcessCore {
                     + times.get(i) + "@" + i + " , "
                     + times.get(i + 1) + "@" + i + 1
                     + ")");
-        cache1_ = new HashMap<>();
-        cache2a_ = new HashMap<>();
-        cache2b_ = new HashMap<>();
-        cache3_ = new HashMap<>();
-        cache4_ = new HashMap<>();
-        cache5_ = new HashMap<>();
+        cache1_ = new DoublePairCache(cacheSize);
+        cache2a_ = new DoublePairCache(cacheSize);
+        cache2b_ = new DoublePairCache(cacheSize);
+        cache3_ = new DoublePairCache(cacheSize);
+        cache4_ = new DoublePairCache(cacheSize);
+        cache5_ = new DoublePairCache(cacheSize);
         flushCache();
     }
 
     // conditional expectation, x0 dependent part
     public double expectation_x0dep_part(double w, double xw, double dt) {
         double t = w + dt;
-        Point<Double, Double> key = new Point<>(w, t);
-        if (cache1_.containsKey(key)) {
-            return xw * cache1_.get(key);
+        final double cached = cache1_.get(w, t);
+        if (!Double.isNaN(cached)) {
+            return xw * cached;
         }
         // A(w,t)x(w)
         double res2 = 1.0;
         for (int i = lowerIndex(w); i <= upperIndex(t) - 1; i++) {
             res2 *= Math.exp(-rev(i) * (cappedTime(i + 1, t) - flooredTime(i, w)));
         }
-        cache1_.put(key, res2);
+        cache1_.put(w, t, res2);
         return res2 * xw;
     }
 
@@ -77,9 +83,9 @@ public class GsrProcessCore {
     public double expectation_rn_part(double w, double dt) {
         double t = w + dt;
 
-        Point<Double, Double> key = new Point<>(w, t);
-        if (cache2a_.containsKey(key)) {
-            return cache2a_.get(key);
+        final double cached = cache2a_.get(w, t);
+        if (!Double.isNaN(cached)) {
+            return cached;
         }
 
         double res = 0.0;
@@ -137,7 +143,7 @@ public class GsrProcessCore {
             // no beta_j in this case ...
             res += res2;
         }
-        cache2a_.put(key, res);
+        cache2a_.put(w, t, res);
         return res;
     } // expectation_rn_part
 
@@ -146,9 +152,9 @@ public class GsrProcessCore {
     public double expectation_tf_part(double w, double dt) {
         double t = w + dt;
 
-        Point<Double, Double> key = new Point<>(w, t);
-        if (cache2b_.containsKey(key)) {
-            return cache2b_.get(key);
+        final double cached = cache2b_.get(w, t);
+        if (!Double.isNaN(cached)) {
+            return cached;
         }
 
         double res = 0.0;
@@ -212,7 +218,7 @@ public class GsrProcessCore {
             res += -vol(k) * vol(k) * res2;
         }
 
-        cache2b_.put(key, res);
+        cache2b_.put(w, t, res);
 
         return res;
     }
@@ -221,9 +227,9 @@ public class GsrProcessCore {
     public double variance(double w, double dt) {
         double t = w + dt;
 
-        Point<Double, Double> key = new Point<>(w, t);
-        if (cache3_.containsKey(key)) {
-            return cache3_.get(key);
+        final double cached = cache3_.get(w, t);
+        if (!Double.isNaN(cached)) {
+            return cached;
         }
         double res = 0.0;
         for (int k = lowerIndex(w); k <= upperIndex(t) - 1; k++) {
@@ -241,16 +247,15 @@ public class GsrProcessCore {
             res += res2;
         }
 
-        cache3_.put(key, res);
+        cache3_.put(w, t, res);
         return res;
     }
 
     // y(t)
     public double y(double t) {
-        double key;
-        key = t;
-        if (cache4_.containsKey(key)) {
-            return cache4_.get(key);
+        final double cached = cache4_.get(t, 0.0);
+        if (!Double.isNaN(cached)) {
+            return cached;
         }
 
         double res = 0.0;
@@ -266,15 +271,15 @@ public class GsrProcessCore {
             res += res2;
         }
 
-        cache4_.put(key, res);
+        cache4_.put(t, 0.0, res);
         return res;
     }
 
     // G(t,w)
     public double G(double t, double w) {
-        Point<Double, Double> key = new Point<>(w, t);
-        if (cache5_.containsKey(key)) {
-            return cache5_.get(key);
+        final double cached = cache5_.get(w, t);
+        if (!Double.isNaN(cached)) {
+            return cached;
         }
 
         double res = 0.0;
@@ -290,7 +295,7 @@ public class GsrProcessCore {
             res += res2;
         }
 
-        cache5_.put(key, res);
+        cache5_.put(w, t, res);
         return res;
     }
 
@@ -321,6 +326,18 @@ public class GsrProcessCore {
         cache5_.clear();
     }
 
+    //! lookups answered from the caches since construction
+    public long cacheHits() {
+        return cache1_.hits() + cache2a_.hits() + cache2b_.hits()
+                + cache3_.hits() + cache4_.hits() + cache5_.hits();
+    }
+
+    //! lookups that had to be computed since construction
+    public long cacheMisses() {
+        return cache1_.misses() + cache2a_.misses() + cache2b_.misses()
+                + cache3_.misses() + cache4_.misses() + cache5_.misses();
+    }
+
     private int lowerIndex(double t) {
         return times_.upperIndex(t);
     }
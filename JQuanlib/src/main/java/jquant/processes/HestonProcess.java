@@ -3,12 +3,14 @@ package jquant.processes;
 import jquant.Handle;
 import jquant.Quote;
 import jquant.StochasticProcess;
+import jquant.TimeGrid;
 import jquant.math.Array;
 import jquant.math.Matrix;
 import jquant.math.distributions.CumulativeNormalDistribution;
 import jquant.math.distributions.InverseNonCentralCumulativeChiSquareDistribution;
 import jquant.math.integrals.SegmentIntegral;
 import jquant.math.solvers1d.Brent;
+import jquant.processes.impl.BroadieKayaStep;
 import jquant.processes.impl.ManualNonCentralChiSquared;
 import jquant.termstructures.YieldTermStructure;
 import jquant.time.Date;
@@ -52,6 +54,8 @@ public abstract class HestonProcess extends StochasticProcess {
     private Handle<Quote> s0_;
     private double v0_, kappa_, theta_, sigma_, rho_;
     private Discretization discretization_;
+    private final CumulativeNormalDistribution cumNormal_ = new CumulativeNormalDistribution();
+    private volatile StepPlan plan_;
 
     public HestonProcess(Handle<YieldTermStructure> riskFreeRate,
                          Handle<YieldTermStructure> dividendYield,
@@ -82,9 +86,7 @@ public abstract class HestonProcess extends StochasticProcess {
     }
 
     public int factors() {
-        return (discretization_ == BroadieKayaExactSchemeLobatto
-                || discretization_ == BroadieKayaExactSchemeTrapezoidal
-                || discretization_ == BroadieKayaExactSchemeLaguerre) ? 3 : 2;
+        return isBroadieKaya() ? 3 : 2;
     }
 
     public Array initialValues() {
@@ -136,10 +138,137 @@ public abstract class HestonProcess extends StochasticProcess {
     }
 
     public Array evolve(double t0, final Array x0, double dt, final Array dw) {
-        Array retVal = new Array(2);
+        final double[] x = {x0.get(0), x0.get(1)};
+        evolvePath(step(t0, dt), x, dw.dataRef(), 1, 0);
+        return Array.wrap(x);
+    }
+
+    //! the rates and the scheme constants are computed once for the whole batch
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        final Step c = step(t0, dt);
+        for (int p = begin; p < end; p++) {
+            evolvePath(c, x, dw, n, p);
+        }
+    }
+
+    //! computes the constants of every step of the grid once, see StochasticProcess.prepare
+    @Override
+    public void prepare(final TimeGrid grid) {
+        StepPlan plan = plan_;
+        if (plan == null || plan.grid_ != grid) {
+            plan_ = new StepPlan(grid);
+        }
+    }
+
+    @Override
+    public void update() {
+        // rates may have changed
+        plan_ = null;
+        super.update();
+    }
+
+    // quantities of a step that depend on t0 and dt only
+    private static final class Step {
+        double dt, sdt, sqrhov;
+        // r - q over the step
+        double rate;
+        double ex;
+        // quadratic exponential scheme
+        double s2v, s2c, k0, k1, k2, k3, k4, A;
+        // non-central chi-square variance
+        double ncpFactor, varianceScale;
+        // Broadie-Kaya integrated variance
+        BroadieKayaStep bk;
+    }
+
+    // step constants for all steps of a time grid
+    private final class StepPlan {
+        private final TimeGrid grid_;
+        private final double[] times_;
+        private final double[] dts_;
+        private final Step[] steps_;
+
+        StepPlan(final TimeGrid grid) {
+            final int n = grid.size() - 1;
+            grid_ = grid;
+            times_ = new double[n];
+            dts_ = new double[n];
+            steps_ = new Step[n];
+            for (int i = 0; i < n; i++) {
+                times_[i] = grid.get(i);
+                dts_[i] = grid.dt(i);
+                steps_[i] = newStep(times_[i], dts_[i]);
+            }
+        }
+
+        // the precomputed step starting at t0, if its length is dt
+        Step find(double t0, double dt) {
+            int lo = 0, hi = times_.length - 1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (times_[mid] < t0) {
+                    lo = mid + 1;
+                } else if (times_[mid] > t0) {
+                    hi = mid - 1;
+                } else {
+                    return dts_[mid] == dt ? steps_[mid] : null;
+                }
+            }
+            return null;
+        }
+    }
+
+    private Step step(double t0, double dt) {
+        final StepPlan plan = plan_;
+        if (plan != null) {
+            final Step c = plan.find(t0, dt);
+            if (c != null) {
+                return c;
+            }
+        }
+        return newStep(t0, dt);
+    }
+
+    private Step newStep(double t0, double dt) {
+        Step c = new Step();
+        c.dt = dt;
+        c.sdt = Math.sqrt(dt);
+        c.sqrhov = Math.sqrt(1.0 - rho_ * rho_);
+        c.rate = riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
+                - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate();
+        c.ex = Math.exp(-kappa_ * dt);
+        if (discretization_ == QuadraticExponential || discretization_ == QuadraticExponentialMartingale) {
+            final double ex = c.ex;
+            c.s2v = sigma_ * sigma_ * ex / kappa_ * (1 - ex);
+            c.s2c = theta_ * sigma_ * sigma_ / (2 * kappa_) * (1 - ex) * (1 - ex);
+            final double g1 = 0.5;
+            final double g2 = 0.5;
+            c.k0 = -rho_ * kappa_ * theta_ * dt / sigma_;
+            c.k1 = g1 * dt * (kappa_ * rho_ / sigma_ - 0.5) - rho_ / sigma_;
+            c.k2 = g2 * dt * (kappa_ * rho_ / sigma_ - 0.5) + rho_ / sigma_;
+            c.k3 = g1 * dt * (1 - rho_ * rho_);
+            c.k4 = g2 * dt * (1 - rho_ * rho_);
+            c.A = c.k2 + 0.5 * c.k4;
+        }
+        if (discretization_ == NonCentralChiSquareVariance || isBroadieKaya()) {
+            c.ncpFactor = 4 * kappa_ * c.ex / (sigma_ * sigma_ * (1 - c.ex));
+            c.varianceScale = sigma_ * sigma_ * (1 - c.ex) / (4 * kappa_);
+        }
+        if (isBroadieKaya()) {
+            c.bk = new BroadieKayaStep(this, dt);
+        }
+        return c;
+    }
+
+    // advances path p of a batch of n paths, see StochasticProcess.evolve
+    private void evolvePath(final Step c, double[] xs, final double[] dws, int n, int p) {
+        final double s0 = xs[p], v0 = xs[n + p];
+        final double dw0 = dws[p], dw1 = dws[n + p];
+        final double dt = c.dt, sdt = c.sdt, sqrhov = c.sqrhov;
         double vol, vol2, mu, nu, dy;
-        final double sdt = Math.sqrt(dt);
-        final double sqrhov = Math.sqrt(1.0 - rho_ * rho_);
+        double s1, v1;
         switch (discretization_) {
             // For the definition of PartialTruncation, FullTruncation
             // and Reflection  see Lord, R., R. Koekkoek and D. van Dijk (2006),
@@ -147,38 +276,32 @@ public abstract class HestonProcess extends StochasticProcess {
             //  stochastic volatility models",
             // Working Paper, Tinbergen Institute
             case PartialTruncation:
-                vol = (x0.get(1) > 0.0) ? Math.sqrt(x0.get(1)) : (0.0);
+                vol = (v0 > 0.0) ? Math.sqrt(v0) : (0.0);
                 vol2 = sigma_ * vol;
-                mu = riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - 0.5 * vol * vol;
-                nu = kappa_ * (theta_ - x0.get(1));
+                mu = c.rate - 0.5 * vol * vol;
+                nu = kappa_ * (theta_ - v0);
 
-                retVal.set(0, x0.get(0) * Math.exp(mu * dt + vol * dw.get(0) * sdt));
-                retVal.set(1, x0.get(1) + nu * dt + vol2 * sdt * (rho_ * dw.get(0) + sqrhov * dw.get(1)));
+                s1 = s0 * Math.exp(mu * dt + vol * dw0 * sdt);
+                v1 = v0 + nu * dt + vol2 * sdt * (rho_ * dw0 + sqrhov * dw1);
                 break;
             case FullTruncation:
-                vol = (x0.get(1) > 0.0) ? Math.sqrt(x0.get(1)) : (0.0);
+                vol = (v0 > 0.0) ? Math.sqrt(v0) : (0.0);
                 vol2 = sigma_ * vol;
-                mu = riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - 0.5 * vol * vol;
+                mu = c.rate - 0.5 * vol * vol;
                 nu = kappa_ * (theta_ - vol * vol);
 
-                retVal.set(0, x0.get(0) * Math.exp(mu * dt + vol * dw.get(0) * sdt));
-                retVal.set(1, x0.get(1) + nu * dt + vol2 * sdt * (rho_ * dw.get(0) + sqrhov * dw.get(1)));
+                s1 = s0 * Math.exp(mu * dt + vol * dw0 * sdt);
+                v1 = v0 + nu * dt + vol2 * sdt * (rho_ * dw0 + sqrhov * dw1);
                 break;
             case Reflection:
-                vol = Math.sqrt(Math.abs(x0.get(1)));
+                vol = Math.sqrt(Math.abs(v0));
                 vol2 = sigma_ * vol;
-                mu = riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - 0.5 * vol * vol;
+                mu = c.rate - 0.5 * vol * vol;
                 nu = kappa_ * (theta_ - vol * vol);
 
-                retVal.set(0, x0.get(0) * Math.exp(mu * dt + vol * dw.get(0) * sdt));
-                retVal.set(1, vol * vol
-                        + nu * dt + vol2 * sdt * (rho_ * dw.get(0) + sqrhov * dw.get(1)));
+                s1 = s0 * Math.exp(mu * dt + vol * dw0 * sdt);
+                v1 = vol * vol
+                        + nu * dt + vol2 * sdt * (rho_ * dw0 + sqrhov * dw1);
                 break;
             case NonCentralChiSquareVariance:
                 // use Alan Lewis trick to decorrelate the equity and the variance
@@ -186,37 +309,26 @@ public abstract class HestonProcess extends StochasticProcess {
                 // and Ito's Lemma. Then use exact sampling for the variance
                 // process. For further details please read the Wilmott thread
                 // "QuantLib code is very high quality"
-                vol = (x0.get(1) > 0.0) ? Math.sqrt(x0.get(1)) : (0.0);
-                mu = riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - 0.5 * vol * vol;
+                vol = (v0 > 0.0) ? Math.sqrt(v0) : (0.0);
+                mu = c.rate - 0.5 * vol * vol;
 
-                retVal.set(1, varianceDistribution(x0.get(1), dw.get(1), dt));
+                v1 = varianceDistribution(c, v0, dw1);
                 dy = (mu - rho_ / sigma_ * kappa_
-                        * (theta_ - vol * vol)) * dt + vol * sqrhov * dw.get(0) * sdt;
+                        * (theta_ - vol * vol)) * dt + vol * sqrhov * dw0 * sdt;
 
-                retVal.set(0, x0.get(0) * Math.exp(dy + rho_ / sigma_ * (retVal.get(1) - x0.get(1))));
+                s1 = s0 * Math.exp(dy + rho_ / sigma_ * (v1 - v0));
                 break;
             case QuadraticExponential:
             case QuadraticExponentialMartingale: {
                 // for details of the quadratic exponential discretization scheme
                 // see Leif Andersen,
                 // Efficient Simulation of the Heston Stochastic Volatility Model
-                final double ex = Math.exp(-kappa_ * dt);
-
-                final double m = theta_ + (x0.get(1) - theta_) * ex;
-                final double s2 = x0.get(1) * sigma_ * sigma_ * ex / kappa_ * (1 - ex)
-                        + theta_ * sigma_ * sigma_ / (2 * kappa_) * (1 - ex) * (1 - ex);
+                final double m = theta_ + (v0 - theta_) * c.ex;
+                final double s2 = v0 * c.s2v + c.s2c;
                 final double psi = s2 / (m * m);
 
-                final double g1 = 0.5;
-                final double g2 = 0.5;
-                double k0 = -rho_ * kappa_ * theta_ * dt / sigma_;
-                final double k1 = g1 * dt * (kappa_ * rho_ / sigma_ - 0.5) - rho_ / sigma_;
-                final double k2 = g2 * dt * (kappa_ * rho_ / sigma_ - 0.5) + rho_ / sigma_;
-                final double k3 = g1 * dt * (1 - rho_ * rho_);
-                final double k4 = g2 * dt * (1 - rho_ * rho_);
-                final double A = k2 + 0.5 * k4;
+                double k0 = c.k0;
+                final double k1 = c.k1, k2 = c.k2, k3 = c.k3, k4 = c.k4, A = c.A;
 
                 if (psi < 1.5) {
                     final double b2 = 2 / psi - 1 + Math.sqrt(2 / psi * (2 / psi - 1));
@@ -227,61 +339,67 @@ public abstract class HestonProcess extends StochasticProcess {
                         // martingale correction
                         QL_REQUIRE(A < 1 / (2 * a), "illegal value");
                         k0 = -A * b2 * a / (1 - 2 * A * a) + 0.5 * Math.log(1 - 2 * A * a)
-                                - (k1 + 0.5 * k3) * x0.get(1);
+                                - (k1 + 0.5 * k3) * v0;
                     }
-                    retVal.set(1, a * (b + dw.get(1)) * (b + dw.get(1)));
+                    v1 = a * (b + dw1) * (b + dw1);
                 } else {
-                    final double p = (psi - 1) / (psi + 1);
-                    final double beta = (1 - p) / m;
+                    final double p1 = (psi - 1) / (psi + 1);
+                    final double beta = (1 - p1) / m;
 
-                    final double u = new CumulativeNormalDistribution().value(dw.get(1));
+                    final double u = cumNormal_.value(dw1);
 
                     if (discretization_ == QuadraticExponentialMartingale) {
                         // martingale correction
                         QL_REQUIRE(A < beta, "illegal value");
-                        k0 = -Math.log(p + beta * (1 - p) / (beta - A)) - (k1 + 0.5 * k3) * x0.get(1);
+                        k0 = -Math.log(p1 + beta * (1 - p1) / (beta - A)) - (k1 + 0.5 * k3) * v0;
                     }
-                    retVal.set(1, ((u <= p) ? (0.0) : Math.log((1 - p) / (1 - u)) / beta));
+                    v1 = ((u <= p1) ? (0.0) : Math.log((1 - p1) / (1 - u)) / beta);
                 }
 
-                mu = riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate();
-
-                retVal.set(0, x0.get(0) * Math.exp(mu * dt + k0 + k1 * x0.get(1) + k2 * retVal.get(1)
-                        + Math.sqrt(k3 * x0.get(1) + k4 * retVal.get(1)) * dw.get(0)));
+                s1 = s0 * Math.exp(c.rate * dt + k0 + k1 * v0 + k2 * v1
+                        + Math.sqrt(k3 * v0 + k4 * v1) * dw0);
             }
             break;
             case BroadieKayaExactSchemeLobatto:
             case BroadieKayaExactSchemeLaguerre:
             case BroadieKayaExactSchemeTrapezoidal: {
-                final double nu_0 = x0.get(1);
-                final double nu_t = varianceDistribution(nu_0, dw.get(1), dt);
+                final double nu_0 = v0;
+                final double nu_t = varianceDistribution(c, nu_0, dw1);
 
                 final double x = Math.min(1.0 - QL_EPSILON,
-                        Math.max(0.0, new CumulativeNormalDistribution().value(dw.get(2))));
+                        Math.max(0.0, cumNormal_.value(dws[2 * n + p])));
 
-                final double vds = new Brent().solve(xi -> cdf_nu_ds_minus_x( this,xi, nu_0, nu_t, dt, discretization_, x),
-                1e-5, theta_ * dt, 0.1 * theta_ * dt);
+                final BroadieKayaStep.Distribution distribution = c.bk.distribution(nu_0, nu_t);
+                final double vds = new Brent().solve(xi -> distribution.cdf(xi) - x,
+                        1e-5, theta_ * dt, 0.1 * theta_ * dt);
 
                 final double vdw
                         = (nu_t - nu_0 - kappa_ * theta_ * dt + kappa_ * vds) / sigma_;
 
-                mu = (riskFreeRate_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()
-                        - dividendYield_.getValue().forwardRate(t0, t0 + dt, Continuous, Frequency.ANNUAL, false).rate()) * dt
+                mu = c.rate * dt
                         - 0.5 * vds + rho_ * vdw;
 
                 final double sig = Math.sqrt((1 - rho_ * rho_) * vds);
-                final double s = x0.get(0) * Math.exp(mu + sig * dw.get(0));
-
-                retVal.set(0, s);
-                retVal.set(1, nu_t);
+                s1 = s0 * Math.exp(mu + sig * dw0);
+                v1 = nu_t;
             }
             break;
             default:
                 QL_FAIL("unknown discretization schema");
+                return;
         }
+        xs[p] = s1;
+        xs[n + p] = v1;
+    }
+
+    public Discretization discretization() {
+        return discretization_;
+    }
 
-        return retVal;
+    private boolean isBroadieKaya() {
+        return discretization_ == BroadieKayaExactSchemeLobatto
+                || discretization_ == BroadieKayaExactSchemeTrapezoidal
+                || discretization_ == BroadieKayaExactSchemeLaguerre;
     }
 
     public double v0() {
@@ -359,15 +477,14 @@ public abstract class HestonProcess extends StochasticProcess {
 //        v/k) / k;
     }
 
-    private double varianceDistribution(double v, double dw, double dt) {
+    private double varianceDistribution(final Step c, double v, double dw) {
         final double df = 4 * theta_ * kappa_ / (sigma_ * sigma_);
-        final double ncp = 4 * kappa_ * Math.exp(-kappa_ * dt)
-                / (sigma_ * sigma_ * (1 - Math.exp(-kappa_ * dt))) * v;
+        final double ncp = c.ncpFactor * v;
 
         final double p = Math.min(1.0 - QL_EPSILON,
-                Math.max(0.0, new CumulativeNormalDistribution().value(dw)));
+                Math.max(0.0, cumNormal_.value(dw)));
 
-        return sigma_ * sigma_ * (1 - Math.exp(-kappa_ * dt)) / (4 * kappa_)
+        return c.varianceScale
                 * new InverseNonCentralCumulativeChiSquareDistribution(df, ncp, 100, 1e-8).value(p);
     }
 }
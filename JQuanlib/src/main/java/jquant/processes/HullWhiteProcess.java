@@ -66,6 +66,19 @@ public abstract class HullWhiteProcess extends StochasticProcess1D {
         return process_.variance(t0, x0, dt);
     }
 
+    //! the forward-rate shift and the decay factor are computed once per step
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        final double ex = Math.exp(-a_ * dt);
+        final double level = process_.level();
+        final double shift = alpha(t0 + dt) - alpha(t0) * ex;
+        final double stdDev = process_.stdDeviation(t0, 0.0, dt);
+        for (int p = begin; p < end; p++) {
+            x[p] = level + (x[p] - level) * ex + shift + stdDev * dw[p];
+        }
+    }
+
     public double a() {
         return a_;
     }
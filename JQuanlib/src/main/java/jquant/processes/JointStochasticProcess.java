@@ -7,9 +7,9 @@ import jquant.math.Matrix;
 import jquant.math.matrixutilities.SVD;
 import jquant.math.matrixutilities.impl.SalvagingAlgorithm;
 import jquant.time.Date;
+import jquant.utilities.DoublePairObjectCache;
 
 import java.util.List;
-import java.util.Map;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
 import static jquant.math.CommonUtil.transpose;
@@ -18,26 +18,15 @@ import static jquant.math.MathUtils.QL_EPSILON;
 import static jquant.math.matrixutilities.MatrixUtil.*;
 
 public abstract class JointStochasticProcess extends StochasticProcess {
-    private static class CachingKey {
-        public double t0_;
-        public double dt_;
-
-        public CachingKey(final double t0, final double dt) {
-            t0_ = t0;
-            dt_ = dt;
-        }
-
-        public boolean letter(final CachingKey key) {
-            return t0_ < key.t0_
-                    || (t0_ == key.t0_ && dt_ < key.dt_);
-        }
-    }
+    // bound of the (t0, dt) cache of state-independent correlation roots
+    private static final int CORRELATION_CACHE_SIZE = 1024;
 
     private int size_;
     private int factors_;
     private int modelFactors_;
     private List<Integer> vsize_, vfactors_;
-    private Map<CachingKey, Matrix> correlationCache_;
+    private final DoublePairObjectCache<Matrix> correlationCache_ =
+            new DoublePairObjectCache<>(CORRELATION_CACHE_SIZE);
     protected List<StochasticProcess> l_;
 
     public JointStochasticProcess(List<StochasticProcess> l, int factors) {
@@ -177,7 +166,8 @@ public abstract class JointStochasticProcess extends StochasticProcess {
     public Array evolve(double t0, final Array x0, double dt, final Array dw) {
         Array dv = new Array(modelFactors_);
 
-        if (correlationIsStateDependent() || !correlationCache_.containsKey(new CachingKey(t0, dt))) {
+        final Matrix cached = correlationIsStateDependent() ? null : correlationCache_.get(t0, dt);
+        if (cached == null) {
             Matrix cov = covariance(t0, x0, dt);
             final Array sqrtDiag = Sqrt(cov.diagonal());
             for (int i = 0; i < cov.rows(); ++i) {
@@ -251,13 +241,11 @@ public abstract class JointStochasticProcess extends StochasticProcess {
             final Matrix m = transpose(diff).multipy(rs);
 
             if (!correlationIsStateDependent()) {
-                correlationCache_.put(new CachingKey(t0, dt), m);
+                correlationCache_.put(t0, dt, m);
             }
             dv = m.mutiply(dw);
         } else {
-            if (!correlationIsStateDependent()) {
-                dv = correlationCache_.get(new CachingKey(t0, dt)).mutiply(dw);
-            }
+            dv = cached.mutiply(dw);
         }
         this.preEvolve(t0, x0, dt, dv);
 
@@ -60,4 +60,14 @@ public class OrnsteinUhlenbeckProcess extends StochasticProcess1D {
     public double stdDeviation(double t, double x0, double dt) {
         return Math.sqrt(variance(t, x0, dt));
     }
+
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        final double ex = Math.exp(-speed_ * dt);
+        final double stdDev = stdDeviation(t0, 0.0, dt);
+        for (int p = begin; p < end; p++) {
+            x[p] = level_ + (x[p] - level_) * ex + stdDev * dw[p];
+        }
+    }
 }
@@ -41,6 +41,21 @@ public class SquareRootProcess extends StochasticProcess1D {
         return volatility_ * Math.sqrt(x);
     }
 
+    //! Euler steps of the time-homogeneous dynamics on the whole batch
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        if (discretization_ instanceof EulerDiscretization) {
+            final double sdt = Math.sqrt(dt);
+            for (int p = begin; p < end; p++) {
+                final double x0 = x[p];
+                x[p] = x0 + speed_ * (mean_ - x0) * dt + volatility_ * Math.sqrt(x0) * sdt * dw[p];
+            }
+        } else {
+            super.evolve(t0, dt, x, dw, n, begin, end);
+        }
+    }
+
     public double a() {
         return speed_;
     }
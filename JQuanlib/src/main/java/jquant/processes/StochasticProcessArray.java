@@ -7,6 +7,7 @@ import jquant.math.Matrix;
 import jquant.math.matrixutilities.impl.SalvagingAlgorithm;
 import jquant.time.Date;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static jquant.math.CommonUtil.QL_REQUIRE;
@@ -55,6 +56,12 @@ public class StochasticProcessArray extends StochasticProcess {
         return tmp;
     }
 
+    @Override
+    public void drift(double t, final double[] x, double[] out) {
+        for (int i = 0; i < size(); ++i)
+            out[i] = processes_.get(i).drift(t, x[i]);
+    }
+
     @Override
     public Array expectation(double t0, final Array x0, double dt) {
         Array tmp = new Array(size());
@@ -75,6 +82,18 @@ public class StochasticProcessArray extends StochasticProcess {
         return tmp;
     }
 
+    @Override
+    public void diffusion(double t, final double[] x, double[] out) {
+        final double[] sqrtCorrelation = sqrtCorrelation_.dataRef();
+        final int factors = sqrtCorrelation_.cols();
+        for (int i = 0; i < size(); ++i) {
+            final double sigma = processes_.get(i).diffusion(t, x[i]);
+            for (int j = i * factors; j < (i + 1) * factors; j++) {
+                out[j] = sqrtCorrelation[j] * sigma;
+            }
+        }
+    }
+
     @Override
     public Matrix covariance(double t0, final Array x0, double dt) {
         Matrix tmp = stdDeviation(t0, x0, dt);
@@ -103,14 +122,41 @@ public class StochasticProcessArray extends StochasticProcess {
 
     @Override
     public Array evolve(double t0, final Array x0, double dt, final Array dw) {
-        final Array dz = sqrtCorrelation_.mutiply(dw);
+        final double[] sqrtCorrelation = sqrtCorrelation_.dataRef();
+        final int factors = sqrtCorrelation_.cols();
 
         Array tmp = new Array(size());
-        for (int i = 0; i < size(); ++i)
-            tmp.set(i, processes_.get(i).evolve(t0, x0.get(i), dt, dz.get(i)));
+        for (int i = 0; i < size(); ++i) {
+            double dz = 0.0;
+            for (int k = 0; k < factors; k++)
+                dz += sqrtCorrelation[i * factors + k] * dw.get(k);
+            tmp.set(i, processes_.get(i).evolve(t0, x0.get(i), dt, dz));
+        }
         return tmp;
     }
 
+    //! correlates the increments of the batch, then evolves each component with its own batch evolve
+    @Override
+    public void evolve(double t0, double dt, double[] x, final double[] dw,
+                       int n, int begin, int end) {
+        final double[] sqrtCorrelation = sqrtCorrelation_.dataRef();
+        final int factors = sqrtCorrelation_.cols(), m = end - begin;
+        final double[] xi = new double[m], dz = new double[m];
+        for (int i = 0; i < size(); ++i) {
+            Arrays.fill(dz, 0.0);
+            for (int k = 0; k < factors; k++) {
+                final double c = sqrtCorrelation[i * factors + k];
+                if (c == 0.0)
+                    continue;
+                for (int p = 0, q = k * n + begin; p < m; p++, q++)
+                    dz[p] += c * dw[q];
+            }
+            System.arraycopy(x, i * n + begin, xi, 0, m);
+            processes_.get(i).evolve(t0, dt, xi, dz, m);
+            System.arraycopy(xi, 0, x, i * n + begin, m);
+        }
+    }
+
     @Override
     public double time(final Date date) {
         return processes_.get(0).time(date);
@@ -0,0 +1,269 @@
+package jquant.processes.impl;
+
+import jquant.math.distributions.InverseCumulativeNormal;
+import jquant.math.integrals.GaussLaguerreIntegration;
+import jquant.math.integrals.GaussLobattoIntegral;
+import jquant.processes.HestonProcess;
+import org.apache.commons.math3.complex.Complex;
+
+import static jquant.ModifiedBessel.modifiedBesselFunction_i;
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.MathUtils.*;
+
+//! distribution of the integrated variance over one step of a Heston process
+/*! Broadie-Kaya exact scheme, see ProcessUtil.Phi and cdf_nu_ds. The
+    characteristic function Phi(a; nu_0, nu_t) is a product of factors that
+    depend on a and dt only and of factors that depend on the variance at
+    both ends of the step. The first ones are tabulated here once per step
+    at the quadrature nodes; distribution(nu_0, nu_t) then evaluates Phi at
+    the nodes once per path, so that the root search on the cumulative
+    distribution only sums tabulated values.
+
+    Instances are immutable apart from the trapezoidal node table, which
+    grows on demand and can be shared between threads.
+*/
+public final class BroadieKayaStep {
+    private static final double EPS = 1e-4;
+    // finite-difference step of the Cornish-Fisher moments
+    private static final double CF_D = 1e-2;
+    private static final double TRAPEZOIDAL_H = 0.05;
+
+    private final HestonProcess.Discretization discretization_;
+    private final double dt_, kappa_, sigma2_, nu_;
+    private final double beta_, tp2_;
+    private final Node[] cornishFisher_;
+    private final Node[] laguerre_;
+    private volatile Node[] trapezoidal_;
+
+    // factors of Phi that do not depend on the variance
+    private static final class Node {
+        final Complex pre;
+        final Complex e;
+        final Complex alpha;
+        final Complex limit;
+
+        Node(Complex pre, Complex e, Complex alpha, Complex limit) {
+            this.pre = pre;
+            this.e = e;
+            this.alpha = alpha;
+            this.limit = limit;
+        }
+    }
+
+    private static final class LaguerreHolder {
+        static final GaussLaguerreIntegration INTEGRATION = new GaussLaguerreIntegration(128);
+        static final double[] X = INTEGRATION.x().toArray();
+        static final double[] W = INTEGRATION.weights().toArray();
+    }
+
+    public BroadieKayaStep(final HestonProcess process, double dt) {
+        discretization_ = process.discretization();
+        dt_ = dt;
+        kappa_ = process.kappa();
+        final double sigma = process.sigma();
+        sigma2_ = sigma * sigma;
+        nu_ = 0.5 * (4 * process.theta() * kappa_ / sigma2_) - 1;
+        beta_ = 4.0 * kappa_ * Math.exp(-0.5 * kappa_ * dt) / (sigma2_ * (1.0 - Math.exp(-kappa_ * dt)));
+        tp2_ = kappa_ * (1.0 + Math.exp(-kappa_ * dt)) / (1.0 - Math.exp(-kappa_ * dt));
+
+        cornishFisher_ = new Node[5];
+        for (int k = -2; k <= 2; k++) {
+            cornishFisher_[k + 2] = node(new Complex(0, -k * CF_D));
+        }
+        if (discretization_ == HestonProcess.Discretization.BroadieKayaExactSchemeLaguerre) {
+            final double[] x = LaguerreHolder.X;
+            laguerre_ = new Node[x.length];
+            for (int i = 0; i < x.length; i++) {
+                laguerre_[i] = node(new Complex(x[i]));
+            }
+        } else {
+            laguerre_ = null;
+        }
+        trapezoidal_ = new Node[0];
+    }
+
+    public double dt() {
+        return dt_;
+    }
+
+    //! cumulative distribution of the integrated variance given its end points
+    public Distribution distribution(double nu_0, double nu_t) {
+        return new Distribution(nu_0, nu_t);
+    }
+
+    private Node node(final Complex a) {
+        final double dt = dt_, kappa = kappa_, sigma2 = sigma2_;
+        final Complex ga = new Complex(0.0, 1.0).multiply(a).multiply(-2 * sigma2).add(kappa * kappa).sqrt();
+        final Complex emt = ga.multiply(-dt).exp();
+        final Complex z = ga.multiply(ga.multiply(-0.5 * dt).exp()).divide(emt.multiply(-1).add(1.0));
+        final Complex log_z = ga.multiply(-0.5 * dt).add(ga.divide(emt.multiply(-1).add(1.0)).log());
+
+        final Complex alpha = ga.multiply(4.0).multiply(ga.multiply(-0.5 * dt).exp()).
+                divide(emt.multiply(-1).add(1.0).multiply(sigma2));
+
+        final Complex tmp1 = ga.subtract(kappa).multiply(-0.5 * dt).exp();
+        final double tmp2 = (1 - Math.exp(-kappa * dt));
+        final Complex tmp3 = emt.multiply(-1).add(1.0).multiply(kappa);
+        final Complex tp3 = ga.multiply(emt.add(1.0)).divide(emt.multiply(-1).add(1.0));
+        final Complex tmp5 = log_z.multiply(nu_).exp().divide(z.pow(nu_));
+
+        return new Node(ga.multiply(tmp1).multiply(tmp2).divide(tmp3).multiply(tmp5),
+                new Complex(tp2_).subtract(tp3),
+                alpha,
+                alpha.divide(new Complex(beta_)).pow(nu_));
+    }
+
+    // u = h * j of the trapezoidal rule, j >= 1
+    private Node trapezoidal(int j) {
+        Node[] t = trapezoidal_;
+        if (j < t.length) {
+            return t[j];
+        }
+        synchronized (this) {
+            t = trapezoidal_;
+            if (j >= t.length) {
+                Node[] grown = new Node[Math.max(j + 1, Math.max(64, 2 * t.length))];
+                System.arraycopy(t, 0, grown, 0, t.length);
+                for (int k = Math.max(t.length, 1); k < grown.length; k++) {
+                    grown[k] = node(new Complex(TRAPEZOIDAL_H * k));
+                }
+                trapezoidal_ = t = grown;
+            }
+            return t[j];
+        }
+    }
+
+    //! integrated variance distribution of one path, see BroadieKayaStep
+    public final class Distribution {
+        private final double nu_t_, tp1_, sqrtNu_;
+        private final Complex denominator_;
+        private double upper_ = Double.NaN;
+        private double[] rePhi_;
+        private int terms_;
+
+        private Distribution(double nu_0, double nu_t) {
+            nu_t_ = nu_t;
+            tp1_ = (nu_0 + nu_t) / sigma2_;
+            sqrtNu_ = Math.sqrt(nu_0 * nu_t);
+            denominator_ = nu_t > 1e-8
+                    ? modifiedBesselFunction_i(nu_, new Complex(beta_).multiply(sqrtNu_))
+                    : null;
+        }
+
+        private Complex phi(final Node n) {
+            final Complex bessel = (nu_t_ > 1e-8)
+                    ? modifiedBesselFunction_i(nu_, n.alpha.multiply(sqrtNu_)).divide(denominator_)
+                    : n.limit;
+            return n.pre.multiply(n.e.multiply(tp1_).exp()).multiply(bessel);
+        }
+
+        private Complex phi(double u) {
+            return phi(node(new Complex(u)));
+        }
+
+        // upper bound of the integration, as in ProcessUtil.cdf_nu_ds
+        private double upper() {
+            if (Double.isNaN(upper_)) {
+                final double u_eps = Math.min(100.0, Math.max(0.1, cornishFisherEps()));
+                double upper = u_eps / 2.0;
+                while (phi(upper).divide(upper).abs() > EPS)
+                    upper *= 2.0;
+                upper_ = upper;
+            }
+            return upper_;
+        }
+
+        private double cornishFisherEps() {
+            final double d = CF_D;
+            final double p2 = phi(cornishFisher_[4]).getReal();
+            final double p1 = phi(cornishFisher_[3]).getReal();
+            final double p0 = phi(cornishFisher_[2]).getReal();
+            final double pm1 = phi(cornishFisher_[1]).getReal();
+            final double pm2 = phi(cornishFisher_[0]).getReal();
+
+            final double avg = (pm2 - 8 * pm1 + 8 * p1 - p2) / (12 * d);
+            final double m2 = (-pm2 + 16 * pm1 - 30 * p0 + 16 * p1 - p2) / (12 * d * d);
+            final double var = m2 - avg * avg;
+            final double stdDev = Math.sqrt(var);
+
+            final double m3 = (-0.5 * pm2 + pm1 - p1 + 0.5 * p2) / (d * d * d);
+            final double skew
+                    = (m3 - 3 * var * avg - avg * avg * avg) / (var * stdDev);
+
+            final double m4 = (pm2 - 4 * pm1 + 6 * p0 - 4 * p1 + p2) / (d * d * d * d);
+            final double kurt
+                    = (m4 - 4 * m3 * avg + 6 * m2 * avg * avg - 3 * avg * avg * avg * avg)
+                    / (var * var);
+
+            final double q = new InverseCumulativeNormal().value(1 - EPS);
+            final double w = q + (q * q - 1) / 6 * skew + (q * q * q - 3 * q) / 24 * (kurt - 3)
+                    - (2 * q * q * q - 5 * q) / 36 * skew * skew;
+
+            return avg + w * stdDev;
+        }
+
+        //! probability that the integrated variance is below x
+        public double cdf(double x) {
+            switch (discretization_) {
+                case BroadieKayaExactSchemeLaguerre: {
+                    if (x >= upper())
+                        return 1.0;
+                    final double[] u = LaguerreHolder.X, w = LaguerreHolder.W;
+                    if (rePhi_ == null) {
+                        rePhi_ = new double[u.length];
+                        for (int i = 0; i < u.length; i++) {
+                            rePhi_[i] = phi(laguerre_[i]).getReal();
+                        }
+                    }
+                    double sum = 0.0;
+                    for (int i = u.length - 1; i >= 0; --i) {
+                        sum += w[i] * (M_2_PI * Math.sin(u[i] * x) / u[i] * rePhi_[i]);
+                    }
+                    return Math.max(0.0, Math.min(1.0, sum));
+                }
+                case BroadieKayaExactSchemeLobatto: {
+                    final double upper = upper();
+                    if (x >= upper)
+                        return 1.0;
+                    return Math.max(0.0, Math.min(1.0,
+                            new GaussLobattoIntegral(NULL_SIZE, EPS).value(
+                                    xi -> M_2_PI * Math.sin(xi * x) / xi * phi(xi).getReal(),
+                                    QL_EPSILON, upper)));
+                }
+                case BroadieKayaExactSchemeTrapezoidal: {
+                    final double h = TRAPEZOIDAL_H;
+                    if (rePhi_ == null) {
+                        // the number of terms depends on Phi only, not on x
+                        double[] re = new double[64];
+                        int j = 0;
+                        Complex f;
+                        do {
+                            ++j;
+                            f = phi(trapezoidal(j));
+                            if (j == re.length) {
+                                double[] grown = new double[2 * re.length];
+                                System.arraycopy(re, 0, grown, 0, re.length);
+                                re = grown;
+                            }
+                            re[j] = f.getReal();
+                        }
+                        while (M_2_PI * f.abs() / j > EPS);
+                        rePhi_ = re;
+                        terms_ = j;
+                    }
+                    double si = ProcessUtil.Si(0.5 * h * x);
+                    double s = M_2_PI * si;
+                    for (int j = 1; j <= terms_; j++) {
+                        final double si_n = ProcessUtil.Si(x * (h * j + 0.5 * h));
+                        s += M_2_PI * rePhi_[j] * (si_n - si);
+                        si = si_n;
+                    }
+                    return s;
+                }
+                default:
+                    QL_FAIL("unknown integration method");
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -7,11 +7,6 @@ import jquant.math.integrals.GaussLobattoIntegral;
 import jquant.processes.HestonProcess;
 import org.apache.commons.math3.complex.Complex;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-
 import static jquant.ModifiedBessel.modifiedBesselFunction_i;
 import static jquant.math.CommonUtil.QL_FAIL;
 import static jquant.math.MathUtils.*;
@@ -90,11 +85,41 @@ public class ProcessUtil {
                 / (y * (1 - rho * rho)));
     }
 
-    public static double pade(double x, List<Double> nominator, List<Double> denominator, int m) {
+    // coefficients of the Pade approximations of Si
+    private static final double[] SI_N = {
+            -4.54393409816329991e-2, 1.15457225751016682e-3, -1.41018536821330254e-5,
+            9.43280809438713025e-8, -3.53201978997168357e-10, 7.08240282274875911e-13,
+            -6.05338212010422477e-16};
+    private static final double[] SI_D = {
+            1.01162145739225565e-2, 4.99175116169755106e-5, 1.55654986308745614e-7,
+            3.28067571055789734e-10, 4.5049097575386581e-13, 3.21107051193712168e-16,
+            0.0};
+    private static final double[] SI_FN = {
+            7.44437068161936700618e2, 1.96396372895146869801e5, 2.37750310125431834034e7,
+            1.43073403821274636888e9, 4.33736238870432522765e10, 6.40533830574022022911e11,
+            4.20968180571076940208e12, 1.00795182980368574617e13, 4.94816688199951963482e12,
+            -4.94701168645415959931e11};
+    private static final double[] SI_FD = {
+            7.46437068161927678031e2, 1.97865247031583951450e5, 2.41535670165126845144e7,
+            1.47478952192985464958e9, 4.58595115847765779830e10, 7.08501308149515401563e11,
+            5.06084464593475076774e12, 1.43468549171581016479e13, 1.11535493509914254097e13,
+            0.0};
+    private static final double[] SI_GN = {
+            8.1359520115168615e2, 2.35239181626478200e5, 3.12557570795778731e7,
+            2.06297595146763354e9, 6.83052205423625007e10, 1.09049528450362786e12,
+            7.57664583257834349e12, 1.81004487464664575e13, 6.43291613143049485e12,
+            -1.36517137670871689e12};
+    private static final double[] SI_GD = {
+            8.19595201151451564e2, 2.40036752835578777e5, 3.26026661647090822e7,
+            2.23355543278099360e9, 7.87465017341829930e10, 1.39866710696414565e12,
+            1.17164723371736605e13, 4.01839087307656620e13, 3.99653257887490811e13,
+            0.0};
+
+    public static double pade(double x, final double[] nominator, final double[] denominator, int m) {
         double n = 0.0, d = 0.0;
         for (int i = m - 1; i >= 0; --i) {
-            n = (n + nominator.get(i)) * x;
-            d = (d + denominator.get(i)) * x;
+            n = (n + nominator[i]) * x;
+            d = (d + denominator[i]) * x;
         }
         return (1 + n) / (1 + d);
     }
@@ -103,47 +128,11 @@ public class ProcessUtil {
     // http://wikipedia.org/wiki/Sine_integral#Sine_integral
     public static double Si(double x) {
         if (x <= 4.0) {
-            final Double[] n =
-                    {-4.54393409816329991e-2, 1.15457225751016682e-3,
-                            -1.41018536821330254e-5, 9.43280809438713025e-8,
-                            -3.53201978997168357e-10, 7.08240282274875911e-13,
-                            -6.05338212010422477e-16};
-            final Double[] d =
-                    {1.01162145739225565e-2, 4.99175116169755106e-5,
-                            1.55654986308745614e-7, 3.28067571055789734e-10,
-                            4.5049097575386581e-13, 3.21107051193712168e-16,
-                            0.0};
-
-            return x * pade(x * x, Arrays.asList(n), Arrays.asList(d), n.length);
+            return x * pade(x * x, SI_N, SI_D, SI_N.length);
         } else {
             final double y = 1 / (x * x);
-            final Double[] fn =
-                    {7.44437068161936700618e2, 1.96396372895146869801e5,
-                            2.37750310125431834034e7, 1.43073403821274636888e9,
-                            4.33736238870432522765e10, 6.40533830574022022911e11,
-                            4.20968180571076940208e12, 1.00795182980368574617e13,
-                            4.94816688199951963482e12, -4.94701168645415959931e11};
-            final Double[] fd =
-                    {7.46437068161927678031e2, 1.97865247031583951450e5,
-                            2.41535670165126845144e7, 1.47478952192985464958e9,
-                            4.58595115847765779830e10, 7.08501308149515401563e11,
-                            5.06084464593475076774e12, 1.43468549171581016479e13,
-                            1.11535493509914254097e13, 0.0};
-            final double f = pade(y, Arrays.asList(fn), Arrays.asList(fd), 10) / x;
-
-            final Double[] gn =
-                    {8.1359520115168615e2, 2.35239181626478200e5,
-                            3.12557570795778731e7, 2.06297595146763354e9,
-                            6.83052205423625007e10, 1.09049528450362786e12,
-                            7.57664583257834349e12, 1.81004487464664575e13,
-                            6.43291613143049485e12, -1.36517137670871689e12};
-            final Double[] gd =
-                    {8.19595201151451564e2, 2.40036752835578777e5,
-                            3.26026661647090822e7, 2.23355543278099360e9,
-                            7.87465017341829930e10, 1.39866710696414565e12,
-                            1.17164723371736605e13, 4.01839087307656620e13,
-                            3.99653257887490811e13, 0.0};
-            final double g = y * pade(y, Arrays.asList(gn), Arrays.asList(gd), 10);
+            final double f = pade(y, SI_FN, SI_FD, 10) / x;
+            final double g = y * pade(y, SI_GN, SI_GD, 10);
 
             return M_PI_2 - f * Math.cos(x) - g * Math.sin(x);
         }
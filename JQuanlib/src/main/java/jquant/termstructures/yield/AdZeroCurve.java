@@ -0,0 +1,97 @@
+package jquant.termstructures.yield;
+
+import jquant.math.ad.ADouble;
+import jquant.math.ad.AdInterpolation;
+import jquant.math.interpolations.impl.Interpolator;
+import jquant.time.Date;
+import jquant.time.DayCounter;
+import jquant.time.TimeUtils;
+import jquant.time.calendars.NullCalendar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! Zero curve with taped node rates
+/*! Continuously-compounded zero rates at the given dates, the first of
+    which is the reference date, are interpolated in time; after the last
+    date the zero rate is extrapolated flat. The curve works as a plain
+    YieldTermStructure on the values of the nodes, recording nothing,
+    while discountAD() and forwardRateAD() record on the tape of the
+    nodes, so that the sensitivities to all of them come from one
+    backward sweep.
+
+    \ingroup yieldtermstructures
+*/
+public class AdZeroCurve extends ZeroYieldStructure {
+    private final List<Date> dates_;
+    private final double[] times_;
+    private final ADouble[] zeroRates_;
+    private final AdInterpolation interpolation_;
+
+    public AdZeroCurve(final List<Date> dates,
+                       final List<ADouble> zeroRates,
+                       final DayCounter dayCounter,
+                       final Interpolator interpolator) {
+        super(dates.get(0), new NullCalendar(), dayCounter, new ArrayList<>(), new ArrayList<>());
+        QL_REQUIRE(dates.size() > 1, "at least two dates required");
+        QL_REQUIRE(zeroRates.size() == dates.size(),
+                "dates and rates sizes differ (" + dates.size() + " vs " + zeroRates.size() + ")");
+        dates_ = new ArrayList<>(dates);
+        times_ = new double[dates.size()];
+        for (int i = 1; i < dates.size(); ++i) {
+            QL_REQUIRE(TimeUtils.greater(dates.get(i), dates.get(i - 1)),
+                    "dates not sorted: " + dates.get(i) + " passed after " + dates.get(i - 1));
+            times_[i] = timeFromReference(dates.get(i));
+        }
+        zeroRates_ = zeroRates.toArray(new ADouble[0]);
+        interpolation_ = new AdInterpolation(times_, zeroRates_, interpolator);
+    }
+
+    public Date maxDate() {
+        return dates_.get(dates_.size() - 1);
+    }
+
+    public final List<Date> dates() {
+        return dates_;
+    }
+
+    public final double[] times() {
+        return times_.clone();
+    }
+
+    public final List<ADouble> zeroRates() {
+        return List.of(zeroRates_);
+    }
+
+    protected double zeroYieldImpl(double t) {
+        if (t >= times_[times_.length - 1])
+            return zeroRates_[zeroRates_.length - 1].value();
+        return interpolation_.primalValue(t);
+    }
+
+    //! continuously-compounded zero rate at time t
+    public ADouble zeroRateAD(double t) {
+        if (t >= times_[times_.length - 1])
+            return zeroRates_[zeroRates_.length - 1];
+        return interpolation_.value(t);
+    }
+
+    public ADouble discountAD(double t) {
+        checkRange(t, true);
+        if (t == 0.0)
+            return ADouble.constant(1.0);
+        return zeroRateAD(t).times(-t).exp();
+    }
+
+    public ADouble discountAD(final Date d) {
+        return discountAD(timeFromReference(d));
+    }
+
+    //! simply-compounded forward rate between d1 and d2 over the given accrual time
+    public ADouble forwardRateAD(final Date d1, final Date d2, double accrualTime) {
+        QL_REQUIRE(accrualTime > 0.0, "non-positive accrual time (" + accrualTime + ")");
+        return discountAD(d1).divide(discountAD(d2)).minus(1.0).divide(accrualTime);
+    }
+}
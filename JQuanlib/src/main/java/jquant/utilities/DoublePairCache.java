@@ -0,0 +1,33 @@
+package jquant.utilities;
+
+//! bounded cache from (double, double) to double, see DoublePairTable
+/*! A miss is reported as Double.NaN, so NaN values are not cached. */
+public class DoublePairCache extends DoublePairTable {
+    private final double[] values_;
+
+    public DoublePairCache(int maxSize) {
+        super(maxSize);
+        values_ = new double[capacity()];
+    }
+
+    //! cached value, or Double.NaN
+    public synchronized double get(double x, double y) {
+        final int slot = find(x, y);
+        return slot >= 0 ? values_[slot] : Double.NaN;
+    }
+
+    public synchronized void put(double x, double y, double value) {
+        if (!Double.isNaN(value)) {
+            values_[insert(x, y)] = value;
+        }
+    }
+
+    @Override
+    protected void moved(int from, int to) {
+        values_[to] = values_[from];
+    }
+
+    @Override
+    protected void dropped(int slot) {
+    }
+}
@@ -0,0 +1,35 @@
+package jquant.utilities;
+
+//! bounded cache from (double, double) to objects, see DoublePairTable
+/*! A miss is reported as null, so null values are not cached. */
+public class DoublePairObjectCache<V> extends DoublePairTable {
+    private final Object[] values_;
+
+    public DoublePairObjectCache(int maxSize) {
+        super(maxSize);
+        values_ = new Object[capacity()];
+    }
+
+    //! cached value, or null
+    @SuppressWarnings("unchecked")
+    public synchronized V get(double x, double y) {
+        final int slot = find(x, y);
+        return slot >= 0 ? (V) values_[slot] : null;
+    }
+
+    public synchronized void put(double x, double y, final V value) {
+        if (value != null) {
+            values_[insert(x, y)] = value;
+        }
+    }
+
+    @Override
+    protected void moved(int from, int to) {
+        values_[to] = values_[from];
+    }
+
+    @Override
+    protected void dropped(int slot) {
+        values_[slot] = null;
+    }
+}
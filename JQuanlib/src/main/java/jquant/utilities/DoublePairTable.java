@@ -0,0 +1,184 @@
+package jquant.utilities;
+
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! bounded open-addressing table keyed on primitive (double, double) pairs
+/*! Keys are compared bitwise, as Double.equals does, and are never boxed.
+    The table uses linear probing on a power-of-two array kept at most
+    half full; removal shifts the following entries back, so that no
+    tombstones are needed.
+
+    Once maxSize entries are held, an insertion evicts one entry chosen
+    by the clock (second chance) algorithm, an approximation of LRU:
+    every lookup hit marks its entry, and the clock hand spares marked
+    entries once, clearing the mark.
+
+    Subclasses hold the values in arrays parallel to the keys and are
+    told when an entry is moved or dropped. All access is synchronized
+    on the instance.
+*/
+public abstract class DoublePairTable {
+    private final int maxSize_;
+    private final int mask_;
+    private final long[] first_, second_;
+    private final boolean[] used_, referenced_;
+    private int size_, hand_;
+    private long hits_, misses_, evictions_;
+
+    protected DoublePairTable(int maxSize) {
+        QL_REQUIRE(maxSize > 0 && maxSize <= (1 << 28),
+                "cache size (" + maxSize + ") out of range");
+        maxSize_ = maxSize;
+        final int capacity = Integer.highestOneBit(2 * maxSize - 1) << 1;
+        mask_ = capacity - 1;
+        first_ = new long[capacity];
+        second_ = new long[capacity];
+        used_ = new boolean[capacity];
+        referenced_ = new boolean[capacity];
+    }
+
+    //! number of slots, at least twice maxSize
+    protected final int capacity() {
+        return mask_ + 1;
+    }
+
+    //! slot of the key, or -1; counts the lookup as a hit or a miss
+    protected final int find(double x, double y) {
+        final int slot = slot(Double.doubleToLongBits(x), Double.doubleToLongBits(y));
+        if (slot >= 0) {
+            referenced_[slot] = true;
+            ++hits_;
+        } else {
+            ++misses_;
+        }
+        return slot;
+    }
+
+    //! slot for the key, evicting an entry if the table is full
+    protected final int insert(double x, double y) {
+        final long a = Double.doubleToLongBits(x), b = Double.doubleToLongBits(y);
+        int slot = slot(a, b);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size_ == maxSize_) {
+            evict();
+        }
+        slot = hash(a, b);
+        while (used_[slot]) {
+            slot = (slot + 1) & mask_;
+        }
+        first_[slot] = a;
+        second_[slot] = b;
+        used_[slot] = true;
+        referenced_[slot] = false;
+        ++size_;
+        return slot;
+    }
+
+    //! the value in slot from is now in slot to
+    protected abstract void moved(int from, int to);
+
+    //! the entry in slot is gone
+    protected abstract void dropped(int slot);
+
+    public final int maxSize() {
+        return maxSize_;
+    }
+
+    public final synchronized int size() {
+        return size_;
+    }
+
+    public final synchronized long hits() {
+        return hits_;
+    }
+
+    public final synchronized long misses() {
+        return misses_;
+    }
+
+    public final synchronized long evictions() {
+        return evictions_;
+    }
+
+    //! removes all entries; the counters are kept
+    public final synchronized void clear() {
+        if (size_ == 0) {
+            return;
+        }
+        for (int i = 0; i <= mask_; i++) {
+            if (used_[i]) {
+                used_[i] = false;
+                referenced_[i] = false;
+                dropped(i);
+            }
+        }
+        size_ = 0;
+        hand_ = 0;
+    }
+
+    public final synchronized void resetStatistics() {
+        hits_ = misses_ = evictions_ = 0;
+    }
+
+    private int slot(long a, long b) {
+        int i = hash(a, b);
+        while (used_[i]) {
+            if (first_[i] == a && second_[i] == b) {
+                return i;
+            }
+            i = (i + 1) & mask_;
+        }
+        return -1;
+    }
+
+    private int hash(long a, long b) {
+        long h = (a ^ Long.rotateLeft(b, 32)) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return (int) h & mask_;
+    }
+
+    private void evict() {
+        while (true) {
+            final int i = hand_;
+            hand_ = (hand_ + 1) & mask_;
+            if (!used_[i]) {
+                continue;
+            }
+            if (referenced_[i]) {
+                referenced_[i] = false;
+            } else {
+                remove(i);
+                ++evictions_;
+                return;
+            }
+        }
+    }
+
+    private void remove(int slot) {
+        int i = slot, j = slot;
+        while (true) {
+            j = (j + 1) & mask_;
+            if (!used_[j]) {
+                break;
+            }
+            final int k = hash(first_[j], second_[j]);
+            // entries whose home lies cyclically in (i, j] stay where they are
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
+            }
+            first_[i] = first_[j];
+            second_[i] = second_[j];
+            referenced_[i] = referenced_[j];
+            moved(j, i);
+            i = j;
+        }
+        used_[i] = false;
+        referenced_[i] = false;
+        dropped(i);
+        --size_;
+    }
+}
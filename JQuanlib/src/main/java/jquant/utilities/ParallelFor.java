@@ -0,0 +1,81 @@
+package jquant.utilities;
+
+import jquant.Settings;
+import jquant.patterns.ObservableSettings;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// 基于 ForkJoinPool 的区间并行循环, 区间长度不超过 grain 时在当前线程串行执行
+public class ParallelFor {
+
+    @FunctionalInterface
+    public interface Body {
+        //! processes the half-open index range [begin, end)
+        void run(int begin, int end);
+    }
+
+    private ParallelFor() {
+    }
+
+    public static ForkJoinPool pool() {
+        return ForkJoinPool.commonPool();
+    }
+
+    public static int parallelism() {
+        return pool().getParallelism();
+    }
+
+    //! runs body over [begin, end) in chunks of at least grain indices
+    /*! The loop runs serially on the calling thread if a settings scope
+        is open on it, see Settings.newScope(): the scope is not seen by
+        the pool threads, and the caller would run tasks of others while
+        joining.
+    */
+    public static void range(int begin, int end, int grain, Body body) {
+        if (end - begin <= Math.max(grain, 1) || parallelism() <= 1
+                || Settings.inScope() || ObservableSettings.inScope()) {
+            if (end > begin) {
+                body.run(begin, end);
+            }
+            return;
+        }
+        RangeTask task = new RangeTask(begin, end, Math.max(grain, 1), body);
+        if (ForkJoinTask.getPool() == pool()) {
+            task.invoke();
+        } else {
+            pool().invoke(task);
+        }
+    }
+
+    //! a grain that splits n indices into about four chunks per worker
+    public static int grain(int n, int minGrain) {
+        return Math.max(minGrain, n / (4 * Math.max(parallelism(), 1)));
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int begin;
+        private final int end;
+        private final int grain;
+        private final Body body;
+
+        RangeTask(int begin, int end, int grain, Body body) {
+            this.begin = begin;
+            this.end = end;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin <= grain) {
+                body.run(begin, end);
+                return;
+            }
+            int mid = begin + (end - begin) / 2;
+            invokeAll(new RangeTask(begin, mid, grain, body), new RangeTask(mid, end, grain, body));
+        }
+    }
+}
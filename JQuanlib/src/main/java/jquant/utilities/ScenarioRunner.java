@@ -0,0 +1,217 @@
+package jquant.utilities;
+
+import jquant.Instrument;
+import jquant.SavedSettings;
+import jquant.Settings;
+import jquant.math.Matrix;
+import jquant.patterns.ObservableSettings;
+import jquant.quotes.SimpleQuote;
+import jquant.time.Date;
+import jquant.time.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static jquant.math.CommonUtil.QL_FAIL;
+import static jquant.math.CommonUtil.QL_REQUIRE;
+
+//! bump-and-reprice scenario runner
+/*! Observables are not thread-safe, so a market cannot be shared among
+    threads: each worker opens a settings scope and builds its own market
+    in it with the given factory, i.e. its own quotes and the instruments
+    depending on them and on nothing else mutable. The factory is called
+    concurrently and must be thread-safe. Within the scope the workers
+    copy the settings of the calling thread and set the evaluation date
+    of the run, if given; the settings of the calling thread and the
+    global ones are left untouched.
+
+    A scenario shifts some of the quotes from their base values, i.e.
+    their values when the market was built, and the quotes it does not
+    shift are set back to their base values. The notifications are
+    deferred while the quotes of a scenario are changed, so that each
+    observer is notified once per scenario, before the instruments are
+    priced.
+
+    Each worker runs on a thread of its own, started for the run; the
+    loops of ParallelFor called while pricing run serially on it, see
+    Settings.newScope(). The scenarios are split in contiguous blocks,
+    one per worker, and each value depends only on its scenario and on
+    the base market, so that the results do not depend on the number of
+    workers.
+
+    \ingroup utilities
+*/
+public class ScenarioRunner {
+
+    //! the quotes to be shocked and the instruments to be priced on them
+    public interface Market {
+        List<SimpleQuote> quotes();
+
+        List<Instrument> instruments();
+    }
+
+    @FunctionalInterface
+    public interface MarketFactory {
+        //! builds a new market sharing no observable with the others
+        Market create();
+    }
+
+    //! shifts of some of the quotes of a market, by index
+    public static final class Scenario {
+        private final int[] quotes_;
+        private final double[] shifts_;
+        private final boolean relative_;
+
+        //! absolute shifts
+        public Scenario(final int[] quotes, final double[] shifts) {
+            this(quotes, shifts, false);
+        }
+
+        /*! with relative shifts, the shocked value of a quote is its base
+            value times one plus the shift.
+        */
+        public Scenario(final int[] quotes, final double[] shifts, boolean relative) {
+            QL_REQUIRE(quotes.length == shifts.length,
+                    "quotes and shifts sizes differ (" + quotes.length + " vs " + shifts.length + ")");
+            quotes_ = quotes.clone();
+            shifts_ = shifts.clone();
+            relative_ = relative;
+        }
+
+        //! the same absolute shift of all the given quotes
+        public static Scenario parallel(final int[] quotes, double shift) {
+            final double[] shifts = new double[quotes.length];
+            Arrays.fill(shifts, shift);
+            return new Scenario(quotes, shifts, false);
+        }
+
+        // writes the shocked values into values, which holds the base ones
+        private void apply(final double[] base, double[] values) {
+            for (int i = 0; i < quotes_.length; ++i) {
+                final int q = quotes_[i];
+                values[q] = relative_ ? values[q] + base[q] * shifts_[i] : values[q] + shifts_[i];
+            }
+        }
+
+        private int maxQuote() {
+            int m = -1;
+            for (int q : quotes_) {
+                QL_REQUIRE(q >= 0, "negative quote index (" + q + ")");
+                m = Math.max(m, q);
+            }
+            return m;
+        }
+    }
+
+    private final MarketFactory factory_;
+    private final int workers_;
+    private final Date evaluationDate_;
+
+    //! runs at the current evaluation date on all the available cores
+    public ScenarioRunner(final MarketFactory factory) {
+        this(factory, ParallelFor.parallelism(), new Date());
+    }
+
+    /*! A null evaluation date leaves the one of the calling thread; each
+        worker builds one market per run.
+    */
+    public ScenarioRunner(final MarketFactory factory, int workers, final Date evaluationDate) {
+        QL_REQUIRE(workers > 0, "at least one worker required");
+        factory_ = factory;
+        workers_ = workers;
+        evaluationDate_ = evaluationDate;
+    }
+
+    //! values of the instruments, one row per scenario and one column per instrument
+    public Matrix run(final List<Scenario> scenarios) {
+        final int n = scenarios.size();
+        QL_REQUIRE(n > 0, "no scenarios given");
+        final int workers = Math.min(workers_, n);
+        final SavedSettings settings = new SavedSettings();
+        final Matrix[] blocks = new Matrix[workers];
+        // threads of their own, so that no pool thread is left in a scope
+        // and no task of others runs in one
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            final List<Future<Matrix>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; ++w) {
+                final int begin = (int) ((long) w * n / workers), end = (int) ((long) (w + 1) * n / workers);
+                futures.add(executor.submit(() -> {
+                    Settings.Scope scope = Settings.newScope();
+                    try {
+                        settings.restore();
+                        if (TimeUtils.neq(evaluationDate_, new Date()))
+                            Settings.instance.evaluationDate().equal(evaluationDate_);
+                        return price(factory_.create(), scenarios, begin, end);
+                    } finally {
+                        scope.close();
+                    }
+                }));
+            }
+            for (int w = 0; w < workers; ++w)
+                blocks[w] = result(futures.get(w));
+        } finally {
+            executor.shutdownNow();
+        }
+        final int instruments = blocks[0].cols();
+        for (Matrix b : blocks)
+            QL_REQUIRE(b.cols() == instruments, "markets with different numbers of instruments built");
+        final Matrix values = new Matrix(n, instruments);
+        for (int w = 0, s = 0; w < workers; s += blocks[w].rows(), ++w)
+            System.arraycopy(blocks[w].dataRef(), 0, values.dataRef(), s * instruments,
+                    blocks[w].rows() * instruments);
+        return values;
+    }
+
+    private static Matrix result(final Future<Matrix> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            QL_FAIL("scenario run interrupted");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            QL_FAIL("scenario worker failed: " + cause);
+        }
+        return null;
+    }
+
+    // prices the scenarios [begin, end) on the given market
+    private static Matrix price(final Market market, final List<Scenario> scenarios, int begin, int end) {
+        final List<SimpleQuote> quotes = market.quotes();
+        final List<Instrument> instruments = market.instruments();
+        final int m = quotes.size();
+        final double[] base = new double[m], values = new double[m];
+        for (int i = 0; i < m; ++i)
+            base[i] = quotes.get(i).value();
+        final ObservableSettings updates = ObservableSettings.getInstance();
+        final Matrix result = new Matrix(end - begin, instruments.size());
+        for (int s = begin; s < end; ++s) {
+            final Scenario scenario = scenarios.get(s);
+            QL_REQUIRE(scenario.maxQuote() < m,
+                    "scenario " + s + " shifts a quote beyond the " + m + " of the market");
+            System.arraycopy(base, 0, values, 0, m);
+            scenario.apply(base, values);
+            updates.disableUpdates(true);
+            try {
+                // quotes left unchanged do not notify
+                for (int i = 0; i < m; ++i)
+                    quotes.get(i).setValue(values[i]);
+            } finally {
+                updates.enableUpdates();
+            }
+            for (int j = 0; j < instruments.size(); ++j)
+                result.set(s - begin, j, instruments.get(j).NPV());
+        }
+        return result;
+    }
+}
@@ -1,6 +1,9 @@
+import jquant.SavedSettings;
 import jquant.Settings;
+import jquant.patterns.ObservableSettings;
 import jquant.time.Date;
 import jquant.time.Month;
+import jquant.time.TimeUtils;
 import org.junit.jupiter.api.Test;
 
 import java.beans.PropertyChangeEvent;
@@ -34,4 +37,60 @@ public class SettingTest {
         Settings.instance.evaluationDate().equal(d2);
         assertFalse(!flag.isUp(), "unexpected notification");
     }
+
+    @Test
+    public void testScopedSettings() throws Exception {
+        System.out.println("Testing thread-scoped settings...");
+        SavedSettings backup = new SavedSettings();
+        try {
+            Date d1 = new Date(11, Month.FEBRUARY, 2021);
+            Date d2 = new Date(12, Month.FEBRUARY, 2021);
+            Date d3 = new Date(13, Month.FEBRUARY, 2021);
+            Settings.instance.evaluationDate().equal(d1);
+            Flag flag = new Flag();
+            Settings.instance.evaluationDate().addChangeListener(flag);
+
+            Settings.Scope outer = Settings.newScope();
+            try {
+                assertFalse(TimeUtils.neq(Settings.instance.evaluationDate().Date(), d1),
+                        "scope does not start from the current settings");
+                Settings.instance.evaluationDate().equal(d2);
+                Settings.instance.setIncludeReferenceDateEvents(true);
+                Settings.Scope inner = Settings.newScope();
+                try {
+                    Settings.instance.evaluationDate().equal(d3);
+                    assertFalse(!Settings.instance.includeReferenceDateEvents(),
+                            "nested scope does not start from the enclosing one");
+                } finally {
+                    inner.close();
+                }
+                assertFalse(TimeUtils.neq(Settings.instance.evaluationDate().Date(), d2),
+                        "nested scope not closed");
+
+                // other threads see the global settings
+                Date[] seen = new Date[1];
+                boolean[] disabled = new boolean[1];
+                ObservableSettings.getInstance().disableUpdates(true);
+                Thread t = new Thread(() -> {
+                    seen[0] = Settings.instance.evaluationDate().Date();
+                    disabled[0] = !ObservableSettings.getInstance().isUpdatesEnabled();
+                });
+                t.start();
+                t.join();
+                ObservableSettings.getInstance().enableUpdates();
+                assertFalse(TimeUtils.neq(seen[0], d1),
+                        "evaluation date " + seen[0] + " seen on another thread instead of " + d1);
+                assertFalse(disabled[0], "updates disabled on another thread");
+            } finally {
+                outer.close();
+            }
+            assertFalse(flag.isUp(), "global evaluation date notified by a scope");
+            assertFalse(TimeUtils.neq(Settings.instance.evaluationDate().Date(), d1),
+                    "global evaluation date changed by a scope");
+            assertFalse(Settings.instance.includeReferenceDateEvents(),
+                    "global settings changed by a scope");
+        } finally {
+            backup.close();
+        }
+    }
 }
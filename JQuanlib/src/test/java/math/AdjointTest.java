@@ -0,0 +1,147 @@
+package math;
+
+import jquant.Option;
+import jquant.math.ad.ADouble;
+import jquant.math.ad.Tape;
+import jquant.math.interpolations.impl.Cubic;
+import jquant.math.interpolations.impl.Interpolator;
+import jquant.math.interpolations.impl.Linear;
+import jquant.termstructures.yield.AdZeroCurve;
+import jquant.time.Date;
+import jquant.time.Month;
+import jquant.time.daycounters.Actual365Fixed;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jquant.math.interpolations.CubicInterpolation.BoundaryCondition.SecondDerivative;
+import static jquant.math.interpolations.CubicInterpolation.DerivativeApprox.Spline;
+import static jquant.pricingengines.BlackFormula.blackFormula;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class AdjointTest {
+
+    private static double f(double x, double y, double z) {
+        return Math.exp(x * y) / Math.sqrt(z) + Math.log(x + z) * Math.pow(y, 1.5) - x / y;
+    }
+
+    private static ADouble f(ADouble x, ADouble y, ADouble z) {
+        return x.times(y).exp().divide(z.sqrt())
+                .plus(x.plus(z).log().times(y.pow(1.5)))
+                .minus(x.divide(y));
+    }
+
+    @Test
+    public void testTape() {
+        System.out.println("Testing adjoint tape...");
+
+        final double[] p = {0.3, 1.2, 2.5};
+        final double h = 1.0e-6, tolerance = 1.0e-7;
+        Tape tape = new Tape(4);
+        ADouble x = tape.variable(p[0]), y = tape.variable(p[1]), z = tape.variable(p[2]);
+        final int mark = tape.mark();
+        int recorded = -1;
+        for (int pass = 0; pass < 3; ++pass) {
+            tape.rewind(mark);
+            ADouble r = f(x, y, z);
+            assertFalse(Math.abs(r.value() - f(p[0], p[1], p[2])) > 1.0e-14,
+                    "wrong value: " + r.value() + " instead of " + f(p[0], p[1], p[2]));
+            double[] g = tape.gradient(r, x, y, z);
+            for (int i = 0; i < 3; ++i) {
+                double[] up = p.clone(), down = p.clone();
+                up[i] += h;
+                down[i] -= h;
+                double fd = (f(up[0], up[1], up[2]) - f(down[0], down[1], down[2])) / (2.0 * h);
+                assertFalse(Math.abs(g[i] - fd) > tolerance,
+                        "pass " + pass + ", derivative " + i + ": adjoint " + g[i]
+                                + ", finite difference " + fd);
+            }
+            assertFalse(recorded >= 0 && tape.size() != recorded,
+                    "tape not rewound: " + tape.size() + " nodes instead of " + recorded);
+            recorded = tape.size();
+        }
+
+        // operations on constants are not recorded
+        final int size = tape.size();
+        ADouble c = ADouble.constant(2.0).times(3.0).exp();
+        assertFalse(!c.isConstant() || tape.size() != size, "constant operations recorded");
+    }
+
+    @Test
+    public void testBlackFormula() {
+        System.out.println("Testing adjoint Black formula...");
+
+        final double[] p = {100.0, 105.0, 0.25, 0.97, 0.5};
+        final double h = 1.0e-5;
+        for (Option.Type type : new Option.Type[]{Option.Type.Call, Option.Type.Put}) {
+            Tape tape = new Tape();
+            ADouble[] v = new ADouble[5];
+            for (int i = 0; i < 5; ++i)
+                v[i] = tape.variable(p[i]);
+            ADouble price = blackFormula(type, v[0], v[1], v[2], v[3], v[4]);
+            double[] g = tape.gradient(price, v);
+            for (int i = 0; i < 5; ++i) {
+                double[] up = p.clone(), down = p.clone();
+                up[i] += h;
+                down[i] -= h;
+                double fd = (blackFormula(type, up[0], up[1], up[2], up[3], up[4])
+                        - blackFormula(type, down[0], down[1], down[2], down[3], down[4])) / (2.0 * h);
+                assertFalse(Math.abs(g[i] - fd) > 1.0e-6,
+                        type + " derivative " + i + ": adjoint " + g[i] + ", finite difference " + fd);
+            }
+        }
+
+        double call = blackFormula(Option.Type.Call, p[0], p[1], p[2], p[3], p[4]);
+        double put = blackFormula(Option.Type.Put, p[0], p[1], p[2], p[3], p[4]);
+        double parity = p[3] * (p[1] - p[0]);
+        assertFalse(Math.abs(call - put - parity) > 1.0e-10,
+                "put-call parity violated: call " + call + ", put " + put + ", D(F-K) " + parity);
+    }
+
+    private static AdZeroCurve curve(List<Date> dates, List<ADouble> rates, Interpolator interpolator) {
+        return new AdZeroCurve(dates, rates, new Actual365Fixed(), interpolator);
+    }
+
+    @Test
+    public void testZeroCurve() {
+        System.out.println("Testing adjoint zero curve...");
+
+        Date today = new Date(15, Month.MAY, 2024);
+        List<Date> dates = new ArrayList<>();
+        final int[] days = {0, 91, 182, 365, 730, 1095, 1825, 3650};
+        final double[] rates = {0.030, 0.031, 0.032, 0.034, 0.036, 0.037, 0.039, 0.041};
+        for (int d : days)
+            dates.add(today.add(d));
+        final Date[] targets = {today.add(45), today.add(500), today.add(2900), today.add(5000)};
+        final double h = 1.0e-6;
+
+        Interpolator[] interpolators = {new Linear(),
+                new Cubic(Spline, false, SecondDerivative, 0.0, SecondDerivative, 0.0)};
+        for (Interpolator interpolator : interpolators) {
+            Tape tape = new Tape();
+            List<ADouble> nodes = new ArrayList<>();
+            for (double r : rates)
+                nodes.add(tape.variable(r));
+            AdZeroCurve c = curve(dates, nodes, interpolator);
+            for (Date target : targets) {
+                ADouble df = c.discountAD(target);
+                assertFalse(Math.abs(df.value() - c.discount(target, true)) > 1.0e-15,
+                        "taped discount " + df.value() + " differs from " + c.discount(target, true));
+                double[] g = tape.gradient(df, nodes.toArray(new ADouble[0]));
+                for (int j = 0; j < rates.length; ++j) {
+                    List<ADouble> up = new ArrayList<>(), down = new ArrayList<>();
+                    for (int i = 0; i < rates.length; ++i) {
+                        up.add(ADouble.constant(rates[i] + (i == j ? h : 0.0)));
+                        down.add(ADouble.constant(rates[i] - (i == j ? h : 0.0)));
+                    }
+                    double fd = (curve(dates, up, interpolator).discount(target, true)
+                            - curve(dates, down, interpolator).discount(target, true)) / (2.0 * h);
+                    assertFalse(Math.abs(g[j] - fd) > 1.0e-8,
+                            "node " + j + " at " + target + ": adjoint " + g[j]
+                                    + ", finite difference " + fd);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package math;
+
+import jquant.math.Array;
+import jquant.math.randomnumbers.MersenneTwisterUniformRng;
+import jquant.processes.GsrProcessCore;
+import jquant.utilities.DoublePairCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CacheTest {
+
+    @Test
+    public void testDoublePairCache() {
+        System.out.println("Testing bounded (double, double) cache...");
+
+        final int maxSize = 100;
+        DoublePairCache cache = new DoublePairCache(maxSize);
+        Map<String, Double> reference = new HashMap<>();
+        MersenneTwisterUniformRng rng = new MersenneTwisterUniformRng(42);
+        for (int i = 0; i < 20000; i++) {
+            // keys drawn from a small grid, so that entries are hit, evicted and reinserted
+            final double x = Math.floor(rng.nextReal() * 30) * 0.1, y = Math.floor(rng.nextReal() * 10) - 5.0;
+            final String key = x + "," + y;
+            final double value = x * 7.0 + y;
+            final double cached = cache.get(x, y);
+            if (!Double.isNaN(cached)) {
+                assertFalse(cached != value || !reference.containsKey(key),
+                        "wrong value cached for (" + x + ", " + y + ")\n"
+                                + "    calculated: " + cached + "\n"
+                                + "    expected:   " + value);
+            } else {
+                cache.put(x, y, value);
+                reference.put(key, value);
+            }
+            assertFalse(cache.size() > maxSize, "cache exceeds its bound: " + cache.size());
+        }
+        assertFalse(cache.evictions() == 0, "no entries were evicted");
+        assertFalse(cache.hits() + cache.misses() != 20000,
+                "hits (" + cache.hits() + ") and misses (" + cache.misses() + ") do not add up");
+
+        // -0.0 and 0.0 are distinct keys, as with Double.equals
+        cache.clear();
+        cache.put(0.0, 1.0, 2.0);
+        assertFalse(!Double.isNaN(cache.get(-0.0, 1.0)), "-0.0 found as 0.0");
+        assertFalse(cache.get(0.0, 1.0) != 2.0 || cache.size() != 1, "entry lost after clear");
+    }
+
+    @Test
+    public void testGsrCaches() {
+        System.out.println("Testing bounded caches of the GSR process core...");
+
+        Array times = Array.wrap(new double[]{1.0, 2.0, 3.0});
+        Array vols = Array.wrap(new double[]{0.01, 0.012, 0.011, 0.009});
+        Array reversions = Array.wrap(new double[]{0.02});
+        GsrProcessCore small = new GsrProcessCore(times, vols, reversions, 5.0, 4);
+        GsrProcessCore large = new GsrProcessCore(times, vols, reversions, 5.0);
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 0; i < 40; i++) {
+                final double w = 0.1 * i, dt = 0.25;
+                final double[] calculated = {small.variance(w, dt), small.expectation_rn_part(w, dt),
+                        small.expectation_tf_part(w, dt), small.y(w), small.G(w, w + dt)};
+                final double[] expected = {large.variance(w, dt), large.expectation_rn_part(w, dt),
+                        large.expectation_tf_part(w, dt), large.y(w), large.G(w, w + dt)};
+                for (int k = 0; k < calculated.length; k++) {
+                    assertFalse(calculated[k] != expected[k],
+                            "small cache changes result " + k + " at w = " + w + "\n"
+                                    + "    calculated: " + calculated[k] + "\n"
+                                    + "    expected:   " + expected[k]);
+                }
+            }
+        }
+        assertFalse(large.cacheHits() != 2 * 5 * 40,
+                "unexpected number of cache hits: " + large.cacheHits());
+    }
+}
@@ -0,0 +1,413 @@
+package math;
+
+import jquant.Compounding;
+import jquant.DiscretizedAsset;
+import jquant.DiscretizedDiscountBond;
+import jquant.Handle;
+import jquant.Option;
+import jquant.SavedSettings;
+import jquant.Settings;
+import jquant.StochasticProcess1D;
+import jquant.TimeGrid;
+import jquant.math.Array;
+import jquant.math.RichardsonExtrapolation;
+import jquant.methods.lattices.BinomialLatticeCache;
+import jquant.methods.lattices.BlackScholesLattice;
+import jquant.methods.lattices.TreeLattice2D;
+import jquant.methods.lattices.TrinomialTree;
+import jquant.methods.lattices.impl.TreeLatticeImpl;
+import jquant.models.shortrate.OneFactorModel;
+import jquant.models.shortrate.onefactormodels.HullWhite;
+import jquant.processes.OrnsteinUhlenbeckProcess;
+import jquant.termstructures.YieldTermStructure;
+import jquant.termstructures.yield.FlatForward;
+import jquant.time.Date;
+import jquant.time.Frequency;
+import jquant.time.Month;
+import jquant.time.daycounters.Actual365Fixed;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jquant.pricingengines.BlackFormula.blackFormula;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class LatticeTest {
+
+    private static class Bond extends DiscretizedDiscountBond {
+        @Override
+        protected void preAdjustValuesImpl() {
+        }
+
+        @Override
+        protected void postAdjustValuesImpl() {
+        }
+    }
+
+    private static Handle<YieldTermStructure> flatRate(Date today, double rate) {
+        return new Handle<>(new FlatForward(today, rate, new Actual365Fixed(),
+                Compounding.Continuous, Frequency.ANNUAL), true);
+    }
+
+    private static double bond(OneFactorModel.ShortRateTree tree, double maturity) {
+        Bond b = new Bond();
+        b.initialize(tree, maturity);
+        b.rollback(0.0);
+        return b.presentValue();
+    }
+
+    @Test
+    public void testHullWhiteTree() {
+        System.out.println("Testing Hull-White tree rollback on flattened tables...");
+
+        SavedSettings backup = new SavedSettings();
+        try {
+            Date today = new Date(15, Month.MAY, 2024);
+            Settings.instance.evaluationDate().equal(today);
+            Handle<YieldTermStructure> curve = flatRate(today, 0.03);
+            HullWhite model = new HullWhite(curve, 0.1, 0.01);
+            final int steps = 200;
+            OneFactorModel.ShortRateTree tree =
+                    (OneFactorModel.ShortRateTree) model.tree(new TimeGrid(10.0, steps));
+
+            // the tree is fitted to the curve
+            for (double maturity : new double[]{1.0, 2.5, 5.0, 10.0}) {
+                double calculated = bond(tree, maturity);
+                double expected = curve.currentLink().discount(maturity, false);
+                assertFalse(Math.abs(calculated - expected) > 1.0e-10,
+                        "discount bond to " + maturity + ": " + calculated + " instead of " + expected);
+            }
+
+            // the flattened step-back reproduces the per-node formula
+            for (int i : new int[]{0, 1, steps / 2, steps - 1}) {
+                Array values = new Array(tree.size(i + 1));
+                for (int j = 0; j < values.size(); j++)
+                    values.set(j, Math.sin(0.3 * j) + 2.0);
+                Array flattened = new Array(tree.size(i));
+                tree.stepback(i, values, flattened);
+                for (int j = 0; j < tree.size(i); j++) {
+                    double expected = 0.0;
+                    for (int l = 0; l < 3; l++)
+                        expected += tree.probability(i, j, l) * values.get(tree.descendant(i, j, l));
+                    expected *= tree.discount(i, j);
+                    assertFalse(flattened.get(j) != expected,
+                            "slice " + i + ", node " + j + ": " + flattened.get(j) + " instead of " + expected);
+                }
+            }
+
+            // a change of spread rebuilds the discounts
+            final double spread = 0.01;
+            tree.setSpread(spread);
+            double calculated = bond(tree, 5.0);
+            double expected = curve.currentLink().discount(5.0, false) * Math.exp(-spread * 5.0);
+            assertFalse(Math.abs(calculated - expected) > 1.0e-10,
+                    "discount bond with spread: " + calculated + " instead of " + expected);
+        } finally {
+            backup.close();
+        }
+    }
+
+    // two-factor lattice with additive Ornstein-Uhlenbeck factors
+    private static class Additive2D extends TreeLattice2D implements TreeLatticeImpl {
+        Additive2D(TrinomialTree tree1, TrinomialTree tree2, double correlation) {
+            super(tree1, tree2, correlation);
+            setImpl_(this);
+        }
+
+        public double discount(int i, int index) {
+            int n1 = tree1_.size(i);
+            double r = 0.03 + tree1_.underlying(i, index % n1) + tree2_.underlying(i, index / n1);
+            return Math.exp(-r * timeGrid().dt(i));
+        }
+
+        public double underlying(int i, int index) {
+            return tree1_.underlying(i, index % tree1_.size(i));
+        }
+    }
+
+    @Test
+    public void testParallelTwoFactorRollback() {
+        System.out.println("Testing parallel rollback on two-dimensional lattices...");
+
+        TimeGrid grid = new TimeGrid(5.0, 100);
+        TrinomialTree tree1 = new TrinomialTree(new OrnsteinUhlenbeckProcess(0.5, 0.01, 0.0, 0.0), grid, false);
+        TrinomialTree tree2 = new TrinomialTree(new OrnsteinUhlenbeckProcess(0.2, 0.008, 0.0, 0.0), grid, false);
+        for (double rho : new double[]{-0.6, 0.4}) {
+            Additive2D lattice = new Additive2D(tree1, tree2, rho);
+
+            // the step-back on the trees' tables reproduces the product-lattice formula
+            final int i = 60;
+            Array values = new Array(lattice.size(i + 1));
+            for (int j = 0; j < values.size(); j++)
+                values.set(j, Math.cos(0.01 * j) + 2.0);
+            Array newValues = new Array(lattice.size(i));
+            lattice.stepback(i, values, newValues);
+            for (int j = 0; j < newValues.size(); j++) {
+                double expected = 0.0;
+                for (int l = 0; l < 9; l++)
+                    expected += lattice.probability(i, j, l) * values.get(lattice.descendant(i, j, l));
+                expected *= lattice.discount(i, j);
+                assertFalse(newValues.get(j) != expected,
+                        "node " + j + ": " + newValues.get(j) + " instead of " + expected);
+            }
+
+            lattice.setParallelThreshold(Integer.MAX_VALUE);
+            Bond serial = new Bond();
+            serial.initialize(lattice, 5.0);
+            serial.rollback(0.0);
+            lattice.setParallelThreshold(1);
+            Bond parallel = new Bond();
+            parallel.initialize(lattice, 5.0);
+            parallel.rollback(0.0);
+            assertFalse(serial.presentValue() != parallel.presentValue(),
+                    "parallel rollback " + parallel.presentValue() + " differs from serial "
+                            + serial.presentValue());
+            // up to the convexity of the zero-mean factors
+            assertFalse(Math.abs(serial.presentValue() - Math.exp(-0.03 * 5.0)) > 5.0e-3,
+                    "two-factor bond " + serial.presentValue() + " far from " + Math.exp(-0.03 * 5.0));
+        }
+    }
+
+    // Bermudan put on the state variable of a one-dimensional lattice
+    private static class Put extends DiscretizedAsset {
+        private final double strike_;
+        private final List<Double> exerciseTimes_;
+
+        Put(double strike, List<Double> exerciseTimes) {
+            strike_ = strike;
+            exerciseTimes_ = exerciseTimes;
+        }
+
+        @Override
+        public void reset(int size) {
+            values_ = new Array(size, 0.0);
+            adjustValues();
+        }
+
+        @Override
+        public List<Double> mandatoryTimes() {
+            return new ArrayList<>(exerciseTimes_);
+        }
+
+        @Override
+        protected void preAdjustValuesImpl() {
+        }
+
+        @Override
+        protected void postAdjustValuesImpl() {
+            for (double t : exerciseTimes_) {
+                if (isOnTime(t)) {
+                    Array x = method().grid(time());
+                    for (int j = 0; j < values_.size(); j++)
+                        values_.set(j, Math.max(values_.get(j), strike_ - x.get(j)));
+                }
+            }
+        }
+    }
+
+    // puts and bonds of various maturities, each initialized at its own
+    private static List<DiscretizedAsset> book(OneFactorModel.ShortRateTree tree) {
+        List<DiscretizedAsset> assets = new ArrayList<>();
+        for (int k = 0; k < 12; k++) {
+            double maturity = 1.0 + k % 4;
+            List<Double> exercises = new ArrayList<>();
+            for (double t = 0.5; t <= maturity + 1.0e-8; t += 0.5)
+                exercises.add(t);
+            DiscretizedAsset asset = k % 3 == 2 ? new Bond() : new Put(0.005 * (k - 3), exercises);
+            asset.initialize(tree, maturity);
+            assets.add(asset);
+        }
+        return assets;
+    }
+
+    @Test
+    public void testBatchedRollback() {
+        System.out.println("Testing batched rollback of several assets...");
+
+        SavedSettings backup = new SavedSettings();
+        try {
+            Date today = new Date(15, Month.MAY, 2024);
+            Settings.instance.evaluationDate().equal(today);
+            HullWhite model = new HullWhite(flatRate(today, 0.03), 0.1, 0.01);
+            OneFactorModel.ShortRateTree tree =
+                    (OneFactorModel.ShortRateTree) model.tree(new TimeGrid(4.0, 400));
+
+            List<DiscretizedAsset> single = book(tree), batched = book(tree);
+            for (DiscretizedAsset asset : single)
+                asset.rollback(0.0);
+            tree.rollback(batched, 0.0);
+
+            for (int k = 0; k < single.size(); k++) {
+                double expected = single.get(k).presentValue(), calculated = batched.get(k).presentValue();
+                assertFalse(calculated != expected,
+                        "asset " + k + ": batched " + calculated + " instead of " + expected);
+                assertFalse(k % 3 != 2 && k > 3 && expected <= 0.0,
+                        "asset " + k + ": put worth " + expected);
+            }
+
+            // partial rollback to an intermediate time, then to today
+            List<DiscretizedAsset> partial = book(tree);
+            tree.partialRollback(partial, 1.0);
+            for (DiscretizedAsset asset : partial) {
+                assertFalse(Math.abs(asset.time() - 1.0) > 1.0e-12, "asset rolled back to " + asset.time());
+                // the adjustments skipped by the partial rollback; a no-op for the assets not rolled
+                asset.adjustValues();
+            }
+            tree.rollback(partial, 0.0);
+            for (int k = 0; k < single.size(); k++) {
+                assertFalse(partial.get(k).presentValue() != single.get(k).presentValue(),
+                        "asset " + k + ": " + partial.get(k).presentValue() + " after partial rollback instead of "
+                                + single.get(k).presentValue());
+            }
+        } finally {
+            backup.close();
+        }
+
+        // two-factor lattice
+        TimeGrid grid = new TimeGrid(2.0, 40);
+        Additive2D lattice = new Additive2D(
+                new TrinomialTree(new OrnsteinUhlenbeckProcess(0.5, 0.01, 0.0, 0.0), grid, false),
+                new TrinomialTree(new OrnsteinUhlenbeckProcess(0.2, 0.008, 0.0, 0.0), grid, false), 0.3);
+        double[] maturities = {0.5, 1.0, 2.0};
+        List<DiscretizedAsset> bonds = new ArrayList<>();
+        for (double maturity : maturities) {
+            Bond b = new Bond();
+            b.initialize(lattice, maturity);
+            bonds.add(b);
+        }
+        lattice.rollback(bonds, 0.0);
+        for (int k = 0; k < maturities.length; k++) {
+            Bond expected = new Bond();
+            expected.initialize(lattice, maturities[k]);
+            expected.rollback(0.0);
+            assertFalse(bonds.get(k).presentValue() != expected.presentValue(),
+                    "two-factor bond to " + maturities[k] + ": batched " + bonds.get(k).presentValue()
+                            + " instead of " + expected.presentValue());
+        }
+    }
+
+    // geometric Brownian motion with constant parameters
+    private static class FlatProcess extends StochasticProcess1D {
+        private final double s0_, r_, q_, sigma_;
+
+        FlatProcess(double s0, double r, double q, double sigma) {
+            s0_ = s0;
+            r_ = r;
+            q_ = q;
+            sigma_ = sigma;
+        }
+
+        public double x0() {
+            return s0_;
+        }
+
+        public double drift(double t, double x) {
+            return r_ - q_ - 0.5 * sigma_ * sigma_;
+        }
+
+        public double diffusion(double t, double x) {
+            return sigma_;
+        }
+
+        @Override
+        public double apply(double x0, double dx) {
+            return x0 * Math.exp(dx);
+        }
+
+        @Override
+        public double stdDeviation(double t0, double x0, double dt) {
+            return sigma_ * Math.sqrt(dt);
+        }
+
+        @Override
+        public double variance(double t0, double x0, double dt) {
+            return sigma_ * sigma_ * dt;
+        }
+    }
+
+    // vanilla put on the underlying of a binomial lattice
+    private static class VanillaPut extends DiscretizedAsset {
+        private final double strike_;
+        private final boolean american_;
+
+        VanillaPut(double strike, boolean american) {
+            strike_ = strike;
+            american_ = american;
+        }
+
+        @Override
+        public void reset(int size) {
+            Array s = method().grid(time());
+            values_ = new Array(size);
+            for (int j = 0; j < size; j++)
+                values_.set(j, Math.max(strike_ - s.get(j), 0.0));
+        }
+
+        @Override
+        public List<Double> mandatoryTimes() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        protected void preAdjustValuesImpl() {
+        }
+
+        @Override
+        protected void postAdjustValuesImpl() {
+            if (american_) {
+                Array s = method().grid(time());
+                for (int j = 0; j < values_.size(); j++)
+                    values_.set(j, Math.max(values_.get(j), strike_ - s.get(j)));
+            }
+        }
+    }
+
+    private static double put(BinomialLatticeCache cache, BinomialLatticeCache.Type type, int steps,
+                              double strike, boolean american) {
+        final double maturity = 1.0, r = 0.05;
+        BlackScholesLattice lattice = cache.lattice(type, new FlatProcess(100.0, r, 0.02, 0.25), r,
+                maturity, steps, strike);
+        VanillaPut put = new VanillaPut(strike, american);
+        put.initialize(lattice, maturity);
+        put.rollback(0.0);
+        return put.presentValue();
+    }
+
+    @Test
+    public void testBinomialLatticeCache() {
+        System.out.println("Testing cached binomial lattices and Richardson extrapolation...");
+
+        final BinomialLatticeCache.Type lr = BinomialLatticeCache.Type.LeisenReimer;
+        BinomialLatticeCache cache = new BinomialLatticeCache(4);
+        final double strike = 105.0;
+        double expected = blackFormula(Option.Type.Put, strike, 100.0 * Math.exp(0.03), 0.25,
+                Math.exp(-0.05), 0.0);
+        double calculated = put(cache, lr, 101, strike, false);
+        assertFalse(Math.abs(calculated - expected) > 1.0e-4,
+                "European put: " + calculated + " instead of " + expected);
+
+        // pricing again on the cached lattice, on its kept grids
+        double again = put(cache, lr, 101, strike, false);
+        assertFalse(again != calculated, "cached lattice gives " + again + " instead of " + calculated);
+        assertFalse(cache.hits() != 1 || cache.misses() != 1,
+                "hits " + cache.hits() + ", misses " + cache.misses() + " instead of 1 and 1");
+        // the strike is part of the key only for the trees centred on it
+        put(cache, BinomialLatticeCache.Type.CoxRossRubinstein, 100, strike, false);
+        put(cache, BinomialLatticeCache.Type.CoxRossRubinstein, 100, 95.0, false);
+        put(cache, lr, 101, 95.0, false);
+        assertFalse(cache.hits() != 2 || cache.misses() != 3 || cache.size() != 3,
+                "hits " + cache.hits() + ", misses " + cache.misses() + ", size " + cache.size()
+                        + " instead of 2, 3 and 3");
+
+        // extrapolating 101 and 203 steps beats pricing on 203 steps
+        double reference = put(cache, lr, 2001, strike, true);
+        double fine = put(cache, lr, 203, strike, true);
+        double extrapolated = new RichardsonExtrapolation(
+                h -> put(cache, lr, (int) Math.round(1.0 / h), strike, true), 1.0 / 101, 1.0).value(203.0 / 101);
+        assertFalse(Math.abs(extrapolated - reference) > 0.5 * Math.abs(fine - reference),
+                "American put extrapolated to " + extrapolated + ", on 203 steps " + fine
+                        + ", reference " + reference);
+        assertFalse(cache.size() > 4, "cache exceeds its bound: " + cache.size());
+    }
+}
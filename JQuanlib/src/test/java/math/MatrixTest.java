@@ -0,0 +1,216 @@
+package math;
+
+import jquant.math.Array;
+import jquant.math.Matrix;
+import jquant.math.matrixutilities.BiCGstab;
+import jquant.math.matrixutilities.BlockedLinearAlgebra;
+import jquant.math.matrixutilities.GMRES;
+import jquant.math.matrixutilities.KrylovWorkspace;
+import jquant.math.matrixutilities.LinearOperator;
+import jquant.math.matrixutilities.MatrixUtil;
+import jquant.math.matrixutilities.SparseILUPreconditioner;
+import jquant.math.matrixutilities.impl.CsrMatrix;
+import jquant.math.matrixutilities.impl.GMRESResult;
+import jquant.math.matrixutilities.impl.KrylovResult;
+import jquant.math.matrixutilities.impl.SparseMatrix;
+import jquant.math.randomnumbers.MersenneTwisterUniformRng;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class MatrixTest {
+    private final double[][] a = {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}};
+    private final double[][] b = {{0.5, -1.0}, {2.0, 0.0}, {1.5, 3.0}};
+
+    private static void check(String name, RealMatrix expected, Matrix calculated, double tol) {
+        assertFalse(expected.getRowDimension() != calculated.rows()
+                        || expected.getColumnDimension() != calculated.cols(),
+                name + ": wrong size " + calculated.rows() + "x" + calculated.cols());
+        for (int i = 0; i < calculated.rows(); i++)
+            for (int j = 0; j < calculated.cols(); j++)
+                assertFalse(Math.abs(expected.getEntry(i, j) - calculated.get(i, j)) > tol,
+                        name + ": mismatch at (" + i + "," + j + ")\n"
+                                + "    calculated: " + calculated.get(i, j) + "\n"
+                                + "    expected:   " + expected.getEntry(i, j));
+    }
+
+    @Test
+    public void testDenseOperations() {
+        System.out.println("Testing row-major matrix operations...");
+        Matrix m1 = new Matrix(a), m2 = new Matrix(b);
+        RealMatrix r1 = new Array2DRowRealMatrix(a), r2 = new Array2DRowRealMatrix(b);
+
+        check("product", r1.multiply(r2), m1.multipy(m2), 1e-14);
+        check("transpose", r1.transpose(), m1.transpose(), 0.0);
+        check("scalar product", r1.scalarMultiply(2.5), m1.multiply(2.5), 1e-14);
+        check("sum", r1.add(r1), m1.add(m1), 0.0);
+
+        Array x = new Array(new double[]{1.0, -2.0, 0.5});
+        Array y = m1.mutiply(x);
+        double[] expected = r1.operate(x.toArray());
+        for (int i = 0; i < expected.length; i++)
+            assertFalse(Math.abs(expected[i] - y.get(i)) > 1e-14, "wrong matrix-vector product");
+    }
+
+    @Test
+    public void testInPlaceKernels() {
+        System.out.println("Testing in-place array and matrix kernels...");
+        Matrix m = new Matrix(a);
+        Array x = new Array(new double[]{1.0, 1.0, 1.0});
+        Array y = new Array(2, 1.0);
+        m.gemv(2.0, x, 3.0, y);
+        assertFalse(y.get(0) != 15.0 || y.get(1) != 33.0, "wrong gemv result " + y);
+
+        Array z = new Array(new double[]{1.0, 2.0, 3.0});
+        z.axpy(2.0, x).scaleInPlace(0.5).addAssign(x);
+        assertFalse(z.get(0) != 2.5 || z.get(1) != 3.0 || z.get(2) != 3.5, "wrong axpy result " + z);
+
+        Matrix n = new Matrix(a);
+        n.axpy(-1.0, m);
+        for (double v : n.toArray())
+            assertFalse(v != 0.0, "wrong matrix axpy result");
+
+        // the commons-math view shares the storage
+        m.matrix.setEntry(1, 2, -7.0);
+        assertFalse(m.get(1, 2) != -7.0, "view and storage out of sync");
+        z.realVector.setEntry(0, 42.0);
+        assertFalse(z.at(0) != 42.0, "vector view and storage out of sync");
+    }
+
+    private static Matrix randomCovariance(int n, long seed) {
+        MersenneTwisterUniformRng rng = new MersenneTwisterUniformRng(seed);
+        Matrix f = new Matrix(n, n, 0.0);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                f.set(i, j, rng.nextReal() - 0.5);
+        Matrix s = f.multipy(f.transpose());
+        for (int i = 0; i < n; i++)
+            s.addEq(i, i, 1.0);
+        // exact symmetry for check_symmetric
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < i; j++)
+                s.set(j, i, s.get(i, j));
+        return s;
+    }
+
+    @Test
+    public void testBlockedKernels() {
+        System.out.println("Testing blocked multiply, Cholesky and triangular solves...");
+        int n = BlockedLinearAlgebra.THRESHOLD + 37;
+        Matrix s = randomCovariance(n, 42);
+
+        double[] c = new double[n * n];
+        BlockedLinearAlgebra.gemm(s.dataRef(), s.dataRef(), c, n, n, n);
+        check("blocked product", s.matrix.multiply(new Array2DRowRealMatrix(s.matrix.getData())),
+                Matrix.wrap(c, n, n), 1e-9);
+
+        Matrix l = MatrixUtil.CholeskyDecomposition(s, false);
+        check("Cholesky reconstruction", s.matrix, l.multipy(l.transpose()), 1e-10);
+        for (int i = 0; i < n; i++)
+            for (int j = i + 1; j < n; j++)
+                assertFalse(l.get(i, j) != 0.0, "Cholesky factor is not lower triangular");
+
+        Array b = new Array(n);
+        for (int i = 0; i < n; i++)
+            b.set(i, Math.sin(i));
+        Array x = MatrixUtil.CholeskySolveFor(l, b);
+        Array r = s.mutiply(x).subtract(b);
+        for (int i = 0; i < n; i++)
+            assertFalse(Math.abs(r.get(i)) > 1e-10, "wrong Cholesky solution, residual " + r.get(i));
+    }
+
+    @Test
+    public void testCompressedSparseMatrix() {
+        System.out.println("Testing compressed sparse matrices and ILU preconditioning...");
+        // tridiagonal system large enough for the parallel mat-vec
+        final int n = 40000;
+        CsrMatrix.Builder builder = CsrMatrix.builder(n, n);
+        SparseMatrix s = new SparseMatrix(n, n);
+        for (int i = n - 1; i >= 0; i--) {
+            if (i > 0) {
+                builder.add(i, i - 1, -1.0);
+                s.set(i, i - 1, -1.0);
+            }
+            // diagonal assembled from two contributions
+            builder.add(i, i, 2.0).add(i, i, 1.0 + 1.0 / (i + 1));
+            s.set(i, i, 3.0 + 1.0 / (i + 1));
+            if (i < n - 1) {
+                builder.add(i, i + 1, -0.5);
+                s.set(i, i + 1, -0.5);
+            }
+        }
+        CsrMatrix a = builder.build();
+        assertFalse(a.nnz() != 3 * n - 2 || s.nnz() != a.nnz(), "wrong number of non-zeros " + a.nnz());
+        assertFalse(Math.abs(a.get(5, 5) - s.get(5, 5)) > 1e-15 || a.get(5, 7) != 0.0, "wrong compressed entries");
+
+        Array x = new Array(n);
+        for (int i = 0; i < n; i++)
+            x.set(i, Math.cos(0.01 * i));
+        Array y1 = a.multiply(x), y2 = MatrixUtil.prod(s, x), y3 = s.toCsr().multiply(x);
+        Array z1 = a.transposeMultiply(x), z2 = a.transpose().multiply(x);
+        for (int i = 0; i < n; i++) {
+            double expected = s.get(i, i) * x.get(i)
+                    + (i > 0 ? -x.get(i - 1) : 0.0) + (i < n - 1 ? -0.5 * x.get(i + 1) : 0.0);
+            double expectedT = s.get(i, i) * x.get(i)
+                    + (i > 0 ? -0.5 * x.get(i - 1) : 0.0) + (i < n - 1 ? -x.get(i + 1) : 0.0);
+            assertFalse(Math.abs(y1.get(i) - expected) > 1e-12 || y2.get(i) != y3.get(i) || Math.abs(y3.get(i) - y1.get(i)) > 1e-12,
+                    "wrong sparse product at row " + i);
+            assertFalse(Math.abs(z1.get(i) - expectedT) > 1e-12 || Math.abs(z2.get(i) - expectedT) > 1e-12,
+                    "wrong transposed sparse product at row " + i);
+        }
+
+        // ILU(0) of a tridiagonal matrix is its exact LU factorization
+        SparseILUPreconditioner ilu = new SparseILUPreconditioner(a, 0);
+        Array r = ilu.apply(y1);
+        for (int i = 0; i < n; i++)
+            assertFalse(Math.abs(r.get(i) - x.get(i)) > 1e-10, "wrong ILU solution at row " + i);
+    }
+
+    @Test
+    public void testKrylovSolvers() {
+        System.out.println("Testing GMRES and BiCGstab with reusable workspaces...");
+        final int n = 200;
+        CsrMatrix.Builder builder = CsrMatrix.builder(n, n);
+        for (int i = 0; i < n; i++) {
+            builder.add(i, i, 4.0 + Math.sin(i));
+            if (i > 0) builder.add(i, i - 1, -1.0);
+            if (i < n - 1) builder.add(i, i + 1, -1.5);
+            if (i < n - 5) builder.add(i, i + 5, 0.3);
+        }
+        final CsrMatrix a = builder.build();
+        SparseILUPreconditioner ilu = new SparseILUPreconditioner(a, 1);
+
+        GMRES gmres = GMRES.of(LinearOperator.of(a), 30, 1e-10, LinearOperator.of(ilu));
+        BiCGstab bicg = BiCGstab.of(LinearOperator.of(a), 100, 1e-10, null);
+        KrylovWorkspace ws = new KrylovWorkspace(n, 30);
+        double[] x = new double[n], b = new double[n], ax = new double[n];
+        for (int trial = 0; trial < 3; trial++) {
+            for (int i = 0; i < n; i++)
+                b[i] = Math.cos(0.1 * i * (trial + 1));
+
+            java.util.Arrays.fill(x, 0.0);
+            KrylovResult r1 = gmres.solveWithRestart(5, b, x, ws);
+            a.multiply(x, ax);
+            for (int i = 0; i < n; i++)
+                assertFalse(Math.abs(ax[i] - b[i]) > 1e-8, "GMRES: wrong solution at row " + i);
+            assertFalse(r1.error >= 1e-10 || r1.iterations == 0, "GMRES: wrong statistics " + r1);
+
+            java.util.Arrays.fill(x, 0.0);
+            KrylovResult r2 = bicg.solve(b, x, ws);
+            a.multiply(x, ax);
+            for (int i = 0; i < n; i++)
+                assertFalse(Math.abs(ax[i] - b[i]) > 1e-8, "BiCGstab: wrong solution at row " + i);
+            assertFalse(r2.error >= 1e-10, "BiCGstab: wrong statistics " + r2);
+        }
+
+        // Array-based interface
+        Array rhs = Array.wrap(b.clone());
+        GMRESResult res = new GMRES(a::multiply, 50, 1e-10, null).solve(rhs, new Array(0));
+        Array check = a.multiply(res.x).subtract(rhs);
+        for (int i = 0; i < n; i++)
+            assertFalse(Math.abs(check.get(i)) > 1e-8, "GMRES (Array): wrong solution at row " + i);
+        assertFalse(res.back() >= 1e-10, "GMRES (Array): wrong residual " + res.back());
+    }
+}
@@ -0,0 +1,735 @@
+package math;
+
+import jquant.Compounding;
+import jquant.Greeks;
+import jquant.Handle;
+import jquant.Quote;
+import jquant.StochasticProcess;
+import jquant.StochasticProcess1D;
+import jquant.TimeGrid;
+import jquant.math.Array;
+import jquant.math.Function;
+import jquant.math.Matrix;
+import jquant.math.distributions.CumulativeNormalDistribution;
+import jquant.math.distributions.NormalDistribution;
+import jquant.math.randomnumbers.InverseCumulativeRsg;
+import jquant.math.randomnumbers.MersenneTwisterUniformRng;
+import jquant.math.randomnumbers.RandomSequenceGenerator;
+import jquant.math.randomnumbers.RngStreams;
+import jquant.math.statistics.IncrementalStatistics;
+import jquant.methods.montecarlo.BlackScholesMonteCarloGreeks;
+import jquant.methods.montecarlo.BrownianBlockGenerator;
+import jquant.methods.montecarlo.BrownianBridge;
+import jquant.methods.montecarlo.EarlyExercisePathPricer;
+import jquant.methods.montecarlo.LongstaffSchwartzPathPricer;
+import jquant.methods.montecarlo.HestonMonteCarloGreeks;
+import jquant.methods.montecarlo.LsmBasisSystem;
+import jquant.methods.montecarlo.McSimulation;
+import jquant.methods.montecarlo.MonteCarloGreeks;
+import jquant.methods.montecarlo.MonteCarloModel;
+import jquant.methods.montecarlo.MultiPath;
+import jquant.methods.montecarlo.MultiPathGenerator;
+import jquant.methods.montecarlo.Path;
+import jquant.methods.montecarlo.PathGenerator;
+import jquant.methods.montecarlo.PathPricer;
+import jquant.methods.montecarlo.PathStore;
+import jquant.methods.montecarlo.PathwisePayoff;
+import jquant.processes.BlackScholesMertonProcess;
+import jquant.processes.EulerDiscretization;
+import jquant.processes.G2Process;
+import jquant.processes.GeometricBrownianMotionProcess;
+import jquant.processes.HestonProcess;
+import jquant.processes.HullWhiteProcess;
+import jquant.processes.OrnsteinUhlenbeckProcess;
+import jquant.processes.SquareRootProcess;
+import jquant.processes.StochasticProcessArray;
+import jquant.quotes.SimpleQuote;
+import jquant.termstructures.YieldTermStructure;
+import jquant.termstructures.volatility.equityfx.BlackConstantVol;
+import jquant.termstructures.yield.FlatForward;
+import jquant.time.Date;
+import jquant.time.Frequency;
+import jquant.time.Month;
+import jquant.time.calendars.NullCalendar;
+import jquant.time.daycounters.Actual365Fixed;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class MonteCarloTest {
+
+    // geometric Brownian motion evolved with the exact log-normal step
+    private static StochasticProcess1D lognormal(double s0, double mu, double sigma) {
+        return new GeometricBrownianMotionProcess(s0, mu, sigma) {
+            @Override
+            public double evolve(double t0, double x0, double dt, double dw) {
+                return x0 * Math.exp((mue_ - 0.5 * sigma_ * sigma_) * dt + sigma_ * Math.sqrt(dt) * dw);
+            }
+        };
+    }
+
+    private static double blackCall(double s0, double k, double r, double sigma, double t) {
+        CumulativeNormalDistribution n = new CumulativeNormalDistribution();
+        double sd = sigma * Math.sqrt(t);
+        double d1 = (Math.log(s0 / k) + r * t) / sd + 0.5 * sd;
+        return s0 * n.value(d1) - k * Math.exp(-r * t) * n.value(d1 - sd);
+    }
+
+    @Test
+    public void testEuropeanOption() {
+        System.out.println("Testing Monte Carlo simulation of a European option...");
+
+        final double s0 = 100.0, strike = 105.0, r = 0.03, sigma = 0.25, maturity = 1.0;
+        final int steps = 4;
+        final StochasticProcess1D process = lognormal(s0, r, sigma);
+        final TimeGrid grid = new TimeGrid(maturity, steps);
+        final double discount = Math.exp(-r * maturity);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(42));
+        final McSimulation.GeneratorFactory<Path> generators = k -> new PathGenerator(process, grid,
+                new InverseCumulativeRsg(new RandomSequenceGenerator(steps, streams.stream(k))), false);
+        final PathPricer<Path> call = path -> discount * Math.max(path.back() - strike, 0.0);
+        final double expected = blackCall(s0, strike, r, sigma, maturity);
+
+        final int samples = 20000, blockSize = 1000;
+        McSimulation<Path> plain = new McSimulation<>(generators, call, true,
+                new IncrementalStatistics(), blockSize);
+        double value = plain.valueWithSamples(samples);
+        double error = plain.errorEstimate();
+        assertFalse(Math.abs(value - expected) > 4.0 * error,
+                "antithetic Monte Carlo value too far from analytic price\n"
+                        + "    calculated: " + value + " +/- " + error + "\n"
+                        + "    expected:   " + expected);
+
+        // the same blocks replayed serially give exactly the same statistics
+        IncrementalStatistics serial = new IncrementalStatistics();
+        for (int b = 0; b < samples / blockSize; b++) {
+            new MonteCarloModel<>(generators.generator(b), call, serial, true).addSamples(blockSize);
+        }
+        assertFalse(serial.mean() != value || serial.errorEstimate() != error,
+                "parallel simulation depends on scheduling\n"
+                        + "    parallel: " + value + " +/- " + error + "\n"
+                        + "    serial:   " + serial.mean() + " +/- " + serial.errorEstimate());
+
+        McSimulation<Path> crude = new McSimulation<>(generators, call, false,
+                new IncrementalStatistics(), blockSize);
+        crude.valueWithSamples(samples);
+
+        // the discounted forward is worth s0
+        McSimulation<Path> cv = new McSimulation<>(generators, call, false,
+                new IncrementalStatistics(), blockSize);
+        cv.setControlVariate(path -> discount * path.back(), s0, null);
+        double cvValue = cv.valueWithSamples(samples);
+        double cvError = cv.errorEstimate();
+        assertFalse(Math.abs(cvValue - expected) > 4.0 * cvError,
+                "control-variate Monte Carlo value too far from analytic price\n"
+                        + "    calculated: " + cvValue + " +/- " + cvError + "\n"
+                        + "    expected:   " + expected);
+        assertFalse(cvError >= crude.errorEstimate(),
+                "control variate does not reduce the error: " + cvError + " vs " + crude.errorEstimate());
+
+        final double tolerance = 0.05;
+        McSimulation<Path> driven = new McSimulation<>(generators, call, true);
+        double drivenValue = driven.value(tolerance, 1000000, 1000);
+        assertFalse(driven.errorEstimate() > tolerance,
+                "tolerance not reached: " + driven.errorEstimate());
+        assertFalse(Math.abs(drivenValue - expected) > 4.0 * tolerance,
+                "tolerance-driven value too far from analytic price\n"
+                        + "    calculated: " + drivenValue + "\n"
+                        + "    expected:   " + expected);
+    }
+
+    @Test
+    public void testMultiPath() {
+        System.out.println("Testing multi-asset Monte Carlo paths...");
+
+        final double r = 0.02, sigma1 = 0.2, sigma2 = 0.3, rho = 0.5, maturity = 2.0;
+        final int steps = 8;
+        final StochasticProcessArray process = new StochasticProcessArray(
+                Arrays.asList(lognormal(100.0, r, sigma1), lognormal(50.0, r, sigma2)),
+                new Matrix(new double[][]{{1.0, rho}, {rho, 1.0}}));
+        final TimeGrid grid = new TimeGrid(maturity, steps);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(7));
+        McSimulation<MultiPath> mc = new McSimulation<>(k -> new MultiPathGenerator(process, grid,
+                new InverseCumulativeRsg(new RandomSequenceGenerator(2 * steps, streams.stream(k))), false),
+                path -> path.get(0).back() * path.get(1).back(), true);
+
+        double value = mc.valueWithSamples(20000);
+        double error = mc.errorEstimate();
+        double expected = 100.0 * 50.0 * Math.exp((2.0 * r + rho * sigma1 * sigma2) * maturity);
+        assertFalse(Math.abs(value - expected) > 4.0 * error,
+                "expected product of correlated assets not reproduced\n"
+                        + "    calculated: " + value + " +/- " + error + "\n"
+                        + "    expected:   " + expected);
+    }
+    @Test
+    public void testPathStore() {
+        System.out.println("Testing structure-of-arrays path storage...");
+
+        final int steps = 5, paths = 300, blockSize = 64;
+        final StochasticProcessArray process = new StochasticProcessArray(
+                Arrays.asList(lognormal(100.0, 0.01, 0.2), lognormal(80.0, 0.01, 0.35)),
+                new Matrix(new double[][]{{1.0, -0.3}, {-0.3, 1.0}}));
+        final TimeGrid grid = new TimeGrid(1.0, steps);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(11));
+        final McSimulation.GeneratorFactory<MultiPath> generators = k -> new MultiPathGenerator(process, grid,
+                new InverseCumulativeRsg(new RandomSequenceGenerator(2 * steps, streams.stream(k))), false);
+
+        PathStore byPath = new PathStore(paths, 2, grid, PathStore.Layout.PATH_MAJOR);
+        PathStore byTime = new PathStore(paths, 2, grid, PathStore.Layout.TIME_MAJOR);
+        byPath.generateMultiPaths(generators, blockSize, true);
+        byTime.generateMultiPaths(generators, blockSize, true);
+
+        // the second block, regenerated serially; the sample buffer is reused,
+        // so each path is checked before the next draw
+        MultiPathGenerator generator = (MultiPathGenerator) generators.generator(1);
+        for (int p = blockSize; p < 2 * blockSize; p++) {
+            MultiPath expected = (p % 2 == 0) ? generator.next().value : generator.antithetic().value;
+            for (int a = 0; a < 2; a++) {
+                for (int i = 0; i < steps + 1; i++) {
+                    assertFalse(byPath.get(p, a, i) != expected.get(a).get(i),
+                            "stored value differs from generated path at ("
+                                    + p + ", " + a + ", " + i + ")");
+                }
+            }
+        }
+
+        double[] column = new double[paths];
+        double[] row = new double[steps + 1];
+        for (int i = 0; i < steps + 1; i++) {
+            PathStore.SliceView slice = byTime.slice(i);
+            slice.copyTo(1, column);
+            for (int p = 0; p < paths; p++) {
+                assertFalse(column[p] != byPath.get(p, 1, i) || slice.get(p, 0) != byPath.get(p, 0, i),
+                        "time slice " + i + " differs between layouts at path " + p);
+            }
+        }
+        for (int p = 0; p < paths; p += 37) {
+            byTime.path(p).copyTo(0, row);
+            PathStore.PathView view = byPath.path(p);
+            for (int i = 0; i < steps + 1; i++) {
+                assertFalse(row[i] != view.get(0, i),
+                        "path view " + p + " differs between layouts at point " + i);
+            }
+        }
+    }
+
+    private static Handle<YieldTermStructure> flatRate(Date today, double rate) {
+        return new Handle<>(new FlatForward(today, rate, new Actual365Fixed(),
+                Compounding.Continuous, Frequency.ANNUAL), true);
+    }
+
+    private static HestonProcess heston(HestonProcess.Discretization d) {
+        return heston(d, 0.6);
+    }
+
+    private static HestonProcess heston(HestonProcess.Discretization d, double sigma) {
+        Date today = new Date(15, Month.MAY, 2024);
+        return new HestonProcess(flatRate(today, 0.03), flatRate(today, 0.01),
+                new Handle<>(new SimpleQuote(100.0), true),
+                0.04, 1.5, 0.05, sigma, -0.7, d) {
+        };
+    }
+
+    // batch evolve of n paths against evolve() path by path
+    private static void checkBatchEvolve(String name, StochasticProcess process, double[] x, int n,
+                                         MersenneTwisterUniformRng rng) {
+        final int size = process.size(), factors = process.factors();
+        final InverseCumulativeRsg gaussian =
+                new InverseCumulativeRsg(new RandomSequenceGenerator(factors * n, rng));
+        final double[] dw = gaussian.nextSequence().value.clone();
+        final double[] batch = x.clone();
+        process.evolve(0.25, 0.1, batch, dw, n);
+        for (int p = 0; p < n; p++) {
+            Array x0 = new Array(size), dw0 = new Array(factors);
+            for (int i = 0; i < size; i++) {
+                x0.set(i, x[i * n + p]);
+            }
+            for (int k = 0; k < factors; k++) {
+                dw0.set(k, dw[k * n + p]);
+            }
+            Array expected = process.evolve(0.25, x0, 0.1, dw0);
+            for (int i = 0; i < size; i++) {
+                double calculated = batch[i * n + p];
+                assertFalse(Math.abs(calculated - expected.get(i)) > 1e-12 * Math.max(1.0, Math.abs(expected.get(i))),
+                        name + ": batch evolve differs from single-path evolve at path " + p
+                                + ", component " + i + "\n"
+                                + "    calculated: " + calculated + "\n"
+                                + "    expected:   " + expected.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchEvolve() {
+        System.out.println("Testing batch evolve of stochastic processes...");
+
+        final int n = 33;
+        final MersenneTwisterUniformRng rng = new MersenneTwisterUniformRng(1234);
+        double[] rates = new double[n], prices = new double[n], hestonState = new double[2 * n];
+        for (int p = 0; p < n; p++) {
+            rates[p] = 0.02 + 0.04 * rng.nextReal();
+            prices[p] = 80.0 + 40.0 * rng.nextReal();
+            hestonState[p] = prices[p];
+            hestonState[n + p] = 0.005 + 0.08 * rng.nextReal();
+        }
+
+        Date today = new Date(15, Month.MAY, 2024);
+        Handle<YieldTermStructure> riskFree = flatRate(today, 0.03);
+        Handle<Quote> spot = new Handle<>(new SimpleQuote(100.0), true);
+
+        checkBatchEvolve("Ornstein-Uhlenbeck", new OrnsteinUhlenbeckProcess(0.8, 0.02, 0.03, 0.04),
+                rates, n, rng);
+        checkBatchEvolve("Hull-White", new HullWhiteProcess(riskFree, 0.1, 0.01) {
+        }, rates, n, rng);
+        checkBatchEvolve("square root", new SquareRootProcess(0.04, 1.2, 0.1, 0.03, new EulerDiscretization()),
+                rates, n, rng);
+        checkBatchEvolve("Black-Scholes-Merton", new BlackScholesMertonProcess(spot, flatRate(today, 0.01),
+                riskFree, new Handle<>(new BlackConstantVol(today, new NullCalendar(), 0.2, new Actual365Fixed()), true),
+                new EulerDiscretization(), false), prices, n, rng);
+        BlackScholesMertonProcess bsm = new BlackScholesMertonProcess(spot, flatRate(today, 0.01),
+                riskFree, new Handle<>(new BlackConstantVol(today, new NullCalendar(), 0.2, new Actual365Fixed()), true),
+                new EulerDiscretization(), false);
+        StochasticProcessArray array = new StochasticProcessArray(
+                Arrays.asList(bsm, new GeometricBrownianMotionProcess(100.0, 0.02, 0.3) {
+                }, bsm),
+                new Matrix(new double[][]{{1.0, 0.5, 0.2}, {0.5, 1.0, -0.3}, {0.2, -0.3, 1.0}}));
+        double[] arrayState = new double[3 * n];
+        for (int i = 0; i < 3 * n; i++) {
+            arrayState[i] = prices[i % n];
+        }
+        checkBatchEvolve("process array", array, arrayState, n, rng);
+        checkBatchEvolve("G2", new G2Process(0.1, 0.01, 0.3, 0.012, -0.6), hestonState.clone(), n, rng);
+
+        // buffered Euler drift and diffusion against the allocating versions
+        for (StochasticProcess process : new StochasticProcess[]{array, new G2Process(0.1, 0.01, 0.3, 0.012, -0.6)}) {
+            final int size = process.size(), factors = process.factors();
+            final double[] x0 = Arrays.copyOf(arrayState, size);
+            final double[] drift = new double[size], diffusion = new double[size * factors];
+            final EulerDiscretization euler = new EulerDiscretization();
+            euler.drift(process, 0.5, x0, 0.1, drift);
+            euler.diffusion(process, 0.5, x0, 0.1, diffusion);
+            final double[] expectedDrift = euler.drift(process, 0.5, Array.wrap(x0.clone()), 0.1).toArray();
+            final double[] expectedDiffusion = euler.diffusion(process, 0.5, Array.wrap(x0.clone()), 0.1).toArray();
+            assertFalse(!Arrays.equals(drift, expectedDrift) || !Arrays.equals(diffusion, expectedDiffusion),
+                    "buffered Euler step differs for " + process.getClass().getSimpleName() + "\n"
+                            + "    drift:     " + Arrays.toString(drift) + " vs " + Arrays.toString(expectedDrift) + "\n"
+                            + "    diffusion: " + Arrays.toString(diffusion) + " vs " + Arrays.toString(expectedDiffusion));
+        }
+        for (HestonProcess.Discretization d : new HestonProcess.Discretization[]{
+                HestonProcess.Discretization.PartialTruncation,
+                HestonProcess.Discretization.FullTruncation,
+                HestonProcess.Discretization.Reflection,
+                HestonProcess.Discretization.QuadraticExponential,
+                HestonProcess.Discretization.QuadraticExponentialMartingale}) {
+            checkBatchEvolve("Heston " + d, heston(d), hestonState, n, rng);
+        }
+
+        // a store stepped in batches holds the paths of the multi-path generator
+        final int steps = 12, paths = 200, blockSize = 48;
+        final HestonProcess process = heston(HestonProcess.Discretization.QuadraticExponentialMartingale);
+        final TimeGrid grid = new TimeGrid(1.0, steps);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(99));
+        PathStore batched = new PathStore(paths, 2, grid, PathStore.Layout.TIME_MAJOR);
+        batched.generate(process, k -> new InverseCumulativeRsg(
+                new RandomSequenceGenerator(2 * steps, streams.stream(k))), blockSize);
+        PathStore single = new PathStore(paths, 2, grid);
+        single.generateMultiPaths(k -> new MultiPathGenerator(process, grid, new InverseCumulativeRsg(
+                new RandomSequenceGenerator(2 * steps, streams.stream(k))), false), blockSize, false);
+        for (int p = 0; p < paths; p++) {
+            for (int a = 0; a < 2; a++) {
+                for (int i = 0; i <= steps; i++) {
+                    double calculated = batched.get(p, a, i), expected = single.get(p, a, i);
+                    assertFalse(Math.abs(calculated - expected) > 1e-10 * Math.max(1.0, Math.abs(expected)),
+                            "batched Heston path differs at (" + p + ", " + a + ", " + i + ")\n"
+                                    + "    calculated: " + calculated + "\n"
+                                    + "    expected:   " + expected);
+                }
+            }
+        }
+    }
+    // two factors evolved by their Euler discretization alone
+    private static class EulerProcess extends StochasticProcess {
+        EulerProcess() {
+            super(new EulerDiscretization());
+        }
+
+        @Override
+        protected boolean evolvesByDiscretization() {
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+
+        @Override
+        public Array initialValues() {
+            return new Array(new double[]{0.03, 0.5});
+        }
+
+        @Override
+        public Array drift(double t, final Array x) {
+            return new Array(new double[]{0.5 * (0.04 - x.get(0)), 1.2 * (0.4 - x.get(1))});
+        }
+
+        @Override
+        public Matrix diffusion(double t, final Array x) {
+            final double v = 0.2 * Math.sqrt(Math.abs(x.get(1)));
+            return new Matrix(new double[][]{{0.01 + 0.1 * t, 0.0}, {0.5 * v, Math.sqrt(0.75) * v}});
+        }
+    }
+
+    @Test
+    public void testDiscretizedEvolve() {
+        System.out.println("Testing evolve through buffered discretizations...");
+
+        final int n = 64;
+        final MersenneTwisterUniformRng rng = new MersenneTwisterUniformRng(17);
+        final double[] x = new double[2 * n];
+        for (int p = 0; p < n; p++) {
+            x[p] = 0.02 + 0.0005 * p;
+            x[n + p] = 0.3 + 0.01 * p;
+        }
+        final EulerProcess process = new EulerProcess();
+        checkBatchEvolve("Euler process", process, x, n, rng);
+
+        // the same operations as x0 + drift + diffusion * dw on the allocating discretization
+        final EulerDiscretization euler = new EulerDiscretization();
+        final Array x0 = new Array(new double[]{0.035, 0.45}), dw = new Array(new double[]{0.7, -1.3});
+        final Array expected = x0.add(euler.drift(process, 0.25, x0, 0.1))
+                .add(euler.diffusion(process, 0.25, x0, 0.1).mutiply(dw));
+        final Array single = process.evolve(0.25, x0, 0.1, dw);
+        final double[] batch = {x0.get(0), x0.get(1)};
+        process.evolve(0.25, 0.1, batch, dw.toArray(), 1);
+        for (int i = 0; i < 2; i++) {
+            assertFalse(single.get(i) != expected.get(i) || batch[i] != expected.get(i),
+                    "component " + i + ": single " + single.get(i) + ", batch " + batch[i]
+                            + " instead of " + expected.get(i));
+        }
+
+        // processes changing apply() opt out and keep their own evolve
+        final EulerProcess logProcess = new EulerProcess() {
+            @Override
+            protected boolean evolvesByDiscretization() {
+                return false;
+            }
+
+            @Override
+            public Array apply(final Array x0, final Array dx) {
+                return new Array(new double[]{x0.get(0) * Math.exp(dx.get(0)), x0.get(1) + dx.get(1)});
+            }
+        };
+        checkBatchEvolve("Euler process with apply()", logProcess, x, n, rng);
+        final Array logExpected = logProcess.apply(logProcess.expectation(0.25, x0, 0.1),
+                logProcess.stdDeviation(0.25, x0, 0.1).mutiply(dw));
+        final Array logSingle = logProcess.evolve(0.25, x0, 0.1, dw);
+        assertFalse(logSingle.get(0) != logExpected.get(0) || logSingle.get(1) != logExpected.get(1),
+                "evolve with apply(): " + logSingle + " instead of " + logExpected);
+    }
+
+    @Test
+    public void testHestonStepPlan() {
+        System.out.println("Testing Heston step constants precomputed on a time grid...");
+
+        // spot and variance after each of three paths, as produced before the step plan was introduced;
+        // the trapezoidal root search fails to bracket at sigma = 0.6, so that scheme uses sigma = 0.5
+        final HestonProcess.Discretization[] schemes = {
+                HestonProcess.Discretization.QuadraticExponential,
+                HestonProcess.Discretization.QuadraticExponentialMartingale,
+                HestonProcess.Discretization.BroadieKayaExactSchemeLaguerre,
+                HestonProcess.Discretization.BroadieKayaExactSchemeLobatto,
+                HestonProcess.Discretization.BroadieKayaExactSchemeTrapezoidal};
+        final double[] sigmas = {0.6, 0.6, 0.6, 0.6, 0.5};
+        final double[][] expected = {
+                {118.39523824570409, 0.034023558291613486, 121.93150696381294, 0.0,
+                        133.87000293551827, 0.019922058035934220},
+                {118.37804098027262, 0.034023558291613486, 121.80902882836640, 0.0,
+                        133.58390518372792, 0.019922058035934220},
+                {93.695464466291300, 0.0074127684449313600, 68.266134908988660, 0.13758354007635917,
+                        49.135991464198426, 0.055197252548439955},
+                {93.662234775393700, 0.0074127684449313600, 68.742146047114770, 0.13758354007635917,
+                        49.346676262431370, 0.055197252548439955},
+                {94.177094269308600, 0.015652878800309154, 66.760111400485560, 0.13338729233257090,
+                        48.141989854050884, 0.063134039046639800}};
+
+        final TimeGrid grid = new TimeGrid(1.0, 4);
+        for (int s = 0; s < schemes.length; s++) {
+            final HestonProcess.Discretization d = schemes[s];
+            final HestonProcess plain = heston(d, sigmas[s]), prepared = heston(d, sigmas[s]);
+            prepared.prepare(grid);
+            final InverseCumulativeRsg gaussian = new InverseCumulativeRsg(
+                    new RandomSequenceGenerator(plain.factors(), new MersenneTwisterUniformRng(42)));
+            Array x = plain.initialValues(), y = prepared.initialValues();
+            for (int path = 0; path < 3; path++) {
+                for (int i = 1; i < grid.size(); i++) {
+                    final double t = grid.get(i - 1), dt = grid.dt(i - 1);
+                    Array dw = Array.wrap(gaussian.nextSequence().value.clone());
+                    x = plain.evolve(t, x, dt, dw);
+                    y = prepared.evolve(t, y, dt, dw);
+                }
+                for (int a = 0; a < 2; a++) {
+                    final double value = expected[s][2 * path + a];
+                    final double tolerance = 1e-10 * Math.max(1.0, Math.abs(value));
+                    assertFalse(Math.abs(x.get(a) - value) > tolerance,
+                            d + ": step differs after path " + path + ", component " + a + "\n"
+                                    + "    calculated: " + x.get(a) + "\n"
+                                    + "    expected:   " + value);
+                    assertFalse(Math.abs(y.get(a) - value) > tolerance,
+                            d + ": prepared step differs after path " + path + ", component " + a + "\n"
+                                    + "    calculated: " + y.get(a) + "\n"
+                                    + "    expected:   " + value);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBrownianBlocks() {
+        System.out.println("Testing blocks of Brownian increments...");
+
+        final TimeGrid grid = new TimeGrid(Arrays.asList(0.25, 0.5, 1.0, 1.1, 2.0, 3.5, 5.0));
+        final int steps = grid.size() - 1;
+        final BrownianBridge bridge = new BrownianBridge(grid);
+        final InverseCumulativeRsg gaussian = new InverseCumulativeRsg(
+                new RandomSequenceGenerator(steps, new MersenneTwisterUniformRng(7)));
+        final double[] z = gaussian.nextSequence().value.clone(), out = new double[steps];
+        bridge.transform(z, out);
+        List<Double> in = new ArrayList<>(), listOut = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            in.add(z[i]);
+            listOut.add(0.0);
+        }
+        bridge.transform(in, listOut, 0);
+        for (int i = 0; i < steps; i++) {
+            assertFalse(out[i] != listOut.get(i), "primitive and list bridges differ at step " + i + "\n"
+                    + "    calculated: " + out[i] + "\n"
+                    + "    expected:   " + listOut.get(i));
+        }
+
+        // antithetic pairs and matched moments
+        final int factors = 2, paths = 500, dimension = factors * steps;
+        final BrownianBlockGenerator increments = new BrownianBlockGenerator(
+                new InverseCumulativeRsg(new RandomSequenceGenerator(dimension, new MersenneTwisterUniformRng(11))),
+                factors, grid, true, true, true);
+        final double[] block = increments.next(paths);
+        for (int j = 0; j < dimension; j++) {
+            double sum = 0.0, sum2 = 0.0;
+            for (int p = 0; p < paths; p++) {
+                sum += block[p * dimension + j];
+                sum2 += block[p * dimension + j] * block[p * dimension + j];
+            }
+            assertFalse(Math.abs(sum / paths) > 1e-12 || Math.abs(sum2 / (paths - 1) - 1.0) > 1e-12,
+                    "moments not matched in column " + j + "\n"
+                            + "    mean:     " + sum / paths + "\n"
+                            + "    variance: " + sum2 / (paths - 1));
+        }
+        for (int p = 0; p < paths; p += 2) {
+            for (int j = 0; j < dimension; j++) {
+                assertFalse(block[p * dimension + j] != -block[(p + 1) * dimension + j],
+                        "paths " + p + " and " + (p + 1) + " are not antithetic");
+            }
+        }
+
+        // plain increments give the same store as the sequences they are drawn from
+        final HestonProcess process = heston(HestonProcess.Discretization.QuadraticExponentialMartingale);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(5));
+        PathStore fromSequences = new PathStore(100, 2, grid);
+        fromSequences.generate(process, k -> new InverseCumulativeRsg(
+                new RandomSequenceGenerator(dimension, streams.stream(k))), 32);
+        PathStore fromBlocks = new PathStore(100, 2, grid);
+        fromBlocks.generateBlocks(process, k -> new BrownianBlockGenerator(new InverseCumulativeRsg(
+                new RandomSequenceGenerator(dimension, streams.stream(k))), factors, grid, false, false, false), 32);
+        assertFalse(!Arrays.equals(fromSequences.data(), fromBlocks.data()),
+                "paths built from increment blocks differ from paths built from sequences");
+
+        // antithetic pairs cannot be split across blocks
+        boolean rejected = false;
+        try {
+            new PathStore(100, 2, grid).generateBlocks(process, k -> new BrownianBlockGenerator(
+                    new InverseCumulativeRsg(new RandomSequenceGenerator(dimension, streams.stream(k))),
+                    factors, grid, false, true, false), 31);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertFalse(!rejected, "antithetic increments accepted with an odd block size");
+    }
+
+    @Test
+    public void testLongstaffSchwartz() {
+        System.out.println("Testing Longstaff-Schwartz pricing of an American put...");
+
+        // Longstaff and Schwartz (2001), table 1: S = 36, K = 40, r = 6%, sigma = 20%, T = 1
+        final double strike = 40.0, r = 0.06;
+        Date today = new Date(15, Month.MAY, 2024);
+        final BlackScholesMertonProcess process = new BlackScholesMertonProcess(
+                new Handle<>(new SimpleQuote(36.0), true), flatRate(today, 0.0), flatRate(today, r),
+                new Handle<>(new BlackConstantVol(today, new NullCalendar(), 0.2, new Actual365Fixed()), true),
+                new EulerDiscretization(), false);
+        final int steps = 50;
+        final TimeGrid grid = new TimeGrid(1.0, steps);
+        final EarlyExercisePathPricer<PathStore.PathView> put = new EarlyExercisePathPricer<>() {
+            @Override
+            public double value(PathStore.PathView path, int t) {
+                return Math.max(strike - path.get(0, t), 0.0) * Math.exp(-r * grid.get(t));
+            }
+
+            @Override
+            public double state(PathStore.PathView path, int t) {
+                return path.get(0, t) / strike;
+            }
+
+            @Override
+            public List<Function> basisSystem() {
+                return LsmBasisSystem.pathBasisSystem(2, LsmBasisSystem.PolynomialType.Laguerre);
+            }
+        };
+
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(2001));
+        PathStore calibration = new PathStore(10000, 1, grid);
+        calibration.generate(process, k -> new InverseCumulativeRsg(
+                new RandomSequenceGenerator(steps, streams.stream(k))), 1024);
+        PathStore pricing = new PathStore(20000, 1, grid);
+        pricing.generate(process, k -> new InverseCumulativeRsg(
+                new RandomSequenceGenerator(steps, streams.stream(1000 + k))), 1024);
+
+        LongstaffSchwartzPathPricer<PathStore.PathView> american =
+                new LongstaffSchwartzPathPricer<>(grid, put);
+        american.calibrate(calibration.pathViews());
+        IncrementalStatistics stats = american.price(pricing.pathViews());
+        final double expected = 4.478;
+        assertFalse(Math.abs(stats.mean() - expected) > 3.0 * stats.errorEstimate() + 0.02,
+                "American put price out of range\n"
+                        + "    calculated: " + stats.mean() + " +/- " + stats.errorEstimate() + "\n"
+                        + "    expected:   " + expected);
+
+        // exercise at expiry only gives back the European price
+        LongstaffSchwartzPathPricer<PathStore.PathView> european =
+                new LongstaffSchwartzPathPricer<>(new int[]{steps}, put);
+        european.calibrate(calibration.pathViews());
+        stats = european.price(pricing.pathViews());
+        final double europeanValue = 3.844;
+        assertFalse(Math.abs(stats.mean() - europeanValue) > 3.0 * stats.errorEstimate(),
+                "European put price out of range\n"
+                        + "    calculated: " + stats.mean() + " +/- " + stats.errorEstimate() + "\n"
+                        + "    expected:   " + europeanValue);
+    }
+
+    private static void checkGreek(String name, double calculated, double error, double expected) {
+        assertFalse(Math.abs(calculated - expected) > 4.0 * error,
+                name + " out of range\n"
+                        + "    calculated: " + calculated + " +/- " + error + "\n"
+                        + "    expected:   " + expected);
+    }
+
+    @Test
+    public void testBlackScholesGreeks() {
+        System.out.println("Testing pathwise and likelihood-ratio Greeks under Black-Scholes...");
+
+        final double s0 = 100.0, strike = 105.0, r = 0.03, q = 0.01, sigma = 0.25, t = 1.0;
+        Date today = new Date(15, Month.MAY, 2024);
+        final BlackScholesMertonProcess process = new BlackScholesMertonProcess(
+                new Handle<>(new SimpleQuote(s0), true), flatRate(today, q), flatRate(today, r),
+                new Handle<>(new BlackConstantVol(today, new NullCalendar(), sigma, new Actual365Fixed()), true),
+                new EulerDiscretization(), false);
+        final int steps = 4;
+        final TimeGrid grid = new TimeGrid(t, steps);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(42));
+        final PathStore.SequenceFactory sequences = k -> new InverseCumulativeRsg(
+                new RandomSequenceGenerator(steps, streams.stream(k)));
+
+        final CumulativeNormalDistribution cn = new CumulativeNormalDistribution();
+        final NormalDistribution n = new NormalDistribution();
+        final double sd = sigma * Math.sqrt(t);
+        final double d1 = (Math.log(s0 / strike) + (r - q) * t) / sd + 0.5 * sd, d2 = d1 - sd;
+        final double dr = Math.exp(-r * t), dq = Math.exp(-q * t);
+
+        final PathwisePayoff call = (path, gradient) -> {
+            final double sT = path[path.length - 1];
+            if (sT > strike)
+                gradient[path.length - 1] = 1.0;
+            return Math.max(sT - strike, 0.0);
+        };
+        MonteCarloGreeks pathwise = new BlackScholesMonteCarloGreeks(process, grid, call,
+                MonteCarloGreeks.Method.Pathwise);
+        pathwise.calculate(sequences, 100000, 4096);
+        Greeks greeks = pathwise.greeks(), errors = pathwise.errorEstimates();
+        checkGreek("call value", pathwise.value(), pathwise.errorEstimate(),
+                s0 * dq * cn.value(d1) - strike * dr * cn.value(d2));
+        checkGreek("call delta", greeks.delta, errors.delta, dq * cn.value(d1));
+        checkGreek("call gamma", greeks.gamma, errors.gamma, dq * n.value(d1) / (s0 * sd));
+        checkGreek("call vega", greeks.vega, errors.vega, s0 * dq * n.value(d1) * Math.sqrt(t));
+        checkGreek("call rho", greeks.rho, errors.rho, strike * t * dr * cn.value(d2));
+        checkGreek("call dividend rho", greeks.dividendRho, errors.dividendRho,
+                -s0 * t * dq * cn.value(d1));
+        assertFalse(!Double.isNaN(greeks.theta), "theta should not be estimated");
+
+        // the digital payoff has no pathwise derivative
+        final PathwisePayoff digital = (path, gradient) -> path[path.length - 1] > strike ? 1.0 : 0.0;
+        MonteCarloGreeks ratio = new BlackScholesMonteCarloGreeks(process, grid, digital,
+                MonteCarloGreeks.Method.LikelihoodRatio);
+        ratio.calculate(sequences, 100000, 4096);
+        greeks = ratio.greeks();
+        errors = ratio.errorEstimates();
+        checkGreek("digital value", ratio.value(), ratio.errorEstimate(), dr * cn.value(d2));
+        checkGreek("digital delta", greeks.delta, errors.delta, dr * n.value(d2) / (s0 * sd));
+        checkGreek("digital gamma", greeks.gamma, errors.gamma,
+                -dr * n.value(d2) * d1 / (s0 * s0 * sd * sd));
+        checkGreek("digital vega", greeks.vega, errors.vega, -dr * n.value(d2) * d1 / sigma);
+        checkGreek("digital rho", greeks.rho, errors.rho,
+                -t * dr * cn.value(d2) + dr * n.value(d2) * Math.sqrt(t) / sigma);
+        final double p = cn.value(d2);
+        checkGreek("digital probability", ratio.moreGreeks().itmCashProbability,
+                Math.sqrt(p * (1.0 - p) / ratio.samples()), p);
+    }
+
+    @Test
+    public void testHestonGreeks() {
+        System.out.println("Testing pathwise and likelihood-ratio Greeks under Heston...");
+
+        final int steps = 20, samples = 50000;
+        final TimeGrid grid = new TimeGrid(1.0, steps);
+        final RngStreams<MersenneTwisterUniformRng> streams =
+                new RngStreams<>(new MersenneTwisterUniformRng(7));
+        final PathStore.SequenceFactory sequences = k -> new InverseCumulativeRsg(
+                new RandomSequenceGenerator(2 * steps, streams.stream(k)));
+        final double strike = 100.0;
+        final PathwisePayoff call = (path, gradient) -> {
+            final double sT = path[path.length - 1];
+            if (sT > strike)
+                gradient[path.length - 1] = 1.0;
+            return Math.max(sT - strike, 0.0);
+        };
+
+        for (HestonProcess.Discretization d : new HestonProcess.Discretization[]{
+                HestonProcess.Discretization.PartialTruncation,
+                HestonProcess.Discretization.FullTruncation,
+                HestonProcess.Discretization.Reflection}) {
+            MonteCarloGreeks pathwise = new HestonMonteCarloGreeks(heston(d), grid, call,
+                    MonteCarloGreeks.Method.Pathwise);
+            pathwise.calculate(sequences, samples, 2048);
+            MonteCarloGreeks ratio = new HestonMonteCarloGreeks(heston(d), grid, call,
+                    MonteCarloGreeks.Method.LikelihoodRatio);
+            ratio.calculate(sequences, samples, 2048);
+            Greeks greeks = pathwise.greeks(), errors = pathwise.errorEstimates();
+            Greeks lrGreeks = ratio.greeks(), lrErrors = ratio.errorEstimates();
+            checkGreek(d + " delta", greeks.delta, Math.hypot(errors.delta, lrErrors.delta), lrGreeks.delta);
+            checkGreek(d + " gamma", greeks.gamma, Math.hypot(errors.gamma, lrErrors.gamma), lrGreeks.gamma);
+            checkGreek(d + " vega", greeks.vega, Math.hypot(errors.vega, lrErrors.vega), lrGreeks.vega);
+
+            assertFalse(Double.isNaN(greeks.rho) || !Double.isNaN(lrGreeks.rho),
+                    "rho should be estimated by the pathwise method only");
+        }
+    }
+}
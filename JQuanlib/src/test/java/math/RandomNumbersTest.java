@@ -0,0 +1,224 @@
+package math;
+
+import jquant.math.distributions.InverseCumulativeNormal;
+import jquant.math.randomnumbers.BoxMullerGaussianRng;
+import jquant.math.randomnumbers.Burley2020SobolRsg;
+import jquant.math.randomnumbers.InverseCumulativeRsg;
+import jquant.math.randomnumbers.KnuthUniformRng;
+import jquant.math.randomnumbers.LecuyerUniformRng;
+import jquant.math.randomnumbers.MersenneTwisterUniformRng;
+import jquant.math.randomnumbers.PartitionedSobolRsg;
+import jquant.math.randomnumbers.Ranlux64UniformRng;
+import jquant.math.randomnumbers.RngStreams;
+import jquant.math.randomnumbers.SobolRsg;
+import jquant.math.randomnumbers.Xoshiro256StarStarUniformRng;
+import jquant.math.randomnumbers.ZigguratGaussianRng;
+import jquant.math.randomnumbers.impl.BlockRng;
+import jquant.math.randomnumbers.impl.SkippableUsg;
+import jquant.methods.montecarlo.SampleVector;
+import jquant.utilities.ParallelFor;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class RandomNumbersTest {
+
+    // odd block sizes so that buffered generators cross their refill boundaries
+    private static void checkBlock(String name, BlockRng block, DoubleSupplier sequential) {
+        final int[] sizes = {1, 7, 311, 1000, 2};
+        for (int len : sizes) {
+            double[] out = new double[len + 3];
+            block.nextBlock(out, 3, len);
+            for (int i = 0; i < len; i++) {
+                double expected = sequential.getAsDouble();
+                assertFalse(out[3 + i] != expected,
+                        name + ": block draw " + i + " differs from sequential draw\n"
+                                + "    calculated: " + out[3 + i] + "\n"
+                                + "    expected:   " + expected);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockGeneration() {
+        System.out.println("Testing block generation of random numbers...");
+
+        MersenneTwisterUniformRng mt = new MersenneTwisterUniformRng(42);
+        MersenneTwisterUniformRng mtRef = new MersenneTwisterUniformRng(42);
+        checkBlock("Mersenne twister", mt, mtRef::nextReal);
+
+        long[] raw = new long[1000];
+        mt.nextLongs(raw);
+        for (long r : raw) {
+            assertFalse(r != mtRef.nextInt32(), "Mersenne twister: raw block differs");
+        }
+
+        Xoshiro256StarStarUniformRng xs = new Xoshiro256StarStarUniformRng(42);
+        Xoshiro256StarStarUniformRng xsRef = new Xoshiro256StarStarUniformRng(42);
+        checkBlock("xoshiro256**", xs, xsRef::nextReal);
+
+        KnuthUniformRng knuth = new KnuthUniformRng(42);
+        KnuthUniformRng knuthRef = new KnuthUniformRng(42);
+        checkBlock("Knuth", knuth, knuthRef::nextReal);
+
+        LecuyerUniformRng lecuyer = new LecuyerUniformRng(42);
+        LecuyerUniformRng lecuyerRef = new LecuyerUniformRng(42);
+        checkBlock("L'Ecuyer", lecuyer, lecuyerRef::nextReal);
+
+        Ranlux64UniformRng ranlux = new Ranlux64UniformRng(42, 389, 11);
+        Ranlux64UniformRng ranluxRef = new Ranlux64UniformRng(42, 389, 11);
+        checkBlock("ranlux64", ranlux, ranluxRef::nextReal);
+
+        BoxMullerGaussianRng bm = new BoxMullerGaussianRng(new MersenneTwisterUniformRng(7));
+        BoxMullerGaussianRng bmRef = new BoxMullerGaussianRng(new MersenneTwisterUniformRng(7));
+        checkBlock("Box-Muller", bm, () -> bmRef.next().value);
+
+        ZigguratGaussianRng zig = new ZigguratGaussianRng(new Xoshiro256StarStarUniformRng(7));
+        ZigguratGaussianRng zigRef = new ZigguratGaussianRng(new Xoshiro256StarStarUniformRng(7));
+        checkBlock("Ziggurat", zig, zigRef::nextReal);
+
+        double[] u = new double[10000];
+        new Xoshiro256StarStarUniformRng(1).nextBlock(u);
+        for (double x : u) {
+            assertFalse(x <= 0.0 || x >= 1.0, "xoshiro256**: uniform deviate " + x + " outside (0,1)");
+        }
+    }
+
+    @Test
+    public void testLowDiscrepancySequences() {
+        System.out.println("Testing primitive low-discrepancy sequence buffers...");
+
+        // first dimension of the Gray-code Sobol sequence is van der Corput in Gray order
+        final double[] vanderCorput = {0.5, 0.75, 0.25, 0.375, 0.875, 0.625, 0.125, 0.1875};
+        SobolRsg sobol = new SobolRsg(1, 0, SobolRsg.DirectionIntegers.Jaeckel, true);
+        double[] buffer = sobol.nextSequence().value;
+        for (int i = 0; i < vanderCorput.length; i++) {
+            double[] v = i == 0 ? buffer : sobol.nextSequence().value;
+            assertFalse(v != buffer, "Sobol: sequence buffer not reused");
+            assertFalse(v[0] != vanderCorput[i],
+                    "Sobol: draw " + i + " is " + v[0] + " instead of " + vanderCorput[i]);
+        }
+
+        // scrambled draws of a 2^k block fall in distinct intervals of width 2^-k
+        final int m = 256;
+        Burley2020SobolRsg burley = new Burley2020SobolRsg(5, 42, SobolRsg.DirectionIntegers.Jaeckel, 43);
+        boolean[] hit = new boolean[m];
+        double[] previous = new double[5];
+        for (int i = 0; i < m; i++) {
+            double[] v = burley.nextSequence().value;
+            int cell = (int) (v[0] * m);
+            assertFalse(hit[cell], "Burley2020 Sobol: first dimension not stratified");
+            hit[cell] = true;
+            for (int j = 0; j < 5; j++) {
+                assertFalse(v[j] == previous[j], "Burley2020 Sobol: draw " + i + " repeats dimension " + j);
+                previous[j] = v[j];
+            }
+        }
+
+        final int dimension = 12;
+        InverseCumulativeRsg copying = new InverseCumulativeRsg(
+                new SobolRsg(dimension, 0, SobolRsg.DirectionIntegers.JoeKuoD7, true), new InverseCumulativeNormal());
+        InverseCumulativeRsg inPlace = new InverseCumulativeRsg(
+                new SobolRsg(dimension, 0, SobolRsg.DirectionIntegers.JoeKuoD7, true));
+        for (int i = 0; i < 100; i++) {
+            SampleVector a = copying.nextSequence();
+            SampleVector b = inPlace.nextSequenceInPlace();
+            for (int j = 0; j < dimension; j++) {
+                assertFalse(a.value[j] != b.value[j],
+                        "inverse-cumulative Sobol: in-place draw differs at (" + i + "," + j + ")");
+            }
+        }
+    }
+
+    @Test
+    public void testSubstreams() {
+        System.out.println("Testing jump-ahead substreams...");
+
+        // polynomial skip-ahead against sequential draws, from mid-block
+        MersenneTwisterUniformRng mt = new MersenneTwisterUniformRng(42);
+        for (int i = 0; i < 100; i++) {
+            mt.nextInt32();
+        }
+        MersenneTwisterUniformRng skipped = mt.copy();
+        final int n = 5000;
+        skipped.skip(n);
+        for (int i = 0; i < n; i++) {
+            mt.nextInt32();
+        }
+        for (int i = 0; i < 1000; i++) {
+            long expected = mt.nextInt32(), calculated = skipped.nextInt32();
+            assertFalse(expected != calculated,
+                    "Mersenne twister: skip-ahead differs from sequential draw " + i);
+        }
+
+        // substreams are reproducible and do not depend on how blocks map to threads
+        final int blocks = 8, perBlock = 1000;
+        RngStreams<Xoshiro256StarStarUniformRng> streams =
+                new RngStreams<>(new Xoshiro256StarStarUniformRng(1234));
+        double[] serial = new double[blocks * perBlock];
+        for (int b = blocks - 1; b >= 0; b--) {
+            streams.stream(b).nextBlock(serial, b * perBlock, perBlock);
+        }
+        double[] parallel = new double[blocks * perBlock];
+        ParallelFor.range(0, blocks, 1, (b0, b1) -> {
+            for (int b = b0; b < b1; b++) {
+                streams.stream(b).nextBlock(parallel, b * perBlock, perBlock);
+            }
+        });
+        for (int i = 0; i < serial.length; i++) {
+            assertFalse(serial[i] != parallel[i], "xoshiro256** substreams: draw " + i + " depends on scheduling");
+        }
+        Xoshiro256StarStarUniformRng second = new Xoshiro256StarStarUniformRng(1234);
+        second.jump();
+        for (int i = 0; i < perBlock; i++) {
+            assertFalse(second.nextReal() != serial[perBlock + i], "xoshiro256**: stream 1 is not one jump ahead");
+        }
+        assertFalse(serial[0] == serial[perBlock], "xoshiro256**: substreams coincide");
+
+        RngStreams<MersenneTwisterUniformRng> mtStreams = new RngStreams<>(new MersenneTwisterUniformRng(7));
+        RngStreams<LecuyerUniformRng> lecuyerStreams = new RngStreams<>(new LecuyerUniformRng(7));
+        assertFalse(mtStreams.stream(2).nextInt32() != mtStreams.stream(2).nextInt32(),
+                "Mersenne twister: substream not reproducible");
+        assertFalse(mtStreams.stream(1).nextInt32() == mtStreams.stream(0).nextInt32(),
+                "Mersenne twister: substreams coincide");
+        assertFalse(lecuyerStreams.stream(3).nextReal() != lecuyerStreams.stream(3).nextReal(),
+                "L'Ecuyer: substream not reproducible");
+        assertFalse(lecuyerStreams.stream(1).nextReal() == lecuyerStreams.stream(0).nextReal(),
+                "L'Ecuyer: substreams coincide");
+    }
+
+    private static <T extends SkippableUsg<T>> void checkPartitions(String name, T serial, T base) {
+        final int samples = 1000, partitions = 7, dim = serial.dimension();
+        double[] expected = new double[samples * dim];
+        for (int i = 0; i < samples; i++) {
+            System.arraycopy(serial.nextSequence().value, 0, expected, i * dim, dim);
+        }
+        double[] calculated = new double[samples * dim];
+        new PartitionedSobolRsg<>(base, samples, partitions).forEach((p, rsg, begin, end) -> {
+            for (int i = begin; i < end; i++) {
+                System.arraycopy(rsg.nextSequence().value, 0, calculated, i * dim, dim);
+            }
+        });
+        for (int k = 0; k < expected.length; k++) {
+            assertFalse(expected[k] != calculated[k],
+                    name + ": partitioned draw " + k / dim + " differs from the serial one");
+        }
+    }
+
+    @Test
+    public void testPartitionedSobol() {
+        System.out.println("Testing partitioned Sobol sequences...");
+
+        checkPartitions("Sobol",
+                new SobolRsg(20, 0, SobolRsg.DirectionIntegers.JoeKuoD7, true),
+                new SobolRsg(20, 0, SobolRsg.DirectionIntegers.JoeKuoD7, true));
+        checkPartitions("Sobol without Gray code",
+                new SobolRsg(20, 0, SobolRsg.DirectionIntegers.JoeKuoD7, false),
+                new SobolRsg(20, 0, SobolRsg.DirectionIntegers.JoeKuoD7, false));
+        checkPartitions("Burley2020 Sobol",
+                new Burley2020SobolRsg(20, 42, SobolRsg.DirectionIntegers.JoeKuoD7, 43),
+                new Burley2020SobolRsg(20, 42, SobolRsg.DirectionIntegers.JoeKuoD7, 43));
+    }
+}
@@ -0,0 +1,204 @@
+package math;
+
+import jquant.Compounding;
+import jquant.Handle;
+import jquant.Instrument;
+import jquant.Option;
+import jquant.Quote;
+import jquant.SavedSettings;
+import jquant.Settings;
+import jquant.math.Matrix;
+import jquant.quotes.SimpleQuote;
+import jquant.termstructures.YieldTermStructure;
+import jquant.termstructures.yield.FlatForward;
+import jquant.time.Date;
+import jquant.time.Frequency;
+import jquant.time.Month;
+import jquant.time.TimeUtils;
+import jquant.time.calendars.NullCalendar;
+import jquant.time.daycounters.Actual365Fixed;
+import jquant.utilities.ParallelFor;
+import jquant.utilities.ScenarioRunner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static jquant.pricingengines.BlackFormula.blackFormula;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class ScenarioRunnerTest {
+
+    // European call priced on a spot, a volatility and a rate quote
+    private static class Call extends Instrument {
+        private final double strike_;
+        private final Date expiry_;
+        private final SimpleQuote spot_, vol_;
+        private final YieldTermStructure curve_;
+
+        Call(double strike, Date expiry, SimpleQuote spot, SimpleQuote vol, YieldTermStructure curve) {
+            strike_ = strike;
+            expiry_ = expiry;
+            spot_ = spot;
+            vol_ = vol;
+            curve_ = curve;
+            registerWith(spot);
+            registerWith(vol);
+            registerWith(curve);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+
+        @Override
+        protected void performCalculations() {
+            double t = curve_.timeFromReference(expiry_);
+            double discount = curve_.discount(expiry_, true);
+            NPV_ = blackFormula(Option.Type.Call, strike_, spot_.value() / discount,
+                    vol_.value() * Math.sqrt(t), discount, 0.0);
+        }
+    }
+
+    private static final Date expiry = new Date(15, Month.MAY, 2026);
+    private static final double[] strikes = {90.0, 100.0, 110.0, 120.0};
+
+    private static ScenarioRunner.Market market() {
+        SimpleQuote spot = new SimpleQuote(100.0), vol = new SimpleQuote(0.2), rate = new SimpleQuote(0.03);
+        YieldTermStructure curve = new FlatForward(0, new NullCalendar(), new Handle<Quote>(rate, true),
+                new Actual365Fixed(), Compounding.Continuous, Frequency.ANNUAL);
+        List<Instrument> calls = new ArrayList<>();
+        for (double k : strikes)
+            calls.add(new Call(k, expiry, spot, vol, curve));
+        List<SimpleQuote> quotes = List.of(spot, vol, rate);
+        return new ScenarioRunner.Market() {
+            public List<SimpleQuote> quotes() {
+                return quotes;
+            }
+
+            public List<Instrument> instruments() {
+                return calls;
+            }
+        };
+    }
+
+    @Test
+    public void testScenarios() {
+        System.out.println("Testing parallel bump-and-reprice scenarios...");
+
+        SavedSettings backup = new SavedSettings();
+        try {
+            Date today = new Date(15, Month.MAY, 2024), valuation = new Date(15, Month.NOVEMBER, 2024);
+            Settings.instance.evaluationDate().equal(today);
+
+            List<ScenarioRunner.Scenario> scenarios = new ArrayList<>();
+            for (int i = 0; i < 40; ++i) {
+                scenarios.add(new ScenarioRunner.Scenario(new int[]{0, 1},
+                        new double[]{0.005 * (i - 20), 0.01 * (i % 5 - 2)}, true));
+                scenarios.add(ScenarioRunner.Scenario.parallel(new int[]{2}, 0.0001 * (i - 20)));
+            }
+
+            Matrix serial = new ScenarioRunner(ScenarioRunnerTest::market, 1, valuation).run(scenarios);
+            Matrix parallel = new ScenarioRunner(ScenarioRunnerTest::market, 7, valuation).run(scenarios);
+
+            assertFalse(TimeUtils.neq(Settings.instance.evaluationDate().Date(), today),
+                    "evaluation date not restored: " + Settings.instance.evaluationDate().Date()
+                            + " instead of " + today);
+
+            // reference values, one scenario at a time on a single market
+            Settings.instance.evaluationDate().equal(valuation);
+            ScenarioRunner.Market m = market();
+            double[] base = {100.0, 0.2, 0.03};
+            for (int s = 0; s < scenarios.size(); ++s) {
+                double[] values = base.clone();
+                if (s % 2 == 0) {
+                    int i = s / 2;
+                    values[0] += base[0] * 0.005 * (i - 20);
+                    values[1] += base[1] * 0.01 * (i % 5 - 2);
+                } else {
+                    values[2] += 0.0001 * (s / 2 - 20);
+                }
+                for (int q = 0; q < 3; ++q)
+                    m.quotes().get(q).setValue(values[q]);
+                for (int j = 0; j < strikes.length; ++j) {
+                    double expected = m.instruments().get(j).NPV();
+                    assertFalse(serial.get(s, j) != expected || parallel.get(s, j) != expected,
+                            "scenario " + s + ", instrument " + j + ": serial " + serial.get(s, j)
+                                    + ", parallel " + parallel.get(s, j) + ", expected " + expected);
+                }
+            }
+        } finally {
+            backup.close();
+        }
+    }
+
+    // values of many calls at the current evaluation date
+    private static double portfolio(int size) {
+        SimpleQuote spot = new SimpleQuote(100.0), vol = new SimpleQuote(0.2), rate = new SimpleQuote(0.03);
+        YieldTermStructure curve = new FlatForward(0, new NullCalendar(), new Handle<Quote>(rate, true),
+                new Actual365Fixed(), Compounding.Continuous, Frequency.ANNUAL);
+        double sum = 0.0;
+        for (int i = 0; i < size; ++i)
+            sum += new Call(50.0 + 100.0 * i / size, expiry, spot, vol, curve).NPV();
+        return sum;
+    }
+
+    private static void revalue(Date[] dates, int begin, int end, int size, double[] values) {
+        for (int k = begin; k < end; ++k) {
+            Settings.Scope scope = Settings.newScope();
+            try {
+                Settings.instance.evaluationDate().equal(dates[k]);
+                values[k] = portfolio(size);
+            } finally {
+                scope.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMultiDateRevaluation() {
+        System.out.println("Testing multi-date revaluation in settings scopes...");
+
+        SavedSettings backup = new SavedSettings();
+        try {
+            Date today = new Date(15, Month.MAY, 2024);
+            Settings.instance.evaluationDate().equal(today);
+            final int size = 500;
+            Date[] dates = new Date[4 * ParallelFor.parallelism()];
+            for (int k = 0; k < dates.length; ++k)
+                dates[k] = today.add(10 * k);
+
+            double[] serial = new double[dates.length], parallel = new double[dates.length];
+            revalue(dates, 0, dates.length, size, serial);
+            ParallelFor.range(0, dates.length, 1, (begin, end) -> revalue(dates, begin, end, size, parallel));
+
+            for (int k = 0; k < dates.length; ++k) {
+                assertFalse(serial[k] != parallel[k],
+                        "date " + dates[k] + ": serial " + serial[k] + ", parallel " + parallel[k]);
+                assertFalse(k > 0 && serial[k] == serial[k - 1],
+                        "same value at " + dates[Math.max(k - 1, 0)] + " and " + dates[k]);
+            }
+            assertFalse(TimeUtils.neq(Settings.instance.evaluationDate().Date(), today),
+                    "global evaluation date changed to " + Settings.instance.evaluationDate().Date());
+
+            // loops run within a scope see its settings
+            Settings.Scope scope = Settings.newScope();
+            try {
+                Settings.instance.evaluationDate().equal(dates[1]);
+                final Date[] seen = new Date[64];
+                ParallelFor.range(0, seen.length, 1, (begin, end) -> {
+                    for (int k = begin; k < end; ++k)
+                        seen[k] = Settings.instance.evaluationDate().Date();
+                });
+                for (int k = 0; k < seen.length; ++k)
+                    assertFalse(TimeUtils.neq(seen[k], dates[1]),
+                            "index " + k + " evaluated at " + seen[k] + " instead of " + dates[1]);
+            } finally {
+                scope.close();
+            }
+        } finally {
+            backup.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package math;
+
+import jquant.math.Array;
+import jquant.math.Matrix;
+import jquant.math.randomnumbers.MersenneTwisterUniformRng;
+import jquant.methods.finitedifferences.CyclicTridiagonalOperator;
+import jquant.methods.finitedifferences.FDUtils;
+import jquant.methods.finitedifferences.TridiagonalOperator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class TridiagonalOperatorTest {
+
+    private static Array random(MersenneTwisterUniformRng rng, int size, double shift) {
+        Array a = new Array(size);
+        for (int i = 0; i < size; i++)
+            a.set(i, rng.nextReal() - 0.5 + shift);
+        return a;
+    }
+
+    // diagonally dominant operator
+    private static TridiagonalOperator operator(MersenneTwisterUniformRng rng, int size) {
+        return new TridiagonalOperator(random(rng, size - 1, 0.0), random(rng, size, 3.0),
+                random(rng, size - 1, 0.0));
+    }
+
+    @Test
+    public void testSolveAndApply() {
+        System.out.println("Testing tridiagonal operator kernels...");
+
+        MersenneTwisterUniformRng rng = new MersenneTwisterUniformRng(42);
+        final int n = 50, m = 7;
+        TridiagonalOperator L = operator(rng, n);
+        Array x = random(rng, n, 0.0);
+
+        // product with the diagonals
+        Array y = L.applyTo(x);
+        for (int j = 0; j < n; j++) {
+            double expected = L.diagonal().get(j) * x.get(j);
+            if (j > 0)
+                expected += L.lowerDiagonal().get(j - 1) * x.get(j - 1);
+            if (j < n - 1)
+                expected += L.upperDiagonal().get(j) * x.get(j + 1);
+            assertFalse(Math.abs(y.get(j) - expected) > 1.0e-14,
+                    "row " + j + ": " + y.get(j) + " instead of " + expected);
+        }
+
+        // solve inverts apply, also in place
+        Array solved = L.solveFor(y);
+        L.solveFor(y, y);
+        for (int j = 0; j < n; j++) {
+            assertFalse(Math.abs(solved.get(j) - x.get(j)) > 1.0e-13,
+                    "solution " + solved.get(j) + " instead of " + x.get(j) + " at " + j);
+            assertFalse(y.get(j) != solved.get(j), "in-place solution differs at " + j);
+        }
+
+        // several right-hand sides at once, each as solved alone
+        Matrix rhs = new Matrix(n, m);
+        for (int j = 0; j < n; j++)
+            for (int k = 0; k < m; k++)
+                rhs.set(j, k, rng.nextReal());
+        Matrix result = new Matrix(n, m);
+        L.solveFor(rhs, result);
+        for (int k = 0; k < m; k++) {
+            Array column = new Array(n);
+            for (int j = 0; j < n; j++)
+                column.set(j, rhs.get(j, k));
+            Array expected = L.solveFor(column);
+            for (int j = 0; j < n; j++)
+                assertFalse(result.get(j, k) != expected.get(j),
+                        "column " + k + ", row " + j + ": " + result.get(j, k) + " instead of " + expected.get(j));
+        }
+        L.solveFor(rhs, rhs);
+        for (int j = 0; j < n; j++)
+            for (int k = 0; k < m; k++)
+                assertFalse(rhs.get(j, k) != result.get(j, k), "in-place solution differs at " + j + ", " + k);
+
+        // fused combination
+        TridiagonalOperator I = TridiagonalOperator.identity(n);
+        TridiagonalOperator fused = FDUtils.axpy(-0.25, L, I);
+        TridiagonalOperator expected = FDUtils.add(FDUtils.multiply(-0.25, L), I);
+        TridiagonalOperator inPlace = TridiagonalOperator.identity(n).axpy(-0.25, L);
+        for (int j = 0; j < n; j++) {
+            assertFalse(fused.diagonal().get(j) != expected.diagonal().get(j)
+                            || inPlace.diagonal().get(j) != expected.diagonal().get(j),
+                    "diagonal " + j + ": " + fused.diagonal().get(j) + " instead of " + expected.diagonal().get(j));
+            if (j < n - 1)
+                assertFalse(fused.lowerDiagonal().get(j) != expected.lowerDiagonal().get(j)
+                                || fused.upperDiagonal().get(j) != expected.upperDiagonal().get(j)
+                                || inPlace.upperDiagonal().get(j) != expected.upperDiagonal().get(j),
+                        "off-diagonals differ at " + j);
+        }
+    }
+
+    @Test
+    public void testCyclicOperator() {
+        System.out.println("Testing cyclic tridiagonal operator...");
+
+        MersenneTwisterUniformRng rng = new MersenneTwisterUniformRng(7);
+        final int n = 40, m = 5;
+        final double bottomLeft = 0.7, topRight = -0.4;
+        CyclicTridiagonalOperator L = new CyclicTridiagonalOperator(random(rng, n - 1, 0.0),
+                random(rng, n, 3.0), random(rng, n - 1, 0.0), bottomLeft, topRight);
+        Array x = random(rng, n, 0.0);
+
+        Array y = L.applyTo(x);
+        for (int j = 0; j < n; j++) {
+            double expected = L.diagonal().get(j) * x.get(j);
+            expected += j > 0 ? L.lowerDiagonal().get(j - 1) * x.get(j - 1) : topRight * x.get(n - 1);
+            expected += j < n - 1 ? L.upperDiagonal().get(j) * x.get(j + 1) : bottomLeft * x.get(0);
+            assertFalse(Math.abs(y.get(j) - expected) > 1.0e-14,
+                    "row " + j + ": " + y.get(j) + " instead of " + expected);
+        }
+
+        Array solved = L.solveFor(y);
+        for (int j = 0; j < n; j++)
+            assertFalse(Math.abs(solved.get(j) - x.get(j)) > 1.0e-13,
+                    "solution " + solved.get(j) + " instead of " + x.get(j) + " at " + j);
+
+        Matrix rhs = new Matrix(n, m);
+        for (int j = 0; j < n; j++)
+            for (int k = 0; k < m; k++)
+                rhs.set(j, k, rng.nextReal());
+        Matrix result = new Matrix(n, m);
+        L.solveFor(rhs, result);
+        for (int k = 0; k < m; k++) {
+            Array column = new Array(n);
+            for (int j = 0; j < n; j++)
+                column.set(j, result.get(j, k));
+            Array back = L.applyTo(column);
+            for (int j = 0; j < n; j++)
+                assertFalse(Math.abs(back.get(j) - rhs.get(j, k)) > 1.0e-13,
+                        "column " + k + ", row " + j + ": " + back.get(j) + " instead of " + rhs.get(j, k));
+        }
+
+        // the kept Sherman-Morrison terms follow changes of the corners and diagonals
+        for (int change = 0; change < 3; change++) {
+            if (change == 0)
+                L.setCorners(-0.3, 0.5);
+            else if (change == 1)
+                L.setMidRow(7, 0.2, 3.5, -0.1);
+            else
+                L.diagonal().set(n - 1, 2.8);
+            y = L.applyTo(x);
+            solved = L.solveFor(y);
+            for (int j = 0; j < n; j++)
+                assertFalse(Math.abs(solved.get(j) - x.get(j)) > 1.0e-13,
+                        "solution after change " + change + ": " + solved.get(j) + " instead of " + x.get(j)
+                                + " at " + j);
+        }
+    }
+}